@@ -0,0 +1,94 @@
+package me.nullicorn.ooze.convert;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures filling an {@link ArrayUIntMap}, and looking up keys that are and aren't in it, at
+ * sizes ranging from a typical section palette to the largest possible one.
+ *
+ * @author Nullicorn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ArrayUIntMapBenchmark {
+
+  @Param({"16", "256", "4096"})
+  public int size;
+
+  private int[]        keys;
+  private int[]        missingKeys;
+  private ArrayUIntMap map;
+
+  @Setup
+  public void setUp() {
+    // Keys are spread out like the state hashes used by PaletteBuilder.
+    Random random = new Random(size);
+    Set<Integer> usedKeys = new HashSet<>();
+    keys = new int[size];
+    missingKeys = new int[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = uniqueKey(random, usedKeys);
+    }
+    for (int i = 0; i < size; i++) {
+      missingKeys[i] = uniqueKey(random, usedKeys);
+    }
+
+    map = new ArrayUIntMap();
+    for (int i = 0; i < size; i++) {
+      map.set(keys[i], i);
+    }
+  }
+
+  @Benchmark
+  public ArrayUIntMap fill() {
+    ArrayUIntMap filled = new ArrayUIntMap();
+    for (int i = 0; i < size; i++) {
+      filled.set(keys[i], i);
+    }
+    return filled;
+  }
+
+  @Benchmark
+  public long getPresent() {
+    long sum = 0;
+    for (int key : keys) {
+      sum += map.get(key);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long getMissing() {
+    long sum = 0;
+    for (int key : missingKeys) {
+      sum += map.get(key);
+    }
+    return sum;
+  }
+
+  private static int uniqueKey(Random random, Set<Integer> usedKeys) {
+    int key;
+    do {
+      key = random.nextInt();
+    } while (!usedKeys.add(key));
+    return key;
+  }
+}
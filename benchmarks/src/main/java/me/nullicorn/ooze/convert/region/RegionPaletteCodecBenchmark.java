@@ -0,0 +1,73 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Palette;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encoding & decoding section palettes of varying sizes, where every other state has
+ * properties.
+ *
+ * @author Nullicorn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RegionPaletteCodecBenchmark {
+
+  private static final int DATA_VERSION = 2730;
+
+  @Param({"1", "16", "300"})
+  public int paletteSize;
+
+  private RegionPaletteCodec codec;
+  private Palette            palette;
+  private NBTList            encoded;
+
+  @Setup
+  public void setUp() {
+    codec = new RegionPaletteCodec(DATA_VERSION);
+
+    List<BlockState> states = new ArrayList<>(paletteSize);
+    for (int i = 0; i < paletteSize; i++) {
+      NBTCompound properties = new NBTCompound();
+      if (i % 2 == 1) {
+        properties.put("facing", "north");
+        properties.put("level", Integer.toString(i % 16));
+      }
+      states.add(new BlockState("minecraft:test_state_" + i, properties));
+    }
+
+    palette = new Palette("benchmark", DATA_VERSION, states);
+    encoded = codec.encode(palette);
+  }
+
+  @Benchmark
+  public NBTList encode() {
+    return codec.encode(palette);
+  }
+
+  @Benchmark
+  public Palette decode() throws IOException {
+    return codec.decode(encoded);
+  }
+}
@@ -0,0 +1,89 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+import me.nullicorn.ooze.level.PackedUIntArray;
+import me.nullicorn.ooze.level.Palette;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encoding & decoding paletted sections in both block array layouts, with varying palette
+ * sizes, and with and without scratch arrays.
+ *
+ * @author Nullicorn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RegionSectionCodecBenchmark {
+
+  private static final int LENGTH = 4096;
+
+  // Before & after block arrays stopped spanning multiple words.
+  @Param({"1451", "2730"})
+  public int dataVersion;
+
+  @Param({"1", "16", "300"})
+  public int paletteSize;
+
+  @Param({"false", "true"})
+  public boolean scratchArrays;
+
+  private RegionSectionCodec codec;
+  private Cell               cell;
+  private NBTCompound        encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    codec = new RegionSectionCodec(dataVersion,
+        SectionCodecOptions.defaults().withScratchArrays(scratchArrays));
+
+    List<BlockState> states = new ArrayList<>(paletteSize);
+    for (int i = 0; i < paletteSize; i++) {
+      states.add(new BlockState("minecraft:test_state_" + i));
+    }
+
+    Random random = new Random(paletteSize);
+    int[] blocks = new int[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      blocks[i] = random.nextInt(paletteSize);
+    }
+
+    cell = new Cell(new Palette("benchmark", dataVersion, states), new PackedUIntArray(blocks));
+    encoded = codec.encode(cell);
+  }
+
+  @Benchmark
+  public NBTCompound encode() throws IOException {
+    return codec.encode(cell);
+  }
+
+  @Benchmark
+  public Cell decode() throws IOException {
+    return codec.decode(encoded);
+  }
+
+  @Benchmark
+  public NBTCompound roundTrip() throws IOException {
+    return codec.encode(codec.decode(encoded));
+  }
+}
@@ -0,0 +1,79 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.level.Cell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures decoding & re-encoding a batch of realistic sections from a {@link SectionCorpus},
+ * where uniform & small-palette sections are as common as they are in real worlds.
+ *
+ * @author Nullicorn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SectionCorpusBenchmark {
+
+  private static final int SECTIONS = 256;
+
+  // Numeric IDs, then both block array layouts.
+  @Param({"1343", "1451", "2730"})
+  public int dataVersion;
+
+  @Param({"0.0", "0.5", "0.9"})
+  public double uniformRatio;
+
+  @Param({"false", "true"})
+  public boolean scratchArrays;
+
+  private RegionSectionCodec codec;
+  private List<NBTCompound>  sections;
+  private Cell[]             cells;
+
+  @Setup
+  public void setUp() throws IOException {
+    codec = new RegionSectionCodec(dataVersion,
+        SectionCodecOptions.defaults().withScratchArrays(scratchArrays));
+
+    sections = new SectionCorpus(SECTIONS)
+        .withUniformRatio(uniformRatio)
+        .nextSections(dataVersion, SECTIONS);
+
+    cells = new Cell[SECTIONS];
+    for (int i = 0; i < SECTIONS; i++) {
+      cells[i] = codec.decode(sections.get(i));
+    }
+  }
+
+  @Benchmark
+  public void decode(Blackhole blackhole) throws IOException {
+    for (NBTCompound section : sections) {
+      blackhole.consume(codec.decode(section));
+    }
+  }
+
+  @Benchmark
+  public void encode(Blackhole blackhole) throws IOException {
+    for (Cell cell : cells) {
+      blackhole.consume(codec.encode(cell));
+    }
+  }
+}
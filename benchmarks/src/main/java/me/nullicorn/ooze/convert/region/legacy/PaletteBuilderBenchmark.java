@@ -0,0 +1,66 @@
+package me.nullicorn.ooze.convert.region.legacy;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import me.nullicorn.ooze.level.Palette;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building a palette from a legacy section's worth of numeric block states, with varying
+ * numbers of distinct states.
+ *
+ * @author Nullicorn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PaletteBuilderBenchmark {
+
+  private static final int DATA_VERSION = 1343;
+  private static final int LENGTH       = 4096;
+
+  @Param({"1", "16", "256", "4096"})
+  public int distinctStates;
+
+  private NumericBlockStateCodec stateCodec;
+  private int[]                  types;
+  private int[]                  variants;
+
+  @Setup
+  public void setUp() {
+    stateCodec = new NumericBlockStateCodec(DATA_VERSION);
+
+    // Each distinct state gets its own type & variant pair, then blocks pick from those at random.
+    Random random = new Random(distinctStates);
+    types = new int[LENGTH];
+    variants = new int[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      int state = random.nextInt(distinctStates);
+      types[i] = state >>> 4;
+      variants[i] = state & 0xf;
+    }
+  }
+
+  @Benchmark
+  public Palette build() throws IOException {
+    PaletteBuilder builder = new PaletteBuilder(DATA_VERSION, stateCodec);
+    for (int i = 0; i < LENGTH; i++) {
+      builder.add(types[i], variants[i]);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,85 @@
+package me.nullicorn.ooze.convert.region.legacy;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.convert.region.SectionCodecOptions;
+import me.nullicorn.ooze.level.Cell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decoding legacy sections (with {@code Blocks}, {@code Add} & {@code Data} arrays), and
+ * encoding them again, with and without scratch arrays.
+ *
+ * @author Nullicorn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RegionLegacySectionCodecBenchmark {
+
+  private static final int DATA_VERSION = 1343;
+  private static final int LENGTH       = 4096;
+
+  @Param({"1", "16", "256"})
+  public int distinctStates;
+
+  @Param({"false", "true"})
+  public boolean scratchArrays;
+
+  private RegionLegacySectionCodec codec;
+  private byte[]                   types;
+  private byte[]                   extensions;
+  private byte[]                   variants;
+  private Cell                     cell;
+
+  @Setup
+  public void setUp() throws IOException {
+    codec = new RegionLegacySectionCodec(DATA_VERSION,
+        SectionCodecOptions.defaults().withScratchArrays(scratchArrays));
+
+    // States use extended types so that the Add array is exercised as well.
+    Random random = new Random(distinctStates);
+    types = new byte[LENGTH];
+    extensions = new byte[LENGTH / 2];
+    variants = new byte[LENGTH / 2];
+    for (int i = 0; i < LENGTH; i++) {
+      int state = random.nextInt(distinctStates) * 37;
+      int shift = (i & 1) * 4;
+      types[i] = (byte) state;
+      extensions[i / 2] |= ((state >>> 8) & 0xf) << shift;
+      variants[i / 2] |= ((state >>> 12) & 0xf) << shift;
+    }
+
+    cell = codec.decode(types, extensions, variants);
+  }
+
+  @Benchmark
+  public Cell decode() throws IOException {
+    return codec.decode(types, extensions, variants);
+  }
+
+  @Benchmark
+  public NBTCompound encode() throws IOException {
+    return codec.encode(cell);
+  }
+
+  @Benchmark
+  public NBTCompound roundTrip() throws IOException {
+    return codec.encode(codec.decode(types, extensions, variants));
+  }
+}
@@ -0,0 +1,73 @@
+package me.nullicorn.ooze.convert.region.storage;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading & writing every value in a section-sized {@link BitStorage} and {@link
+ * LegacyBitStorage}, across the range of magnitudes used by block arrays.
+ *
+ * @author Nullicorn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BitStorageBenchmark {
+
+  private static final int LENGTH = 4096;
+
+  @Param({"BitStorage", "LegacyBitStorage"})
+  public String storage;
+
+  // Includes magnitudes that divide evenly into words, and ones that don't.
+  @Param({"1", "4", "5", "8", "13", "16", "31"})
+  public int magnitude;
+
+  private RegionUIntArray array;
+  private int[]           values;
+
+  @Setup
+  public void setUp() {
+    array = storage.equals("BitStorage")
+        ? new BitStorage(LENGTH, magnitude, null)
+        : new LegacyBitStorage(LENGTH, magnitude, null);
+
+    Random random = new Random(magnitude);
+    values = new int[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      values[i] = random.nextInt() >>> (Integer.SIZE - magnitude);
+      array.set(i, values[i]);
+    }
+  }
+
+  @Benchmark
+  public long getAll() {
+    long sum = 0;
+    for (int i = 0; i < LENGTH; i++) {
+      sum += array.get(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public RegionUIntArray setAll() {
+    for (int i = 0; i < LENGTH; i++) {
+      array.set(i, values[i]);
+    }
+    return array;
+  }
+}
@@ -0,0 +1,69 @@
+package me.nullicorn.ooze.convert.region.storage;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading & writing every nibble in a section-sized {@link NibbleArray}, like the ones
+ * used by legacy sections for block variants & light.
+ *
+ * @author Nullicorn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NibbleArrayBenchmark {
+
+  private static final int LENGTH = 4096;
+
+  private NibbleArray array;
+  private int[]       values;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(LENGTH);
+    byte[] words = new byte[LENGTH / 2];
+    random.nextBytes(words);
+    array = new NibbleArray(LENGTH, words);
+
+    values = new int[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      values[i] = random.nextInt(16);
+    }
+  }
+
+  @Benchmark
+  public long getAll() {
+    long sum = 0;
+    for (int i = 0; i < LENGTH; i++) {
+      sum += array.get(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public NibbleArray setAll() {
+    for (int i = 0; i < LENGTH; i++) {
+      array.set(i, values[i]);
+    }
+    return array;
+  }
+
+  @Benchmark
+  public byte[] toByteArray() {
+    return array.toByteArray();
+  }
+}
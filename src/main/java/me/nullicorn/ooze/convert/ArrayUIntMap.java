@@ -94,9 +94,11 @@ public class ArrayUIntMap {
         upscale(1 + (int) (capacity * 1.5d));
       }
 
-      keyIndex = 2 * (size - 1);
+      keyIndex = 2 * size;
       size++;
 
+      flatMap[keyIndex] = key;
+
     } else {
       oldValue = flatMap[keyIndex + 1];
     }
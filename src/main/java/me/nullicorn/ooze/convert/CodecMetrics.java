@@ -0,0 +1,143 @@
+package me.nullicorn.ooze.convert;
+
+/**
+ * A listener that codecs report their work to, such as how many sections they have decoded, what
+ * shape those sections were, and how long each one took.
+ * <p><br>
+ * Every method does nothing by default, so listeners only need to override the events they are
+ * interested in. Codecs may be used by many threads at once, so listeners must be thread-safe, and
+ * should return quickly; they are called on the codecs' hot paths. Events are only reported for
+ * operations that succeed.
+ * <p><br>
+ * Durations are measured with {@link System#nanoTime()}, and include any nested operations. For
+ * example, a chunk's duration includes the time spent on its sections, and a section's includes
+ * the time spent on its palette.
+ *
+ * @author Nullicorn
+ * @see me.nullicorn.ooze.convert.region.SectionCodecOptions#withMetrics(CodecMetrics)
+ */
+public interface CodecMetrics {
+
+  /**
+   * @return a listener that ignores every event, and that codecs do not bother timing operations
+   * for. This is the default.
+   */
+  static CodecMetrics none() {
+    return NoCodecMetrics.INSTANCE;
+  }
+
+  /**
+   * @return a new listener that counts events using {@link java.util.concurrent.atomic.LongAdder
+   * LongAdders}, so that it can be updated by many threads without locking.
+   */
+  static CountingCodecMetrics counting() {
+    return new CountingCodecMetrics();
+  }
+
+  /**
+   * @return whether or not the listener uses any events. If {@code false}, codecs may skip
+   * measuring operations, and may not report any events at all. This may change over time, such as
+   * when a recording starts; codecs check it once at the start of each operation.
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /**
+   * Called after a chunk section is decoded.
+   *
+   * @param dataVersion The version of the codec that decoded the section.
+   * @param paletteSize The number of states in the decoded cell's palette.
+   * @param magnitude   The number of bits needed to index the palette.
+   * @param isLegacy    Whether or not the section used numeric block IDs, rather than a palette.
+   * @param bytes       The size of the section's block arrays, in bytes.
+   * @param nanos       How long the section took to decode.
+   */
+  default void sectionDecoded(int dataVersion, int paletteSize, int magnitude, boolean isLegacy,
+      int bytes, long nanos) {
+  }
+
+  /**
+   * Called after a chunk section is encoded.
+   *
+   * @param dataVersion The version of the codec that encoded the section.
+   * @param paletteSize The number of states in the encoded section's palette, or the number of
+   *                    distinct states in it if {@code isLegacy}. {@code 0} if the section was
+   *                    elided.
+   * @param magnitude   The number of bits needed to index the palette.
+   * @param isLegacy    Whether or not the section uses numeric block IDs, rather than a palette.
+   * @param bytes       The size of the section's block arrays, in bytes.
+   * @param nanos       How long the section took to encode.
+   */
+  default void sectionEncoded(int dataVersion, int paletteSize, int magnitude, boolean isLegacy,
+      int bytes, long nanos) {
+  }
+
+  /**
+   * Called after a palette is decoded, either on its own or as part of a section.
+   *
+   * @param dataVersion The version of the codec that decoded the palette.
+   * @param paletteSize The number of states in the palette.
+   * @param nanos       How long the palette took to decode.
+   */
+  default void paletteDecoded(int dataVersion, int paletteSize, long nanos) {
+  }
+
+  /**
+   * Called after a palette is encoded, either on its own or as part of a section.
+   *
+   * @param dataVersion The version of the codec that encoded the palette.
+   * @param paletteSize The number of states in the palette.
+   * @param nanos       How long the palette took to encode.
+   */
+  default void paletteEncoded(int dataVersion, int paletteSize, long nanos) {
+  }
+
+  /**
+   * Called after a chunk's binary NBT is parsed, but before its sections are decoded.
+   *
+   * @param dataVersion The version of the decoder that parsed the chunk.
+   * @param chunkX      The chunk's X coordinate.
+   * @param chunkZ      The chunk's Z coordinate.
+   * @param bytes       The size of the chunk's uncompressed NBT, in bytes.
+   * @param nanos       How long the chunk took to parse.
+   */
+  default void chunkParsed(int dataVersion, int chunkX, int chunkZ, int bytes, long nanos) {
+  }
+
+  /**
+   * Called after a chunk's sections are decoded.
+   *
+   * @param dataVersion  The version of the codec that decoded the chunk.
+   * @param chunkX       The chunk's X coordinate.
+   * @param chunkZ       The chunk's Z coordinate.
+   * @param sectionCount The number of sections in the chunk, including empty ones.
+   * @param nanos        How long the chunk took to decode.
+   */
+  default void chunkDecoded(int dataVersion, int chunkX, int chunkZ, int sectionCount,
+      long nanos) {
+  }
+
+  /**
+   * Called after a chunk is encoded.
+   *
+   * @param dataVersion  The version of the codec that encoded the chunk.
+   * @param chunkX       The chunk's X coordinate.
+   * @param chunkZ       The chunk's Z coordinate.
+   * @param sectionCount The number of sections in the chunk, including elided ones.
+   * @param nanos        How long the chunk took to encode.
+   */
+  default void chunkEncoded(int dataVersion, int chunkX, int chunkZ, int sectionCount,
+      long nanos) {
+  }
+
+  /**
+   * Called when a codec looks for something it may have kept from a previous operation, such as a
+   * pooled array.
+   *
+   * @param cache The name of the cache that was checked.
+   * @param isHit Whether or not the cache had what the codec was looking for.
+   */
+  default void cacheLookup(String cache, boolean isHit) {
+  }
+}
@@ -0,0 +1,284 @@
+package me.nullicorn.ooze.convert;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics that count each event reported by codecs, broken down by data version.
+ * <p><br>
+ * Counters are {@link LongAdder LongAdders}, so reporting never blocks, even when many threads
+ * report at once. Reading a counter sums it at that moment, so counters read while codecs are busy
+ * may not be consistent with one another.
+ *
+ * @author Nullicorn
+ * @see CodecMetrics#counting()
+ */
+public final class CountingCodecMetrics implements CodecMetrics {
+
+  /**
+   * The values counted for each data version.
+   */
+  public enum Counter {
+    SECTIONS_DECODED,
+    SECTIONS_ENCODED,
+    /**
+     * The number of decoded sections that used numeric block IDs.
+     */
+    LEGACY_SECTIONS_DECODED,
+    /**
+     * The number of encoded sections that use numeric block IDs.
+     */
+    LEGACY_SECTIONS_ENCODED,
+    SECTION_DECODE_NANOS,
+    SECTION_ENCODE_NANOS,
+    /**
+     * The total size of the block arrays read by decoded sections, in bytes.
+     */
+    SECTION_BYTES_DECODED,
+    /**
+     * The total size of the block arrays written by encoded sections, in bytes.
+     */
+    SECTION_BYTES_ENCODED,
+    /**
+     * The total number of palette states in decoded & encoded sections. Dividing it by the number
+     * of sections gives their average palette size.
+     */
+    SECTION_PALETTE_STATES,
+    PALETTES_DECODED,
+    PALETTES_ENCODED,
+    PALETTE_DECODE_NANOS,
+    PALETTE_ENCODE_NANOS,
+    CHUNKS_PARSED,
+    CHUNKS_DECODED,
+    CHUNKS_ENCODED,
+    CHUNK_PARSE_NANOS,
+    CHUNK_DECODE_NANOS,
+    CHUNK_ENCODE_NANOS,
+    /**
+     * The total size of the uncompressed NBT of parsed chunks, in bytes.
+     */
+    CHUNK_BYTES_PARSED
+  }
+
+  private static final Counter[] COUNTERS = Counter.values();
+
+  /**
+   * One more than the largest magnitude a section can have.
+   */
+  private static final int MAGNITUDES = Integer.SIZE + 1;
+
+  private final ConcurrentMap<Integer, VersionCounters> versions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LongAdder[]>      caches   = new ConcurrentHashMap<>();
+
+  /**
+   * The version whose counters were used most recently, so that they can usually be found without
+   * boxing the version for a map lookup.
+   */
+  private volatile VersionCounters lastVersion;
+
+  /**
+   * Use {@link CodecMetrics#counting()} instead.
+   */
+  CountingCodecMetrics() {
+  }
+
+  /**
+   * @return the sum of the {@code counter} across all data versions.
+   */
+  public long get(Counter counter) {
+    long sum = 0;
+    for (VersionCounters counters : versions.values()) {
+      sum += counters.values[counter.ordinal()].sum();
+    }
+    return sum;
+  }
+
+  /**
+   * @return the {@code counter}'s value for a single data version, or {@code 0} if nothing was
+   * reported for that version.
+   */
+  public long get(int dataVersion, Counter counter) {
+    VersionCounters counters = versions.get(dataVersion);
+    return counters != null ? counters.values[counter.ordinal()].sum() : 0;
+  }
+
+  /**
+   * @return the number of sections decoded or encoded with the {@code magnitude}, across all data
+   * versions, or {@code 0} if the magnitude is out of range.
+   */
+  public long sectionsWithMagnitude(int magnitude) {
+    if (magnitude < 0 || magnitude >= MAGNITUDES) {
+      return 0;
+    }
+
+    long sum = 0;
+    for (VersionCounters counters : versions.values()) {
+      sum += counters.magnitudes[magnitude].sum();
+    }
+    return sum;
+  }
+
+  /**
+   * @return an unmodifiable, sorted snapshot of the data versions that events have been reported
+   * for.
+   */
+  public Set<Integer> dataVersions() {
+    return Collections.unmodifiableSet(new TreeSet<>(versions.keySet()));
+  }
+
+  /**
+   * @return the number of lookups in the named {@code cache} that found what they were looking
+   * for.
+   */
+  public long cacheHits(String cache) {
+    LongAdder[] counters = caches.get(cache);
+    return counters != null ? counters[0].sum() : 0;
+  }
+
+  /**
+   * @return the number of lookups in the named {@code cache} that did not find what they were
+   * looking for.
+   */
+  public long cacheMisses(String cache) {
+    LongAdder[] counters = caches.get(cache);
+    return counters != null ? counters[1].sum() : 0;
+  }
+
+  /**
+   * @return the share of lookups in the named {@code cache} that were hits, between {@code 0} and
+   * {@code 1}, or {@link Double#NaN NaN} if the cache has no lookups.
+   */
+  public double cacheHitRate(String cache) {
+    long hits = cacheHits(cache);
+    long total = hits + cacheMisses(cache);
+    return total != 0 ? (double) hits / total : Double.NaN;
+  }
+
+  @Override
+  public void sectionDecoded(int dataVersion, int paletteSize, int magnitude, boolean isLegacy,
+      int bytes, long nanos) {
+    VersionCounters counters = countersFor(dataVersion);
+    counters.increment(Counter.SECTIONS_DECODED);
+    if (isLegacy) {
+      counters.increment(Counter.LEGACY_SECTIONS_DECODED);
+    }
+    counters.add(Counter.SECTION_DECODE_NANOS, nanos);
+    counters.add(Counter.SECTION_BYTES_DECODED, bytes);
+    counters.add(Counter.SECTION_PALETTE_STATES, paletteSize);
+    counters.countMagnitude(magnitude);
+  }
+
+  @Override
+  public void sectionEncoded(int dataVersion, int paletteSize, int magnitude, boolean isLegacy,
+      int bytes, long nanos) {
+    VersionCounters counters = countersFor(dataVersion);
+    counters.increment(Counter.SECTIONS_ENCODED);
+    if (isLegacy) {
+      counters.increment(Counter.LEGACY_SECTIONS_ENCODED);
+    }
+    counters.add(Counter.SECTION_ENCODE_NANOS, nanos);
+    counters.add(Counter.SECTION_BYTES_ENCODED, bytes);
+    counters.add(Counter.SECTION_PALETTE_STATES, paletteSize);
+    counters.countMagnitude(magnitude);
+  }
+
+  @Override
+  public void paletteDecoded(int dataVersion, int paletteSize, long nanos) {
+    VersionCounters counters = countersFor(dataVersion);
+    counters.increment(Counter.PALETTES_DECODED);
+    counters.add(Counter.PALETTE_DECODE_NANOS, nanos);
+  }
+
+  @Override
+  public void paletteEncoded(int dataVersion, int paletteSize, long nanos) {
+    VersionCounters counters = countersFor(dataVersion);
+    counters.increment(Counter.PALETTES_ENCODED);
+    counters.add(Counter.PALETTE_ENCODE_NANOS, nanos);
+  }
+
+  @Override
+  public void chunkParsed(int dataVersion, int chunkX, int chunkZ, int bytes, long nanos) {
+    VersionCounters counters = countersFor(dataVersion);
+    counters.increment(Counter.CHUNKS_PARSED);
+    counters.add(Counter.CHUNK_PARSE_NANOS, nanos);
+    counters.add(Counter.CHUNK_BYTES_PARSED, bytes);
+  }
+
+  @Override
+  public void chunkDecoded(int dataVersion, int chunkX, int chunkZ, int sectionCount,
+      long nanos) {
+    VersionCounters counters = countersFor(dataVersion);
+    counters.increment(Counter.CHUNKS_DECODED);
+    counters.add(Counter.CHUNK_DECODE_NANOS, nanos);
+  }
+
+  @Override
+  public void chunkEncoded(int dataVersion, int chunkX, int chunkZ, int sectionCount,
+      long nanos) {
+    VersionCounters counters = countersFor(dataVersion);
+    counters.increment(Counter.CHUNKS_ENCODED);
+    counters.add(Counter.CHUNK_ENCODE_NANOS, nanos);
+  }
+
+  @Override
+  public void cacheLookup(String cache, boolean isHit) {
+    LongAdder[] counters = caches.get(cache);
+    if (counters == null) {
+      counters = caches.computeIfAbsent(cache, name -> new LongAdder[]{
+          new LongAdder(), new LongAdder()
+      });
+    }
+    counters[isHit ? 0 : 1].increment();
+  }
+
+  private VersionCounters countersFor(int dataVersion) {
+    VersionCounters counters = lastVersion;
+    if (counters == null || counters.dataVersion != dataVersion) {
+      counters = versions.computeIfAbsent(dataVersion, VersionCounters::new);
+      lastVersion = counters;
+    }
+    return counters;
+  }
+
+  /**
+   * The counters for a single data version.
+   */
+  private static final class VersionCounters {
+
+    final int         dataVersion;
+    final LongAdder[] values;
+    final LongAdder[] magnitudes;
+
+    VersionCounters(int dataVersion) {
+      this.dataVersion = dataVersion;
+
+      values = new LongAdder[COUNTERS.length];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = new LongAdder();
+      }
+
+      magnitudes = new LongAdder[MAGNITUDES];
+      for (int i = 0; i < magnitudes.length; i++) {
+        magnitudes[i] = new LongAdder();
+      }
+    }
+
+    void increment(Counter counter) {
+      values[counter.ordinal()].increment();
+    }
+
+    void add(Counter counter, long amount) {
+      values[counter.ordinal()].add(amount);
+    }
+
+    void countMagnitude(int magnitude) {
+      if (magnitude >= 0 && magnitude < MAGNITUDES) {
+        magnitudes[magnitude].increment();
+      }
+    }
+  }
+}
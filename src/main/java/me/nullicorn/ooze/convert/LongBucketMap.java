@@ -0,0 +1,179 @@
+package me.nullicorn.ooze.convert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A structure for grouping values into buckets by a primitive {@code long} key, without boxing the
+ * keys.
+ * <p><br>
+ * Keys are stored in an open-addressed table, so looking up a bucket is constant-time on average.
+ * Values are kept in the order they were added to their bucket. Maps are not thread-safe.
+ *
+ * @param <T> The type of the values in the map's buckets.
+ * @author Nullicorn
+ */
+public class LongBucketMap<T> {
+
+  /**
+   * The largest share of the table's slots that can be used before it grows.
+   */
+  private static final float LOAD_FACTOR = 0.5f;
+
+  /**
+   * The largest number of slots that the table can have.
+   */
+  private static final int MAX_TABLE_SIZE = 1 << 30;
+
+  /**
+   * Multiplied by keys to spread their bits; {@code 2^64} divided by the golden ratio.
+   */
+  private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  /**
+   * The number of keys in the map.
+   */
+  private int size;
+
+  /**
+   * The key in each slot of the table. Only meaningful if the slot's {@link #buckets bucket} is
+   * non-null.
+   */
+  private long[] keys;
+
+  /**
+   * The values for the key in each slot of the table, or {@code null} if the slot is empty.
+   */
+  private List<T>[] buckets;
+
+  /**
+   * How far hashes are shifted so that only enough of their highest bits remain to index the
+   * table.
+   */
+  private int hashShift;
+
+  /**
+   * Creates a new map with an arbitrary initial capacity.
+   *
+   * @see #LongBucketMap(int)
+   */
+  public LongBucketMap() {
+    this(16);
+  }
+
+  /**
+   * Creates a new map that can hold up to a certain number of keys before growing internally.
+   * <p><br>
+   * This does not change the map's behavior, but allows memory to be saved if the required number
+   * of keys is known beforehand.
+   */
+  public LongBucketMap(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("initialCapacity cannot be negative: " + initialCapacity);
+    }
+
+    long minTableSize = Math.max(2, (long) Math.ceil(initialCapacity / LOAD_FACTOR));
+    allocate(Integer.highestOneBit((int) Math.min(minTableSize, MAX_TABLE_SIZE) - 1) << 1);
+  }
+
+  /**
+   * @return the number of keys in the map, each of which has at least one value.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return {@code true} if the map has at least one value for the {@code key}. Otherwise {@code
+   * false}.
+   */
+  public boolean containsKey(long key) {
+    return buckets[slotOf(key)] != null;
+  }
+
+  /**
+   * @return an unmodifiable view of the values for the {@code key}, in the order they were added,
+   * or an empty list if the map has none.
+   */
+  public List<T> get(long key) {
+    List<T> bucket = buckets[slotOf(key)];
+    return bucket != null
+        ? Collections.unmodifiableList(bucket)
+        : Collections.emptyList();
+  }
+
+  /**
+   * Adds a {@code value} to the end of the {@code key}'s bucket, creating the bucket if the key is
+   * not in the map yet.
+   */
+  public void add(long key, T value) {
+    int slot = slotOf(key);
+    List<T> bucket = buckets[slot];
+    if (bucket == null) {
+      if (size + 1 > buckets.length * LOAD_FACTOR && buckets.length < MAX_TABLE_SIZE) {
+        grow();
+        slot = slotOf(key);
+      }
+
+      bucket = new ArrayList<>(1);
+      keys[slot] = key;
+      buckets[slot] = bucket;
+      size++;
+    }
+    bucket.add(value);
+  }
+
+  /**
+   * @return a new array containing each of the map's keys, in no particular order.
+   */
+  public long[] keys() {
+    long[] result = new long[size];
+    int i = 0;
+    for (int slot = 0; slot < buckets.length; slot++) {
+      if (buckets[slot] != null) {
+        result[i++] = keys[slot];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the slot holding the {@code key}, or the empty slot where it would be added if the map
+   * does not contain it.
+   */
+  private int slotOf(long key) {
+    int mask = buckets.length - 1;
+    // The highest bits of the product depend on all of the key's bits.
+    int slot = (int) ((key * HASH_MULTIPLIER) >>> hashShift);
+    while (buckets[slot] != null && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Doubles the size of the table, re-adding every key.
+   */
+  private void grow() {
+    long[] oldKeys = keys;
+    List<T>[] oldBuckets = buckets;
+    allocate(oldBuckets.length * 2);
+
+    for (int i = 0; i < oldBuckets.length; i++) {
+      if (oldBuckets[i] != null) {
+        int slot = slotOf(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        buckets[slot] = oldBuckets[i];
+      }
+    }
+  }
+
+  private void allocate(int tableSize) {
+    hashShift = Long.SIZE - Integer.numberOfTrailingZeros(tableSize);
+    keys = new long[tableSize];
+    // Suppressed because generic arrays cannot be created directly.
+    // noinspection unchecked
+    buckets = (List<T>[]) new List<?>[tableSize];
+  }
+}
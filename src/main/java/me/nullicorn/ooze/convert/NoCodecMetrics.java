@@ -0,0 +1,19 @@
+package me.nullicorn.ooze.convert;
+
+/**
+ * Implementation of {@link CodecMetrics#none()}.
+ *
+ * @author Nullicorn
+ */
+final class NoCodecMetrics implements CodecMetrics {
+
+  static final NoCodecMetrics INSTANCE = new NoCodecMetrics();
+
+  private NoCodecMetrics() {
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+}
@@ -0,0 +1,212 @@
+package me.nullicorn.ooze.convert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A precomputed lookup of which {@link VersionedTag tags} in an enum are supported by each
+ * Minecraft world version (aka data-version).
+ * <p><br>
+ * Versions are grouped into bands, where each band is a range of consecutive versions that support
+ * exactly the same tags. Each band's tags are stored as a bitmask, where bit {@code n} is set if
+ * the tag with the {@link Enum#ordinal() ordinal} {@code n} is supported. This allows callers to
+ * check support for any number of tags at once using a single bitwise test, rather than checking
+ * each tag individually.
+ * <p><br>
+ * Tables are immutable, so a single table can be shared between threads.
+ *
+ * @param <T> The enum of tags described by the table.
+ * @author Nullicorn
+ */
+public final class VersionSupportTable<T extends Enum<T> & VersionedTag> {
+
+  /**
+   * The highest number of tags that can be described by a single {@code long} mask.
+   */
+  private static final int MAX_TAGS = Long.SIZE;
+
+  /**
+   * Creates a table for all tags in an enum.
+   * <p><br>
+   * Each tag's {@link VersionedTag#isSupported(int) isSupported()} is checked for every version
+   * from {@code 0} through {@code highestVersion}, so this should only be done once per enum (e.g.
+   * when the enum is initialized). Tags must not be supported by any versions outside that range.
+   *
+   * @param tagClass       The enum whose tags should be described by the table.
+   * @param highestVersion The highest version supported by any of the enum's tags.
+   * @return a table describing the enum's tags.
+   * @throws IllegalArgumentException if the {@code tagClass} is {@code null}, if the enum has more
+   *                                  than 64 tags, if the {@code highestVersion} is negative, or if
+   *                                  any tags are supported outside of the range.
+   */
+  public static <T extends Enum<T> & VersionedTag> VersionSupportTable<T> of(Class<T> tagClass,
+      int highestVersion) {
+    if (tagClass == null) {
+      throw new IllegalArgumentException("tagClass cannot be null");
+    } else if (highestVersion < 0) {
+      throw new IllegalArgumentException("highestVersion cannot be negative: " + highestVersion);
+    }
+
+    T[] tags = tagClass.getEnumConstants();
+    if (tags.length > MAX_TAGS) {
+      throw new IllegalArgumentException(tagClass + " has too many tags: " + tags.length);
+    }
+
+    for (T tag : tags) {
+      if (tag.isSupported(-1) || tag.isSupported(highestVersion + 1)) {
+        throw new IllegalArgumentException(tag + " is supported beyond " + highestVersion);
+      }
+    }
+
+    // Start a new band each time the mask differs from the previous version's.
+    List<Integer> bandStarts = new ArrayList<>();
+    List<Long> bandMasks = new ArrayList<>();
+    long previousMask = -1;
+    for (int version = 0; version <= highestVersion; version++) {
+      long mask = 0;
+      for (T tag : tags) {
+        if (tag.isSupported(version)) {
+          mask |= 1L << tag.ordinal();
+        }
+      }
+
+      if (mask != previousMask) {
+        bandStarts.add(version);
+        bandMasks.add(mask);
+        previousMask = mask;
+      }
+    }
+
+    int bandCount = bandStarts.size();
+    int[] starts = new int[bandCount];
+    long[] masks = new long[bandCount];
+    for (int i = 0; i < bandCount; i++) {
+      starts[i] = bandStarts.get(i);
+      masks[i] = bandMasks.get(i);
+    }
+    return new VersionSupportTable<>(tagClass, highestVersion, starts, masks);
+  }
+
+  /**
+   * Creates a mask containing the bits for each of the {@code tags} provided.
+   *
+   * @throws IllegalArgumentException if the array, or any of its tags, are {@code null}.
+   */
+  @SafeVarargs
+  public static <T extends Enum<T> & VersionedTag> long maskOf(T... tags) {
+    if (tags == null) {
+      throw new IllegalArgumentException("tags cannot be null");
+    }
+
+    long mask = 0;
+    for (T tag : tags) {
+      if (tag == null) {
+        throw new IllegalArgumentException("tags cannot contain null");
+      }
+      mask |= 1L << tag.ordinal();
+    }
+    return mask;
+  }
+
+  private final int          highestVersion;
+  private final int[]        bandStarts;
+  private final long[]       bandMasks;
+  private final List<Set<T>> bandSets;
+
+  private VersionSupportTable(Class<T> tagClass, int highestVersion, int[] bandStarts,
+      long[] bandMasks) {
+    this.highestVersion = highestVersion;
+    this.bandStarts = bandStarts;
+    this.bandMasks = bandMasks;
+
+    // Sets are only needed by supportedIn(), but are cheap enough to build up-front.
+    T[] tags = tagClass.getEnumConstants();
+    List<Set<T>> sets = new ArrayList<>(bandMasks.length);
+    for (long mask : bandMasks) {
+      Set<T> set = EnumSet.noneOf(tagClass);
+      for (T tag : tags) {
+        if ((mask & (1L << tag.ordinal())) != 0) {
+          set.add(tag);
+        }
+      }
+      sets.add(Collections.unmodifiableSet(set));
+    }
+    this.bandSets = Collections.unmodifiableList(sets);
+  }
+
+  /**
+   * @return the number of version bands in the table, including the band starting at version
+   * {@code 0}.
+   */
+  public int bandCount() {
+    return bandStarts.length;
+  }
+
+  /**
+   * @return a mask of the tags supported in the {@code dataVersion}, where bit {@code n} is set if
+   * the tag with the {@link Enum#ordinal() ordinal} {@code n} is supported. Versions outside the
+   * table's range support no tags.
+   */
+  public long supportMask(int dataVersion) {
+    int band = bandOf(dataVersion);
+    return band == -1
+        ? 0
+        : bandMasks[band];
+  }
+
+  /**
+   * @return an unmodifiable set of the tags supported in the {@code dataVersion}.
+   */
+  public Set<T> supportedIn(int dataVersion) {
+    int band = bandOf(dataVersion);
+    return band == -1
+        ? Collections.emptySet()
+        : bandSets.get(band);
+  }
+
+  /**
+   * @return {@code true} if the {@code tag} is supported in the {@code dataVersion}. Otherwise
+   * {@code false}.
+   */
+  public boolean isSupported(T tag, int dataVersion) {
+    return (supportMask(dataVersion) & (1L << tag.ordinal())) != 0;
+  }
+
+  /**
+   * @param mask A mask of tags, such as one created via {@link #maskOf(Enum[])}.
+   * @return {@code true} if every tag in the {@code mask} is supported in the {@code dataVersion}.
+   * Otherwise {@code false}.
+   */
+  public boolean areAllSupported(long mask, int dataVersion) {
+    return (supportMask(dataVersion) & mask) == mask;
+  }
+
+  /**
+   * @param mask A mask of tags, such as one created via {@link #maskOf(Enum[])}.
+   * @return {@code true} if at least one tag in the {@code mask} is supported in the {@code
+   * dataVersion}. Otherwise {@code false}.
+   */
+  public boolean isAnySupported(long mask, int dataVersion) {
+    return (supportMask(dataVersion) & mask) != 0;
+  }
+
+  /**
+   * @return the index of the band containing the {@code dataVersion}, or {@code -1} if it is
+   * outside the table's range.
+   */
+  private int bandOf(int dataVersion) {
+    if (dataVersion < 0 || dataVersion > highestVersion) {
+      return -1;
+    }
+
+    int index = Arrays.binarySearch(bandStarts, dataVersion);
+    // For versions between band starts, binarySearch returns (-insertionPoint - 1).
+    return index >= 0
+        ? index
+        : -index - 2;
+  }
+}
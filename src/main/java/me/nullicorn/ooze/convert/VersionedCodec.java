@@ -1,6 +1,6 @@
 package me.nullicorn.ooze.convert;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Optional;
 import java.util.Set;
 import me.nullicorn.nedit.type.NBTCompound;
@@ -9,6 +9,9 @@ import me.nullicorn.nedit.type.TagType;
 
 /**
  * A codec intended to be compatible with a specific Minecraft world version (aka data-version).
+ * <p><br>
+ * Implementations should be immutable, so that a single instance can safely be shared between
+ * threads.
  *
  * @author Nullicorn
  */
@@ -24,24 +27,32 @@ public abstract class VersionedCodec<T, E> implements Codec<T, E> {
       throw new IllegalArgumentException("tags array cannot be null");
     }
 
-    // Find any tags that aren't supported by the dataVersion.
-    Set<VersionedTag> unavailableTags = new HashSet<>(tags.length);
+    // Only collect the unsupported tags if there are any, so that valid codecs don't allocate.
+    for (VersionedTag tag : tags) {
+      if (!tag.isSupported(dataVersion)) {
+        throw unusableTagsError(dataVersion, tags);
+      }
+    }
+  }
+
+  /**
+   * @return an exception listing each of the {@code tags} that the {@code dataVersion} does not
+   * support.
+   */
+  private static IllegalArgumentException unusableTagsError(int dataVersion, VersionedTag[] tags) {
+    Set<VersionedTag> unavailableTags = new LinkedHashSet<>(tags.length);
     for (VersionedTag tag : tags) {
       if (!tag.isSupported(dataVersion)) {
         unavailableTags.add(tag);
       }
     }
 
-    // If any of the tags are not available, throw an exception.
-    // Otherwise, return quietly.
-    if (!unavailableTags.isEmpty()) {
-      // Convert the set to a comma-separated list (with brackets removed - [...]).
-      String unavailableStr = unavailableTags.toString();
-      unavailableStr = unavailableStr.substring(1, unavailableStr.length() - 1);
+    // Convert the set to a comma-separated list (with brackets removed - [...]).
+    String unavailableStr = unavailableTags.toString();
+    unavailableStr = unavailableStr.substring(1, unavailableStr.length() - 1);
 
-      throw new IllegalArgumentException("Unusable tags in version " + dataVersion + ": " +
-                                         unavailableStr);
-    }
+    return new IllegalArgumentException("Unusable tags in version " + dataVersion + ": " +
+                                        unavailableStr);
   }
 
   /**
@@ -66,6 +77,30 @@ public abstract class VersionedCodec<T, E> implements Codec<T, E> {
     }
   }
 
+  /**
+   * Same as {@link #VersionedCodec(int, VersionedTag...)}, but the {@code requiredTags} are checked
+   * using their enum's {@link VersionSupportTable support table}, in a single lookup.
+   *
+   * @param support      The table describing the enum that the {@code requiredTags} belong to.
+   * @param requiredTags Any tags that the codec must be able to use when encoding & decoding.
+   * @throws IllegalArgumentException if the {@code support} table or {@code requiredTags} are
+   *                                  {@code null}, or if any of the {@code requiredTags} are
+   *                                  {@link VersionedTag#isSupported(int) incompatible} with the
+   *                                  {@code dataVersion}.
+   */
+  @SafeVarargs
+  protected <V extends Enum<V> & VersionedTag> VersionedCodec(int dataVersion,
+      VersionSupportTable<V> support, V... requiredTags) {
+    if (support == null) {
+      throw new IllegalArgumentException("support table cannot be null");
+    }
+    this.dataVersion = dataVersion;
+
+    if (!support.areAllSupported(VersionSupportTable.maskOf(requiredTags), dataVersion)) {
+      throw unusableTagsError(dataVersion, requiredTags);
+    }
+  }
+
   /**
    * @return the Minecraft world version that the codec is compatible with.
    */
@@ -90,27 +125,10 @@ public abstract class VersionedCodec<T, E> implements Codec<T, E> {
     }
 
     Object value = parent.get(tag.getName());
-    if (value == null) {
+    if (value == null || !isValueOfTag(tag, value)) {
       return Optional.empty();
     }
 
-    TagType actualType = TagType.fromObject(value);
-    TagType expectedType = tag.getType();
-    if (actualType != expectedType) {
-      return Optional.empty();
-    }
-
-    // Make sure the list's content-type matches if necessary.
-    if (expectedType == TagType.LIST) {
-      TagType expectedContentType = tag.getContentType();
-      TagType actualContentType = ((NBTList) value).getContentType();
-
-      // (END means any type is allowed)
-      if (expectedContentType != TagType.END && actualContentType != expectedContentType) {
-        return Optional.empty();
-      }
-    }
-
     // Suppressed because class is checked above.
     // noinspection unchecked
     return (Optional<V>) Optional.of(value);
@@ -135,23 +153,244 @@ public abstract class VersionedCodec<T, E> implements Codec<T, E> {
       throw new IllegalArgumentException("parent cannot be null");
     }
 
-    TagType actualType = TagType.fromObject(value);
     TagType expectedType = tag.getType();
-    if (actualType != expectedType) {
+    if (!isInstance(expectedType, value)) {
       throw new ClassCastException("Invalid value for type " + expectedType + ": " + value);
     }
 
     // Make sure the list's content-type matches if necessary.
-    if (expectedType == TagType.LIST) {
-      TagType expectedContentType = tag.getContentType();
+    if (expectedType == TagType.LIST && !hasContentType(tag, (NBTList) value)) {
       TagType actualContentType = ((NBTList) value).getContentType();
-
-      // (END means any type is allowed)
-      if (expectedContentType != TagType.END && actualContentType != expectedContentType) {
-        throw new ClassCastException("Invalid content type for " + tag + ": " + actualContentType);
-      }
+      throw new ClassCastException("Invalid content type for " + tag + ": " + actualContentType);
     }
 
     parent.put(tag.getName(), value);
   }
+
+  /*
+   * Type-specific alternatives to getTagValue(). Unlike getTagValue(), these do not allocate, and
+   * check types using a plain class check.
+   */
+
+  /**
+   * Gets the value of a {@link TagType#BYTE TAG_Byte} within a {@code parent} compound.
+   *
+   * @param tag          The tag to get the value of.
+   * @param parent       The compound to get the tag's value from.
+   * @param defaultValue The value to return if the tag is missing or has the wrong type.
+   * @return the tag's value in the compound, or the {@code defaultValue}.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_Byte}, or if either argument is
+   *                                  {@code null}.
+   * @see #getTagValue(VersionedTag, NBTCompound)
+   */
+  protected byte getByte(VersionedTag tag, NBTCompound parent, byte defaultValue) {
+    Object value = getRawValue(tag, TagType.BYTE, parent);
+    return value instanceof Byte
+        ? (Byte) value
+        : defaultValue;
+  }
+
+  /**
+   * Gets the value of a {@link TagType#INT TAG_Int} within a {@code parent} compound.
+   *
+   * @param tag          The tag to get the value of.
+   * @param parent       The compound to get the tag's value from.
+   * @param defaultValue The value to return if the tag is missing or has the wrong type.
+   * @return the tag's value in the compound, or the {@code defaultValue}.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_Int}, or if either argument is
+   *                                  {@code null}.
+   * @see #getTagValue(VersionedTag, NBTCompound)
+   */
+  protected int getInt(VersionedTag tag, NBTCompound parent, int defaultValue) {
+    Object value = getRawValue(tag, TagType.INT, parent);
+    return value instanceof Integer
+        ? (Integer) value
+        : defaultValue;
+  }
+
+  /**
+   * Checks whether a {@code parent} compound has a {@link TagType#INT TAG_Int}, without reading it.
+   * This distinguishes missing tags from ones equal to the default used by {@link
+   * #getInt(VersionedTag, NBTCompound, int) getInt()}.
+   *
+   * @return {@code true} if the tag is in the compound and has the correct type. Otherwise {@code
+   * false}.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_Int}, or if either argument is
+   *                                  {@code null}.
+   */
+  protected boolean hasInt(VersionedTag tag, NBTCompound parent) {
+    return getRawValue(tag, TagType.INT, parent) instanceof Integer;
+  }
+
+  /**
+   * Gets the value of a {@link TagType#STRING TAG_String} within a {@code parent} compound.
+   *
+   * @return the tag's value in the compound, or {@code null} if it is missing or has the wrong
+   * type.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_String}, or if either argument
+   *                                  is {@code null}.
+   * @see #getTagValue(VersionedTag, NBTCompound)
+   */
+  protected String getString(VersionedTag tag, NBTCompound parent) {
+    Object value = getRawValue(tag, TagType.STRING, parent);
+    return value instanceof String
+        ? (String) value
+        : null;
+  }
+
+  /**
+   * Gets the value of a {@link TagType#BYTE_ARRAY TAG_Byte_Array} within a {@code parent}
+   * compound. The array is not copied.
+   *
+   * @return the tag's value in the compound, or {@code null} if it is missing or has the wrong
+   * type.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_Byte_Array}, or if either
+   *                                  argument is {@code null}.
+   * @see #getTagValue(VersionedTag, NBTCompound)
+   */
+  protected byte[] getByteArray(VersionedTag tag, NBTCompound parent) {
+    Object value = getRawValue(tag, TagType.BYTE_ARRAY, parent);
+    return value instanceof byte[]
+        ? (byte[]) value
+        : null;
+  }
+
+  /**
+   * Gets the value of a {@link TagType#INT_ARRAY TAG_Int_Array} within a {@code parent} compound.
+   * The array is not copied.
+   *
+   * @return the tag's value in the compound, or {@code null} if it is missing or has the wrong
+   * type.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_Int_Array}, or if either
+   *                                  argument is {@code null}.
+   * @see #getTagValue(VersionedTag, NBTCompound)
+   */
+  protected int[] getIntArray(VersionedTag tag, NBTCompound parent) {
+    Object value = getRawValue(tag, TagType.INT_ARRAY, parent);
+    return value instanceof int[]
+        ? (int[]) value
+        : null;
+  }
+
+  /**
+   * Gets the value of a {@link TagType#LONG_ARRAY TAG_Long_Array} within a {@code parent}
+   * compound. The array is not copied.
+   *
+   * @return the tag's value in the compound, or {@code null} if it is missing or has the wrong
+   * type.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_Long_Array}, or if either
+   *                                  argument is {@code null}.
+   * @see #getTagValue(VersionedTag, NBTCompound)
+   */
+  protected long[] getLongArray(VersionedTag tag, NBTCompound parent) {
+    Object value = getRawValue(tag, TagType.LONG_ARRAY, parent);
+    return value instanceof long[]
+        ? (long[]) value
+        : null;
+  }
+
+  /**
+   * Gets the value of a {@link TagType#COMPOUND TAG_Compound} within a {@code parent} compound.
+   *
+   * @return the tag's value in the compound, or {@code null} if it is missing or has the wrong
+   * type.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_Compound}, or if either
+   *                                  argument is {@code null}.
+   * @see #getTagValue(VersionedTag, NBTCompound)
+   */
+  protected NBTCompound getCompound(VersionedTag tag, NBTCompound parent) {
+    Object value = getRawValue(tag, TagType.COMPOUND, parent);
+    return value instanceof NBTCompound
+        ? (NBTCompound) value
+        : null;
+  }
+
+  /**
+   * Gets the value of a {@link TagType#LIST TAG_List} within a {@code parent} compound.
+   *
+   * @return the tag's value in the compound, or {@code null} if it is missing, has the wrong type,
+   * or has the wrong {@link VersionedTag#getContentType() content-type}.
+   * @throws IllegalArgumentException if the tag is not a {@code TAG_List}, or if either argument is
+   *                                  {@code null}.
+   * @see #getTagValue(VersionedTag, NBTCompound)
+   */
+  protected NBTList getList(VersionedTag tag, NBTCompound parent) {
+    Object value = getRawValue(tag, TagType.LIST, parent);
+    return value instanceof NBTList && hasContentType(tag, (NBTList) value)
+        ? (NBTList) value
+        : null;
+  }
+
+  /**
+   * Shared implementation of the type-specific getters. The returned value's type is not checked.
+   *
+   * @throws IllegalArgumentException if the {@code tag}'s type is not the {@code expectedType}, or
+   *                                  if the tag or compound are {@code null}.
+   */
+  private static Object getRawValue(VersionedTag tag, TagType expectedType, NBTCompound parent) {
+    if (tag == null) {
+      throw new IllegalArgumentException("tag cannot be null");
+    } else if (parent == null) {
+      throw new IllegalArgumentException("parent cannot be null");
+    } else if (tag.getType() != expectedType) {
+      throw new IllegalArgumentException(tag + " cannot be read as " + expectedType);
+    }
+    return parent.get(tag.getName());
+  }
+
+  /**
+   * @return {@code true} if the {@code value} can be used for the {@code tag}, considering both the
+   * tag's type and its content-type (for lists). Otherwise {@code false}.
+   */
+  private static boolean isValueOfTag(VersionedTag tag, Object value) {
+    TagType expectedType = tag.getType();
+    return isInstance(expectedType, value)
+           && (expectedType != TagType.LIST || hasContentType(tag, (NBTList) value));
+  }
+
+  /**
+   * @return {@code true} if the {@code list}'s content-type is accepted by the {@code tag}.
+   * Otherwise {@code false}.
+   */
+  private static boolean hasContentType(VersionedTag tag, NBTList list) {
+    TagType expectedContentType = tag.getContentType();
+
+    // (END means any type is allowed)
+    return expectedContentType == TagType.END || list.getContentType() == expectedContentType;
+  }
+
+  /**
+   * Equivalent to {@code TagType.fromObject(value) == type}, but using a single class check
+   * instead.
+   */
+  private static boolean isInstance(TagType type, Object value) {
+    switch (type) {
+      case BYTE:
+        return value instanceof Byte;
+      case SHORT:
+        return value instanceof Short;
+      case INT:
+        return value instanceof Integer;
+      case LONG:
+        return value instanceof Long;
+      case FLOAT:
+        return value instanceof Float;
+      case DOUBLE:
+        return value instanceof Double;
+      case BYTE_ARRAY:
+        return value instanceof byte[];
+      case STRING:
+        return value instanceof String;
+      case LIST:
+        return value instanceof NBTList;
+      case COMPOUND:
+        return value instanceof NBTCompound;
+      case INT_ARRAY:
+        return value instanceof int[];
+      case LONG_ARRAY:
+        return value instanceof long[];
+      default:
+        return false;
+    }
+  }
 }
@@ -0,0 +1,39 @@
+package me.nullicorn.ooze.convert.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a chunk takes at least the threshold to parse, decode, or encode.
+ *
+ * @author Nullicorn
+ * @see JfrCodecMetrics
+ */
+@Name(ChunkEvent.NAME)
+@Label("Chunk Conversion")
+@Category({"Ooze", "Conversion"})
+@Description("A chunk that was slow to parse, decode, or encode")
+@StackTrace(false)
+final class ChunkEvent extends CodecEvent {
+
+  static final String NAME = "me.nullicorn.ooze.Chunk";
+
+  @Label("Chunk X")
+  int chunkX;
+
+  @Label("Chunk Z")
+  int chunkZ;
+
+  @Label("Sections")
+  @Description("The number of sections in the chunk, or -1 if it was only parsed")
+  int sectionCount;
+
+  @Label("Size")
+  @Description("The size of the chunk's uncompressed NBT, or -1 if it was not parsed")
+  @DataAmount
+  int bytes;
+}
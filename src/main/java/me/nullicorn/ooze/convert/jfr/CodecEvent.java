@@ -0,0 +1,35 @@
+package me.nullicorn.ooze.convert.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Timespan;
+
+/**
+ * The fields shared by every event that {@link JfrCodecMetrics} records.
+ * <p><br>
+ * Codecs report operations after they finish, so an event's own duration is always zero, and its
+ * start time is when the operation ended. How long the operation actually took is recorded in
+ * {@link #elapsed}.
+ *
+ * @author Nullicorn
+ */
+abstract class CodecEvent extends Event {
+
+  static final String DECODE = "decode";
+  static final String ENCODE = "encode";
+  static final String PARSE  = "parse";
+
+  @Label("Operation")
+  @Description("What the codec was doing, such as \"decode\" or \"encode\"")
+  String operation;
+
+  @Label("Data Version")
+  @Description("The version of the codec that did the operation")
+  int dataVersion;
+
+  @Label("Elapsed")
+  @Description("How long the operation took")
+  @Timespan
+  long elapsed;
+}
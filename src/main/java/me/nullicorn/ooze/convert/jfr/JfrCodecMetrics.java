@@ -0,0 +1,160 @@
+package me.nullicorn.ooze.convert.jfr;
+
+import java.util.concurrent.TimeUnit;
+import me.nullicorn.ooze.convert.CodecMetrics;
+
+/**
+ * Metrics that record slow codec operations as Java Flight Recorder events, so that they can be
+ * inspected alongside the rest of a recording without any metrics library.
+ * <p><br>
+ * Operations are only recorded if they take at least the metrics' threshold, so that the many
+ * cheap operations in a typical conversion do not flood the recording. Each event is committed on
+ * the thread that did the operation, so a slow section or palette can be connected to its chunk
+ * by the chunk event that follows it on the same thread. Events are only recorded while a
+ * recording that enables them is running; otherwise {@link #isEnabled()} is {@code false}, and
+ * codecs skip measuring their operations.
+ * <p><br>
+ * The events are named {@code me.nullicorn.ooze.Section}, {@code me.nullicorn.ooze.Palette} and
+ * {@code me.nullicorn.ooze.Chunk}. This class requires a runtime with the {@code jdk.jfr} module,
+ * such as Java 11 or later, or Java 8 from update 262 onwards. Codecs never refer to it, so they
+ * can still be used on runtimes without it.
+ *
+ * @author Nullicorn
+ */
+public final class JfrCodecMetrics implements CodecMetrics {
+
+  /**
+   * The default threshold, in milliseconds.
+   */
+  public static final long DEFAULT_THRESHOLD_MILLIS = 1;
+
+  // Never committed; only used to check whether each type of event is enabled.
+  private static final SectionEvent SECTION_PROBE = new SectionEvent();
+  private static final PaletteEvent PALETTE_PROBE = new PaletteEvent();
+  private static final ChunkEvent   CHUNK_PROBE   = new ChunkEvent();
+
+  private final long thresholdNanos;
+
+  /**
+   * Creates metrics that record operations taking at least {@link #DEFAULT_THRESHOLD_MILLIS}.
+   */
+  public JfrCodecMetrics() {
+    this(DEFAULT_THRESHOLD_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates metrics that record operations taking at least the {@code threshold}.
+   *
+   * @param threshold The shortest duration to record, in {@code unit}s. {@code 0} records every
+   *                  operation.
+   * @param unit      The unit of the {@code threshold}.
+   * @throws IllegalArgumentException if the {@code threshold} is negative, or if the {@code unit}
+   *                                  is {@code null}.
+   */
+  public JfrCodecMetrics(long threshold, TimeUnit unit) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Threshold cannot be negative: " + threshold);
+    } else if (unit == null) {
+      throw new IllegalArgumentException("Threshold unit cannot be null");
+    }
+    thresholdNanos = unit.toNanos(threshold);
+  }
+
+  /**
+   * @return the shortest duration that operations are recorded for, in nanoseconds.
+   */
+  public long getThresholdNanos() {
+    return thresholdNanos;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return SECTION_PROBE.isEnabled() || PALETTE_PROBE.isEnabled() || CHUNK_PROBE.isEnabled();
+  }
+
+  @Override
+  public void sectionDecoded(int dataVersion, int paletteSize, int magnitude, boolean isLegacy,
+      int bytes, long nanos) {
+    commitSection(CodecEvent.DECODE, dataVersion, paletteSize, magnitude, isLegacy, bytes, nanos);
+  }
+
+  @Override
+  public void sectionEncoded(int dataVersion, int paletteSize, int magnitude, boolean isLegacy,
+      int bytes, long nanos) {
+    commitSection(CodecEvent.ENCODE, dataVersion, paletteSize, magnitude, isLegacy, bytes, nanos);
+  }
+
+  @Override
+  public void paletteDecoded(int dataVersion, int paletteSize, long nanos) {
+    commitPalette(CodecEvent.DECODE, dataVersion, paletteSize, nanos);
+  }
+
+  @Override
+  public void paletteEncoded(int dataVersion, int paletteSize, long nanos) {
+    commitPalette(CodecEvent.ENCODE, dataVersion, paletteSize, nanos);
+  }
+
+  @Override
+  public void chunkParsed(int dataVersion, int chunkX, int chunkZ, int bytes, long nanos) {
+    commitChunk(CodecEvent.PARSE, dataVersion, chunkX, chunkZ, -1, bytes, nanos);
+  }
+
+  @Override
+  public void chunkDecoded(int dataVersion, int chunkX, int chunkZ, int sectionCount,
+      long nanos) {
+    commitChunk(CodecEvent.DECODE, dataVersion, chunkX, chunkZ, sectionCount, -1, nanos);
+  }
+
+  @Override
+  public void chunkEncoded(int dataVersion, int chunkX, int chunkZ, int sectionCount,
+      long nanos) {
+    commitChunk(CodecEvent.ENCODE, dataVersion, chunkX, chunkZ, sectionCount, -1, nanos);
+  }
+
+  private void commitSection(String operation, int dataVersion, int paletteSize, int magnitude,
+      boolean isLegacy, int bytes, long nanos) {
+    if (nanos < thresholdNanos || !SECTION_PROBE.isEnabled()) {
+      return;
+    }
+
+    SectionEvent event = new SectionEvent();
+    event.operation = operation;
+    event.dataVersion = dataVersion;
+    event.paletteSize = paletteSize;
+    event.magnitude = magnitude;
+    event.legacy = isLegacy;
+    event.bytes = bytes;
+    event.elapsed = nanos;
+    event.commit();
+  }
+
+  private void commitPalette(String operation, int dataVersion, int paletteSize, long nanos) {
+    if (nanos < thresholdNanos || !PALETTE_PROBE.isEnabled()) {
+      return;
+    }
+
+    PaletteEvent event = new PaletteEvent();
+    event.operation = operation;
+    event.dataVersion = dataVersion;
+    event.paletteSize = paletteSize;
+    event.elapsed = nanos;
+    event.commit();
+  }
+
+  private void commitChunk(String operation, int dataVersion, int chunkX, int chunkZ,
+      int sectionCount, int bytes, long nanos) {
+    if (nanos < thresholdNanos || !CHUNK_PROBE.isEnabled()) {
+      return;
+    }
+
+    ChunkEvent event = new ChunkEvent();
+    event.operation = operation;
+    event.dataVersion = dataVersion;
+    event.chunkX = chunkX;
+    event.chunkZ = chunkZ;
+    event.sectionCount = sectionCount;
+    event.bytes = bytes;
+    event.elapsed = nanos;
+    event.commit();
+  }
+}
@@ -0,0 +1,27 @@
+package me.nullicorn.ooze.convert.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a palette takes at least the threshold to decode or encode.
+ *
+ * @author Nullicorn
+ * @see JfrCodecMetrics
+ */
+@Name(PaletteEvent.NAME)
+@Label("Palette Conversion")
+@Category({"Ooze", "Conversion"})
+@Description("A block palette that was slow to decode or encode")
+@StackTrace(false)
+final class PaletteEvent extends CodecEvent {
+
+  static final String NAME = "me.nullicorn.ooze.Palette";
+
+  @Label("Palette Size")
+  @Description("The number of states in the palette")
+  int paletteSize;
+}
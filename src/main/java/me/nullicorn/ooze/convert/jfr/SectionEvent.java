@@ -0,0 +1,41 @@
+package me.nullicorn.ooze.convert.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a chunk section takes at least the threshold to decode or encode.
+ *
+ * @author Nullicorn
+ * @see JfrCodecMetrics
+ */
+@Name(SectionEvent.NAME)
+@Label("Section Conversion")
+@Category({"Ooze", "Conversion"})
+@Description("A chunk section that was slow to decode or encode")
+@StackTrace(false)
+final class SectionEvent extends CodecEvent {
+
+  static final String NAME = "me.nullicorn.ooze.Section";
+
+  @Label("Palette Size")
+  @Description("The number of states in the section's palette")
+  int paletteSize;
+
+  @Label("Magnitude")
+  @Description("The number of bits needed to index the section's palette")
+  int magnitude;
+
+  @Label("Legacy")
+  @Description("Whether the section used numeric block IDs, rather than a palette")
+  boolean legacy;
+
+  @Label("Size")
+  @Description("The size of the section's block arrays")
+  @DataAmount
+  int bytes;
+}
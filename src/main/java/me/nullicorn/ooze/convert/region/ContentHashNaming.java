@@ -0,0 +1,101 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import me.nullicorn.ooze.level.BlockState;
+
+/**
+ * Implementation of {@link PaletteNamingStrategy#contentHash()}, using a 64-bit <a
+ * href=http://www.isthe.com/chongo/tech/comp/fnv/>FNV-1a</a> hash of the palette's data version,
+ * and the characters of each state's name & properties.
+ * <p><br>
+ * Properties are hashed in order of their names, so the order they were stored in does not affect
+ * the hash. Every string is preceded by its length, so that adjacent strings cannot run into each
+ * other.
+ *
+ * @author Nullicorn
+ */
+final class ContentHashNaming implements PaletteNamingStrategy {
+
+  static final ContentHashNaming INSTANCE = new ContentHashNaming();
+
+  // Constants for 64-bit FNV-1a.
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME  = 0x100000001b3L;
+
+  // Written before each property value, so that values of different types hash differently.
+  private static final int STRING_VALUE = 0;
+  private static final int OTHER_VALUE  = 1;
+
+  private ContentHashNaming() {
+  }
+
+  @Override
+  public String nameOf(int dataVersion, List<BlockState> states) {
+    long hash = mixInt(FNV_OFFSET, dataVersion);
+    hash = mixInt(hash, states.size());
+
+    for (BlockState state : states) {
+      hash = mixString(hash, state.getName());
+
+      if (!state.hasProperties()) {
+        hash = mixInt(hash, 0);
+        continue;
+      }
+
+      Map<String, Object> properties = state.getProperties();
+      String[] names = properties.keySet().toArray(new String[0]);
+      if (names.length > 1) {
+        Arrays.sort(names);
+      }
+
+      hash = mixInt(hash, names.length);
+      for (String name : names) {
+        hash = mixString(hash, name);
+        hash = mixValue(hash, properties.get(name));
+      }
+    }
+    return NAME_PREFIX + "palette_" + Long.toHexString(hash);
+  }
+
+  /**
+   * Folds a property's {@code value} into the {@code hash}. Block state properties are normally
+   * strings; other values are hashed using their class & string form.
+   */
+  private static long mixValue(long hash, Object value) {
+    if (value instanceof String) {
+      return mixString(mixInt(hash, STRING_VALUE), (String) value);
+    }
+
+    hash = mixInt(hash, OTHER_VALUE);
+    hash = mixString(hash, value == null ? "null" : value.getClass().getName());
+    return mixString(hash, String.valueOf(value));
+  }
+
+  /**
+   * Folds the length of a {@code string}, and then both octets of each of its characters, into the
+   * {@code hash}.
+   */
+  private static long mixString(long hash, String string) {
+    int length = string.length();
+    hash = mixInt(hash, length);
+    for (int i = 0; i < length; i++) {
+      char c = string.charAt(i);
+      hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+      hash = (hash ^ (c >>> Byte.SIZE)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Folds all 4 octets of a {@code value} into the {@code hash}.
+   */
+  private static long mixInt(long hash, int value) {
+    for (int i = 0; i < Integer.BYTES; i++) {
+      hash ^= (value >>> (i * Byte.SIZE)) & 0xff;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+}
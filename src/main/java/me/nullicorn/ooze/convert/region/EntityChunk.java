@@ -0,0 +1,80 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import me.nullicorn.nedit.type.NBTCompound;
+
+/**
+ * The entities stored with a single chunk, either in the chunk's own {@link
+ * RegionTag#CHUNK_ENTITIES Entities} list, or in the chunk's entry in a world's {@code entities}
+ * directory.
+ * <p><br>
+ * Chunks are immutable, so their entities cannot be added, removed, or replaced once created. The
+ * entities' compounds themselves are not copied though, so they should not be modified.
+ *
+ * @author Nullicorn
+ * @see RegionEntityCodec
+ */
+public final class EntityChunk {
+
+  private final int               chunkX;
+  private final int               chunkZ;
+  private final List<NBTCompound> entities;
+
+  /**
+   * Creates a chunk at the given coordinates, with the supplied entities.
+   *
+   * @param chunkX   The chunk's location along the X axis, measured in 16-block units.
+   * @param chunkZ   The chunk's location along the Z axis, measured in 16-block units.
+   * @param entities The compound of each entity in the chunk. The list is copied, so later changes
+   *                 to it will not affect the chunk.
+   * @throws IllegalArgumentException if the {@code entities} are {@code null}, or if any of them
+   *                                  are {@code null}.
+   */
+  public EntityChunk(int chunkX, int chunkZ, List<NBTCompound> entities) {
+    if (entities == null) {
+      throw new IllegalArgumentException("entities cannot be null");
+    }
+
+    List<NBTCompound> entitiesCopy = new ArrayList<>(entities);
+    if (entitiesCopy.contains(null)) {
+      throw new IllegalArgumentException("entities cannot contain null");
+    }
+
+    this.chunkX = chunkX;
+    this.chunkZ = chunkZ;
+    this.entities = Collections.unmodifiableList(entitiesCopy);
+  }
+
+  /**
+   * @return the chunk's location along the X axis, measured in 16-block units.
+   */
+  public int getX() {
+    return chunkX;
+  }
+
+  /**
+   * @return the chunk's location along the Z axis, measured in 16-block units.
+   */
+  public int getZ() {
+    return chunkZ;
+  }
+
+  /**
+   * @return an unmodifiable view of the compounds of the chunk's entities, in the order they were
+   * stored.
+   */
+  public List<NBTCompound> getEntities() {
+    return entities;
+  }
+
+  @Override
+  public String toString() {
+    return "EntityChunk{" +
+           "x=" + chunkX +
+           ", z=" + chunkZ +
+           ", entities=" + entities.size() +
+           '}';
+  }
+}
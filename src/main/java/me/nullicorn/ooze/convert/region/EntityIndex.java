@@ -0,0 +1,188 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.util.List;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.LongBucketMap;
+
+/**
+ * Groups entities by the chunk and section that their {@link RegionTag#ENTITY_POS position} is
+ * in, so that the entities in any chunk or section can be found in constant time.
+ * <p><br>
+ * Each entity's position is read once, when its chunk is {@link #add(EntityChunk) added}, which
+ * avoids scanning every entity for each chunk or section when joining entities with the blocks
+ * around them. Entities are grouped by their position, rather than by the chunk they were stored
+ * in, since entities can be stored in a chunk other than the one they're in, such as when they move
+ * between saves. Entities whose position is missing or invalid are grouped with the chunk they were
+ * stored in, but not with any section.
+ * <p><br>
+ * Indices are not thread-safe.
+ *
+ * @author Nullicorn
+ * @see RegionEntityCodec
+ */
+public final class EntityIndex {
+
+  /**
+   * The name of each entity's position list.
+   */
+  private static final String POS_TAG = RegionTag.ENTITY_POS.getName();
+
+  // The number of bits used for each coordinate in section keys.
+  private static final int SECTION_XZ_BITS = 26;
+  private static final int SECTION_Y_BITS  = 12;
+
+  private static final int MIN_SECTION_XZ = -(1 << (SECTION_XZ_BITS - 1));
+  private static final int MAX_SECTION_XZ = (1 << (SECTION_XZ_BITS - 1)) - 1;
+  private static final int MIN_SECTION_Y  = -(1 << (SECTION_Y_BITS - 1));
+  private static final int MAX_SECTION_Y  = (1 << (SECTION_Y_BITS - 1)) - 1;
+
+  /**
+   * Creates an index containing the entities of each chunk.
+   *
+   * @throws IllegalArgumentException if the {@code chunks} are {@code null}, or if any of them are
+   *                                  {@code null}.
+   */
+  public static EntityIndex of(Iterable<EntityChunk> chunks) {
+    if (chunks == null) {
+      throw new IllegalArgumentException("chunks cannot be null");
+    }
+
+    EntityIndex index = new EntityIndex();
+    for (EntityChunk chunk : chunks) {
+      index.add(chunk);
+    }
+    return index;
+  }
+
+  /**
+   * @return a key that uniquely identifies the chunk at the given coordinates.
+   */
+  static long chunkKey(int chunkX, int chunkZ) {
+    return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @return a key that identifies the section at the given coordinates. Sections beyond the range
+   * that Minecraft allows for entities are clamped to it, so they may share a key with others.
+   */
+  static long sectionKey(int chunkX, int sectionY, int chunkZ) {
+    long x = clamp(chunkX, MIN_SECTION_XZ, MAX_SECTION_XZ) & ((1L << SECTION_XZ_BITS) - 1);
+    long y = clamp(sectionY, MIN_SECTION_Y, MAX_SECTION_Y) & ((1L << SECTION_Y_BITS) - 1);
+    long z = clamp(chunkZ, MIN_SECTION_XZ, MAX_SECTION_XZ) & ((1L << SECTION_XZ_BITS) - 1);
+    return (x << (SECTION_XZ_BITS + SECTION_Y_BITS)) | (z << SECTION_Y_BITS) | y;
+  }
+
+  private final LongBucketMap<NBTCompound> byChunk   = new LongBucketMap<>();
+  private final LongBucketMap<NBTCompound> bySection = new LongBucketMap<>();
+
+  private int size;
+
+  /**
+   * Creates an empty index.
+   */
+  public EntityIndex() {
+  }
+
+  /**
+   * @return the number of entities in the index.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of chunks that contain at least one of the index's entities.
+   */
+  public int chunkCount() {
+    return byChunk.size();
+  }
+
+  /**
+   * Adds each of a chunk's entities to the index, grouped by their own position.
+   *
+   * @throws IllegalArgumentException if the {@code chunk} is {@code null}.
+   */
+  public void add(EntityChunk chunk) {
+    if (chunk == null) {
+      throw new IllegalArgumentException("null chunk cannot be indexed");
+    }
+
+    double[] pos = new double[3];
+    for (NBTCompound entity : chunk.getEntities()) {
+      if (readPosition(entity, pos)) {
+        int chunkX = floor(pos[0]) >> 4;
+        int sectionY = floor(pos[1]) >> 4;
+        int chunkZ = floor(pos[2]) >> 4;
+        byChunk.add(chunkKey(chunkX, chunkZ), entity);
+        bySection.add(sectionKey(chunkX, sectionY, chunkZ), entity);
+      } else {
+        byChunk.add(chunkKey(chunk.getX(), chunk.getZ()), entity);
+      }
+      size++;
+    }
+  }
+
+  /**
+   * @param chunkX The chunk's location along the X axis, measured in 16-block units.
+   * @param chunkZ The chunk's location along the Z axis, measured in 16-block units.
+   * @return an unmodifiable view of the entities in the chunk, in the order they were added.
+   */
+  public List<NBTCompound> inChunk(int chunkX, int chunkZ) {
+    return byChunk.get(chunkKey(chunkX, chunkZ));
+  }
+
+  /**
+   * @param chunkX   The section's location along the X axis, measured in 16-block units.
+   * @param sectionY The section's location along the Y axis, measured in 16-block units.
+   * @param chunkZ   The section's location along the Z axis, measured in 16-block units.
+   * @return an unmodifiable view of the entities in the section, in the order they were added.
+   */
+  public List<NBTCompound> inSection(int chunkX, int sectionY, int chunkZ) {
+    return bySection.get(sectionKey(chunkX, sectionY, chunkZ));
+  }
+
+  /**
+   * Copies an {@code entity}'s position into the {@code pos} array.
+   *
+   * @return {@code true} if the entity has a list of at least three finite doubles for its
+   * position. Otherwise {@code false}.
+   */
+  private static boolean readPosition(NBTCompound entity, double[] pos) {
+    Object rawPos = entity.get(POS_TAG);
+    if (!(rawPos instanceof NBTList)) {
+      return false;
+    }
+
+    NBTList posList = (NBTList) rawPos;
+    if (posList.getContentType() != TagType.DOUBLE || posList.size() < pos.length) {
+      return false;
+    }
+
+    for (int i = 0; i < pos.length; i++) {
+      Object coordinate = posList.get(i);
+      if (!(coordinate instanceof Number)) {
+        return false;
+      }
+
+      pos[i] = ((Number) coordinate).doubleValue();
+      if (Double.isNaN(pos[i]) || Double.isInfinite(pos[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the largest integer less than or equal to the {@code value}, saturated to the range of
+   * an {@code int}.
+   */
+  private static int floor(double value) {
+    return (int) Math.floor(value);
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(max, value));
+  }
+}
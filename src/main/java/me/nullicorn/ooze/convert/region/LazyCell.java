@@ -0,0 +1,185 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.convert.region.storage.RegionUIntArray;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+import me.nullicorn.ooze.level.PackedUIntArray;
+import me.nullicorn.ooze.level.Palette;
+
+/**
+ * A chunk section whose blocks & palette are only decoded when they are accessed.
+ * <p><br>
+ * Individual blocks are read straight from the section's packed block array, and palette states
+ * are decoded one at a time, the first time each one is needed. The whole section is only decoded
+ * if {@link #toCell()} is called. This makes lazy cells much cheaper than fully-decoded ones when
+ * only a few blocks, or a few sections, are ever inspected.
+ * <p><br>
+ * Lazy cells are thread-safe. If multiple threads access the same state before it is decoded, it
+ * may be decoded more than once, but each thread receives an equivalent state.
+ *
+ * @author Nullicorn
+ * @see RegionSectionCodec#decodeLazily(NBTCompound)
+ */
+public final class LazyCell {
+
+  /**
+   * The number of total blocks that a cell (aka chunk section) contains. Equal to {@code pow(16,
+   * 3)}.
+   */
+  private static final int BLOCKS_PER_CELL = 4096;
+
+  /**
+   * Wraps a cell that has already been decoded.
+   */
+  static LazyCell of(Cell cell) {
+    return new LazyCell(null, Collections.emptyList(), null, cell);
+  }
+
+  private final RegionPaletteCodec paletteCodec;
+  private final List<NBTCompound>  encodedStates;
+  private final RegionUIntArray    blocks;
+
+  // Lazily populated.
+  private final    AtomicReferenceArray<BlockState> states;
+  private volatile Cell                             cell;
+
+  /**
+   * @param paletteCodec  The codec used to decode the palette's states.
+   * @param encodedStates The section's NBT palette. The list is copied, but its compounds are not.
+   * @param blocks        The section's block array, or {@code null} if every block uses the first
+   *                      state in the palette.
+   */
+  LazyCell(RegionPaletteCodec paletteCodec, List<NBTCompound> encodedStates,
+      RegionUIntArray blocks) {
+    this(paletteCodec, new ArrayList<>(encodedStates), blocks, null);
+  }
+
+  private LazyCell(RegionPaletteCodec paletteCodec, List<NBTCompound> encodedStates,
+      RegionUIntArray blocks, Cell cell) {
+    this.paletteCodec = paletteCodec;
+    this.encodedStates = encodedStates;
+    this.blocks = blocks;
+    this.states = new AtomicReferenceArray<>(encodedStates.size());
+    this.cell = cell;
+  }
+
+  /**
+   * @return the number of states in the cell's palette.
+   */
+  public int paletteSize() {
+    Cell decoded = cell;
+    return decoded != null
+        ? decoded.getPalette().size()
+        : encodedStates.size();
+  }
+
+  /**
+   * @return the number of blocks in the cell.
+   */
+  public int size() {
+    Cell decoded = cell;
+    return decoded != null
+        ? decoded.getBlocks().size()
+        : BLOCKS_PER_CELL;
+  }
+
+  /**
+   * Gets a state from the cell's palette, decoding it if it has not been decoded yet.
+   *
+   * @param paletteIndex The state's index in the palette.
+   * @return the state at the index.
+   * @throws IndexOutOfBoundsException if the {@code paletteIndex} is outside the palette.
+   * @throws IOException               if the state cannot be decoded.
+   */
+  public BlockState getState(int paletteIndex) throws IOException {
+    Cell decoded = cell;
+    if (decoded != null) {
+      return decoded.getPalette().get(paletteIndex);
+    }
+
+    BlockState state = states.get(paletteIndex);
+    if (state == null) {
+      state = paletteCodec.decodeState(encodedStates.get(paletteIndex));
+      states.set(paletteIndex, state);
+    }
+    return state;
+  }
+
+  /**
+   * Reads the palette index of a single block, without unpacking any others.
+   *
+   * @param blockIndex The block's index in the cell, in the same order as {@link
+   *                   Cell#getBlocks()}.
+   * @return the index of the block's state in the cell's palette.
+   * @throws ArrayIndexOutOfBoundsException if the {@code blockIndex} is outside the cell.
+   */
+  public int getStateIndex(int blockIndex) {
+    Cell decoded = cell;
+    if (decoded != null) {
+      return decoded.getBlocks().get(blockIndex);
+    } else if (blocks == null) {
+      if (blockIndex < 0 || blockIndex >= BLOCKS_PER_CELL) {
+        throw new ArrayIndexOutOfBoundsException(blockIndex);
+      }
+      return 0;
+    }
+    return blocks.get(blockIndex);
+  }
+
+  /**
+   * Same as {@code getState(getStateIndex(blockIndex))}.
+   *
+   * @throws IOException if the block's state cannot be decoded.
+   * @see #getStateIndex(int)
+   * @see #getState(int)
+   */
+  public BlockState getBlock(int blockIndex) throws IOException {
+    return getState(getStateIndex(blockIndex));
+  }
+
+  /**
+   * @return {@code true} if the whole cell has been decoded, either via {@link #toCell()} or
+   * because it was decoded eagerly. Otherwise {@code false}.
+   */
+  public boolean isDecoded() {
+    return cell != null;
+  }
+
+  /**
+   * Decodes the whole cell, re-using any states that were already decoded. The result is cached,
+   * so later calls return the same cell.
+   *
+   * @return the fully-decoded cell.
+   * @throws IOException if any of the cell's states cannot be decoded.
+   */
+  public Cell toCell() throws IOException {
+    Cell decoded = cell;
+    if (decoded != null) {
+      return decoded;
+    }
+
+    int paletteSize = encodedStates.size();
+    List<BlockState> decodedStates = new ArrayList<>(paletteSize);
+    for (int i = 0; i < paletteSize; i++) {
+      decodedStates.add(getState(i));
+    }
+    Palette palette = paletteCodec.decodeStates(decodedStates);
+
+    int[] values = new int[BLOCKS_PER_CELL];
+    if (blocks != null) {
+      for (int i = 0; i < values.length; i++) {
+        values[i] = blocks.get(i);
+      }
+    }
+
+    decoded = new Cell(palette, new PackedUIntArray(values));
+    cell = decoded;
+    return decoded;
+  }
+}
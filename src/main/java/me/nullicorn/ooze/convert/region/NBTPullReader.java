@@ -0,0 +1,463 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.MalformedInputException;
+
+/**
+ * A pull-style reader for uncompressed, binary NBT data.
+ * <p><br>
+ * Rather than building a tree of {@link NBTCompound compounds} & {@link NBTList lists}, the
+ * caller walks the data one tag at a time, reading the values it needs, and skipping the rest.
+ * Skipped tags are never allocated, and tag names can be compared without being decoded.
+ * <p><br>
+ * Readers are not thread-safe.
+ *
+ * @author Nullicorn
+ */
+final class NBTPullReader {
+
+  // Binary IDs of each tag type.
+  static final int TAG_END        = 0;
+  static final int TAG_BYTE       = 1;
+  static final int TAG_SHORT      = 2;
+  static final int TAG_INT        = 3;
+  static final int TAG_LONG       = 4;
+  static final int TAG_FLOAT      = 5;
+  static final int TAG_DOUBLE     = 6;
+  static final int TAG_BYTE_ARRAY = 7;
+  static final int TAG_STRING     = 8;
+  static final int TAG_LIST       = 9;
+  static final int TAG_COMPOUND   = 10;
+  static final int TAG_INT_ARRAY  = 11;
+  static final int TAG_LONG_ARRAY = 12;
+
+  /**
+   * The deepest that compounds & lists can be nested before the input is considered malformed.
+   * Same as vanilla's limit.
+   */
+  private static final int MAX_DEPTH = 512;
+
+  /**
+   * @param tagName An ASCII tag name.
+   * @return the name's binary form, for use with {@link #nameEquals(byte[])}.
+   */
+  static byte[] nameOf(String tagName) {
+    return tagName.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private final ByteBuffer input;
+
+  // The position & length of the most recent tag name.
+  private int nameStart;
+  private int nameLength;
+
+  /**
+   * @param input Uncompressed NBT data, from the buffer's position to its limit. The buffer itself
+   *              is not modified.
+   */
+  NBTPullReader(ByteBuffer input) {
+    this.input = input.duplicate().order(ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * @return {@code true} if there is no more data to read. Otherwise {@code false}.
+   */
+  boolean isAtEnd() {
+    return !input.hasRemaining();
+  }
+
+  /**
+   * Reads the type of the next tag. If the type is not {@link #TAG_END}, the tag's name follows.
+   *
+   * @throws MalformedInputException if the type is not a known NBT type.
+   */
+  int readTagType() throws IOException {
+    int type = readByte() & 0xFF;
+    if (type > TAG_LONG_ARRAY) {
+      throw new MalformedInputException("NBT", "unknown tag type: " + type);
+    }
+    return type;
+  }
+
+  /**
+   * Reads the name of a tag, without decoding it. The name can then be checked using {@link
+   * #nameEquals(byte[])} until the next name is read.
+   */
+  void readName() throws IOException {
+    nameLength = readShort() & 0xFFFF;
+    nameStart = input.position();
+    skip(nameLength);
+  }
+
+  /**
+   * @param name The expected name, as returned by {@link #nameOf(String)}.
+   * @return {@code true} if the most recently {@link #readName() read name} is the same as the
+   * {@code name}. Otherwise {@code false}.
+   */
+  boolean nameEquals(byte[] name) {
+    if (name.length != nameLength) {
+      return false;
+    }
+
+    for (int i = 0; i < nameLength; i++) {
+      if (input.get(nameStart + i) != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  byte readByte() throws IOException {
+    require(Byte.BYTES);
+    return input.get();
+  }
+
+  short readShort() throws IOException {
+    require(Short.BYTES);
+    return input.getShort();
+  }
+
+  int readInt() throws IOException {
+    require(Integer.BYTES);
+    return input.getInt();
+  }
+
+  long readLong() throws IOException {
+    require(Long.BYTES);
+    return input.getLong();
+  }
+
+  float readFloat() throws IOException {
+    require(Float.BYTES);
+    return input.getFloat();
+  }
+
+  double readDouble() throws IOException {
+    require(Double.BYTES);
+    return input.getDouble();
+  }
+
+  /**
+   * Reads the payload of any numeric tag as an {@code int}.
+   *
+   * @return the tag's value, or {@code null} if the tag is not numeric. If so, the tag is skipped.
+   */
+  Integer readNumberAsInt(int type) throws IOException {
+    switch (type) {
+      case TAG_BYTE:
+        return (int) readByte();
+      case TAG_SHORT:
+        return (int) readShort();
+      case TAG_INT:
+        return readInt();
+      case TAG_LONG:
+        return (int) readLong();
+      case TAG_FLOAT:
+        return (int) readFloat();
+      case TAG_DOUBLE:
+        return (int) readDouble();
+      default:
+        skipPayload(type);
+        return null;
+    }
+  }
+
+  String readString() throws IOException {
+    int length = readShort() & 0xFFFF;
+    require(length);
+
+    byte[] bytes = new byte[length];
+    input.get(bytes);
+
+    // Nearly all strings in chunks are ASCII, which is the same in modified UTF-8 (except NUL).
+    for (byte b : bytes) {
+      if (b <= 0) {
+        return decodeModifiedUtf8(bytes);
+      }
+    }
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  byte[] readByteArray() throws IOException {
+    int length = readArrayLength(Byte.BYTES);
+    byte[] array = new byte[length];
+    input.get(array);
+    return array;
+  }
+
+  /**
+   * Same as {@link #readByteArray()}, but the array is borrowed from the {@code scratch}.
+   */
+  byte[] readByteArray(SectionScratch scratch) throws IOException {
+    int length = readArrayLength(Byte.BYTES);
+    byte[] array = scratch.borrowBytes(length);
+    input.get(array);
+    return array;
+  }
+
+  int[] readIntArray() throws IOException {
+    int length = readArrayLength(Integer.BYTES);
+    int[] array = new int[length];
+    input.asIntBuffer().get(array);
+    skip(length * Integer.BYTES);
+    return array;
+  }
+
+  long[] readLongArray() throws IOException {
+    int length = readArrayLength(Long.BYTES);
+    long[] array = new long[length];
+    input.asLongBuffer().get(array);
+    skip(length * Long.BYTES);
+    return array;
+  }
+
+  /**
+   * Same as {@link #readLongArray()}, but the array is borrowed from the {@code scratch}.
+   */
+  long[] readLongArray(SectionScratch scratch) throws IOException {
+    int length = readArrayLength(Long.BYTES);
+    long[] array = scratch.borrowWords(length);
+    input.asLongBuffer().get(array);
+    skip(length * Long.BYTES);
+    return array;
+  }
+
+  /**
+   * Reads the header of a list; its content type followed by its length. Must be followed by
+   * {@link #readListLength()}.
+   *
+   * @return the type of tags in the list.
+   */
+  int readListType() throws IOException {
+    return readTagType();
+  }
+
+  /**
+   * @return the number of tags in a list whose {@link #readListType() type} was just read.
+   */
+  int readListLength() throws IOException {
+    int length = readInt();
+    if (length < 0) {
+      throw new MalformedInputException("NBT", "negative list length: " + length);
+    }
+    return length;
+  }
+
+  /**
+   * Skips the payload of a tag, including any tags nested inside it.
+   */
+  void skipPayload(int type) throws IOException {
+    skipPayload(type, 0);
+  }
+
+  private void skipPayload(int type, int depth) throws IOException {
+    switch (type) {
+      case TAG_BYTE:
+        skip(Byte.BYTES);
+        break;
+      case TAG_SHORT:
+        skip(Short.BYTES);
+        break;
+      case TAG_INT:
+      case TAG_FLOAT:
+        skip(Integer.BYTES);
+        break;
+      case TAG_LONG:
+      case TAG_DOUBLE:
+        skip(Long.BYTES);
+        break;
+      case TAG_BYTE_ARRAY:
+        skip(readArrayLength(Byte.BYTES));
+        break;
+      case TAG_INT_ARRAY:
+        skip(readArrayLength(Integer.BYTES) * Integer.BYTES);
+        break;
+      case TAG_LONG_ARRAY:
+        skip(readArrayLength(Long.BYTES) * Long.BYTES);
+        break;
+      case TAG_STRING:
+        skip(readShort() & 0xFFFF);
+        break;
+      case TAG_LIST:
+        checkDepth(depth);
+        int contentType = readListType();
+        int length = readListLength();
+        for (int i = 0; i < length; i++) {
+          skipPayload(contentType, depth + 1);
+        }
+        break;
+      case TAG_COMPOUND:
+        checkDepth(depth);
+        int childType;
+        while ((childType = readTagType()) != TAG_END) {
+          readName();
+          skipPayload(childType, depth + 1);
+        }
+        break;
+      default:
+        throw new MalformedInputException("NBT", "unexpected tag type: " + type);
+    }
+  }
+
+  /**
+   * Reads the payload of a tag as an object, including any tags nested inside it. Compounds &
+   * lists are returned as {@link NBTCompound NBTCompounds} and {@link NBTList NBTLists}, so this
+   * should only be used for tags that need to be kept as-is.
+   */
+  Object readPayload(int type) throws IOException {
+    return readPayload(type, 0);
+  }
+
+  private Object readPayload(int type, int depth) throws IOException {
+    switch (type) {
+      case TAG_BYTE:
+        return readByte();
+      case TAG_SHORT:
+        return readShort();
+      case TAG_INT:
+        return readInt();
+      case TAG_LONG:
+        return readLong();
+      case TAG_FLOAT:
+        return readFloat();
+      case TAG_DOUBLE:
+        return readDouble();
+      case TAG_BYTE_ARRAY:
+        return readByteArray();
+      case TAG_STRING:
+        return readString();
+      case TAG_INT_ARRAY:
+        return readIntArray();
+      case TAG_LONG_ARRAY:
+        return readLongArray();
+      case TAG_LIST:
+        checkDepth(depth);
+        int contentType = readListType();
+        int length = readListLength();
+        NBTList list = new NBTList(tagTypeOf(contentType));
+        for (int i = 0; i < length; i++) {
+          list.add(readPayload(contentType, depth + 1));
+        }
+        return list;
+      case TAG_COMPOUND:
+        checkDepth(depth);
+        NBTCompound compound = new NBTCompound();
+        int childType;
+        while ((childType = readTagType()) != TAG_END) {
+          String name = readNameString();
+          compound.put(name, readPayload(childType, depth + 1));
+        }
+        return compound;
+      default:
+        throw new MalformedInputException("NBT", "unexpected tag type: " + type);
+    }
+  }
+
+  /**
+   * Same as {@link #readName()}, but the name is also decoded & returned.
+   */
+  String readNameString() throws IOException {
+    int start = input.position();
+    String name = readString();
+
+    nameStart = start + Short.BYTES;
+    nameLength = input.position() - nameStart;
+    return name;
+  }
+
+  /**
+   * @return the {@link TagType} with the binary {@code id}.
+   */
+  static TagType tagTypeOf(int id) throws MalformedInputException {
+    switch (id) {
+      case TAG_END:
+        return TagType.END;
+      case TAG_BYTE:
+        return TagType.BYTE;
+      case TAG_SHORT:
+        return TagType.SHORT;
+      case TAG_INT:
+        return TagType.INT;
+      case TAG_LONG:
+        return TagType.LONG;
+      case TAG_FLOAT:
+        return TagType.FLOAT;
+      case TAG_DOUBLE:
+        return TagType.DOUBLE;
+      case TAG_BYTE_ARRAY:
+        return TagType.BYTE_ARRAY;
+      case TAG_STRING:
+        return TagType.STRING;
+      case TAG_LIST:
+        return TagType.LIST;
+      case TAG_COMPOUND:
+        return TagType.COMPOUND;
+      case TAG_INT_ARRAY:
+        return TagType.INT_ARRAY;
+      case TAG_LONG_ARRAY:
+        return TagType.LONG_ARRAY;
+      default:
+        throw new MalformedInputException("NBT", "unknown tag type: " + id);
+    }
+  }
+
+  /**
+   * Reads the length of an array tag, and checks that the array's contents are available.
+   *
+   * @param elementSize The number of bytes used by each element in the array.
+   */
+  private int readArrayLength(int elementSize) throws IOException {
+    int length = readInt();
+    if (length < 0) {
+      throw new MalformedInputException("NBT", "negative array length: " + length);
+    }
+    require((long) length * elementSize);
+    return length;
+  }
+
+  private void skip(long byteCount) throws IOException {
+    require(byteCount);
+    // Buffer casts keep the bytecode compatible with Java 8 when compiled on newer JDKs.
+    ((Buffer) input).position(input.position() + (int) byteCount);
+  }
+
+  /**
+   * @throws MalformedInputException if fewer than {@code byteCount} bytes remain in the input.
+   */
+  private void require(long byteCount) throws MalformedInputException {
+    if (byteCount > input.remaining()) {
+      throw new MalformedInputException("NBT", "unexpected end of input");
+    }
+  }
+
+  private static void checkDepth(int depth) throws MalformedInputException {
+    if (depth >= MAX_DEPTH) {
+      throw new MalformedInputException("NBT", "nested too deeply");
+    }
+  }
+
+  /**
+   * Decodes a string in the modified UTF-8 format used by NBT (and {@link java.io.DataInput}).
+   */
+  private static String decodeModifiedUtf8(byte[] bytes) throws IOException {
+    byte[] withLength = new byte[bytes.length + Short.BYTES];
+    withLength[0] = (byte) (bytes.length >>> 8);
+    withLength[1] = (byte) bytes.length;
+    System.arraycopy(bytes, 0, withLength, Short.BYTES, bytes.length);
+
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(withLength))) {
+      return in.readUTF();
+    } catch (IOException e) {
+      throw new MalformedInputException("NBT string", e);
+    }
+  }
+}
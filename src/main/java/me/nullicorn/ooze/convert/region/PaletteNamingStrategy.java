@@ -0,0 +1,73 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Palette;
+
+/**
+ * Determines the {@code name} assigned to each {@link Palette palette} decoded by a {@link
+ * RegionPaletteCodec}.
+ *
+ * @author Nullicorn
+ */
+@FunctionalInterface
+public interface PaletteNamingStrategy {
+
+  /**
+   * The prefix shared by the names produced by each of the built-in strategies.
+   */
+  String NAME_PREFIX = "ooze:";
+
+  /**
+   * Names palettes after a 64-bit hash of their data version, and of their states' names &
+   * properties, in order.
+   * <p><br>
+   * Palettes with equivalent states always receive the same name, which allows identical palettes
+   * to be deduplicated or cached by name. Palettes for different data versions are named
+   * differently, even if their states are the same. This is the default strategy used by {@link
+   * RegionPaletteCodec}.
+   *
+   * @return a deterministic, stateless naming strategy.
+   */
+  static PaletteNamingStrategy contentHash() {
+    return ContentHashNaming.INSTANCE;
+  }
+
+  /**
+   * Names palettes using a sequential number, starting at {@code 0}. Each strategy returned by this
+   * method has its own independent counter.
+   * <p><br>
+   * Names are unique per-strategy, but unlike {@link #contentHash()}, equivalent palettes will not
+   * share a name.
+   *
+   * @return a new thread-safe, counter-based naming strategy.
+   */
+  static PaletteNamingStrategy counter() {
+    AtomicLong counter = new AtomicLong();
+    return (dataVersion, states) -> NAME_PREFIX + "palette_" + counter.getAndIncrement();
+  }
+
+  /**
+   * Names palettes using a {@link UUID#randomUUID() random UUID}.
+   * <p><br>
+   * Random UUIDs are drawn from a shared {@link java.security.SecureRandom SecureRandom}, which
+   * threads will contend for when decoding in parallel. Prefer {@link #contentHash()} or {@link
+   * #counter()} unless names must be globally unique.
+   *
+   * @return a stateless, random naming strategy.
+   */
+  static PaletteNamingStrategy randomUuid() {
+    return (dataVersion, states) -> NAME_PREFIX + UUID.randomUUID();
+  }
+
+  /**
+   * Determines the name for a palette that is about to be created.
+   *
+   * @param dataVersion The data version that the palette will be compatible with.
+   * @param states      The palette's states, in order.
+   * @return the name to give the palette.
+   */
+  String nameOf(int dataVersion, List<BlockState> states);
+}
@@ -19,7 +19,7 @@ public class RegionBlockArrayCodec extends VersionedCodec<PackedUIntArray, Regio
    *                                  arrays.
    */
   public RegionBlockArrayCodec(int dataVersion) {
-    super(dataVersion, RegionTag.BLOCKS);
+    super(dataVersion, RegionTag.supportTable(), RegionTag.BLOCKS);
   }
 
   /**
@@ -38,8 +38,25 @@ public class RegionBlockArrayCodec extends VersionedCodec<PackedUIntArray, Regio
     if (array == null) {
       throw new IllegalArgumentException("null array cannot be encoded");
     }
+    return encode(array, array.magnitude());
+  }
+
+  /**
+   * Same as {@link #encode(PackedUIntArray)}, but the output uses a specific {@code magnitude},
+   * rather than the input {@code array}'s.
+   *
+   * @param array     An array of the values to be packed into 64-bit words
+   * @param magnitude The number of bits to use for each value in the output.
+   * @return 64-bit words containing the input values, with order preserved.
+   * @throws IllegalArgumentException if the {@code array} is {@code null}, or if any of its values
+   *                                  cannot fit in the {@code magnitude} specified.
+   */
+  public RegionUIntArray encode(PackedUIntArray array, int magnitude) {
+    if (array == null) {
+      throw new IllegalArgumentException("null array cannot be encoded");
+    }
 
-    RegionUIntArray dataArray = RegionUIntArray.from(array.size(), array.magnitude(), dataVersion);
+    RegionUIntArray dataArray = RegionUIntArray.from(array.size(), magnitude, dataVersion);
     for (int i = 0; i < array.size(); i++) {
       dataArray.set(i, array.get(i));
     }
@@ -60,12 +77,32 @@ public class RegionBlockArrayCodec extends VersionedCodec<PackedUIntArray, Regio
     if (array == null) {
       throw new IllegalArgumentException("null words array cannot be decoded");
     }
+    return decode(array, new int[array.length()]);
+  }
+
+  /**
+   * Same as {@link #decode(RegionUIntArray)}, but the values are unpacked into a supplied {@code
+   * buffer} before being packed into the returned array. The returned array does not use the
+   * buffer, so it can be reused as soon as this returns (e.g. via {@link SectionScratch}).
+   *
+   * @param buffer Space for the unpacked values. Its contents are overwritten.
+   * @throws IllegalArgumentException if the {@code array} or {@code buffer} is {@code null}, or if
+   *                                  the buffer's length is different from the array's.
+   */
+  public PackedUIntArray decode(RegionUIntArray array, int[] buffer) {
+    if (array == null) {
+      throw new IllegalArgumentException("null words array cannot be decoded");
+    } else if (buffer == null) {
+      throw new IllegalArgumentException("buffer cannot be null");
+    } else if (buffer.length != array.length()) {
+      throw new IllegalArgumentException("buffer has " + buffer.length + " values, not " +
+                                         array.length());
+    }
 
-    int[] values = new int[array.length()];
-    for (int i = 0; i < values.length; i++) {
-      values[i] = array.get(i);
+    for (int i = 0; i < buffer.length; i++) {
+      buffer[i] = array.get(i);
     }
 
-    return new PackedUIntArray(values);
+    return new PackedUIntArray(buffer);
   }
 }
@@ -4,7 +4,6 @@ import java.io.IOException;
 import me.nullicorn.nedit.type.NBTCompound;
 import me.nullicorn.ooze.convert.MalformedInputException;
 import me.nullicorn.ooze.convert.VersionedCodec;
-import me.nullicorn.ooze.convert.VersionedTag;
 import me.nullicorn.ooze.level.BlockState;
 
 /**
@@ -14,8 +13,8 @@ import me.nullicorn.ooze.level.BlockState;
  */
 public class RegionBlockStateCodec extends VersionedCodec<BlockState, NBTCompound> {
 
-  private static final VersionedTag NAME_TAG       = RegionTag.BLOCK_NAME;
-  private static final VersionedTag PROPERTIES_TAG = RegionTag.BLOCK_PROPERTIES;
+  private static final RegionTag NAME_TAG       = RegionTag.BLOCK_NAME;
+  private static final RegionTag PROPERTIES_TAG = RegionTag.BLOCK_PROPERTIES;
 
   /**
    * Creates a codec compatible with a specific Minecraft {@code dataVersion}.
@@ -24,7 +23,7 @@ public class RegionBlockStateCodec extends VersionedCodec<BlockState, NBTCompoun
    *                                  states.
    */
   public RegionBlockStateCodec(int dataVersion) {
-    super(dataVersion, NAME_TAG, PROPERTIES_TAG);
+    super(dataVersion, RegionTag.supportTable(), NAME_TAG, PROPERTIES_TAG);
   }
 
   /**
@@ -74,13 +73,15 @@ public class RegionBlockStateCodec extends VersionedCodec<BlockState, NBTCompoun
       throw new IllegalArgumentException("null cannot be decoded as a block state");
     }
 
-    String name = getTagValue(NAME_TAG, state)
-        .map(String.class::cast)
-        .orElseThrow(() -> new MalformedInputException("block state", "has no name"));
+    String name = getString(NAME_TAG, state);
+    if (name == null) {
+      throw new MalformedInputException("block state", "has no name");
+    }
 
-    NBTCompound properties = getTagValue(PROPERTIES_TAG, state)
-        .map(NBTCompound.class::cast)
-        .orElseGet(NBTCompound::new);
+    NBTCompound properties = getCompound(PROPERTIES_TAG, state);
+    if (properties == null) {
+      properties = new NBTCompound();
+    }
 
     // TODO: 9/27/21 Provide `isEmpty` value if state is air.
     return new BlockState(name, properties);
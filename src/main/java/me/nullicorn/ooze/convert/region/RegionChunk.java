@@ -0,0 +1,140 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.level.Cell;
+
+/**
+ * The blocks of a single chunk in a region file, as sections (aka cells) positioned by their
+ * altitude.
+ * <p><br>
+ * Chunks may also hold the raw values of other tags from the chunk's {@code Level} compound, such
+ * as its {@link RegionTag#CHUNK_BLOCK_ENTITIES block-entities}, if they were requested when the
+ * chunk was decoded.
+ * <p><br>
+ * Chunks are immutable, so their sections and tags cannot be added, removed, or replaced once
+ * created. The tags' values themselves are not copied though, so they should not be modified.
+ *
+ * @author Nullicorn
+ */
+public final class RegionChunk {
+
+  private final int                     chunkX;
+  private final int                     chunkZ;
+  private final SortedMap<Integer, Cell> sections;
+  private final Map<RegionTag, Object>   tags;
+
+  /**
+   * Creates a chunk at the given coordinates, with the supplied sections and no other tags.
+   *
+   * @see #RegionChunk(int, int, Map, Map)
+   */
+  public RegionChunk(int chunkX, int chunkZ, Map<Integer, Cell> sections) {
+    this(chunkX, chunkZ, sections, Collections.emptyMap());
+  }
+
+  /**
+   * Creates a chunk at the given coordinates, with the supplied sections and tags.
+   *
+   * @param chunkX   The chunk's location along the X axis, measured in 16-block units.
+   * @param chunkZ   The chunk's location along the Z axis, measured in 16-block units.
+   * @param sections The chunk's cells, keyed by their altitude in 16-block units. The map is
+   *                 copied, so later changes to it will not affect the chunk.
+   * @param tags     The raw NBT values of any other tags from the chunk's {@code Level} compound.
+   *                 The map is copied, but its values are not.
+   * @throws IllegalArgumentException if either map is {@code null}, or if any of their keys or
+   *                                  values are {@code null}.
+   */
+  public RegionChunk(int chunkX, int chunkZ, Map<Integer, Cell> sections,
+      Map<RegionTag, Object> tags) {
+    if (sections == null) {
+      throw new IllegalArgumentException("sections cannot be null");
+    } else if (tags == null) {
+      throw new IllegalArgumentException("tags cannot be null");
+    }
+
+    SortedMap<Integer, Cell> sectionsCopy = new TreeMap<>();
+    for (Map.Entry<Integer, Cell> section : sections.entrySet()) {
+      if (section.getKey() == null || section.getValue() == null) {
+        throw new IllegalArgumentException("sections cannot contain null: " + section);
+      }
+      sectionsCopy.put(section.getKey(), section.getValue());
+    }
+
+    Map<RegionTag, Object> tagsCopy = new EnumMap<>(RegionTag.class);
+    for (Map.Entry<RegionTag, Object> tag : tags.entrySet()) {
+      if (tag.getKey() == null || tag.getValue() == null) {
+        throw new IllegalArgumentException("tags cannot contain null: " + tag);
+      }
+      tagsCopy.put(tag.getKey(), tag.getValue());
+    }
+
+    this.chunkX = chunkX;
+    this.chunkZ = chunkZ;
+    this.sections = Collections.unmodifiableSortedMap(sectionsCopy);
+    this.tags = Collections.unmodifiableMap(tagsCopy);
+  }
+
+  /**
+   * @return the chunk's location along the X axis, measured in 16-block units.
+   */
+  public int getX() {
+    return chunkX;
+  }
+
+  /**
+   * @return the chunk's location along the Z axis, measured in 16-block units.
+   */
+  public int getZ() {
+    return chunkZ;
+  }
+
+  /**
+   * @return an unmodifiable view of the chunk's cells, keyed by their altitude in 16-block units,
+   * from lowest to highest.
+   */
+  public SortedMap<Integer, Cell> getSections() {
+    return sections;
+  }
+
+  /**
+   * @param altitude The section's vertical distance from {@code y=0}, measured in 16-block units.
+   * @return the cell at the {@code altitude}, or {@code null} if the chunk has no section there.
+   */
+  public Cell getSection(int altitude) {
+    return sections.get(altitude);
+  }
+
+  /**
+   * @return an unmodifiable view of the chunk's other tags, keyed by the tag they were read from.
+   * Only tags that were requested when the chunk was decoded are present.
+   * @see RegionChunkCodec#decode(NBTCompound, Set)
+   */
+  public Map<RegionTag, Object> getTags() {
+    return tags;
+  }
+
+  /**
+   * @return the raw NBT value of one of the chunk's other tags, or {@code null} if the chunk does
+   * not have the tag, or if it was not requested when the chunk was decoded.
+   * @see RegionChunkCodec#decode(NBTCompound, Set)
+   */
+  public Object getTag(RegionTag tag) {
+    return tags.get(tag);
+  }
+
+  @Override
+  public String toString() {
+    return "RegionChunk{" +
+           "x=" + chunkX +
+           ", z=" + chunkZ +
+           ", sections=" + sections.keySet() +
+           ", tags=" + tags.keySet() +
+           '}';
+  }
+}
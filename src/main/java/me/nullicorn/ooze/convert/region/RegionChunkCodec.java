@@ -0,0 +1,491 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.CodecMetrics;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import me.nullicorn.ooze.convert.VersionedCodec;
+import me.nullicorn.ooze.level.Cell;
+
+/**
+ * Provides serialization to and from the NBT compounds of chunks in a region file.
+ * <p><br>
+ * Each of a chunk's sections is handled by a {@link RegionSectionCodec}, and positioned by its
+ * {@link RegionTag#SECTION_ALTITUDE altitude}. Sections can optionally be decoded & encoded in
+ * parallel, using a supplied {@link Executor}, when a chunk has enough of them.
+ * <p><br>
+ * When decoding, a projection can be supplied to choose which of the chunk's tags are read. This
+ * allows sections to be skipped when only a chunk's other tags are needed, and vice versa.
+ *
+ * @author Nullicorn
+ */
+public class RegionChunkCodec extends VersionedCodec<RegionChunk, NBTCompound> {
+
+  // Chunk NBT tags (not static imports for readability).
+  private static final RegionTag DATA_VERSION_TAG = RegionTag.DATA_VERSION;
+  private static final RegionTag LEVEL_TAG        = RegionTag.CHUNK;
+  private static final RegionTag POS_X_TAG        = RegionTag.CHUNK_POS_X;
+  private static final RegionTag POS_Z_TAG        = RegionTag.CHUNK_POS_Z;
+  private static final RegionTag SECTIONS_TAG     = RegionTag.CHUNK_SECTIONS;
+  private static final RegionTag ALTITUDE_TAG     = RegionTag.SECTION_ALTITUDE;
+
+  /**
+   * The default minimum number of non-empty sections that a chunk must have for them to be handled
+   * in parallel. Smaller chunks are handled on the calling thread, since the cost of scheduling
+   * their sections would outweigh any gains.
+   */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 4;
+
+  /**
+   * Tags that are always read when decoding a chunk, regardless of the projection. They may still
+   * be included in projections, but have no effect.
+   */
+  private static final Set<RegionTag> ALWAYS_READ_TAGS = Collections.unmodifiableSet(EnumSet.of(
+      RegionTag.DATA_VERSION,
+      RegionTag.CHUNK,
+      RegionTag.CHUNK_POS_X,
+      RegionTag.CHUNK_POS_Z));
+
+  /**
+   * Tags in a chunk's {@code Level} compound whose raw values can be retained in the decoded
+   * chunk's {@link RegionChunk#getTags() tags}.
+   */
+  static final Set<RegionTag> RETAINABLE_TAGS = Collections.unmodifiableSet(EnumSet.of(
+      RegionTag.CHUNK_ENTITIES,
+      RegionTag.CHUNK_BLOCK_ENTITIES,
+      RegionTag.CHUNK_STATUS,
+      RegionTag.IS_LIGHT_GENERATED,
+      RegionTag.IS_TERRAIN_GENERATED));
+
+  /**
+   * Every tag that can be included in a projection. {@link RegionTag#CHUNK_SECTIONS} determines
+   * whether the chunk's sections are decoded, and any {@link #RETAINABLE_TAGS retainable} tags are
+   * kept in the chunk as-is.
+   *
+   * @see #decode(NBTCompound, Set)
+   */
+  public static final Set<RegionTag> PROJECTABLE_TAGS;
+
+  /**
+   * The projection used when none is supplied, which only decodes the chunk's sections.
+   *
+   * @see #decode(NBTCompound)
+   */
+  public static final Set<RegionTag> DEFAULT_PROJECTION =
+      Collections.unmodifiableSet(EnumSet.of(RegionTag.CHUNK_SECTIONS));
+
+  static {
+    Set<RegionTag> projectable = EnumSet.of(RegionTag.CHUNK_SECTIONS);
+    projectable.addAll(ALWAYS_READ_TAGS);
+    projectable.addAll(RETAINABLE_TAGS);
+    PROJECTABLE_TAGS = Collections.unmodifiableSet(projectable);
+  }
+
+  private final RegionSectionCodec sectionCodec;
+  private final boolean            hasDataVersion;
+  private final Set<RegionTag>     retainableTags;
+  private final CodecMetrics       metrics;
+
+  // Parallelism settings.
+  private final Executor executor;
+  private final int      parallelThreshold;
+
+  /**
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}, which handles all
+   * sections on the calling thread. Sections are handled using the {@link
+   * RegionCodecs#forVersion(int) shared codecs} for the version.
+   *
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunks.
+   */
+  public RegionChunkCodec(int dataVersion) {
+    this(RegionCodecs.forVersion(dataVersion));
+  }
+
+  /**
+   * Creates a codec that handles all sections on the calling thread, using the {@code codecs}
+   * provided.
+   *
+   * @throws IllegalArgumentException if the {@code codecs} are {@code null}.
+   */
+  public RegionChunkCodec(RegionCodecs codecs) {
+    this(codecs, null, DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Creates a codec that handles the sections of larger chunks in parallel.
+   * <p><br>
+   * Tasks submitted to the {@code executor} must not wait on the codec, or else the executor can
+   * deadlock once all of its threads are waiting. {@link ForkJoinPool}s do not have this issue, and
+   * are recommended when chunks are themselves being handled in parallel.
+   *
+   * @param codecs            The codecs to use for the chunk's version and sections.
+   * @param executor          The executor to handle sections on, or {@code null} if sections
+   *                          should always be handled on the calling thread.
+   * @param parallelThreshold The minimum number of non-empty sections that a chunk must have for
+   *                          them to be handled in parallel. Chunks with fewer are handled on the
+   *                          calling thread. When decoding, only sections with block data count,
+   *                          not those that only store light.
+   * @throws IllegalArgumentException if the {@code codecs} are {@code null}, if the {@code
+   *                                  dataVersion} does not support chunks, or if the {@code
+   *                                  parallelThreshold} is less than {@code 1}.
+   */
+  public RegionChunkCodec(RegionCodecs codecs, Executor executor, int parallelThreshold) {
+    super(getVersionOf(codecs), RegionTag.supportTable(), LEVEL_TAG, POS_X_TAG, POS_Z_TAG,
+        SECTIONS_TAG, ALTITUDE_TAG);
+
+    if (parallelThreshold < 1) {
+      throw new IllegalArgumentException("parallelThreshold must be positive: " +
+                                         parallelThreshold);
+    }
+
+    this.sectionCodec = codecs.sectionCodec();
+    this.metrics = codecs.options().metrics();
+    this.hasDataVersion = RegionTag.supportedIn(dataVersion).contains(DATA_VERSION_TAG);
+    this.retainableTags = retainableTagsIn(dataVersion);
+    this.executor = executor;
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the {@code codecs} are {@code null}.
+   */
+  private static int getVersionOf(RegionCodecs codecs) {
+    if (codecs == null) {
+      throw new IllegalArgumentException("codecs cannot be null");
+    }
+    return codecs.getCompatibility();
+  }
+
+  /**
+   * Encodes a {@code chunk} using the vanilla format for the codec's {@link #getCompatibility()
+   * version}.
+   * <p><br>
+   * If the codec's sections are {@link SectionCodecOptions#withEmptySectionElision(boolean)
+   * elided}, empty sections are left out of the chunk entirely.
+   *
+   * @throws IllegalArgumentException if the {@code chunk} is {@code null}.
+   * @throws IOException              if any of the chunk's sections cannot be encoded.
+   */
+  @Override
+  public NBTCompound encode(RegionChunk chunk) throws IOException {
+    if (chunk == null) {
+      throw new IllegalArgumentException("null cannot be encoded as a chunk");
+    }
+    boolean isMeasured = metrics.isEnabled();
+    long start = isMeasured ? System.nanoTime() : 0;
+
+    List<Map.Entry<Integer, Cell>> cells = new ArrayList<>(chunk.getSections().entrySet());
+    List<NBTCompound> encodedSections = map(cells, cells.size(), cell -> {
+      NBTCompound section = sectionCodec.encode(cell.getValue());
+      if (section.isEmpty()) {
+        // Elided sections are dropped.
+        return null;
+      }
+
+      setTagValue(ALTITUDE_TAG, cell.getKey(), section);
+      return section;
+    });
+
+    NBTList sections = new NBTList(TagType.COMPOUND);
+    for (NBTCompound section : encodedSections) {
+      if (section != null) {
+        sections.add(section);
+      }
+    }
+
+    NBTCompound level = new NBTCompound();
+    setTagValue(POS_X_TAG, chunk.getX(), level);
+    setTagValue(POS_Z_TAG, chunk.getZ(), level);
+    setTagValue(SECTIONS_TAG, sections, level);
+
+    NBTCompound root = new NBTCompound();
+    if (hasDataVersion) {
+      setTagValue(DATA_VERSION_TAG, dataVersion, root);
+    }
+    setTagValue(LEVEL_TAG, level, root);
+
+    if (isMeasured) {
+      metrics.chunkEncoded(dataVersion, chunk.getX(), chunk.getZ(), cells.size(),
+          System.nanoTime() - start);
+    }
+    return root;
+  }
+
+  /**
+   * Decodes the cells of a chunk, positioned by their altitudes. None of the chunk's other tags are
+   * retained.
+   * <p><br>
+   * Sections without any blocks (such as those that only store light) are skipped, as are sections
+   * that are {@link SectionCodecOptions#withEmptySectionElision(boolean) elided}.
+   *
+   * @throws IllegalArgumentException if the {@code encoded} compound is {@code null}.
+   * @throws MalformedInputException  if the chunk's {@code DataVersion} does not match the codec's,
+   *                                  if the chunk is missing its position or {@code Level}, or if
+   *                                  two sections share an altitude.
+   * @throws IOException              if any of the chunk's sections cannot be decoded.
+   * @see #DEFAULT_PROJECTION
+   */
+  @Override
+  public RegionChunk decode(NBTCompound encoded) throws IOException {
+    return decode(encoded, DEFAULT_PROJECTION);
+  }
+
+  /**
+   * Decodes only the parts of a chunk included in a {@code projection}.
+   * <p><br>
+   * If the projection includes {@link RegionTag#CHUNK_SECTIONS}, the chunk's sections are decoded
+   * the same as by {@link #decode(NBTCompound)}. Otherwise they are skipped entirely, and the chunk
+   * has no sections. The raw values of any other tags in the projection are retained in the
+   * chunk's {@link RegionChunk#getTags() tags}, if the chunk has them and they have the correct
+   * type. The chunk's position is always read.
+   *
+   * @param projection The tags to read from the chunk. Must be a subset of {@link
+   *                   #PROJECTABLE_TAGS}.
+   * @throws IllegalArgumentException if the {@code encoded} compound or {@code projection} are
+   *                                  {@code null}, or if the projection contains any tags that are
+   *                                  not {@link #PROJECTABLE_TAGS projectable}.
+   * @throws MalformedInputException  if the chunk's {@code DataVersion} does not match the codec's,
+   *                                  if the chunk is missing its position or {@code Level}, or if
+   *                                  two sections share an altitude.
+   * @throws IOException              if any of the chunk's sections cannot be decoded.
+   */
+  public RegionChunk decode(NBTCompound encoded, Set<RegionTag> projection) throws IOException {
+    if (encoded == null) {
+      throw new IllegalArgumentException("null cannot be decoded as a chunk");
+    }
+    checkProjection(projection);
+    boolean isMeasured = metrics.isEnabled();
+    long start = isMeasured ? System.nanoTime() : 0;
+
+    if (hasDataVersion) {
+      int chunkVersion = getInt(DATA_VERSION_TAG, encoded, dataVersion);
+      if (chunkVersion != dataVersion) {
+        throw new MalformedInputException("chunk",
+            "DataVersion " + chunkVersion + " cannot be decoded by codec for " + dataVersion);
+      }
+    }
+
+    NBTCompound level = getCompound(LEVEL_TAG, encoded);
+    if (level == null) {
+      throw new MalformedInputException("chunk", "missing " + LEVEL_TAG);
+    }
+
+    if (!hasInt(POS_X_TAG, level) || !hasInt(POS_Z_TAG, level)) {
+      throw new MalformedInputException("chunk", "missing position");
+    }
+    int chunkX = getInt(POS_X_TAG, level, 0);
+    int chunkZ = getInt(POS_Z_TAG, level, 0);
+
+    Map<RegionTag, Object> tags = new EnumMap<>(RegionTag.class);
+    for (RegionTag tag : projection) {
+      Object value = level.get(tag.getName());
+      if (retainableTags.contains(tag) && isRetainable(tag, value)) {
+        tags.put(tag, value);
+      }
+    }
+
+    List<NBTCompound> sections = projection.contains(RegionTag.CHUNK_SECTIONS)
+        ? getSections(level)
+        : Collections.emptyList();
+    int sectionsWithBlocks = 0;
+    for (NBTCompound section : sections) {
+      if (sectionCodec.hasBlocks(section)) {
+        sectionsWithBlocks++;
+      }
+    }
+    List<Cell> cells = map(sections, sectionsWithBlocks, sectionCodec::decode);
+
+    Map<Integer, Cell> positionedCells = new HashMap<>();
+    for (int i = 0; i < sections.size(); i++) {
+      Cell cell = cells.get(i);
+      if (cell == Cell.empty()) {
+        // Sections without blocks, or elided ones.
+        continue;
+      }
+
+      int altitude = getAltitude(sections.get(i));
+      if (positionedCells.put(altitude, cell) != null) {
+        throw new MalformedInputException("chunk", "duplicate section at Y=" + altitude);
+      }
+    }
+
+    RegionChunk chunk = new RegionChunk(chunkX, chunkZ, positionedCells, tags);
+
+    if (isMeasured) {
+      metrics.chunkDecoded(dataVersion, chunk.getX(), chunk.getZ(), sections.size(),
+          System.nanoTime() - start);
+    }
+    return chunk;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the {@code projection} is {@code null}, or if it contains
+   *                                  any tags that are not {@link #PROJECTABLE_TAGS projectable}.
+   */
+  static void checkProjection(Set<RegionTag> projection) {
+    if (projection == null) {
+      throw new IllegalArgumentException("projection cannot be null");
+    }
+
+    for (RegionTag tag : projection) {
+      if (!PROJECTABLE_TAGS.contains(tag)) {
+        throw new IllegalArgumentException(tag + " cannot be projected");
+      }
+    }
+  }
+
+  /**
+   * @return the {@link #RETAINABLE_TAGS retainable} tags that are supported in the {@code
+   * dataVersion}. Projected tags outside of this set are not retained, such as {@code Status}
+   * before it was added, or {@code LightPopulated} after it was removed.
+   */
+  static Set<RegionTag> retainableTagsIn(int dataVersion) {
+    Set<RegionTag> tags = EnumSet.noneOf(RegionTag.class);
+    for (RegionTag tag : RegionTag.supportedIn(dataVersion)) {
+      if (RETAINABLE_TAGS.contains(tag)) {
+        tags.add(tag);
+      }
+    }
+    return Collections.unmodifiableSet(tags);
+  }
+
+  /**
+   * Checks whether a raw NBT {@code value} can be retained for a {@link #RETAINABLE_TAGS
+   * retainable} {@code tag}. Lists must have the tag's content-type, unless they are empty, since
+   * empty lists are often written as {@code TAG_End} lists.
+   *
+   * @return {@code true} if the value has the tag's type. Otherwise {@code false}.
+   */
+  static boolean isRetainable(RegionTag tag, Object value) {
+    if (value == null || TagType.fromObject(value) != tag.getType()) {
+      return false;
+    } else if (value instanceof NBTList) {
+      NBTList list = (NBTList) value;
+      return list.isEmpty() || list.getContentType() == tag.getContentType();
+    }
+    return true;
+  }
+
+  /**
+   * @return the compounds in a chunk's {@link #SECTIONS_TAG section list}. An empty list is
+   * returned if the chunk has no sections.
+   * @throws MalformedInputException if the chunk's section list contains anything except
+   *                                 compounds.
+   */
+  private List<NBTCompound> getSections(NBTCompound level) throws MalformedInputException {
+    NBTList sectionList = getList(SECTIONS_TAG, level);
+    if (sectionList == null) {
+      // Empty lists are often written as TAG_End lists, so those are allowed.
+      Object rawSections = level.get(SECTIONS_TAG.getName());
+      if (rawSections instanceof NBTList && !((NBTList) rawSections).isEmpty()) {
+        throw new MalformedInputException("chunk", SECTIONS_TAG + " must contain compounds");
+      }
+      return new ArrayList<>();
+    }
+
+    List<NBTCompound> sections = new ArrayList<>(sectionList.size());
+    for (int i = 0; i < sectionList.size(); i++) {
+      sections.add(sectionList.getCompound(i));
+    }
+    return sections;
+  }
+
+  /**
+   * Reads a section's altitude. Vanilla writes the altitude as a byte, so any numeric tag is
+   * accepted, despite {@link RegionTag#SECTION_ALTITUDE} being an int.
+   *
+   * @throws MalformedInputException if the section has no numeric altitude.
+   */
+  private static int getAltitude(NBTCompound section) throws MalformedInputException {
+    Object altitude = section.get(ALTITUDE_TAG.getName());
+    if (!(altitude instanceof Number)) {
+      throw new MalformedInputException("chunk section", "missing altitude");
+    }
+    return ((Number) altitude).intValue();
+  }
+
+  /**
+   * Applies a {@code task} to each of the {@code inputs}. If the codec has an executor, and at
+   * least {@link #parallelThreshold} of the inputs have any work to do, they are handled in
+   * parallel. The first input is always handled on the calling thread.
+   *
+   * @param workCount The number of inputs that have any work to do, such as sections with blocks.
+
+   * @return the result for each input, in the same order as the inputs.
+   * @throws IOException if the task fails for any of the inputs.
+   */
+  private <I, O> List<O> map(List<I> inputs, int workCount, SectionTask<I, O> task)
+      throws IOException {
+    int inputCount = inputs.size();
+    List<O> results = new ArrayList<>(inputCount);
+
+    if (executor == null || workCount < parallelThreshold) {
+      for (I input : inputs) {
+        results.add(task.apply(input));
+      }
+      return results;
+    }
+
+    List<CompletableFuture<O>> futures = new ArrayList<>(inputCount - 1);
+    for (int i = 1; i < inputCount; i++) {
+      I input = inputs.get(i);
+      futures.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          return task.apply(input);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }, executor));
+    }
+
+    boolean isComplete = false;
+    try {
+      results.add(task.apply(inputs.get(0)));
+      for (CompletableFuture<O> future : futures) {
+        results.add(future.join());
+      }
+      isComplete = true;
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    } finally {
+      if (!isComplete) {
+        // Don't bother with the remaining sections if one fails.
+        for (CompletableFuture<O> future : futures) {
+          future.cancel(false);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * A single encoding or decoding step, applied to each of a chunk's sections.
+   */
+  @FunctionalInterface
+  private interface SectionTask<I, O> {
+
+    O apply(I input) throws IOException;
+  }
+}
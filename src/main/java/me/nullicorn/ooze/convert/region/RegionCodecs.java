@@ -0,0 +1,168 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import me.nullicorn.ooze.convert.region.legacy.RegionLegacySectionCodec;
+
+/**
+ * The set of region codecs for a single Minecraft world version (aka data-version).
+ * <p><br>
+ * All codecs in this package are immutable, so a single set can be shared between any number of
+ * threads. {@link #forVersion(int)} caches the default set for each data-version, so that the
+ * codecs are only constructed once, regardless of how many chunks use that version.
+ *
+ * @author Nullicorn
+ */
+public final class RegionCodecs {
+
+  /**
+   * Codec sets using the {@link SectionCodecOptions#defaults() default options}, keyed by their
+   * data-version.
+   */
+  private static final ConcurrentMap<Integer, RegionCodecs> DEFAULT_CODECS =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Gets the shared set of codecs for a data-version, using the {@link
+   * SectionCodecOptions#defaults() default options}. The set is created the first time its version
+   * is requested, and the same instance is returned afterwards.
+   *
+   * @param dataVersion The Minecraft world version that the codecs should be compatible with.
+   * @return the shared codecs for the version.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunk sections.
+   */
+  public static RegionCodecs forVersion(int dataVersion) {
+    RegionCodecs codecs = DEFAULT_CODECS.get(dataVersion);
+    if (codecs == null) {
+      codecs = DEFAULT_CODECS.computeIfAbsent(dataVersion,
+          version -> new RegionCodecs(version, SectionCodecOptions.defaults()));
+    }
+    return codecs;
+  }
+
+  private final int                      dataVersion;
+  private final SectionCodecOptions      options;
+  private final RegionChunkCodec         chunkCodec;
+  private final RegionSectionCodec       sectionCodec;
+  private final RegionPaletteCodec       paletteCodec;
+  private final RegionBlockArrayCodec    blockArrayCodec;
+  private final RegionLegacySectionCodec legacySectionCodec;
+  private final RegionEntityCodec        entityCodec;
+
+  /**
+   * Creates an independent set of codecs for a data-version. Unlike {@link #forVersion(int)}, the
+   * set is never cached, so it should be re-used wherever possible.
+   *
+   * @param dataVersion The Minecraft world version that the codecs should be compatible with.
+   * @param options     Optional behavior for the section codecs to use.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunk sections, or
+   *                                  if the {@code options} are {@code null}.
+   */
+  public RegionCodecs(int dataVersion, SectionCodecOptions options) {
+    if (options == null) {
+      throw new IllegalArgumentException("options cannot be null");
+    }
+
+    this.dataVersion = dataVersion;
+    this.options = options;
+
+    if (RegionSectionCodec.usesPalettes(dataVersion)) {
+      paletteCodec = new RegionPaletteCodec(dataVersion, options.namingStrategy(),
+          options.metrics());
+      blockArrayCodec = new RegionBlockArrayCodec(dataVersion);
+      legacySectionCodec = null;
+    } else {
+      paletteCodec = null;
+      blockArrayCodec = null;
+      legacySectionCodec = new RegionLegacySectionCodec(dataVersion, options);
+    }
+
+    // The section codec shares the other codecs, rather than creating its own.
+    sectionCodec = new RegionSectionCodec(dataVersion, options, paletteCodec, blockArrayCodec,
+        legacySectionCodec);
+    chunkCodec = new RegionChunkCodec(this);
+    entityCodec = new RegionEntityCodec(dataVersion);
+  }
+
+  /**
+   * @return the Minecraft world version that the codecs are compatible with.
+   */
+  public int getCompatibility() {
+    return dataVersion;
+  }
+
+  /**
+   * @return the options used by the set's section codecs.
+   */
+  public SectionCodecOptions options() {
+    return options;
+  }
+
+  /**
+   * @return whether or not the version stores blocks using palettes, as opposed to numeric IDs.
+   * If {@code true}, {@link #paletteCodec()} and {@link #blockArrayCodec()} are available.
+   * Otherwise {@link #legacySectionCodec()} is.
+   */
+  public boolean isFlattened() {
+    return legacySectionCodec == null;
+  }
+
+  /**
+   * @return a codec for whole chunks in the set's version, which handles their sections on the
+   * calling thread. Supported by all versions.
+   * @see RegionChunkCodec#RegionChunkCodec(RegionCodecs, java.util.concurrent.Executor, int)
+   */
+  public RegionChunkCodec chunkCodec() {
+    return chunkCodec;
+  }
+
+  /**
+   * @return a codec for chunk sections in the set's version. Supported by all versions.
+   */
+  public RegionSectionCodec sectionCodec() {
+    return sectionCodec;
+  }
+
+  /**
+   * @return a codec for the entities stored with chunks, or in the {@code entities} directory, in
+   * the set's version. Supported by all versions.
+   */
+  public RegionEntityCodec entityCodec() {
+    return entityCodec;
+  }
+
+  /**
+   * @return a codec for section palettes in the set's version.
+   * @throws UnsupportedOperationException if the version is not {@link #isFlattened() flattened}.
+   */
+  public RegionPaletteCodec paletteCodec() {
+    if (paletteCodec == null) {
+      throw new UnsupportedOperationException("Palettes are not used in version " + dataVersion);
+    }
+    return paletteCodec;
+  }
+
+  /**
+   * @return a codec for compact block arrays in the set's version.
+   * @throws UnsupportedOperationException if the version is not {@link #isFlattened() flattened}.
+   */
+  public RegionBlockArrayCodec blockArrayCodec() {
+    if (blockArrayCodec == null) {
+      throw new UnsupportedOperationException("Compact arrays are not used in version " +
+                                              dataVersion);
+    }
+    return blockArrayCodec;
+  }
+
+  /**
+   * @return a codec for chunk sections that use numeric block IDs.
+   * @throws UnsupportedOperationException if the version is {@link #isFlattened() flattened}.
+   */
+  public RegionLegacySectionCodec legacySectionCodec() {
+    if (legacySectionCodec == null) {
+      throw new UnsupportedOperationException("Numeric IDs are not used in version " +
+                                              dataVersion);
+    }
+    return legacySectionCodec;
+  }
+}
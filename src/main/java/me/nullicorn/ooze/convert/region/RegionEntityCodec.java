@@ -0,0 +1,197 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import me.nullicorn.ooze.convert.VersionedCodec;
+import me.nullicorn.ooze.convert.VersionedTag;
+
+/**
+ * Provides serialization to and from the entities stored with a chunk.
+ * <p><br>
+ * Before data version {@code 2679} (1.17.x), entities were stored in each chunk's own {@link
+ * RegionTag#CHUNK_ENTITIES Entities} list, inside its {@code Level} compound. Since then, they are
+ * stored separately, in region files in the world's {@code entities} directory, whose chunks have a
+ * {@link RegionTag#ENTITY_STORAGE_POS Position} and a root {@link RegionTag#ENTITY_STORAGE_LIST
+ * Entities} list. Both layouts can be decoded by codecs for versions that support them, since
+ * chunks that have not been re-saved since 1.17 still use the old one. Entities are always encoded
+ * in the layout used by the codec's version.
+ * <p><br>
+ * Entities are kept as raw compounds. To find the entities in a particular chunk or section, such
+ * as when joining them with the chunks from a {@link RegionChunkCodec}, add them to an {@link
+ * EntityIndex}.
+ *
+ * @author Nullicorn
+ */
+public class RegionEntityCodec extends VersionedCodec<EntityChunk, NBTCompound> {
+
+  // Chunk NBT tags (not static imports for readability).
+  private static final RegionTag DATA_VERSION_TAG = RegionTag.DATA_VERSION;
+  private static final RegionTag LEVEL_TAG        = RegionTag.CHUNK;
+  private static final RegionTag POS_X_TAG        = RegionTag.CHUNK_POS_X;
+  private static final RegionTag POS_Z_TAG        = RegionTag.CHUNK_POS_Z;
+  private static final RegionTag CHUNK_LIST_TAG   = RegionTag.CHUNK_ENTITIES;
+  private static final RegionTag STORAGE_LIST_TAG = RegionTag.ENTITY_STORAGE_LIST;
+  private static final RegionTag STORAGE_POS_TAG  = RegionTag.ENTITY_STORAGE_POS;
+
+  // Tags that determine which layout the codec uses.
+  private static final long DATA_VERSION_MASK   = RegionTag.maskOf(DATA_VERSION_TAG);
+  private static final long ENTITY_STORAGE_MASK = RegionTag.maskOf(STORAGE_LIST_TAG,
+      STORAGE_POS_TAG);
+
+  private final boolean hasDataVersion;
+  private final boolean hasEntityStorage;
+
+  /**
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}.
+   *
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunks.
+   */
+  public RegionEntityCodec(int dataVersion) {
+    super(dataVersion, RegionTag.supportTable(), LEVEL_TAG, POS_X_TAG, POS_Z_TAG, CHUNK_LIST_TAG);
+
+    hasDataVersion = RegionTag.areAllSupported(DATA_VERSION_MASK, dataVersion);
+    hasEntityStorage = RegionTag.areAllSupported(ENTITY_STORAGE_MASK, dataVersion);
+  }
+
+  /**
+   * @return whether or not the codec's version stores entities in the world's {@code entities}
+   * directory, rather than in each chunk's {@code Level} compound.
+   */
+  public boolean usesEntityStorage() {
+    return hasEntityStorage;
+  }
+
+  /**
+   * Encodes a chunk's entities using the layout for the codec's {@link #getCompatibility()
+   * version}; either a chunk in the {@code entities} directory, or a chunk with only a position
+   * and {@code Entities} list in its {@code Level} compound.
+   *
+   * @throws IllegalArgumentException if the {@code chunk} is {@code null}.
+   */
+  @Override
+  public NBTCompound encode(EntityChunk chunk) {
+    if (chunk == null) {
+      throw new IllegalArgumentException("null cannot be encoded as an entity chunk");
+    }
+
+    NBTList entities = new NBTList(TagType.COMPOUND);
+    entities.addAll(chunk.getEntities());
+
+    NBTCompound root = new NBTCompound();
+    if (hasDataVersion) {
+      setTagValue(DATA_VERSION_TAG, dataVersion, root);
+    }
+
+    if (hasEntityStorage) {
+      setTagValue(STORAGE_POS_TAG, new int[]{chunk.getX(), chunk.getZ()}, root);
+      setTagValue(STORAGE_LIST_TAG, entities, root);
+    } else {
+      NBTCompound level = new NBTCompound();
+      setTagValue(POS_X_TAG, chunk.getX(), level);
+      setTagValue(POS_Z_TAG, chunk.getZ(), level);
+      setTagValue(CHUNK_LIST_TAG, entities, level);
+      setTagValue(LEVEL_TAG, level, root);
+    }
+    return root;
+  }
+
+  /**
+   * Decodes the entities of a chunk, in either layout. Chunks with a {@link
+   * RegionTag#ENTITY_STORAGE_POS Position} are read as chunks from the {@code entities} directory,
+   * if the codec's version has one; otherwise, entities are read from the chunk's {@code Level}
+   * compound. Chunks without an {@code Entities} list have no entities.
+   *
+   * @throws IllegalArgumentException if the {@code encoded} compound is {@code null}.
+   * @throws MalformedInputException  if the chunk's {@code DataVersion} does not match the codec's,
+   *                                  if the chunk is missing its position or {@code Level}, or if
+   *                                  its {@code Entities} list contains anything except compounds.
+   */
+  @Override
+  public EntityChunk decode(NBTCompound encoded) throws IOException {
+    if (encoded == null) {
+      throw new IllegalArgumentException("null cannot be decoded as an entity chunk");
+    }
+
+    if (hasDataVersion) {
+      int chunkVersion = getInt(DATA_VERSION_TAG, encoded, dataVersion);
+      if (chunkVersion != dataVersion) {
+        throw new MalformedInputException("entity chunk",
+            "DataVersion " + chunkVersion + " cannot be decoded by codec for " + dataVersion);
+      }
+    }
+
+    int[] storagePos = hasEntityStorage ? getIntArray(STORAGE_POS_TAG, encoded) : null;
+    if (storagePos != null) {
+      if (storagePos.length != 2) {
+        throw new MalformedInputException("entity chunk",
+            STORAGE_POS_TAG + " must have 2 elements, not " + storagePos.length);
+      }
+      return new EntityChunk(storagePos[0], storagePos[1],
+          getEntities(STORAGE_LIST_TAG, encoded));
+    }
+
+    NBTCompound level = getCompound(LEVEL_TAG, encoded);
+    if (level == null) {
+      throw new MalformedInputException("entity chunk", "missing " + LEVEL_TAG);
+    }
+
+    if (!hasInt(POS_X_TAG, level) || !hasInt(POS_Z_TAG, level)) {
+      throw new MalformedInputException("entity chunk", "missing position");
+    }
+    int chunkX = getInt(POS_X_TAG, level, 0);
+    int chunkZ = getInt(POS_Z_TAG, level, 0);
+    return new EntityChunk(chunkX, chunkZ, getEntities(CHUNK_LIST_TAG, level));
+  }
+
+  /**
+   * Reads the entities retained by a chunk that was decoded with {@link RegionTag#CHUNK_ENTITIES}
+   * in its {@link RegionChunkCodec#decode(NBTCompound, java.util.Set) projection}.
+   *
+   * @return the chunk's entities, which is empty if the chunk did not retain an {@code Entities}
+   * list.
+   * @throws IllegalArgumentException if the {@code chunk} is {@code null}.
+   * @throws MalformedInputException  if the chunk's {@code Entities} list contains anything except
+   *                                  compounds.
+   */
+  public EntityChunk decode(RegionChunk chunk) throws MalformedInputException {
+    if (chunk == null) {
+      throw new IllegalArgumentException("null cannot be decoded as an entity chunk");
+    }
+
+    NBTCompound level = new NBTCompound();
+    Object entities = chunk.getTag(RegionTag.CHUNK_ENTITIES);
+    if (entities != null) {
+      level.put(CHUNK_LIST_TAG.getName(), entities);
+    }
+    return new EntityChunk(chunk.getX(), chunk.getZ(), getEntities(CHUNK_LIST_TAG, level));
+  }
+
+  /**
+   * @return the compounds in an entity list {@code tag}. An empty list is returned if the {@code
+   * parent} does not have the tag.
+   * @throws MalformedInputException if the entity list contains anything except compounds.
+   */
+  private List<NBTCompound> getEntities(VersionedTag tag, NBTCompound parent)
+      throws MalformedInputException {
+    NBTList entityList = getList(tag, parent);
+    if (entityList == null) {
+      // Empty lists are often written as TAG_End lists, so those are allowed.
+      Object rawEntities = parent.get(tag.getName());
+      if (rawEntities instanceof NBTList && !((NBTList) rawEntities).isEmpty()) {
+        throw new MalformedInputException("entity chunk", tag + " must contain compounds");
+      }
+      return new ArrayList<>();
+    }
+
+    List<NBTCompound> entities = new ArrayList<>(entityList.size());
+    for (int i = 0; i < entityList.size(); i++) {
+      entities.add(entityList.getCompound(i));
+    }
+    return entities;
+  }
+}
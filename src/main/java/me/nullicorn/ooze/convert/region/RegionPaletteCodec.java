@@ -3,10 +3,10 @@ package me.nullicorn.ooze.convert.region;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 import me.nullicorn.nedit.type.NBTCompound;
 import me.nullicorn.nedit.type.NBTList;
 import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.CodecMetrics;
 import me.nullicorn.ooze.convert.VersionedCodec;
 import me.nullicorn.ooze.level.BlockState;
 import me.nullicorn.ooze.level.Palette;
@@ -19,16 +19,55 @@ import me.nullicorn.ooze.level.Palette;
 public class RegionPaletteCodec extends VersionedCodec<Palette, NBTList> {
 
   private final RegionBlockStateCodec blockStateCodec;
+  private final PaletteNamingStrategy namingStrategy;
+  private final CodecMetrics          metrics;
 
   /**
-   * Creates a codec compatible with a specific Minecraft {@code dataVersion}.
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}. Decoded palettes are
+   * named using the {@link PaletteNamingStrategy#contentHash() content-hash} strategy.
    *
    * @throws IllegalArgumentException if the {@code dataVersion} does not support palettes.
    */
   public RegionPaletteCodec(int dataVersion) {
-    super(dataVersion, RegionTag.PALETTE);
+    this(dataVersion, PaletteNamingStrategy.contentHash());
+  }
+
+  /**
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}.
+   *
+   * @param namingStrategy Determines the name of each palette returned by {@link #decode(NBTList)
+   *                       decode()}.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support palettes, or if
+   *                                  the {@code namingStrategy} is {@code null}.
+   */
+  public RegionPaletteCodec(int dataVersion, PaletteNamingStrategy namingStrategy) {
+    this(dataVersion, namingStrategy, CodecMetrics.none());
+  }
+
+  /**
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}, which reports each
+   * palette it encodes & decodes to the {@code metrics}.
+   *
+   * @param namingStrategy Determines the name of each palette returned by {@link #decode(NBTList)
+   *                       decode()}.
+   * @param metrics        The listener to report palettes to.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support palettes, or if
+   *                                  the {@code namingStrategy} or {@code metrics} are {@code
+   *                                  null}.
+   */
+  public RegionPaletteCodec(int dataVersion, PaletteNamingStrategy namingStrategy,
+      CodecMetrics metrics) {
+    super(dataVersion, RegionTag.supportTable(), RegionTag.PALETTE);
+
+    if (namingStrategy == null) {
+      throw new IllegalArgumentException("namingStrategy cannot be null");
+    } else if (metrics == null) {
+      throw new IllegalArgumentException("metrics cannot be null");
+    }
 
     this.blockStateCodec = new RegionBlockStateCodec(dataVersion);
+    this.namingStrategy = namingStrategy;
+    this.metrics = metrics;
   }
 
   /**
@@ -49,16 +88,52 @@ public class RegionPaletteCodec extends VersionedCodec<Palette, NBTList> {
       throw new IllegalArgumentException("null cannot be encoded as a palette");
     }
 
+    boolean isMeasured = metrics.isEnabled();
+
+    long start = isMeasured ? System.nanoTime() : 0;
     NBTList encodedPalette = new NBTList(TagType.COMPOUND);
     palette.forEach(state ->
         encodedPalette.add(blockStateCodec.encode(state))
     );
+
+    if (isMeasured) {
+      metrics.paletteEncoded(dataVersion, encodedPalette.size(), System.nanoTime() - start);
+    }
+    return encodedPalette;
+  }
+
+  /**
+   * Same as {@link #encode(Palette)}, but the palette's states are supplied directly, in order.
+   *
+   * @param states The states to be encoded.
+   * @return an NBT-encoded palette containing all of the states.
+   * @throws IllegalArgumentException if the list of states is {@code null}.
+   */
+  public NBTList encode(List<BlockState> states) {
+    if (states == null) {
+      throw new IllegalArgumentException("null cannot be encoded as a palette");
+    }
+
+    boolean isMeasured = metrics.isEnabled();
+
+    long start = isMeasured ? System.nanoTime() : 0;
+    NBTList encodedPalette = new NBTList(TagType.COMPOUND);
+    for (BlockState state : states) {
+      encodedPalette.add(blockStateCodec.encode(state));
+    }
+
+    if (isMeasured) {
+      metrics.paletteEncoded(dataVersion, encodedPalette.size(), System.nanoTime() - start);
+    }
     return encodedPalette;
   }
 
   /**
    * Creates a new palette with all of the block states indicated by a list of NBT compounds. The
    * expected format is described {@link #encode(Palette) here}.
+   * <p><br>
+   * The palette's name is determined by the codec's {@link PaletteNamingStrategy naming
+   * strategy}.
    *
    * @param palette a list of NBT-encoded block states.
    * @return the palette defined by the input list.
@@ -76,13 +151,57 @@ public class RegionPaletteCodec extends VersionedCodec<Palette, NBTList> {
       throw new IOException("Palette must be a list of compounds, not " + palette.getContentType());
     }
 
+    boolean isMeasured = metrics.isEnabled();
+
+    long start = isMeasured ? System.nanoTime() : 0;
     List<BlockState> states = new ArrayList<>(palette.size());
     for (Object entry : palette) {
       BlockState state = blockStateCodec.decode((NBTCompound) entry);
       states.add(state);
     }
 
-    String name = "ooze:" + UUID.randomUUID().toString();
-    return new Palette(name, dataVersion, states);
+    String name = namingStrategy.nameOf(dataVersion, states);
+    Palette decoded = new Palette(name, dataVersion, states);
+
+    if (isMeasured) {
+      metrics.paletteDecoded(dataVersion, states.size(), System.nanoTime() - start);
+    }
+    return decoded;
+  }
+
+  /**
+   * Creates a new palette from states that have already been decoded, named using the codec's
+   * {@link PaletteNamingStrategy naming strategy}.
+   *
+   * @param states The palette's states, in order. The list is copied.
+   * @return a palette containing the states.
+   * @throws IllegalArgumentException if the list of states is {@code null}.
+   */
+  Palette decodeStates(List<BlockState> states) {
+    if (states == null) {
+      throw new IllegalArgumentException("null cannot be decoded as a palette");
+    }
+
+    boolean isMeasured = metrics.isEnabled();
+
+    long start = isMeasured ? System.nanoTime() : 0;
+    List<BlockState> statesCopy = new ArrayList<>(states);
+    String name = namingStrategy.nameOf(dataVersion, statesCopy);
+    Palette decoded = new Palette(name, dataVersion, statesCopy);
+
+    if (isMeasured) {
+      metrics.paletteDecoded(dataVersion, statesCopy.size(), System.nanoTime() - start);
+    }
+    return decoded;
+  }
+
+  /**
+   * Decodes a single entry of an NBT palette.
+   *
+   * @throws IOException if the state has no {@code Name} tag.
+   * @see RegionBlockStateCodec#decode(NBTCompound)
+   */
+  BlockState decodeState(NBTCompound state) throws IOException {
+    return blockStateCodec.decode(state);
   }
 }
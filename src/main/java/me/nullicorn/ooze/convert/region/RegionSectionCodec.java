@@ -1,14 +1,20 @@
 package me.nullicorn.ooze.convert.region;
 
 import java.io.IOException;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import me.nullicorn.nedit.type.NBTCompound;
 import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.CodecMetrics;
 import me.nullicorn.ooze.convert.MalformedInputException;
 import me.nullicorn.ooze.convert.VersionedCodec;
-import me.nullicorn.ooze.convert.VersionedTag;
 import me.nullicorn.ooze.convert.region.legacy.RegionLegacySectionCodec;
 import me.nullicorn.ooze.convert.region.storage.RegionUIntArray;
+import me.nullicorn.ooze.level.BitHelper;
+import me.nullicorn.ooze.level.BlockState;
 import me.nullicorn.ooze.level.Cell;
 import me.nullicorn.ooze.level.PackedUIntArray;
 import me.nullicorn.ooze.level.Palette;
@@ -26,10 +32,43 @@ public class RegionSectionCodec extends VersionedCodec<Cell, NBTCompound> {
    */
   private static final int BLOCKS_PER_CELL = 4096;
 
+  /**
+   * The block array used by sections with a single state. Shared because it is always empty.
+   */
+  private static final long[] NO_WORDS = new long[0];
+
+  /**
+   * The blocks of every section decoded with a single state. Shared because block arrays are never
+   * modified once created, and because every value is {@code 0}.
+   */
+  private static final PackedUIntArray ZERO_BLOCKS = new PackedUIntArray(new int[BLOCKS_PER_CELL]);
+
+  /**
+   * The fewest bits per block that vanilla uses in its block arrays.
+   */
+  private static final int MIN_VANILLA_MAGNITUDE = 4;
+
+  /**
+   * The name given to palettes that are compacted during encoding. The name is never encoded, so
+   * it is the same for all of them.
+   */
+  private static final String COMPACTED_PALETTE_NAME = "ooze:compacted";
+
   // Chunk section NBT tags (not static imports for readability).
-  private static final VersionedTag BLOCKS_TAG   = RegionTag.BLOCKS;
-  private static final VersionedTag PALETTE_TAG  = RegionTag.PALETTE;
-  private static final VersionedTag ALTITUDE_TAG = RegionTag.SECTION_ALTITUDE;
+  private static final RegionTag BLOCKS_TAG   = RegionTag.BLOCKS;
+  private static final RegionTag PALETTE_TAG  = RegionTag.PALETTE;
+  private static final RegionTag ALTITUDE_TAG = RegionTag.SECTION_ALTITUDE;
+
+  /**
+   * The tags used by sections that store their blocks using palettes.
+   */
+  private static final long PALETTE_TAGS = RegionTag.maskOf(PALETTE_TAG, BLOCKS_TAG);
+
+  // Palette entry NBT tags, used to check for empty states without decoding them.
+  private static final RegionTag STATE_NAME_TAG       = RegionTag.BLOCK_NAME;
+  private static final RegionTag STATE_PROPERTIES_TAG = RegionTag.BLOCK_PROPERTIES;
+
+  private final SectionCodecOptions options;
 
   // Sub-codecs.
   private final RegionPaletteCodec    paletteCodec;
@@ -39,81 +78,642 @@ public class RegionSectionCodec extends VersionedCodec<Cell, NBTCompound> {
   private final boolean                  doUseLegacyCodec;
   private final RegionLegacySectionCodec legacySectionCodec;
 
+  /**
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}, using the {@link
+   * SectionCodecOptions#defaults() default options}.
+   *
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunk sections.
+   */
   public RegionSectionCodec(int dataVersion) {
-    super(dataVersion, ALTITUDE_TAG);
+    this(dataVersion, SectionCodecOptions.defaults());
+  }
+
+  /**
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}.
+   *
+   * @param options Optional behavior for the codec to use when encoding & decoding.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunk sections, or
+   *                                  if the {@code options} are {@code null}.
+   */
+  public RegionSectionCodec(int dataVersion, SectionCodecOptions options) {
+    this(dataVersion, options, null, null, null);
+  }
 
-    boolean doUseModernCodec = (PALETTE_TAG.isSupported(dataVersion));
+  /**
+   * Same as {@link #RegionSectionCodec(int, SectionCodecOptions)}, but re-uses existing
+   * sub-codecs where possible, instead of constructing new ones. Any sub-codecs that are {@code
+   * null} are created as-needed.
+   *
+   * @see RegionCodecs
+   */
+  RegionSectionCodec(int dataVersion,
+      SectionCodecOptions options,
+      RegionPaletteCodec paletteCodec,
+      RegionBlockArrayCodec blockArrayCodec,
+      RegionLegacySectionCodec legacySectionCodec) {
+    super(dataVersion, RegionTag.supportTable(), ALTITUDE_TAG);
+
+    if (options == null) {
+      throw new IllegalArgumentException("options cannot be null");
+    }
+    this.options = options;
+
+    boolean doUseModernCodec = usesPalettes(dataVersion);
 
     if (doUseModernCodec) {
-      paletteCodec = new RegionPaletteCodec(dataVersion);
-      blockArrayCodec = new RegionBlockArrayCodec(dataVersion);
-      legacySectionCodec = null;
+      this.paletteCodec = paletteCodec != null
+          ? paletteCodec
+          : new RegionPaletteCodec(dataVersion, options.namingStrategy(), options.metrics());
+      this.blockArrayCodec = blockArrayCodec != null
+          ? blockArrayCodec
+          : new RegionBlockArrayCodec(dataVersion);
+      this.legacySectionCodec = null;
     } else {
-      paletteCodec = null;
-      blockArrayCodec = null;
-      legacySectionCodec = new RegionLegacySectionCodec(dataVersion);
+      this.paletteCodec = null;
+      this.blockArrayCodec = null;
+      this.legacySectionCodec = legacySectionCodec != null
+          ? legacySectionCodec
+          : new RegionLegacySectionCodec(dataVersion, options);
     }
     doUseLegacyCodec = !doUseModernCodec;
   }
 
+  /**
+   * Encodes a {@code cell} as a chunk section, using the vanilla format for the codec's {@link
+   * #getCompatibility() version}.
+   * <p><br>
+   * Like in vanilla, the encoded section always has its own independent palette. If the {@code
+   * cell}'s palette contains any states that none of its blocks use, an {@link Cell#isolatedCopy()
+   * isolated copy} of the cell is encoded instead. Otherwise, the cell is encoded as-is.
+   * <p><br>
+   * If the codec's options {@link SectionCodecOptions#withEmptySectionElision(boolean) elide empty
+   * sections}, cells made entirely of empty states are encoded as a compound with no palette or
+   * blocks, which callers may drop.
+   *
+   * @throws IllegalArgumentException if the {@code cell} is {@code null}.
+   * @see #encodeIsolated(Cell)
+   */
   @Override
   public NBTCompound encode(Cell cell) throws IOException {
+    return encode(cell, false);
+  }
+
+  /**
+   * Same as {@link #encode(Cell)}, but the {@code cell} is trusted to already be isolated, so no
+   * copy is ever made.
+   * <p><br>
+   * A cell is isolated if each state in its palette is used by at least one of its blocks, and if
+   * none of its blocks point to states outside of its palette. Cells returned by {@link
+   * #decode(NBTCompound) decode()} meet the second requirement, and usually the first; unused
+   * states are still encoded, but waste space in the output.
+   *
+   * @param cell A cell that is known to be isolated.
+   * @throws IllegalArgumentException if the {@code cell} is {@code null}.
+   */
+  public NBTCompound encodeIsolated(Cell cell) throws IOException {
+    return encode(cell, true);
+  }
+
+  /**
+   * Implementation of {@link #encode(Cell)} and {@link #encodeIsolated(Cell)}.
+   *
+   * @param isIsolated Whether or not the {@code cell} is trusted to be isolated.
+   */
+  private NBTCompound encode(Cell cell, boolean isIsolated) throws IOException {
     if (doUseLegacyCodec) {
+      // The legacy codec reports its own metrics.
       return legacySectionCodec.encode(cell);
     } else if (cell == null) {
       throw new IllegalArgumentException("null cannot be encoded as a chunk section");
     }
-    NBTCompound section = new NBTCompound();
+
+    CodecMetrics metrics = options.metrics();
+    if (!metrics.isEnabled()) {
+      return encodeSection(cell, isIsolated);
+    }
+
+    long start = System.nanoTime();
+    NBTCompound section = encodeSection(cell, isIsolated);
+    long nanos = System.nanoTime() - start;
+
+    NBTList palette = getList(PALETTE_TAG, section);
+    long[] words = getLongArray(BLOCKS_TAG, section);
+    int paletteSize = palette != null ? palette.size() : 0;
+    metrics.sectionEncoded(dataVersion, paletteSize, magnitudeOf(paletteSize), false,
+        words != null ? words.length * Long.BYTES : 0, nanos);
+    return section;
+  }
+
+  /**
+   * Encodes a non-null {@code cell} in a version that uses palettes.
+   *
+   * @see #encode(Cell, boolean)
+   */
+  private NBTCompound encodeSection(Cell cell, boolean isIsolated) throws IOException {
+    // Empty sections are elided by leaving out their palette & blocks.
+    if (options.elidesEmptySections() && options.isEmptyCell(cell)) {
+      return new NBTCompound();
+    }
+
+    // Sections made of a single state don't need their blocks to be encoded.
+    int uniformState = findUniformState(cell);
+    if (uniformState != -1) {
+      return encodeSingleState(cell.getPalette().get(uniformState));
+    }
+
+    // Compacted palettes are always isolated, so no copy is needed.
+    if (options.compactsPalettes()) {
+      return encodeCompacted(cell);
+    }
 
     // Make sure the section has its own independent palette, just like in vanilla.
-    cell = cell.isolatedCopy();
+    if (!isIsolated && !isIsolated(cell)) {
+      cell = cell.isolatedCopy();
+    }
+
+    return encodeBlocks(cell);
+  }
+
+  /**
+   * Encodes a section where every block has the same {@code state}. The section's palette only
+   * contains that state, and its block array is empty, given that {@code 0} bits are needed to
+   * index a single-state palette.
+   */
+  private NBTCompound encodeSingleState(BlockState state) {
+    NBTCompound section = new NBTCompound();
+    setTagValue(PALETTE_TAG, paletteCodec.encode(Collections.singletonList(state)), section);
+    setTagValue(BLOCKS_TAG, NO_WORDS, section);
+    return section;
+  }
+
+  /**
+   * Encodes a {@code cell} with its palette {@link SectionCodecOptions#withPaletteCompaction(boolean)
+   * compacted}.
+   * <p><br>
+   * Each state's usage is counted in a single pass over the blocks. Unused states are then dropped,
+   * and the rest are ordered by usage (most used first), with ties broken by their original order.
+   * Blocks are re-indexed directly into the output array.
+   *
+   * @throws IOException if any of the cell's blocks point outside its palette.
+   */
+  private NBTCompound encodeCompacted(Cell cell) throws IOException {
+    Palette srcPalette = cell.getPalette();
+    PackedUIntArray srcBlocks = cell.getBlocks();
+    int srcPaletteSize = srcPalette.size();
+
+    // Count how many blocks use each state.
+    int[] usages = new int[srcPaletteSize];
+    int usedStateCount = 0;
+    for (int i = 0; i < srcBlocks.size(); i++) {
+      int stateIndex = srcBlocks.get(i);
+      if (stateIndex < 0 || stateIndex >= srcPaletteSize) {
+        throw new IOException("Palette index is out of bounds (i=" + i + "): " + stateIndex);
+      }
+
+      if (usages[stateIndex]++ == 0) {
+        usedStateCount++;
+      }
+    }
+
+    // Sort the used states by usage. Each key holds the state's usage in the upper 32 bits, and its
+    // inverted index in the lower 32, so that ascending order puts the least used states first,
+    // and the earliest states last among those with equal usage.
+    long[] sortKeys = new long[usedStateCount];
+    for (int stateIndex = 0, keyIndex = 0; stateIndex < srcPaletteSize; stateIndex++) {
+      if (usages[stateIndex] != 0) {
+        sortKeys[keyIndex++] = ((long) usages[stateIndex] << Integer.SIZE)
+                               | (Integer.MAX_VALUE - stateIndex);
+      }
+    }
+    Arrays.sort(sortKeys);
+
+    // Build the compacted palette by iterating the keys backwards (most used first).
+    int[] newIndices = new int[srcPaletteSize];
+    List<BlockState> states = new ArrayList<>(usedStateCount);
+    for (int keyIndex = sortKeys.length - 1; keyIndex >= 0; keyIndex--) {
+      int stateIndex = Integer.MAX_VALUE - (int) sortKeys[keyIndex];
+      newIndices[stateIndex] = states.size();
+      states.add(srcPalette.get(stateIndex));
+    }
+    Palette palette = new Palette(COMPACTED_PALETTE_NAME, dataVersion, states);
+
+    // Re-index the blocks straight into the output array.
+    RegionUIntArray blocks = RegionUIntArray.from(srcBlocks.size(), palette.magnitude(),
+        dataVersion);
+    for (int i = 0; i < srcBlocks.size(); i++) {
+      blocks.set(i, newIndices[srcBlocks.get(i)]);
+    }
+
+    NBTCompound section = new NBTCompound();
+    setTagValue(PALETTE_TAG, paletteCodec.encode(states), section);
+    setTagValue(BLOCKS_TAG, blocks.words(), section);
+    return section;
+  }
+
+  /**
+   * Encodes the palette & blocks of an {@link #encodeIsolated(Cell) isolated} {@code cell} as-is.
+   */
+  private NBTCompound encodeBlocks(Cell cell) {
+    NBTCompound section = new NBTCompound();
 
     Palette palette = cell.getPalette();
     PackedUIntArray blocks = cell.getBlocks();
 
     // Encode the palette & block array, then add them to the output NBT,
     setTagValue(PALETTE_TAG, paletteCodec.encode(palette), section);
-    setTagValue(BLOCKS_TAG, blockArrayCodec.encode(blocks), section);
+    // The palette's magnitude is used so that the array can be decoded using the same palette.
+    setTagValue(BLOCKS_TAG, blockArrayCodec.encode(blocks, palette.magnitude()).words(), section);
 
     return section;
   }
 
+  /**
+   * @return whether the {@code section} has a palette or block array, meaning it is not empty.
+   * Sections without either, such as those that only store light, always decode to {@link
+   * Cell#empty()}.
+   * @throws IllegalArgumentException if the {@code section} is {@code null}.
+   */
+  boolean hasBlocks(NBTCompound section) {
+    if (doUseLegacyCodec) {
+      return legacySectionCodec.hasBlocks(section);
+    } else if (section == null) {
+      throw new IllegalArgumentException("null section cannot have blocks");
+    }
+    return section.containsKey(PALETTE_TAG.getName()) || section.containsKey(BLOCKS_TAG.getName());
+  }
+
   @Override
   public Cell decode(NBTCompound section) throws IOException {
     if (doUseLegacyCodec) {
+      // The legacy codec reports its own metrics.
       return legacySectionCodec.decode(section);
     } else if (section == null) {
       throw new IllegalArgumentException("null cannot be decoded as a cell");
     }
 
     // Read the NBT tags from the section.
-    Optional<long[]> nbtBlocks = getTagValue(BLOCKS_TAG, section);
-    Optional<NBTList> nbtPalette = getTagValue(PALETTE_TAG, section);
+    long[] words = getLongArray(BLOCKS_TAG, section);
+    NBTList paletteList = getList(PALETTE_TAG, section);
+
+    CodecMetrics metrics = options.metrics();
+    if (!metrics.isEnabled()) {
+      return decodeSection(paletteList, words);
+    }
 
-    if (!nbtBlocks.isPresent() && !nbtPalette.isPresent()) {
+    long start = System.nanoTime();
+    Cell cell = decodeSection(paletteList, words);
+    reportDecoded(cell, words, System.nanoTime() - start);
+    return cell;
+  }
+
+  /**
+   * Decodes a section's {@code paletteList} and block array in a version that uses palettes.
+   *
+   * @see #decode(NBTCompound)
+   */
+  private Cell decodeSection(NBTList paletteList, long[] words) throws IOException {
+
+    if (words == null && paletteList == null) {
       // It's normal for there to be no blocks and palette. It just means the section is empty.
       return Cell.empty();
+    }
+    checkTags(paletteList != null ? paletteList.size() : -1, words);
+
+    // Sections with only empty states in their palette are elided.
+    if (options.elidesEmptySections() && isEmptyPalette(paletteList)) {
+      return Cell.empty();
+    }
+
+    // If every block uses the first state (e.g. a single-state palette, or all-zero words), the
+    // block array can be skipped, along with any other states in the palette.
+    if (isSingleState(paletteList.size(), words)) {
+      NBTList singleStateList = paletteList;
+      if (paletteList.size() != 1) {
+        singleStateList = new NBTList(TagType.COMPOUND);
+        singleStateList.add(paletteList.getCompound(0));
+      }
+
+      return decodeSingleState(paletteCodec.decode(singleStateList));
+    }
+
+    return decodeBlocks(paletteCodec.decode(paletteList), words);
+  }
+
+  /**
+   * Same as {@link #decode(NBTCompound)}, but the section's blocks & palette states are only
+   * decoded when they are accessed. The section's tags are still checked up-front, so malformed
+   * sections are reported by this method, rather than by the returned cell (except for malformed
+   * palette states).
+   * <p><br>
+   * Sections in versions that do not use palettes, as well as empty or {@link
+   * SectionCodecOptions#withEmptySectionElision(boolean) elided} sections, are decoded eagerly.
+   * The {@code section}'s palette compounds are used as-is, so they must not be modified while the
+   * returned cell is in use.
+   *
+   * @throws IllegalArgumentException if the {@code section} is {@code null}.
+   * @throws IOException              if only one of the palette and block array is present, if the
+   *                                  palette is empty, or if the block array has the wrong length.
+   * @see LazyCell
+   */
+  public LazyCell decodeLazily(NBTCompound section) throws IOException {
+    if (doUseLegacyCodec) {
+      return LazyCell.of(legacySectionCodec.decode(section));
+    } else if (section == null) {
+      throw new IllegalArgumentException("null cannot be decoded as a cell");
+    }
+
+    long[] words = getLongArray(BLOCKS_TAG, section);
+    NBTList paletteList = getList(PALETTE_TAG, section);
+
+    if (words == null && paletteList == null) {
+      return LazyCell.of(Cell.empty());
+    }
+    checkTags(paletteList != null ? paletteList.size() : -1, words);
+
+    if (options.elidesEmptySections() && isEmptyPalette(paletteList)) {
+      return LazyCell.of(Cell.empty());
+    }
+
+    List<NBTCompound> encodedStates = new ArrayList<>(paletteList.size());
+    for (int i = 0; i < paletteList.size(); i++) {
+      encodedStates.add(paletteList.getCompound(i));
+    }
+
+    if (isSingleState(encodedStates.size(), words)) {
+      return new LazyCell(paletteCodec, encodedStates.subList(0, 1), null);
+    }
+
+    // Same as the palette's magnitude; the number of bits needed for its last index.
+    int magnitude = BitHelper.widthInBits(encodedStates.size() - 1);
+    RegionUIntArray blocks;
+    try {
+      blocks = RegionUIntArray.from(BLOCKS_PER_CELL, magnitude, words, dataVersion);
+    } catch (IllegalArgumentException e) {
+      throw new MalformedInputException("block array", e);
+    }
+    return new LazyCell(paletteCodec, encodedStates, blocks);
+  }
+
+  /**
+   * Same as {@link #decode(NBTCompound)}, but the section's palette and block array are supplied
+   * directly, rather than in a compound. This allows sections to be decoded without their NBT
+   * being fully parsed first.
+   *
+   * @param states The section's decoded palette states, in order, or {@code null} if it has no
+   *               palette.
+   * @param words  The section's {@code BlockStates} array, or {@code null} if it has none.
+   * @return the decoded cell, or {@link Cell#empty()} if the section has no blocks (or is {@link
+   * SectionCodecOptions#withEmptySectionElision(boolean) elided}).
+   * @throws UnsupportedOperationException if the codec's version does not use palettes. In that
+   *                                       case, {@link RegionLegacySectionCodec#decode(byte[],
+   *                                       byte[], byte[])} should be used instead.
+   * @throws IOException                   if only one of the palette and block array is present,
+   *                                       if the palette is empty, or if the block array has the
+   *                                       wrong length.
+   */
+  public Cell decode(List<BlockState> states, long[] words) throws IOException {
+    if (doUseLegacyCodec) {
+      throw new UnsupportedOperationException("Palettes are not used in version " + dataVersion);
+    }
+
+    CodecMetrics metrics = options.metrics();
+    if (!metrics.isEnabled()) {
+      return decodeSection(states, words);
+    }
+
+    long start = System.nanoTime();
+    Cell cell = decodeSection(states, words);
+    reportDecoded(cell, words, System.nanoTime() - start);
+    return cell;
+  }
+
+  /**
+   * Implementation of {@link #decode(List, long[])}.
+   */
+  private Cell decodeSection(List<BlockState> states, long[] words) throws IOException {
+    if (words == null && states == null) {
+      return Cell.empty();
+    }
+    checkTags(states != null ? states.size() : -1, words);
+
+    if (options.elidesEmptySections() && isEmptyPalette(states)) {
+      return Cell.empty();
+    }
+
+    if (isSingleState(states.size(), words)) {
+      return decodeSingleState(paletteCodec.decodeStates(states.subList(0, 1)));
+    }
+
+    return decodeBlocks(paletteCodec.decodeStates(states), words);
+  }
+
+  /**
+   * Reports a section that was decoded in {@code nanos} to the options' metrics.
+   *
+   * @param words The section's block array, or {@code null} if it has none.
+   */
+  private void reportDecoded(Cell cell, long[] words, long nanos) {
+    int paletteSize = cell.getPalette().size();
+    options.metrics().sectionDecoded(dataVersion, paletteSize, magnitudeOf(paletteSize), false,
+        words != null ? words.length * Long.BYTES : 0, nanos);
+  }
 
-    } else if (!nbtBlocks.isPresent()) {
+  /**
+   * @return the number of bits needed to index a palette with {@code paletteSize} states.
+   */
+  private static int magnitudeOf(int paletteSize) {
+    return paletteSize > 1 ? BitHelper.widthInBits(paletteSize - 1) : 0;
+  }
+
+  /**
+   * @return {@code true} if sections in the {@code dataVersion} store their blocks using a palette
+   * & block array. Otherwise {@code false}, meaning they use numeric IDs.
+   */
+  static boolean usesPalettes(int dataVersion) {
+    return RegionTag.areAllSupported(PALETTE_TAGS, dataVersion);
+  }
+
+  /**
+   * Checks that a section has both a palette and a block array, given that it has at least one of
+   * them.
+   *
+   * @param paletteSize The number of states in the section's palette, or {@code -1} if it has no
+   *                    palette.
+   * @throws MalformedInputException if either tag is missing, or if the palette is empty.
+   */
+  private static void checkTags(int paletteSize, long[] words) throws MalformedInputException {
+    if (words == null) {
       // Palette w/o blocks is probably bad.
       throw new MalformedInputException("chunk section", "has palette, but no blocks");
 
-    } else if (!nbtPalette.isPresent()) {
+    } else if (paletteSize == -1) {
       // Blocks w/o palette is definitely bad.
       throw new MalformedInputException("chunk section", "has blocks, but no palette");
+
+    } else if (paletteSize == 0) {
+      throw new MalformedInputException("chunk section", "has blocks, but palette is empty");
     }
+  }
 
-    // Decode the palette.
-    Palette palette = paletteCodec.decode(nbtPalette.get());
+  /**
+   * @return {@code true} if every block in a section uses the first state in its palette, either
+   * because there is only one state, or because all of the {@code words} are zero. Otherwise
+   * {@code false}, including if the block array has the wrong length for the palette.
+   */
+  private boolean isSingleState(int paletteSize, long[] words) {
+    if (!hasExpectedLength(paletteSize, words)) {
+      // Left for decodeBlocks() to report.
+      return false;
+    }
+    return paletteSize == 1 || (words.length > 0 && isAllZeros(words));
+  }
 
-    // Decode the block array.
-    RegionUIntArray regionBlockArray = RegionUIntArray.from(
-        BLOCKS_PER_CELL,
-        palette.magnitude(),
-        nbtBlocks.get(),
-        dataVersion);
-    PackedUIntArray blocks = blockArrayCodec.decode(regionBlockArray);
+  /**
+   * Determines whether or not a block array has the number of {@code words} needed to index a
+   * palette with {@code paletteSize} states. Both the codec's own layout, which uses as few bits as
+   * possible, and vanilla's padded layout, which uses at least {@link #MIN_VANILLA_MAGNITUDE} bits
+   * per block, are accepted.
+   */
+  private boolean hasExpectedLength(int paletteSize, long[] words) {
+    int magnitude = magnitudeOf(paletteSize);
+    int paddedMagnitude = Math.max(MIN_VANILLA_MAGNITUDE, magnitude);
+
+    int minimalLength = RegionUIntArray.wordsNeeded(BLOCKS_PER_CELL, magnitude, dataVersion);
+    int paddedLength = RegionUIntArray.wordsNeeded(BLOCKS_PER_CELL, paddedMagnitude, dataVersion);
+    return words.length == minimalLength || words.length == paddedLength;
+  }
+
+  /**
+   * @return a cell where every block uses the only state in the {@code palette}.
+   */
+  private static Cell decodeSingleState(Palette palette) {
+    return new Cell(palette, ZERO_BLOCKS);
+  }
+
+  /**
+   * Decodes a section's block array, whose values point to states in the {@code palette}.
+   *
+   * @throws MalformedInputException if the array has the wrong number of {@code words} for the
+   *                                 palette's size.
+   */
+  private Cell decodeBlocks(Palette palette, long[] words) throws MalformedInputException {
+    RegionUIntArray regionBlockArray;
+    try {
+      regionBlockArray = RegionUIntArray.from(BLOCKS_PER_CELL, palette.magnitude(), words,
+          dataVersion);
+    } catch (IllegalArgumentException e) {
+      throw new MalformedInputException("block array", e);
+    }
+
+    SectionScratch scratch = SectionScratch.of(options);
+    int[] values = scratch.borrowInts(BLOCKS_PER_CELL);
+    try {
+      return new Cell(palette, blockArrayCodec.decode(regionBlockArray, values));
+    } finally {
+      scratch.release(values);
+    }
+  }
+
+  /**
+   * Same as {@link #isEmptyPalette(NBTList)}, but for states that are already decoded.
+   */
+  private boolean isEmptyPalette(List<BlockState> states) {
+    for (BlockState state : states) {
+      if (!options.isEmptyState(state)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Determines whether or not every state in an NBT {@code palette} is empty, according to the
+   * codec's {@link SectionCodecOptions#isEmptyStateName(String) options}. States are checked
+   * without being decoded.
+   */
+  private boolean isEmptyPalette(NBTList palette) {
+    for (int i = 0; i < palette.size(); i++) {
+      NBTCompound state = palette.getCompound(i);
+      NBTCompound properties = getCompound(STATE_PROPERTIES_TAG, state);
+      String name = getString(STATE_NAME_TAG, state);
+
+      if ((properties != null && !properties.isEmpty())
+          || name == null
+          || !options.isEmptyStateName(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Determines whether or not all blocks in a {@code cell} use the same state in its palette.
+   * <p><br>
+   * This stops at the first block that differs from the first, so it is cheap for cells that
+   * aren't uniform.
+   *
+   * @return the palette index used by every block in the cell, or {@code -1} if the cell's blocks
+   * are not all the same (or if the index is out of the palette's bounds).
+   */
+  private static int findUniformState(Cell cell) {
+    PackedUIntArray blocks = cell.getBlocks();
+    if (blocks.size() == 0) {
+      return -1;
+    }
+
+    int firstState = blocks.get(0);
+    if (firstState < 0 || firstState >= cell.getPalette().size()) {
+      return -1;
+    }
+
+    for (int i = 1; i < blocks.size(); i++) {
+      if (blocks.get(i) != firstState) {
+        return -1;
+      }
+    }
+    return firstState;
+  }
+
+  /**
+   * @return {@code true} if every word in the array is {@code 0}. Otherwise {@code false}.
+   */
+  private static boolean isAllZeros(long[] words) {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Determines whether or not a {@code cell} can be encoded without making an {@link
+   * Cell#isolatedCopy() isolated copy} first. See {@link #encodeIsolated(Cell)} for the
+   * requirements.
+   */
+  private static boolean isIsolated(Cell cell) {
+    Palette palette = cell.getPalette();
+    PackedUIntArray blocks = cell.getBlocks();
+    int paletteSize = palette.size();
+
+    // Bitset of the palette indices that are used by at least one block.
+    long[] usedStates = new long[(paletteSize + Long.SIZE - 1) / Long.SIZE];
+    int usedStateCount = 0;
+
+    for (int i = 0; i < blocks.size(); i++) {
+      int stateIndex = blocks.get(i);
+      if (stateIndex < 0 || stateIndex >= paletteSize) {
+        return false;
+      }
+
+      int word = stateIndex / Long.SIZE;
+      long bit = 1L << (stateIndex % Long.SIZE);
+      if ((usedStates[word] & bit) == 0) {
+        usedStates[word] |= bit;
+        usedStateCount++;
+      }
+    }
 
-    return new Cell(palette, blocks);
+    return usedStateCount == paletteSize;
   }
 }
@@ -1,14 +1,20 @@
 package me.nullicorn.ooze.convert.region;
 
+import java.util.Set;
+import me.nullicorn.nedit.type.NBTCompound;
 import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.VersionSupportTable;
 import me.nullicorn.ooze.convert.VersionedTag;
 
 /**
  * An assortment of NBT tags used by Minecraft for storing chunk information.
+ * <p><br>
+ * Some of the tags in a chunk's {@link #CHUNK Level} compound can be used to choose which parts of
+ * a chunk are decoded; see {@link RegionChunkCodec#decode(NBTCompound, Set)}.
  *
  * @author Nullicorn
  */
-enum RegionTag implements VersionedTag {
+public enum RegionTag implements VersionedTag {
 
   /*
    * Tags within the root compounds of the `region` directory.
@@ -223,6 +229,53 @@ enum RegionTag implements VersionedTag {
    */
   private static final int HIGHEST_ALLOWED_VERSION = 2730;
 
+  /**
+   * The tags supported by each range of versions, computed once when the enum is initialized.
+   */
+  private static final VersionSupportTable<RegionTag> SUPPORT =
+      VersionSupportTable.of(RegionTag.class, HIGHEST_ALLOWED_VERSION);
+
+  /**
+   * @return the table of which tags are supported by each version, for checking codecs' required
+   * tags.
+   * @see me.nullicorn.ooze.convert.VersionedCodec
+   */
+  static VersionSupportTable<RegionTag> supportTable() {
+    return SUPPORT;
+  }
+
+  /**
+   * @return a mask of the tags supported in the {@code dataVersion}, where each tag's bit is {@code
+   * 1 << ordinal()}.
+   * @see VersionSupportTable#supportMask(int)
+   */
+  static long supportMask(int dataVersion) {
+    return SUPPORT.supportMask(dataVersion);
+  }
+
+  /**
+   * @return an unmodifiable set of the tags supported in the {@code dataVersion}.
+   */
+  static Set<RegionTag> supportedIn(int dataVersion) {
+    return SUPPORT.supportedIn(dataVersion);
+  }
+
+  /**
+   * @return {@code true} if every one of the {@code tags} is supported in the {@code dataVersion}.
+   * Otherwise {@code false}.
+   */
+  static boolean areAllSupported(long tags, int dataVersion) {
+    return SUPPORT.areAllSupported(tags, dataVersion);
+  }
+
+  /**
+   * @return a mask containing the bit for each of the {@code tags}.
+   * @see #areAllSupported(long, int)
+   */
+  static long maskOf(RegionTag... tags) {
+    return VersionSupportTable.maskOf(tags);
+  }
+
   private final String  tagName;
   private final TagType tagType;
   private final TagType listType;
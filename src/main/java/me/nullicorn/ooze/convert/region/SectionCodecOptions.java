@@ -0,0 +1,268 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import me.nullicorn.ooze.convert.CodecMetrics;
+import me.nullicorn.ooze.convert.region.legacy.RegionLegacySectionCodec;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+import me.nullicorn.ooze.level.PackedUIntArray;
+import me.nullicorn.ooze.level.Palette;
+
+/**
+ * Optional behavior for {@link RegionSectionCodec} and {@link RegionLegacySectionCodec}.
+ * <p><br>
+ * Options are immutable, so each {@code with...()} method returns a modified copy, leaving the
+ * original unchanged. This allows a single set of options to be shared between codecs & threads.
+ *
+ * @author Nullicorn
+ */
+public final class SectionCodecOptions {
+
+  private static final SectionCodecOptions DEFAULTS = new SectionCodecOptions(
+      PaletteNamingStrategy.contentHash(),
+      false,
+      Collections.singleton("minecraft:air"),
+      false,
+      false,
+      CodecMetrics.none());
+
+  /**
+   * @return the options used by section codecs when none are specified.
+   */
+  public static SectionCodecOptions defaults() {
+    return DEFAULTS;
+  }
+
+  private final PaletteNamingStrategy namingStrategy;
+  private final boolean               elideEmptySections;
+  private final Set<String>           emptyStateNames;
+  private final boolean               compactPalettes;
+  private final boolean               useScratchArrays;
+  private final CodecMetrics          metrics;
+
+  private SectionCodecOptions(PaletteNamingStrategy namingStrategy,
+      boolean elideEmptySections,
+      Set<String> emptyStateNames,
+      boolean compactPalettes,
+      boolean useScratchArrays,
+      CodecMetrics metrics) {
+    this.namingStrategy = namingStrategy;
+    this.elideEmptySections = elideEmptySections;
+    this.emptyStateNames = emptyStateNames;
+    this.compactPalettes = compactPalettes;
+    this.useScratchArrays = useScratchArrays;
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the strategy used to name palettes when decoding sections.
+   * @see #withNamingStrategy(PaletteNamingStrategy)
+   */
+  public PaletteNamingStrategy namingStrategy() {
+    return namingStrategy;
+  }
+
+  /**
+   * @param namingStrategy The strategy used to name palettes when decoding sections. By default,
+   *                       {@link PaletteNamingStrategy#contentHash()} is used.
+   * @return a copy of the options with the new naming strategy.
+   * @throws IllegalArgumentException if the {@code namingStrategy} is {@code null}.
+   */
+  public SectionCodecOptions withNamingStrategy(PaletteNamingStrategy namingStrategy) {
+    if (namingStrategy == null) {
+      throw new IllegalArgumentException("namingStrategy cannot be null");
+    }
+    return new SectionCodecOptions(namingStrategy, elideEmptySections, emptyStateNames,
+        compactPalettes, useScratchArrays, metrics);
+  }
+
+  /**
+   * @return whether or not sections containing only {@link #isEmptyState(BlockState) empty
+   * states} are elided.
+   * @see #withEmptySectionElision(boolean)
+   */
+  public boolean elidesEmptySections() {
+    return elideEmptySections;
+  }
+
+  /**
+   * Determines whether or not sections made entirely of {@link #isEmptyState(BlockState) empty
+   * states} (e.g. air) are elided. Disabled by default.
+   * <p><br>
+   * When enabled, empty cells are encoded as sections without any blocks or palette, which
+   * chunk-level callers can drop entirely. Likewise, sections whose blocks are all empty are
+   * decoded as the shared {@link Cell#empty() empty cell}, without decoding or allocating their
+   * blocks.
+   *
+   * @param elideEmptySections Whether or not empty sections should be elided.
+   * @return a copy of the options with the new setting.
+   */
+  public SectionCodecOptions withEmptySectionElision(boolean elideEmptySections) {
+    return new SectionCodecOptions(namingStrategy, elideEmptySections, emptyStateNames,
+        compactPalettes, useScratchArrays, metrics);
+  }
+
+  /**
+   * @return the names of states considered empty, in addition to those that are {@link
+   * BlockState#isEmpty() inherently empty}.
+   * @see #withEmptyStateNames(Set)
+   */
+  public Set<String> emptyStateNames() {
+    return emptyStateNames;
+  }
+
+  /**
+   * Determines which block states are considered empty when {@link #withEmptySectionElision(boolean)
+   * eliding} sections, other than those that are {@link BlockState#isEmpty() inherently empty}. By
+   * default, only {@code minecraft:air} is included.
+   * <p><br>
+   * States are only considered empty if they have no properties. Decoding elided sections is lossy
+   * for any state other than {@link Cell#empty()}'s, so names like {@code minecraft:cave_air}
+   * should only be included if they can safely be replaced with regular air.
+   *
+   * @param emptyStateNames The full names (including namespace) of empty states.
+   * @return a copy of the options with the new names.
+   * @throws IllegalArgumentException if the set of names is {@code null}.
+   */
+  public SectionCodecOptions withEmptyStateNames(Set<String> emptyStateNames) {
+    if (emptyStateNames == null) {
+      throw new IllegalArgumentException("emptyStateNames cannot be null");
+    }
+    Set<String> namesCopy = Collections.unmodifiableSet(new HashSet<>(emptyStateNames));
+    return new SectionCodecOptions(namingStrategy, elideEmptySections, namesCopy,
+        compactPalettes, useScratchArrays, metrics);
+  }
+
+  /**
+   * @return whether or not palettes are compacted & reordered when encoding sections.
+   * @see #withPaletteCompaction(boolean)
+   */
+  public boolean compactsPalettes() {
+    return compactPalettes;
+  }
+
+  /**
+   * Determines whether or not each cell's palette is compacted when it is encoded. Disabled by
+   * default.
+   * <p><br>
+   * When enabled, states that aren't used by any blocks are left out of the encoded palette, and
+   * the remaining states are ordered from most to least used. Blocks are re-indexed accordingly.
+   * This can lower the number of bits needed for each block, and allows the most common states to
+   * use the smallest indices, which tends to compress better. The blocks' states themselves are
+   * unchanged.
+   *
+   * @param compactPalettes Whether or not palettes should be compacted.
+   * @return a copy of the options with the new setting.
+   */
+  public SectionCodecOptions withPaletteCompaction(boolean compactPalettes) {
+    return new SectionCodecOptions(namingStrategy, elideEmptySections, emptyStateNames,
+        compactPalettes, useScratchArrays, metrics);
+  }
+
+  /**
+   * @return whether or not codecs borrow their temporary section-sized arrays from the current
+   * thread's {@link SectionScratch scratch}, rather than allocating new ones.
+   * @see #withScratchArrays(boolean)
+   */
+  public boolean usesScratchArrays() {
+    return useScratchArrays;
+  }
+
+  /**
+   * Determines whether or not codecs reuse the temporary arrays they need for each section, such
+   * as the {@code int[4096]} that blocks are unpacked into before being packed into a cell.
+   * Disabled by default.
+   * <p><br>
+   * When enabled, those arrays are borrowed from the current thread's {@link SectionScratch} and
+   * returned before each encode or decode finishes, so converting many sections on the same
+   * threads allocates far less garbage. Arrays that end up in the codec's output (such as encoded
+   * block arrays) are still allocated, since the caller keeps them.
+   *
+   * @param useScratchArrays Whether or not scratch arrays should be used.
+   * @return a copy of the options with the new setting.
+   */
+  public SectionCodecOptions withScratchArrays(boolean useScratchArrays) {
+    return new SectionCodecOptions(namingStrategy, elideEmptySections, emptyStateNames,
+        compactPalettes, useScratchArrays, metrics);
+  }
+
+  /**
+   * @return the listener that codecs using the options report their work to.
+   * @see #withMetrics(CodecMetrics)
+   */
+  public CodecMetrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * Determines where codecs report what they encode & decode, and how long it takes. By default,
+   * {@link CodecMetrics#none()} is used, and codecs do not measure anything.
+   * <p><br>
+   * The metrics are used by section codecs, as well as the palette & chunk codecs of any {@link
+   * RegionCodecs} created with the options.
+   *
+   * @param metrics The listener to report to.
+   * @return a copy of the options with the new metrics.
+   * @throws IllegalArgumentException if the {@code metrics} are {@code null}.
+   */
+  public SectionCodecOptions withMetrics(CodecMetrics metrics) {
+    if (metrics == null) {
+      throw new IllegalArgumentException("metrics cannot be null");
+    }
+    return new SectionCodecOptions(namingStrategy, elideEmptySections, emptyStateNames,
+        compactPalettes, useScratchArrays, metrics);
+  }
+
+  /**
+   * @return {@code true} if the {@code state} is {@link BlockState#isEmpty() inherently empty}, or
+   * if it has one of the {@link #emptyStateNames() empty names} and no properties. Otherwise
+   * {@code false}.
+   */
+  public boolean isEmptyState(BlockState state) {
+    return state.isEmpty() || (!state.hasProperties() && isEmptyStateName(state.getName()));
+  }
+
+  /**
+   * Determines whether or not every block in a {@code cell} uses an {@link #isEmptyState(BlockState)
+   * empty state}.
+   * <p><br>
+   * If every state in the cell's palette is empty, its blocks are not checked. Otherwise, this
+   * stops at the first block with a non-empty state.
+   *
+   * @return {@code true} if the cell only contains empty blocks. Otherwise {@code false}.
+   */
+  public boolean isEmptyCell(Cell cell) {
+    Palette palette = cell.getPalette();
+    int paletteSize = palette.size();
+
+    boolean[] isStateEmpty = new boolean[paletteSize];
+    boolean isPaletteEmpty = true;
+    for (int i = 0; i < paletteSize; i++) {
+      isStateEmpty[i] = isEmptyState(palette.get(i));
+      isPaletteEmpty &= isStateEmpty[i];
+    }
+
+    if (isPaletteEmpty) {
+      return true;
+    }
+
+    PackedUIntArray blocks = cell.getBlocks();
+    for (int i = 0; i < blocks.size(); i++) {
+      int stateIndex = blocks.get(i);
+      if (stateIndex < 0 || stateIndex >= paletteSize || !isStateEmpty[stateIndex]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return {@code true} if the {@code name} is one of the {@link #emptyStateNames() empty
+   * names}. Otherwise {@code false}.
+   */
+  public boolean isEmptyStateName(String name) {
+    return emptyStateNames.contains(name);
+  }
+}
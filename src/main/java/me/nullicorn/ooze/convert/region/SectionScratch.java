@@ -0,0 +1,263 @@
+package me.nullicorn.ooze.convert.region;
+
+import me.nullicorn.ooze.convert.CodecMetrics;
+
+/**
+ * Section-sized arrays that codecs can borrow while encoding or decoding, and return once they are
+ * done with them, rather than allocating new ones for every section.
+ * <p><br>
+ * Each thread has its own scratch, so arrays are never shared between threads, and borrowing them
+ * does not need to be synchronized. Arrays are only pooled if they are the size of a section's
+ * blocks ({@code int[4096]} or {@code byte[4096]}), its nibbles ({@code byte[2048]}), or its packed
+ * block array ({@code long[]} of up to {@code 2048} words, pooled separately for each length).
+ * Arrays of other sizes are allocated as usual, and ignored when returned.
+ * <p><br>
+ * Borrowed arrays must be returned by the thread that borrowed them, and must not be used after
+ * they are returned. Their contents are left over from whoever used them last, so they should be
+ * overwritten (or filled) before being read.
+ * <p><br>
+ * Each time a pooled size is borrowed, the lookup is reported to the {@link
+ * SectionCodecOptions#metrics() metrics} of the options that the scratch was most recently
+ * {@link #of(SectionCodecOptions) gotten} with, as the {@link #CACHE_NAME} cache.
+ *
+ * @author Nullicorn
+ * @see SectionCodecOptions#withScratchArrays(boolean)
+ */
+public final class SectionScratch {
+
+  /**
+   * The name that lookups in the pool are {@link CodecMetrics#cacheLookup(String, boolean)
+   * reported} under.
+   */
+  public static final String CACHE_NAME = "section-scratch";
+
+  /**
+   * The number of blocks in a section, and the size of the pooled {@code int} and {@code byte}
+   * arrays.
+   */
+  static final int BLOCKS_PER_CELL = 4096;
+
+  /**
+   * The size of the pooled nibble arrays; two blocks per byte.
+   */
+  static final int NIBBLES_PER_CELL = BLOCKS_PER_CELL / 2;
+
+  /**
+   * The largest block array that is pooled; {@code 4096} blocks with {@code 32} bits each.
+   */
+  static final int MAX_POOLED_WORDS = BLOCKS_PER_CELL * Integer.SIZE / Long.SIZE;
+
+  /**
+   * The maximum number of returned arrays that are kept for each size. A chunk has at most a few
+   * dozen sections, so this is enough for a whole chunk's arrays to be borrowed at once.
+   */
+  static final int MAX_POOLED_PER_SIZE = 32;
+
+  /**
+   * Scratch that never pools; each borrowed array is newly allocated, and returned arrays are
+   * ignored.
+   */
+  private static final SectionScratch UNPOOLED = new SectionScratch(false);
+
+  private static final ThreadLocal<SectionScratch> POOLED =
+      ThreadLocal.withInitial(() -> new SectionScratch(true));
+
+  /**
+   * @return the current thread's scratch if the {@code options} {@link
+   * SectionCodecOptions#usesScratchArrays() use scratch arrays}. Otherwise, scratch that allocates
+   * a new array each time one is borrowed.
+   * @throws IllegalArgumentException if the {@code options} are {@code null}.
+   */
+  public static SectionScratch of(SectionCodecOptions options) {
+    if (options == null) {
+      throw new IllegalArgumentException("options cannot be null");
+    }
+    if (!options.usesScratchArrays()) {
+      return UNPOOLED;
+    }
+
+    SectionScratch scratch = POOLED.get();
+    scratch.metrics = options.metrics();
+    return scratch;
+  }
+
+  private final boolean isPooled;
+
+  /**
+   * Where lookups in the pools are reported. Only ever used by the thread that owns the scratch.
+   */
+  private CodecMetrics metrics = CodecMetrics.none();
+
+  private final Pool<int[]>    blockInts;
+  private final Pool<byte[]>   blockBytes;
+  private final Pool<byte[]>   nibbleBytes;
+  private final Pool<long[]>[] wordsByLength;
+
+  private SectionScratch(boolean isPooled) {
+    this.isPooled = isPooled;
+
+    if (isPooled) {
+      blockInts = new Pool<>();
+      blockBytes = new Pool<>();
+      nibbleBytes = new Pool<>();
+      // Suppressed because generic arrays cannot be created directly.
+      // noinspection unchecked
+      wordsByLength = (Pool<long[]>[]) new Pool<?>[MAX_POOLED_WORDS + 1];
+    } else {
+      blockInts = null;
+      blockBytes = null;
+      nibbleBytes = null;
+      wordsByLength = null;
+    }
+  }
+
+  /**
+   * @return whether or not returned arrays are kept for later use. If {@code false}, every array
+   * borrowed from the scratch is newly allocated.
+   */
+  public boolean isPooled() {
+    return isPooled;
+  }
+
+  /**
+   * @param length The number of elements needed.
+   * @return an {@code int} array with exactly {@code length} elements, whose contents are
+   * unspecified.
+   * @throws NegativeArraySizeException if the {@code length} is negative.
+   */
+  public int[] borrowInts(int length) {
+    if (!isPooled || length != BLOCKS_PER_CELL) {
+      return new int[length];
+    }
+
+    int[] array = blockInts.take();
+    metrics.cacheLookup(CACHE_NAME, array != null);
+    return array != null ? array : new int[length];
+  }
+
+  /**
+   * @param length The number of elements needed.
+   * @return a {@code byte} array with exactly {@code length} elements, whose contents are
+   * unspecified.
+   * @throws NegativeArraySizeException if the {@code length} is negative.
+   */
+  public byte[] borrowBytes(int length) {
+    Pool<byte[]> pool = isPooled ? bytePoolFor(length) : null;
+    if (pool == null) {
+      return new byte[length];
+    }
+
+    byte[] array = pool.take();
+    metrics.cacheLookup(CACHE_NAME, array != null);
+    return array != null ? array : new byte[length];
+  }
+
+  /**
+   * @param length The number of elements needed.
+   * @return a {@code long} array with exactly {@code length} elements, whose contents are
+   * unspecified.
+   * @throws NegativeArraySizeException if the {@code length} is negative.
+   */
+  public long[] borrowWords(int length) {
+    if (!isPooled || length < 0 || length > MAX_POOLED_WORDS) {
+      return new long[length];
+    }
+
+    // A length's pool is only created once an array of that length is returned.
+    Pool<long[]> pool = wordsByLength[length];
+    long[] array = pool != null ? pool.take() : null;
+    metrics.cacheLookup(CACHE_NAME, array != null);
+    return array != null ? array : new long[length];
+  }
+
+  /**
+   * Returns an array borrowed via {@link #borrowInts(int)}, so that it can be borrowed again. Does
+   * nothing if the {@code array} is {@code null}.
+   */
+  public void release(int[] array) {
+    if (isPooled && array != null && array.length == BLOCKS_PER_CELL) {
+      blockInts.offer(array);
+    }
+  }
+
+  /**
+   * Returns an array borrowed via {@link #borrowBytes(int)}, so that it can be borrowed again. Does
+   * nothing if the {@code array} is {@code null}.
+   */
+  public void release(byte[] array) {
+    if (isPooled && array != null) {
+      Pool<byte[]> pool = bytePoolFor(array.length);
+      if (pool != null) {
+        pool.offer(array);
+      }
+    }
+  }
+
+  /**
+   * Returns an array borrowed via {@link #borrowWords(int)}, so that it can be borrowed again. Does
+   * nothing if the {@code array} is {@code null}.
+   */
+  public void release(long[] array) {
+    if (isPooled && array != null && array.length <= MAX_POOLED_WORDS) {
+      Pool<long[]> pool = wordsByLength[array.length];
+      if (pool == null) {
+        pool = new Pool<>();
+        wordsByLength[array.length] = pool;
+      }
+      pool.offer(array);
+    }
+  }
+
+  /**
+   * @return the pool for byte arrays with the {@code length}, or {@code null} if they are not
+   * pooled.
+   */
+  private Pool<byte[]> bytePoolFor(int length) {
+    if (length == BLOCKS_PER_CELL) {
+      return blockBytes;
+    } else if (length == NIBBLES_PER_CELL) {
+      return nibbleBytes;
+    }
+    return null;
+  }
+
+  /**
+   * A stack of returned arrays of a single size.
+   */
+  private static final class Pool<T> {
+
+    private final Object[] arrays = new Object[MAX_POOLED_PER_SIZE];
+    private       int      size;
+
+    /**
+     * @return the most recently returned array, or {@code null} if the pool is empty.
+     */
+    T take() {
+      if (size == 0) {
+        return null;
+      }
+
+      // Suppressed because only T's are ever offered.
+      // noinspection unchecked
+      T array = (T) arrays[--size];
+      arrays[size] = null;
+      return array;
+    }
+
+    /**
+     * Adds an {@code array} to the pool, unless the pool is already full, or already contains that
+     * exact array (which would let it be borrowed twice at once).
+     */
+    void offer(T array) {
+      if (size == arrays.length) {
+        return;
+      }
+      for (int i = 0; i < size; i++) {
+        if (arrays[i] == array) {
+          return;
+        }
+      }
+      arrays[size++] = array;
+    }
+  }
+}
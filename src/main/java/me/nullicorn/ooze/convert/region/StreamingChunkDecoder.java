@@ -0,0 +1,556 @@
+package me.nullicorn.ooze.convert.region;
+
+import static me.nullicorn.ooze.convert.region.NBTPullReader.TAG_BYTE_ARRAY;
+import static me.nullicorn.ooze.convert.region.NBTPullReader.TAG_COMPOUND;
+import static me.nullicorn.ooze.convert.region.NBTPullReader.TAG_END;
+import static me.nullicorn.ooze.convert.region.NBTPullReader.TAG_INT;
+import static me.nullicorn.ooze.convert.region.NBTPullReader.TAG_LIST;
+import static me.nullicorn.ooze.convert.region.NBTPullReader.TAG_LONG_ARRAY;
+import static me.nullicorn.ooze.convert.region.NBTPullReader.TAG_STRING;
+import static me.nullicorn.ooze.convert.region.NBTPullReader.nameOf;
+import static me.nullicorn.ooze.convert.region.NBTPullReader.tagTypeOf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.convert.CodecMetrics;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+
+/**
+ * Decodes chunks directly from their binary NBT, without building a tree of compounds & lists
+ * first.
+ * <p><br>
+ * Only the tags needed for a chunk's position & sections are read. All other tags, including
+ * light data, entities, and heightmaps, are skipped without being allocated. Callers may also
+ * supply a projection to choose which of the chunk's tags are read, in which case any tags outside
+ * of the projection (including sections) are skipped the same way. Sections are decoded
+ * using the same {@link RegionSectionCodec section codecs} as {@link RegionChunkCodec}, so the
+ * results are the same as decoding the chunk's compound with that codec.
+ * <p><br>
+ * Decoders are immutable, so a single decoder can be shared between threads.
+ *
+ * @author Nullicorn
+ */
+public final class StreamingChunkDecoder {
+
+  // Chunk tag names.
+  private static final byte[] DATA_VERSION = nameOf(RegionTag.DATA_VERSION.getName());
+  private static final byte[] LEVEL        = nameOf(RegionTag.CHUNK.getName());
+  private static final byte[] POS_X        = nameOf(RegionTag.CHUNK_POS_X.getName());
+  private static final byte[] POS_Z        = nameOf(RegionTag.CHUNK_POS_Z.getName());
+  private static final byte[] SECTIONS     = nameOf(RegionTag.CHUNK_SECTIONS.getName());
+
+  // Section tag names.
+  private static final byte[] ALTITUDE       = nameOf(RegionTag.SECTION_ALTITUDE.getName());
+  private static final byte[] PALETTE        = nameOf(RegionTag.PALETTE.getName());
+  private static final byte[] BLOCKS         = nameOf(RegionTag.BLOCKS.getName());
+  private static final byte[] LEGACY_BLOCKS  = nameOf("Blocks");
+  private static final byte[] LEGACY_ADD     = nameOf("Add");
+  private static final byte[] LEGACY_DATA    = nameOf("Data");
+
+  // Palette entry tag names.
+  private static final byte[] STATE_NAME       = nameOf(RegionTag.BLOCK_NAME.getName());
+  private static final byte[] STATE_PROPERTIES = nameOf(RegionTag.BLOCK_PROPERTIES.getName());
+
+  /**
+   * The binary names of tags that can be retained in decoded chunks.
+   */
+  private static final Map<RegionTag, byte[]> RETAINABLE_NAMES = new EnumMap<>(RegionTag.class);
+
+  static {
+    for (RegionTag tag : RegionChunkCodec.RETAINABLE_TAGS) {
+      RETAINABLE_NAMES.put(tag, nameOf(tag.getName()));
+    }
+  }
+
+  /**
+   * Reads a chunk's {@code DataVersion} from its uncompressed NBT, without decoding anything else.
+   * This allows the correct decoder to be chosen for chunks whose version is not known ahead of
+   * time, such as those in worlds that were saved by multiple versions.
+   *
+   * @param nbt            The chunk's root compound, including its tag type & name, in binary
+   *                       form. Read from its position to its limit, but not modified.
+   * @param defaultVersion The version to return if the chunk has no {@code DataVersion}, which is
+   *                       the case for chunks saved before the tag was added.
+   * @return the chunk's data version, or the {@code defaultVersion} if it has none.
+   * @throws IllegalArgumentException if the {@code nbt} buffer is {@code null}.
+   * @throws MalformedInputException  if the NBT is malformed.
+   */
+  public static int readDataVersion(ByteBuffer nbt, int defaultVersion) throws IOException {
+    if (nbt == null) {
+      throw new IllegalArgumentException("nbt cannot be null");
+    }
+
+    NBTPullReader reader = new NBTPullReader(nbt);
+    if (reader.readTagType() != TAG_COMPOUND) {
+      throw new MalformedInputException("chunk", "root tag must be a compound");
+    }
+    reader.readName();
+
+    int type;
+    while ((type = reader.readTagType()) != TAG_END) {
+      reader.readName();
+
+      if (type == TAG_INT && reader.nameEquals(DATA_VERSION)) {
+        return reader.readInt();
+      }
+      reader.skipPayload(type);
+    }
+    return defaultVersion;
+  }
+
+  private final RegionCodecs   codecs;
+  private final int            dataVersion;
+  private final boolean        hasDataVersion;
+  private final Set<RegionTag> retainableTags;
+
+  /**
+   * Creates a decoder for chunks in the same version as the {@code codecs}, which are used to
+   * decode each section.
+   *
+   * @throws IllegalArgumentException if the {@code codecs} are {@code null}.
+   */
+  public StreamingChunkDecoder(RegionCodecs codecs) {
+    if (codecs == null) {
+      throw new IllegalArgumentException("codecs cannot be null");
+    }
+
+    this.codecs = codecs;
+    this.dataVersion = codecs.getCompatibility();
+    this.hasDataVersion = RegionTag.supportedIn(dataVersion).contains(RegionTag.DATA_VERSION);
+    this.retainableTags = RegionChunkCodec.retainableTagsIn(dataVersion);
+  }
+
+  /**
+   * @return the Minecraft world version that the decoder is compatible with.
+   */
+  public int getCompatibility() {
+    return dataVersion;
+  }
+
+  /**
+   * Decodes the cells of a chunk from its uncompressed NBT, positioned by their altitudes. None of
+   * the chunk's other tags are retained.
+   * <p><br>
+   * Sections are handled the same as by {@link RegionChunkCodec#decode(NBTCompound)}.
+   *
+   * @see #decode(ByteBuffer, Set)
+   */
+  public RegionChunk decode(ByteBuffer nbt) throws IOException {
+    return decode(nbt, RegionChunkCodec.DEFAULT_PROJECTION);
+  }
+
+  /**
+   * Decodes only the parts of a chunk included in a {@code projection}, from the chunk's
+   * uncompressed NBT. Tags outside of the projection are skipped without being parsed.
+   * <p><br>
+   * Projections are handled the same as by {@link RegionChunkCodec#decode(NBTCompound, Set)}.
+   * This is the same as {@link #parse(ByteBuffer, Set) parsing} the chunk, and then {@link
+   * #decodeSections(ParsedChunk) decoding} its sections.
+   *
+   * @param nbt        The chunk's root compound, including its tag type & name, in binary form.
+   *                   Read from its position to its limit, but not modified.
+   * @param projection The tags to read from the chunk. Must be a subset of {@link
+   *                   RegionChunkCodec#PROJECTABLE_TAGS}.
+   * @throws IllegalArgumentException if the {@code nbt} buffer or {@code projection} are {@code
+   *                                  null}, or if the projection contains any tags that are not
+   *                                  {@link RegionChunkCodec#PROJECTABLE_TAGS projectable}.
+   * @throws MalformedInputException  if the NBT is malformed, if the chunk's {@code DataVersion}
+   *                                  does not match the decoder's, if the chunk is missing its
+   *                                  position or {@code Level}, or if two sections share an
+   *                                  altitude.
+   * @throws IOException              if any of the chunk's sections cannot be decoded.
+   */
+  public RegionChunk decode(ByteBuffer nbt, Set<RegionTag> projection) throws IOException {
+    return decodeSections(parse(nbt, projection));
+  }
+
+  /**
+   * Reads the parts of a chunk included in a {@code projection} from its uncompressed NBT, without
+   * decoding any of its sections. Tags outside of the projection are skipped without being parsed.
+   * <p><br>
+   * Parsing and {@link #decodeSections(ParsedChunk) decoding} are separate so that they can be done
+   * by different threads, or at different times.
+   *
+   * @param nbt        The chunk's root compound, including its tag type & name, in binary form.
+   *                   Read from its position to its limit, but not modified.
+   * @param projection The tags to read from the chunk. Must be a subset of {@link
+   *                   RegionChunkCodec#PROJECTABLE_TAGS}.
+   * @return the chunk's raw tags, which can only be decoded by this decoder, or others for the
+   * same version.
+   * @throws IllegalArgumentException if the {@code nbt} buffer or {@code projection} are {@code
+   *                                  null}, or if the projection contains any tags that are not
+   *                                  {@link RegionChunkCodec#PROJECTABLE_TAGS projectable}.
+   * @throws MalformedInputException  if the NBT is malformed, if the chunk's {@code DataVersion}
+   *                                  does not match the decoder's, or if the chunk is missing its
+   *                                  position or {@code Level}.
+   */
+  public ParsedChunk parse(ByteBuffer nbt, Set<RegionTag> projection) throws IOException {
+    if (nbt == null) {
+      throw new IllegalArgumentException("null cannot be decoded as a chunk");
+    }
+    RegionChunkCodec.checkProjection(projection);
+    CodecMetrics metrics = codecs.options().metrics();
+    boolean isMeasured = metrics.isEnabled();
+    long start = isMeasured ? System.nanoTime() : 0;
+    int bytes = nbt.remaining();
+
+    NBTPullReader reader = new NBTPullReader(nbt);
+    if (reader.readTagType() != TAG_COMPOUND) {
+      throw new MalformedInputException("chunk", "root tag must be a compound");
+    }
+    reader.readName();
+
+    ParsedChunk chunk = new ParsedChunk(dataVersion);
+    chunk.dataVersion = dataVersion;
+    chunk.readsSections = projection.contains(RegionTag.CHUNK_SECTIONS);
+    for (RegionTag tag : projection) {
+      if (retainableTags.contains(tag)) {
+        chunk.retainedTags.add(tag);
+      }
+    }
+
+    int type;
+    while ((type = reader.readTagType()) != TAG_END) {
+      reader.readName();
+
+      if (type == TAG_INT && reader.nameEquals(DATA_VERSION)) {
+        chunk.dataVersion = reader.readInt();
+      } else if (type == TAG_COMPOUND && reader.nameEquals(LEVEL)) {
+        readLevel(reader, chunk);
+        chunk.hasLevel = true;
+      } else {
+        reader.skipPayload(type);
+      }
+    }
+
+    if (hasDataVersion && chunk.dataVersion != dataVersion) {
+      throw new MalformedInputException("chunk",
+          "DataVersion " + chunk.dataVersion + " cannot be decoded by codec for " + dataVersion);
+    } else if (!chunk.hasLevel) {
+      throw new MalformedInputException("chunk", "missing " + RegionTag.CHUNK);
+    } else if (chunk.chunkX == null || chunk.chunkZ == null) {
+      throw new MalformedInputException("chunk", "missing position");
+    }
+
+    if (isMeasured) {
+      metrics.chunkParsed(dataVersion, chunk.chunkX, chunk.chunkZ, bytes,
+          System.nanoTime() - start);
+    }
+    return chunk;
+  }
+
+  /**
+   * Decodes the sections of a chunk that was {@link #parse(ByteBuffer, Set) parsed} previously.
+   * Sections are handled the same as by {@link RegionChunkCodec#decode(NBTCompound)}.
+   * <p><br>
+   * If the decoder's options {@link SectionCodecOptions#withScratchArrays(boolean) use scratch
+   * arrays}, and the chunk is decoded by the same thread that parsed it, the sections' block arrays
+   * are returned to that thread's scratch as they are decoded, so the chunk can only be decoded
+   * once. Chunks decoded by any other thread keep their arrays, since each thread's scratch can
+   * only be used by that thread.
+   *
+   * @throws IllegalArgumentException if the {@code chunk} is {@code null}, or if it was parsed by a
+   *                                  decoder for a different version.
+   * @throws IllegalStateException    if the chunk's scratch arrays were already returned by a
+   *                                  previous call.
+   * @throws MalformedInputException  if two sections share an altitude.
+   * @throws IOException              if any of the chunk's sections cannot be decoded.
+   */
+  public RegionChunk decodeSections(ParsedChunk chunk) throws IOException {
+    if (chunk == null) {
+      throw new IllegalArgumentException("null cannot be decoded as a chunk");
+    } else if (chunk.parsedFor != dataVersion) {
+      throw new IllegalArgumentException("Chunk parsed for " + chunk.parsedFor +
+                                         " cannot be decoded by codec for " + dataVersion);
+    } else if (chunk.isReleased) {
+      throw new IllegalStateException("Chunk's arrays were already returned to scratch");
+    }
+    CodecMetrics metrics = codecs.options().metrics();
+    boolean isMeasured = metrics.isEnabled();
+    long start = isMeasured ? System.nanoTime() : 0;
+
+    // Arrays can only be returned to the scratch they were borrowed from by the thread that owns
+    // it. If the chunk was parsed by another thread, its arrays are left for garbage collection.
+    if (chunk.scratch != null && chunk.scratch.isPooled()
+        && chunk.borrower == Thread.currentThread()) {
+      chunk.isReleased = true;
+    }
+
+    Map<Integer, Cell> positionedCells = new HashMap<>();
+    for (SectionFields section : chunk.sections) {
+      Cell cell;
+      try {
+        cell = decodeSection(section);
+      } finally {
+        if (chunk.isReleased) {
+          section.release(chunk.scratch);
+        }
+      }
+
+      if (cell == Cell.empty()) {
+        // Sections without blocks, or elided ones.
+        continue;
+      }
+
+      if (section.altitude == null) {
+        throw new MalformedInputException("chunk section", "missing altitude");
+      } else if (positionedCells.put(section.altitude, cell) != null) {
+        throw new MalformedInputException("chunk", "duplicate section at Y=" + section.altitude);
+      }
+    }
+
+    RegionChunk decoded = new RegionChunk(chunk.chunkX, chunk.chunkZ, positionedCells, chunk.tags);
+
+    if (isMeasured) {
+      metrics.chunkDecoded(dataVersion, chunk.chunkX, chunk.chunkZ, chunk.sections.size(),
+          System.nanoTime() - start);
+    }
+    return decoded;
+  }
+
+  /**
+   * Reads the tags of a chunk's {@code Level} compound into the {@code chunk}.
+   */
+  private void readLevel(NBTPullReader reader, ParsedChunk chunk) throws IOException {
+    int type;
+    while ((type = reader.readTagType()) != TAG_END) {
+      reader.readName();
+
+      if (type == TAG_INT && reader.nameEquals(POS_X)) {
+        chunk.chunkX = reader.readInt();
+      } else if (type == TAG_INT && reader.nameEquals(POS_Z)) {
+        chunk.chunkZ = reader.readInt();
+      } else if (type == TAG_LIST && chunk.readsSections && reader.nameEquals(SECTIONS)) {
+        chunk.scratch = SectionScratch.of(codecs.options());
+        chunk.borrower = Thread.currentThread();
+        readSections(reader, chunk.sections, chunk.scratch);
+      } else {
+        RegionTag retained = findRetainedTag(reader, chunk.retainedTags);
+        if (retained != null && tagTypeOf(type) == retained.getType()) {
+          Object value = reader.readPayload(type);
+          if (RegionChunkCodec.isRetainable(retained, value)) {
+            chunk.tags.put(retained, value);
+          }
+        } else {
+          // Unwanted tags, including sections that weren't projected, are never parsed.
+          reader.skipPayload(type);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return whichever of the {@code retainedTags} has the same name as the tag that was just read,
+   * or {@code null} if none of them do.
+   */
+  private static RegionTag findRetainedTag(NBTPullReader reader, Set<RegionTag> retainedTags) {
+    for (RegionTag tag : retainedTags) {
+      if (reader.nameEquals(RETAINABLE_NAMES.get(tag))) {
+        return tag;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads the raw tags of each section in a chunk's {@code Sections} list. Block arrays are
+   * borrowed from the {@code scratch}.
+   *
+   * @throws MalformedInputException if the list contains anything except compounds.
+   */
+  private void readSections(NBTPullReader reader, List<SectionFields> sections,
+      SectionScratch scratch) throws IOException {
+    int contentType = reader.readListType();
+    int length = reader.readListLength();
+    if (length == 0) {
+      return;
+    } else if (contentType != TAG_COMPOUND) {
+      throw new MalformedInputException("chunk", RegionTag.CHUNK_SECTIONS +
+                                                 " must contain compounds");
+    }
+
+    for (int i = 0; i < length; i++) {
+      SectionFields section = new SectionFields();
+
+      int type;
+      while ((type = reader.readTagType()) != TAG_END) {
+        reader.readName();
+
+        if (reader.nameEquals(ALTITUDE)) {
+          // Vanilla writes the altitude as a byte, so any number is accepted.
+          section.altitude = reader.readNumberAsInt(type);
+        } else if (type == TAG_LIST && reader.nameEquals(PALETTE)) {
+          section.states = readPalette(reader);
+        } else if (type == TAG_LONG_ARRAY && reader.nameEquals(BLOCKS)) {
+          section.words = reader.readLongArray(scratch);
+        } else if (type == TAG_BYTE_ARRAY && reader.nameEquals(LEGACY_BLOCKS)) {
+          section.legacyBlocks = reader.readByteArray(scratch);
+        } else if (type == TAG_BYTE_ARRAY && reader.nameEquals(LEGACY_ADD)) {
+          section.legacyAdd = reader.readByteArray(scratch);
+        } else if (type == TAG_BYTE_ARRAY && reader.nameEquals(LEGACY_DATA)) {
+          section.legacyData = reader.readByteArray(scratch);
+        } else {
+          reader.skipPayload(type);
+        }
+      }
+
+      sections.add(section);
+    }
+  }
+
+  /**
+   * Reads & decodes the states in a section's {@code Palette} list.
+   *
+   * @return the palette's states, or {@code null} if the list's content type is not compound (the
+   * same as if the palette were missing).
+   * @throws MalformedInputException if any of the states have no name.
+   */
+  private List<BlockState> readPalette(NBTPullReader reader) throws IOException {
+    int contentType = reader.readListType();
+    int length = reader.readListLength();
+    if (contentType != TAG_COMPOUND) {
+      for (int i = 0; i < length; i++) {
+        reader.skipPayload(contentType);
+      }
+      return null;
+    }
+
+    List<BlockState> states = new ArrayList<>(length);
+    for (int i = 0; i < length; i++) {
+      String name = null;
+      NBTCompound properties = null;
+
+      int type;
+      while ((type = reader.readTagType()) != TAG_END) {
+        reader.readName();
+
+        if (type == TAG_STRING && reader.nameEquals(STATE_NAME)) {
+          name = reader.readString();
+        } else if (type == TAG_COMPOUND && reader.nameEquals(STATE_PROPERTIES)) {
+          // Properties are kept as a compound, since that's what block states use.
+          properties = (NBTCompound) reader.readPayload(type);
+        } else {
+          reader.skipPayload(type);
+        }
+      }
+
+      if (name == null) {
+        throw new MalformedInputException("block state", "has no name");
+      }
+      states.add(new BlockState(name, properties != null ? properties : new NBTCompound()));
+    }
+    return states;
+  }
+
+  /**
+   * Decodes a section's raw tags using the appropriate codec for the decoder's version.
+   */
+  private Cell decodeSection(SectionFields section) throws IOException {
+    if (codecs.isFlattened()) {
+      return codecs.sectionCodec().decode(section.states, section.words);
+    }
+    return codecs.legacySectionCodec().decode(section.legacyBlocks, section.legacyAdd,
+        section.legacyData);
+  }
+
+  /**
+   * The raw tags of a chunk that has been {@link #parse(ByteBuffer, Set) parsed}, but whose sections
+   * have not been decoded yet.
+   * <p><br>
+   * Parsed chunks are not thread-safe, but can be safely handed off to another thread for decoding
+   * (e.g. via a {@link java.util.concurrent.BlockingQueue}).
+   */
+  public static final class ParsedChunk {
+
+    /**
+     * The version of the decoder that parsed the chunk.
+     */
+    private final int parsedFor;
+
+    private int     dataVersion;
+    private boolean hasLevel;
+    private Integer chunkX;
+    private Integer chunkZ;
+
+    // Parts of the projection.
+    private       boolean        readsSections;
+    private final Set<RegionTag> retainedTags = EnumSet.noneOf(RegionTag.class);
+
+    private final List<SectionFields>    sections = new ArrayList<>();
+
+    // The scratch that the sections' arrays were borrowed from, if any, the thread that borrowed
+    // them, and whether they've been returned yet.
+    private SectionScratch scratch;
+    private Thread         borrower;
+    private boolean        isReleased;
+
+    private final Map<RegionTag, Object> tags     = new EnumMap<>(RegionTag.class);
+
+    private ParsedChunk(int parsedFor) {
+      this.parsedFor = parsedFor;
+    }
+
+    /**
+     * @return the chunk's location along the X axis, measured in 16-block units.
+     */
+    public int getX() {
+      return chunkX;
+    }
+
+    /**
+     * @return the chunk's location along the Z axis, measured in 16-block units.
+     */
+    public int getZ() {
+      return chunkZ;
+    }
+
+    /**
+     * @return the chunk's {@code DataVersion}, or the version of the decoder that parsed it if the
+     * chunk has none.
+     */
+    public int getDataVersion() {
+      return dataVersion;
+    }
+
+    /**
+     * @return the number of sections that were read from the chunk, including any without blocks.
+     */
+    public int getSectionCount() {
+      return sections.size();
+    }
+  }
+
+  /**
+   * The raw tags read from a single section. Any of them may be {@code null} if the section does
+   * not have that tag.
+   */
+  private static final class SectionFields {
+
+    Integer          altitude;
+    List<BlockState> states;
+    long[]           words;
+    byte[]           legacyBlocks;
+    byte[]           legacyAdd;
+    byte[]           legacyData;
+
+    /**
+     * Returns the section's arrays to the {@code scratch}.
+     */
+    void release(SectionScratch scratch) {
+      scratch.release(words);
+      scratch.release(legacyBlocks);
+      scratch.release(legacyAdd);
+      scratch.release(legacyData);
+    }
+  }
+}
@@ -0,0 +1,415 @@
+package me.nullicorn.ooze.convert.region.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import me.nullicorn.ooze.convert.MalformedInputException;
+
+/**
+ * Compresses & decompresses the data of chunks in region files.
+ * <p><br>
+ * Rather than creating a new stream (and with it, a new native {@link Inflater} or {@link
+ * Deflater}) for each chunk, every thread keeps its own inflaters, deflaters & buffers, which are
+ * reset and reused for each chunk that thread handles. The buffers grow to fit the largest chunk
+ * that the thread has seen, and are never shrunk.
+ * <p><br>
+ * Gzip headers & trailers are handled here, rather than by {@link java.util.zip.GZIPInputStream},
+ * so that gzipped chunks can share the same pooled inflaters as zlib ones.
+ *
+ * @author Nullicorn
+ */
+public final class ChunkCompression {
+
+  /**
+   * The compression type for chunks compressed using gzip (RFC 1952).
+   */
+  public static final int GZIP = 1;
+
+  /**
+   * The compression type for chunks compressed using zlib (RFC 1950). Used by vanilla by default.
+   */
+  public static final int ZLIB = 2;
+
+  /**
+   * The compression type for chunks that are not compressed.
+   */
+  public static final int UNCOMPRESSED = 3;
+
+  // Parts of the gzip format.
+  private static final int GZIP_MAGIC        = 0x8b1f;
+  private static final int GZIP_HEADER_SIZE  = 10;
+  private static final int GZIP_TRAILER_SIZE = 8;
+  private static final int GZIP_DEFLATE      = 8;
+  private static final int GZIP_FHCRC        = 0x02;
+  private static final int GZIP_FEXTRA       = 0x04;
+  private static final int GZIP_FNAME        = 0x08;
+  private static final int GZIP_FCOMMENT     = 0x10;
+
+  /**
+   * The initial size of each thread's buffers. Most chunks fit without the buffers needing to grow.
+   */
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  /**
+   * Decompresses a chunk's data into a new buffer.
+   * <p><br>
+   * The returned buffer is not shared with the current thread's pool, so it can be safely handed
+   * off to other threads. If the chunk will be decoded by the current thread right away, {@link
+   * #decompressToThreadBuffer(ChunkPayload)} avoids the copy.
+   *
+   * @param payload The chunk's compressed data. If the chunk is {@link ChunkPayload#isExternal()
+   *                external}, its data is read from its {@link ChunkPayload#getExternalFile()
+   *                external file} instead.
+   * @return a buffer whose remaining bytes are the chunk's binary NBT.
+   * @throws IllegalArgumentException if the {@code payload} is {@code null}.
+   * @throws MalformedInputException  if the chunk's compression type is unknown, or if its data is
+   *                                  corrupt.
+   * @throws IOException              if the chunk's external file cannot be found or read.
+   */
+  public static ByteBuffer decompress(ChunkPayload payload) throws IOException {
+    return decompress(payload, true);
+  }
+
+  /**
+   * Decompresses a chunk's data into the current thread's pooled buffer.
+   * <p><br>
+   * The returned buffer is only valid until the current thread compresses or decompresses another
+   * chunk, after which its contents are overwritten. It should not be shared with other threads.
+   *
+   * @return a buffer whose remaining bytes are the chunk's binary NBT.
+   * @throws IllegalArgumentException if the {@code payload} is {@code null}.
+   * @throws MalformedInputException  if the chunk's compression type is unknown, or if its data is
+   *                                  corrupt.
+   * @throws IOException              if the chunk's external file cannot be found or read.
+   * @see #decompress(ChunkPayload)
+   */
+  public static ByteBuffer decompressToThreadBuffer(ChunkPayload payload) throws IOException {
+    return decompress(payload, false);
+  }
+
+  /**
+   * Compresses a chunk's binary NBT, for storing in a region file.
+   *
+   * @param nbt             The chunk's binary NBT. Its remaining bytes are compressed, but its
+   *                        position is not changed.
+   * @param compressionType The scheme to compress the chunk with: {@link #GZIP}, {@link #ZLIB}, or
+   *                        {@link #UNCOMPRESSED}.
+   * @return a new buffer whose remaining bytes are the chunk's compressed data.
+   * @throws IllegalArgumentException if the {@code nbt} is {@code null}, or if the {@code
+   *                                  compressionType} is unknown.
+   */
+  public static ByteBuffer compress(ByteBuffer nbt, int compressionType) {
+    if (nbt == null) {
+      throw new IllegalArgumentException("nbt cannot be null");
+    } else if (compressionType != GZIP
+               && compressionType != ZLIB
+               && compressionType != UNCOMPRESSED) {
+      throw new IllegalArgumentException("Unknown compression type: " + compressionType);
+    }
+
+    Scratch scratch = SCRATCH.get();
+    ByteBuffer input = nbt.duplicate();
+    int length = input.remaining();
+
+    if (compressionType == UNCOMPRESSED) {
+      ByteBuffer copy = ByteBuffer.allocate(length);
+      copy.put(input);
+      return (ByteBuffer) ((Buffer) copy).flip();
+    }
+
+    byte[] in;
+    int offset;
+    if (input.hasArray()) {
+      in = input.array();
+      offset = input.arrayOffset() + input.position();
+    } else {
+      in = scratch.input(length);
+      input.get(in, 0, length);
+      offset = 0;
+    }
+
+    int compressedLength;
+    if (compressionType == GZIP) {
+      compressedLength = scratch.gzip(in, offset, length);
+    } else {
+      compressedLength = scratch.deflate(scratch.zlibDeflater, in, offset, length, 0);
+    }
+    return ByteBuffer.wrap(Arrays.copyOf(scratch.output, compressedLength));
+  }
+
+  private static ByteBuffer decompress(ChunkPayload payload, boolean copy) throws IOException {
+    if (payload == null) {
+      throw new IllegalArgumentException("payload cannot be null");
+    }
+
+    Scratch scratch = SCRATCH.get();
+    int compressionType = payload.getCompressionType();
+    if (compressionType != GZIP && compressionType != ZLIB && compressionType != UNCOMPRESSED) {
+      throw new MalformedInputException("chunk", "unknown compression type: " + compressionType);
+    }
+
+    // Java 8's inflaters can only read arrays, so the data is always copied into the thread's own.
+    byte[] in;
+    int length;
+    if (payload.isExternal()) {
+      length = scratch.readExternal(payload);
+      in = scratch.input;
+
+      if (compressionType == UNCOMPRESSED) {
+        return copy
+            ? ByteBuffer.wrap(Arrays.copyOf(in, length))
+            : ByteBuffer.wrap(in, 0, length).slice();
+      }
+    } else {
+      ByteBuffer data = payload.getData();
+      if (compressionType == UNCOMPRESSED) {
+        // Payloads' data is read-only, so it can be used as-is.
+        return data;
+      }
+
+      length = data.remaining();
+      in = scratch.input(length);
+      data.get(in, 0, length);
+    }
+
+    int decompressedLength = compressionType == GZIP
+        ? scratch.gunzip(in, 0, length)
+        : scratch.inflate(scratch.zlibInflater, in, 0, length);
+
+    return copy
+        ? ByteBuffer.wrap(Arrays.copyOf(scratch.output, decompressedLength))
+        : ByteBuffer.wrap(scratch.output, 0, decompressedLength).slice();
+  }
+
+  /**
+   * The inflaters, deflaters & buffers reused by a single thread.
+   */
+  private static final class Scratch {
+
+    final Inflater zlibInflater = new Inflater();
+    final Inflater rawInflater  = new Inflater(true);
+    final Deflater zlibDeflater = new Deflater();
+    final Deflater rawDeflater  = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    final CRC32    checksum     = new CRC32();
+
+    byte[] input  = new byte[INITIAL_BUFFER_SIZE];
+    byte[] output = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * @return the input buffer, grown if necessary to hold at least {@code length} bytes.
+     */
+    byte[] input(int length) {
+      if (input.length < length) {
+        input = new byte[Math.max(length, input.length * 2)];
+      }
+      return input;
+    }
+
+    /**
+     * Ensures that the output buffer has room for at least {@code extra} more bytes after the first
+     * {@code used} ones, keeping the bytes that were already written.
+     */
+    void reserveOutput(int used, int extra) {
+      if (output.length - used < extra) {
+        output = Arrays.copyOf(output, Math.max(used + extra, output.length * 2));
+      }
+    }
+
+    /**
+     * Reads the contents of a payload's external file into the input buffer.
+     *
+     * @return the number of bytes read.
+     */
+    int readExternal(ChunkPayload payload) throws IOException {
+      Path file = payload.getExternalFile();
+      if (file == null) {
+        throw new IOException("Unable to locate external file for chunk ["
+                              + payload.getChunkX() + ", " + payload.getChunkZ() + "]");
+      }
+
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+          throw new MalformedInputException("chunk", "external file is too large: " + file);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(input((int) size), 0, (int) size);
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) == -1) {
+            throw new EOFException("External file ended unexpectedly: " + file);
+          }
+        }
+        return (int) size;
+      }
+    }
+
+    /**
+     * Inflates the compressed bytes into the output buffer.
+     *
+     * @return the number of bytes written to the output buffer.
+     */
+    int inflate(Inflater inflater, byte[] in, int offset, int length)
+        throws MalformedInputException {
+      inflater.reset();
+      inflater.setInput(in, offset, length);
+
+      int written = 0;
+      try {
+        while (!inflater.finished()) {
+          if (written == output.length) {
+            reserveOutput(written, output.length);
+          }
+
+          int inflated = inflater.inflate(output, written, output.length - written);
+          if (inflated == 0) {
+            if (inflater.needsDictionary()) {
+              throw new MalformedInputException("chunk", "data requires a preset dictionary");
+            } else if (inflater.needsInput()) {
+              throw new MalformedInputException("chunk", "compressed data ended unexpectedly");
+            }
+          }
+          written += inflated;
+        }
+      } catch (DataFormatException e) {
+        throw new MalformedInputException("chunk", "corrupt compressed data", e);
+      }
+      return written;
+    }
+
+    /**
+     * Decompresses a gzip member into the output buffer, checking its header & trailer.
+     *
+     * @return the number of bytes written to the output buffer.
+     */
+    int gunzip(byte[] in, int offset, int length) throws MalformedInputException {
+      int end = offset + length;
+      if (length < GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE) {
+        throw new MalformedInputException("chunk", "gzip data is too short");
+      } else if (readShort(in, offset) != GZIP_MAGIC) {
+        throw new MalformedInputException("chunk", "missing gzip header");
+      } else if (in[offset + 2] != GZIP_DEFLATE) {
+        throw new MalformedInputException("chunk", "unknown gzip method: " + in[offset + 2]);
+      }
+
+      int flags = in[offset + 3];
+      int pos = offset + GZIP_HEADER_SIZE;
+      if ((flags & GZIP_FEXTRA) != 0) {
+        pos += 2 + readShort(in, pos);
+      }
+      if ((flags & GZIP_FNAME) != 0) {
+        pos = skipString(in, pos, end);
+      }
+      if ((flags & GZIP_FCOMMENT) != 0) {
+        pos = skipString(in, pos, end);
+      }
+      if ((flags & GZIP_FHCRC) != 0) {
+        pos += 2;
+      }
+      if (pos > end - GZIP_TRAILER_SIZE) {
+        throw new MalformedInputException("chunk", "gzip header ended unexpectedly");
+      }
+
+      int written = inflate(rawInflater, in, pos, end - pos);
+
+      int trailer = end - rawInflater.getRemaining();
+      if (end - trailer < GZIP_TRAILER_SIZE) {
+        throw new MalformedInputException("chunk", "missing gzip trailer");
+      }
+
+      checksum.reset();
+      checksum.update(output, 0, written);
+      if (readInt(in, trailer) != (int) checksum.getValue()) {
+        throw new MalformedInputException("chunk", "gzip checksum does not match");
+      } else if (readInt(in, trailer + 4) != written) {
+        throw new MalformedInputException("chunk", "gzip size does not match");
+      }
+      return written;
+    }
+
+    /**
+     * Deflates the bytes into the output buffer, starting {@code outputOffset} bytes in.
+     *
+     * @return the number of bytes in the output buffer, including the first {@code outputOffset}.
+     */
+    int deflate(Deflater deflater, byte[] in, int offset, int length, int outputOffset) {
+      deflater.reset();
+      deflater.setInput(in, offset, length);
+      deflater.finish();
+
+      int written = outputOffset;
+      while (!deflater.finished()) {
+        if (written == output.length) {
+          reserveOutput(written, output.length);
+        }
+        written += deflater.deflate(output, written, output.length - written);
+      }
+      return written;
+    }
+
+    /**
+     * Compresses the bytes into the output buffer as a gzip member.
+     *
+     * @return the number of bytes written to the output buffer.
+     */
+    int gzip(byte[] in, int offset, int length) {
+      // Same header as GZIPOutputStream, with no flags, timestamp, or OS.
+      reserveOutput(0, GZIP_HEADER_SIZE);
+      Arrays.fill(output, 0, GZIP_HEADER_SIZE, (byte) 0);
+      output[0] = (byte) GZIP_MAGIC;
+      output[1] = (byte) (GZIP_MAGIC >> 8);
+      output[2] = GZIP_DEFLATE;
+
+      int written = deflate(rawDeflater, in, offset, length, GZIP_HEADER_SIZE);
+
+      checksum.reset();
+      checksum.update(in, offset, length);
+      reserveOutput(written, GZIP_TRAILER_SIZE);
+      writeInt(output, written, (int) checksum.getValue());
+      writeInt(output, written + 4, length);
+      return written + GZIP_TRAILER_SIZE;
+    }
+
+    /**
+     * @return the index of the byte after the zero-terminated string starting at {@code pos}.
+     */
+    private static int skipString(byte[] in, int pos, int end) throws MalformedInputException {
+      while (pos < end) {
+        if (in[pos++] == 0) {
+          return pos;
+        }
+      }
+      throw new MalformedInputException("chunk", "gzip header ended unexpectedly");
+    }
+
+    // Gzip uses little-endian numbers.
+
+    private static int readShort(byte[] in, int pos) {
+      return (in[pos] & 0xFF) | (in[pos + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] in, int pos) {
+      return readShort(in, pos) | readShort(in, pos + 2) << 16;
+    }
+
+    private static void writeInt(byte[] out, int pos, int value) {
+      out[pos] = (byte) value;
+      out[pos + 1] = (byte) (value >> 8);
+      out[pos + 2] = (byte) (value >> 16);
+      out[pos + 3] = (byte) (value >> 24);
+    }
+  }
+
+  private ChunkCompression() {
+  }
+}
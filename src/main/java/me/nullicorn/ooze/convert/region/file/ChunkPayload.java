@@ -0,0 +1,129 @@
+package me.nullicorn.ooze.convert.region.file;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * The compressed data for a single chunk in a region file.
+ *
+ * @author Nullicorn
+ */
+public final class ChunkPayload {
+
+  private final int        chunkX;
+  private final int        chunkZ;
+  private final int        timestamp;
+  private final int        compressionType;
+  private final boolean    isExternal;
+  private final Path       externalFile;
+  private final ByteBuffer data;
+
+  /**
+   * @param chunkX          The chunk's X coordinate, relative to its region ({@code 0-31}).
+   * @param chunkZ          The chunk's Z coordinate, relative to its region ({@code 0-31}).
+   * @param timestamp       The time that the chunk was last saved, in seconds since the epoch.
+   * @param compressionType The scheme that the {@code data} is compressed with, excluding the
+   *                        {@link RegionFileFormat#EXTERNAL_FLAG external flag}.
+   * @param isExternal      Whether or not the chunk's data is stored in a separate {@code .mcc}
+   *                        file.
+   * @param externalFile    The path to the chunk's {@code .mcc} file, or {@code null} if it is not
+   *                        external, or if the file's location is unknown.
+   * @param data            The chunk's compressed data. Not copied.
+   * @throws IllegalArgumentException if the {@code data} is {@code null}.
+   */
+  ChunkPayload(int chunkX, int chunkZ, int timestamp, int compressionType, boolean isExternal,
+      Path externalFile, ByteBuffer data) {
+    if (data == null) {
+      throw new IllegalArgumentException("data cannot be null");
+    }
+
+    this.chunkX = chunkX;
+    this.chunkZ = chunkZ;
+    this.timestamp = timestamp;
+    this.compressionType = compressionType;
+    this.isExternal = isExternal;
+    this.externalFile = externalFile;
+    this.data = data;
+  }
+
+  /**
+   * @return the chunk's X coordinate, relative to its region ({@code 0-31}).
+   */
+  public int getChunkX() {
+    return chunkX;
+  }
+
+  /**
+   * @return the chunk's Z coordinate, relative to its region ({@code 0-31}).
+   */
+  public int getChunkZ() {
+    return chunkZ;
+  }
+
+  /**
+   * @return the time that the chunk was last saved, in seconds since the epoch.
+   */
+  public int getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return the scheme that the chunk's {@link #getData() data} is compressed with. In vanilla,
+   * {@code 1} is gzip, {@code 2} is zlib, and {@code 3} is uncompressed.
+   */
+  public int getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @return {@code true} if the chunk's data is stored in a separate {@code c.X.Z.mcc} file, next
+   * to the region file. If so, the payload's {@link #getData() data} is empty. Otherwise {@code
+   * false}.
+   */
+  public boolean isExternal() {
+    return isExternal;
+  }
+
+  /**
+   * @return the path to the {@code .mcc} file that the chunk's data is stored in, or {@code null}
+   * if the chunk is not {@link #isExternal() external}, or if the file's location could not be
+   * determined from the region file's name.
+   * @see ChunkCompression#decompress(ChunkPayload)
+   */
+  public Path getExternalFile() {
+    return externalFile;
+  }
+
+  /**
+   * The chunk's data, still compressed according to its {@link #getCompressionType() compression
+   * type}.
+   * <p><br>
+   * For payloads read from a {@link RegionFile}, the buffer is a read-only view of the mapped file,
+   * so its contents are not copied into memory until they are read. Each call returns a new view
+   * with its own position & limit, so the data can be read by multiple threads at once.
+   *
+   * @return a read-only buffer whose remaining bytes are the chunk's data.
+   */
+  public ByteBuffer getData() {
+    return data.asReadOnlyBuffer();
+  }
+
+  /**
+   * @return the number of bytes in the chunk's {@link #getData() data}.
+   */
+  public int getLength() {
+    return data.remaining();
+  }
+
+  @Override
+  public String toString() {
+    return "ChunkPayload{" +
+           "x=" + chunkX +
+           ", z=" + chunkZ +
+           ", timestamp=" + timestamp +
+           ", compressionType=" + compressionType +
+           ", isExternal=" + isExternal +
+           ", length=" + getLength() +
+           '}';
+  }
+}
@@ -0,0 +1,220 @@
+package me.nullicorn.ooze.convert.region.file;
+
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.CHUNKS_PER_REGION;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.CHUNK_HEADER_SIZE;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.EXTERNAL_FLAG;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.HEADER_SECTORS;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.REGION_WIDTH;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.SECTOR_SIZE;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.indexOf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import me.nullicorn.ooze.convert.MalformedInputException;
+
+/**
+ * Read-only access to the chunks in an Anvil region file ({@code .mca}).
+ * <p><br>
+ * The file is memory-mapped when opened, so chunk payloads are handed out as views of the mapping,
+ * without being copied. This leaves caching up to the OS, which can share the file's pages between
+ * any number of readers & processes.
+ * <p><br>
+ * Region files are immutable once opened, so chunks can be read by multiple threads at once.
+ *
+ * @author Nullicorn
+ */
+public final class RegionFile implements Closeable {
+
+  /**
+   * Memory-maps a region file, and reads its location & timestamp tables.
+   * <p><br>
+   * Empty files are treated as regions without any chunks, as vanilla sometimes creates them.
+   *
+   * @param file The path to the {@code .mca} file.
+   * @return a reader for the file.
+   * @throws IllegalArgumentException if the {@code file} is {@code null}.
+   * @throws MalformedInputException  if the file is too short to contain its tables, if it is too
+   *                                  large to be mapped, or if any chunk's location is outside of
+   *                                  the file.
+   * @throws IOException              if the file cannot be opened or mapped.
+   */
+  public static RegionFile open(Path file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file cannot be null");
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      if (fileSize == 0) {
+        return new RegionFile(file, ByteBuffer.allocate(0), new int[CHUNKS_PER_REGION],
+            new int[CHUNKS_PER_REGION]);
+      } else if (fileSize < HEADER_SECTORS * SECTOR_SIZE) {
+        throw new MalformedInputException("region file", "too short: " + fileSize + " bytes");
+      } else if (fileSize > Integer.MAX_VALUE) {
+        throw new MalformedInputException("region file", "too long: " + fileSize + " bytes");
+      }
+
+      // The mapping stays valid after the channel is closed.
+      MappedByteBuffer mapping = channel.map(MapMode.READ_ONLY, 0, fileSize);
+
+      int[] locations = new int[CHUNKS_PER_REGION];
+      int[] timestamps = new int[CHUNKS_PER_REGION];
+      for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+        locations[i] = mapping.getInt(i * Integer.BYTES);
+        timestamps[i] = mapping.getInt(SECTOR_SIZE + i * Integer.BYTES);
+        validateLocation(i, locations[i], fileSize);
+      }
+
+      return new RegionFile(file, mapping, locations, timestamps);
+    }
+  }
+
+  /**
+   * @throws MalformedInputException if a non-empty {@code location} overlaps the file's tables, or
+   *                                 if it starts beyond the end of the file.
+   */
+  private static void validateLocation(int index, int location, long fileSize)
+      throws MalformedInputException {
+    if (location == 0) {
+      return;
+    }
+
+    int sectorOffset = location >>> 8;
+    int sectorCount = location & 0xFF;
+    if (sectorOffset < HEADER_SECTORS || sectorCount == 0
+        || (long) sectorOffset * SECTOR_SIZE + CHUNK_HEADER_SIZE > fileSize) {
+      throw new MalformedInputException("region file",
+          "chunk " + index + " has invalid location: " + sectorOffset + "+" + sectorCount);
+    }
+  }
+
+  private final Path       file;
+  private final ByteBuffer mapping;
+  private final int[]      locations;
+  private final int[]      timestamps;
+
+  private RegionFile(Path file, ByteBuffer mapping, int[] locations, int[] timestamps) {
+    this.file = file;
+    this.mapping = mapping;
+    this.locations = locations;
+    this.timestamps = timestamps;
+  }
+
+  /**
+   * @return the path that the region file was opened from.
+   */
+  public Path getPath() {
+    return file;
+  }
+
+  /**
+   * @return the number of chunks present in the region.
+   */
+  public int chunkCount() {
+    int count = 0;
+    for (int location : locations) {
+      if (location != 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Coordinates may be either relative to the region ({@code 0-31}), or absolute. Absolute
+   * coordinates are wrapped to the region's bounds.
+   *
+   * @return {@code true} if the region contains data for the chunk. Otherwise {@code false}.
+   */
+  public boolean hasChunk(int chunkX, int chunkZ) {
+    return locations[indexOf(chunkX, chunkZ)] != 0;
+  }
+
+  /**
+   * Coordinates may be either relative to the region ({@code 0-31}), or absolute. Absolute
+   * coordinates are wrapped to the region's bounds.
+   *
+   * @return the time that the chunk was last saved, in seconds since the epoch, or {@code 0} if the
+   * chunk has never been saved.
+   */
+  public int getTimestamp(int chunkX, int chunkZ) {
+    return timestamps[indexOf(chunkX, chunkZ)];
+  }
+
+  /**
+   * Retrieves the compressed data for a chunk in the region. Coordinates may be either relative to
+   * the region ({@code 0-31}), or absolute. Absolute coordinates are wrapped to the region's
+   * bounds.
+   *
+   * @return the chunk's payload, or {@code null} if the region does not contain the chunk.
+   * @throws MalformedInputException if the chunk's length is invalid, or if its data extends beyond
+   *                                 its sectors or the end of the file.
+   */
+  public ChunkPayload getPayload(int chunkX, int chunkZ) throws MalformedInputException {
+    int index = indexOf(chunkX, chunkZ);
+    int location = locations[index];
+    if (location == 0) {
+      return null;
+    }
+
+    int start = (location >>> 8) * SECTOR_SIZE;
+    int sectorBytes = (location & 0xFF) * SECTOR_SIZE;
+
+    // The length includes the compression type's byte, but not the length itself.
+    int length = mapping.getInt(start);
+    int compressionType = mapping.get(start + Integer.BYTES) & 0xFF;
+    int dataLength = length - 1;
+    if (length < 1
+        || dataLength > sectorBytes - CHUNK_HEADER_SIZE
+        || dataLength > mapping.capacity() - start - CHUNK_HEADER_SIZE) {
+      throw new MalformedInputException("region file",
+          "chunk " + index + " has invalid length: " + length);
+    }
+
+    boolean isExternal = (compressionType & EXTERNAL_FLAG) != 0;
+    ByteBuffer data;
+    if (isExternal) {
+      data = ByteBuffer.allocate(0);
+    } else {
+      // Buffer casts keep the bytecode compatible with Java 8 when compiled on newer JDKs.
+      ByteBuffer view = mapping.duplicate();
+      int dataStart = start + CHUNK_HEADER_SIZE;
+      ((Buffer) view).limit(dataStart + dataLength);
+      ((Buffer) view).position(dataStart);
+      data = view.slice().asReadOnlyBuffer();
+    }
+
+    Path externalFile = isExternal
+        ? RegionFileFormat.externalFileOf(file, index)
+        : null;
+    return new ChunkPayload(index % REGION_WIDTH, index / REGION_WIDTH, timestamps[index],
+        compressionType & ~EXTERNAL_FLAG, isExternal, externalFile, data);
+  }
+
+  /**
+   * Does nothing, since the file is not held open once it is mapped. The mapping is released once
+   * the reader and all of its payloads are garbage-collected.
+   * <p><br>
+   * Implemented so that readers can be used in try-with-resources blocks, in case they hold
+   * resources in the future.
+   */
+  @Override
+  public void close() {
+    // Mapped buffers cannot be unmapped explicitly in Java 8.
+  }
+
+  @Override
+  public String toString() {
+    return "RegionFile{" +
+           "file=" + file +
+           ", chunks=" + chunkCount() +
+           '}';
+  }
+}
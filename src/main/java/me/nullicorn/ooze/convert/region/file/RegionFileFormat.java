@@ -0,0 +1,112 @@
+package me.nullicorn.ooze.convert.region.file;
+
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Constants & helpers describing the layout of Anvil region files ({@code .mca}).
+ * <p><br>
+ * Region files are divided into 4 KiB sectors. The first sector holds the location of each chunk,
+ * as a 3-byte sector offset followed by a 1-byte sector count. The second holds the time that
+ * each chunk was last saved, in seconds. Chunk data fills the remaining sectors, each chunk
+ * starting with a 4-byte length and a 1-byte compression type.
+ *
+ * @author Nullicorn
+ */
+final class RegionFileFormat {
+
+  /**
+   * The number of bytes in each sector of a region file.
+   */
+  static final int SECTOR_SIZE = 4096;
+
+  /**
+   * The number of chunks along each horizontal axis of a region.
+   */
+  static final int REGION_WIDTH = 32;
+
+  /**
+   * The number of chunks in a single region.
+   */
+  static final int CHUNKS_PER_REGION = REGION_WIDTH * REGION_WIDTH;
+
+  /**
+   * The number of sectors used by the location & timestamp tables combined.
+   */
+  static final int HEADER_SECTORS = 2;
+
+  /**
+   * The highest number of sectors that a single chunk can use, given that its sector count is
+   * stored in a single byte.
+   */
+  static final int MAX_CHUNK_SECTORS = 255;
+
+  /**
+   * The highest sector offset that a location can point to, given that it is stored in 3 bytes.
+   */
+  static final int MAX_SECTOR_OFFSET = 0xFFFFFF;
+
+  /**
+   * The number of bytes preceding each chunk's payload: a 4-byte length and a 1-byte compression
+   * type.
+   */
+  static final int CHUNK_HEADER_SIZE = 5;
+
+  /**
+   * The bit set in a chunk's compression type if its payload is stored in a separate {@code .mcc}
+   * file, rather than in the region file.
+   */
+  static final int EXTERNAL_FLAG = 0x80;
+
+  /**
+   * Matches the names of region files, capturing the region's X and Z coordinates respectively.
+   */
+  private static final Pattern FILE_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+  /**
+   * @return the index of a chunk's entry in the location & timestamp tables. Coordinates outside of
+   * a single region are wrapped, so either region-relative or absolute coordinates can be used.
+   */
+  static int indexOf(int chunkX, int chunkZ) {
+    return (chunkX & (REGION_WIDTH - 1)) + (chunkZ & (REGION_WIDTH - 1)) * REGION_WIDTH;
+  }
+
+  /**
+   * @return the number of whole sectors needed to hold {@code byteCount} bytes.
+   */
+  static int sectorsNeeded(long byteCount) {
+    return (int) ((byteCount + SECTOR_SIZE - 1) / SECTOR_SIZE);
+  }
+
+  /**
+   * Determines where an external chunk's payload is stored. Vanilla names these files {@code
+   * c.<x>.<z>.mcc}, using the chunk's absolute coordinates, and stores them next to the region
+   * file.
+   *
+   * @param regionFile The region file that the chunk belongs to.
+   * @param index      The chunk's {@link #indexOf(int, int) index} in the region.
+   * @return the path to the chunk's {@code .mcc} file, or {@code null} if the region's coordinates
+   * cannot be determined from its file name.
+   */
+  static Path externalFileOf(Path regionFile, int index) {
+    Path fileName = regionFile.getFileName();
+    Matcher name = FILE_NAME.matcher(fileName != null ? fileName.toString() : "");
+    if (!name.matches()) {
+      return null;
+    }
+
+    long chunkX;
+    long chunkZ;
+    try {
+      chunkX = Long.parseLong(name.group(1)) * REGION_WIDTH + index % REGION_WIDTH;
+      chunkZ = Long.parseLong(name.group(2)) * REGION_WIDTH + index / REGION_WIDTH;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return regionFile.resolveSibling("c." + chunkX + "." + chunkZ + ".mcc");
+  }
+
+  private RegionFileFormat() {
+  }
+}
@@ -0,0 +1,252 @@
+package me.nullicorn.ooze.convert.region.file;
+
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.CHUNKS_PER_REGION;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.CHUNK_HEADER_SIZE;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.EXTERNAL_FLAG;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.HEADER_SECTORS;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.MAX_CHUNK_SECTORS;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.MAX_SECTOR_OFFSET;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.SECTOR_SIZE;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.indexOf;
+import static me.nullicorn.ooze.convert.region.file.RegionFileFormat.sectorsNeeded;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes chunks to a new Anvil region file ({@code .mca}).
+ * <p><br>
+ * Chunks are assigned sectors in the order they are written, starting right after the file's
+ * tables, so the file is only ever written sequentially. Rather than writing each chunk
+ * individually, chunks are queued until a batch of them is large enough, and then the whole batch
+ * is written at once using a single gathering write. The location & timestamp tables are written
+ * last, when the writer is {@link #close() closed}.
+ * <p><br>
+ * Writers are thread-safe, but each chunk can only be written once.
+ *
+ * @author Nullicorn
+ */
+public final class RegionFileWriter implements Closeable {
+
+  /**
+   * The default number of bytes that are queued before they are written to the file.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1024 * 1024;
+
+  /**
+   * Zeros used to pad each chunk to a whole number of sectors. Read-only, so that it can be shared.
+   */
+  private static final ByteBuffer PADDING = ByteBuffer.allocate(SECTOR_SIZE).asReadOnlyBuffer();
+
+  /**
+   * Creates a new region file, or replaces an existing one, using the {@link #DEFAULT_BATCH_SIZE
+   * default batch size}.
+   *
+   * @see #create(Path, int)
+   */
+  public static RegionFileWriter create(Path file) throws IOException {
+    return create(file, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Creates a new region file, or replaces an existing one.
+   *
+   * @param file      The path to write the {@code .mca} file to.
+   * @param batchSize The minimum number of bytes that are queued before they are written to the
+   *                  file. Larger batches mean fewer, larger writes.
+   * @return a writer for the file.
+   * @throws IllegalArgumentException if the {@code file} is {@code null}, or if the {@code
+   *                                  batchSize} is negative.
+   * @throws IOException              if the file cannot be opened for writing.
+   */
+  public static RegionFileWriter create(Path file, int batchSize) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file cannot be null");
+    } else if (batchSize < 0) {
+      throw new IllegalArgumentException("batchSize cannot be negative: " + batchSize);
+    }
+
+    FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+    return new RegionFileWriter(channel, batchSize);
+  }
+
+  private final FileChannel channel;
+  private final int         batchSize;
+
+  private final int[] locations;
+  private final int[] timestamps;
+
+  /**
+   * The sector that the next chunk will start at.
+   */
+  private int nextSector;
+
+  /**
+   * Buffers waiting to be written at the end of the file, in order.
+   */
+  private final List<ByteBuffer> pending;
+  private       long             pendingBytes;
+
+  private boolean isClosed;
+
+  private RegionFileWriter(FileChannel channel, int batchSize) throws IOException {
+    this.channel = channel;
+    this.batchSize = batchSize;
+
+    locations = new int[CHUNKS_PER_REGION];
+    timestamps = new int[CHUNKS_PER_REGION];
+    pending = new ArrayList<>();
+
+    // Leave room for the tables, which are written when closing.
+    nextSector = HEADER_SECTORS;
+    channel.position((long) HEADER_SECTORS * SECTOR_SIZE);
+  }
+
+  /**
+   * Queues a chunk to be written to the file.
+   * <p><br>
+   * The {@code data} is not copied, so its contents must not be changed until the next {@link
+   * #flush()} or {@link #close()}. Its position is left unchanged.
+   *
+   * @param chunkX          The chunk's X coordinate. Absolute coordinates are wrapped to the
+   *                        region's bounds.
+   * @param chunkZ          The chunk's Z coordinate. Absolute coordinates are wrapped to the
+   *                        region's bounds.
+   * @param timestamp       The time that the chunk was last saved, in seconds since the epoch.
+   * @param compressionType The scheme that the {@code data} is compressed with. In vanilla, {@code
+   *                        1} is gzip, {@code 2} is zlib, and {@code 3} is uncompressed.
+   * @param data            The chunk's compressed data, from its position to its limit.
+   * @throws IllegalArgumentException if the {@code data} is {@code null}, if the {@code
+   *                                  compressionType} does not fit in 7 bits, or if the chunk has
+   *                                  already been written.
+   * @throws IOException              if the chunk is larger than 255 sectors (about 1 MiB), if the
+   *                                  file is full, if the writer is closed, or if the batch could
+   *                                  not be written.
+   */
+  public synchronized void write(int chunkX, int chunkZ, int timestamp, int compressionType,
+      ByteBuffer data) throws IOException {
+    if (data == null) {
+      throw new IllegalArgumentException("data cannot be null");
+    } else if (compressionType < 0 || compressionType >= EXTERNAL_FLAG) {
+      throw new IllegalArgumentException("Invalid compressionType: " + compressionType);
+    } else if (isClosed) {
+      throw new ClosedChannelException();
+    }
+
+    int index = indexOf(chunkX, chunkZ);
+    if (locations[index] != 0) {
+      throw new IllegalArgumentException("Chunk has already been written: " + chunkX + ", " +
+                                         chunkZ);
+    }
+
+    int dataLength = data.remaining();
+    long chunkLength = (long) CHUNK_HEADER_SIZE + dataLength;
+    int sectorCount = sectorsNeeded(chunkLength);
+    if (sectorCount > MAX_CHUNK_SECTORS) {
+      throw new IOException("Chunk is too large for a region file: " + chunkLength + " bytes");
+    } else if (nextSector + sectorCount - 1 > MAX_SECTOR_OFFSET) {
+      throw new IOException("Region file is full");
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+    header.putInt(dataLength + 1);
+    header.put((byte) compressionType);
+    ((Buffer) header).flip();
+
+    int paddingLength = (int) ((long) sectorCount * SECTOR_SIZE - chunkLength);
+    ByteBuffer padding = PADDING.duplicate();
+    ((Buffer) padding).limit(paddingLength);
+
+    pending.add(header);
+    pending.add(data.duplicate());
+    pending.add(padding);
+    pendingBytes += (long) sectorCount * SECTOR_SIZE;
+
+    locations[index] = (nextSector << 8) | sectorCount;
+    timestamps[index] = timestamp;
+    nextSector += sectorCount;
+
+    if (pendingBytes >= batchSize) {
+      writePending();
+    }
+  }
+
+  /**
+   * Writes any queued chunks to the file. The file's tables are not written until the writer is
+   * {@link #close() closed}.
+   *
+   * @throws IOException if the writer is closed, or if the chunks could not be written.
+   */
+  public synchronized void flush() throws IOException {
+    if (isClosed) {
+      throw new ClosedChannelException();
+    }
+    writePending();
+  }
+
+  /**
+   * Writes any queued chunks, followed by the file's location & timestamp tables, and then closes
+   * the file. Does nothing if the writer is already closed.
+   *
+   * @throws IOException if the chunks or tables could not be written.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+
+    try {
+      writePending();
+
+      ByteBuffer tables = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+      for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+        tables.putInt(i * Integer.BYTES, locations[i]);
+        tables.putInt(SECTOR_SIZE + i * Integer.BYTES, timestamps[i]);
+      }
+
+      long position = 0;
+      while (tables.hasRemaining()) {
+        position += channel.write(tables, position);
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes all queued buffers to the end of the file using gathering writes, then clears the
+   * queue.
+   */
+  private void writePending() throws IOException {
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    ByteBuffer[] buffers = pending.toArray(new ByteBuffer[0]);
+    int offset = 0;
+    while (offset < buffers.length) {
+      channel.write(buffers, offset, buffers.length - offset);
+
+      // Skip any buffers that were fully written.
+      while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+        offset++;
+      }
+    }
+
+    pending.clear();
+    pendingBytes = 0;
+  }
+}
@@ -1,6 +1,8 @@
 package me.nullicorn.ooze.convert.region.legacy;
 
+import java.util.Set;
 import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.VersionSupportTable;
 import me.nullicorn.ooze.convert.VersionedTag;
 import me.nullicorn.ooze.level.BlockState;
 
@@ -54,7 +56,46 @@ enum LegacyTag implements VersionedTag {
    * a {@link NumericBlockState numeric} block state within the properties of a {@link BlockState
    * standard} block state.
    */
-  OOZE_STATE_VARIANT("variant", TagType.BYTE, 99, 1450);
+  OOZE_STATE_VARIANT("variant", TagType.BYTE, 99, 1450),
+
+  /**
+   * An optional internal tag used by {@link NumericBlockStateCodec} to store the upper 4 bits of a
+   * {@link NumericBlockState numeric} block state's {@code type}, for states whose type uses 12
+   * bits. These bits come from a section's {@link #BLOCK_TYPES_EXTENDED Add} array.
+   */
+  OOZE_STATE_TYPE_EXTENSION("typeExtension", TagType.BYTE, 99, 1450);
+
+  /**
+   * The tags supported by each range of versions, computed once when the enum is initialized.
+   * Legacy tags are never supported after version {@code 1450}, when numeric IDs were removed.
+   */
+  private static final VersionSupportTable<LegacyTag> SUPPORT =
+      VersionSupportTable.of(LegacyTag.class, 1450);
+
+  /**
+   * @return the table of which tags are supported by each version, for checking codecs' required
+   * tags.
+   * @see me.nullicorn.ooze.convert.VersionedCodec
+   */
+  static VersionSupportTable<LegacyTag> supportTable() {
+    return SUPPORT;
+  }
+
+  /**
+   * @return a mask of the tags supported in the {@code dataVersion}, where each tag's bit is {@code
+   * 1 << ordinal()}.
+   * @see VersionSupportTable#supportMask(int)
+   */
+  static long supportMask(int dataVersion) {
+    return SUPPORT.supportMask(dataVersion);
+  }
+
+  /**
+   * @return an unmodifiable set of the tags supported in the {@code dataVersion}.
+   */
+  static Set<LegacyTag> supportedIn(int dataVersion) {
+    return SUPPORT.supportedIn(dataVersion);
+  }
 
   private final String  tagName;
   private final TagType tagType;
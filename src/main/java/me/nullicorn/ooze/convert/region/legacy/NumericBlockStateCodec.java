@@ -3,7 +3,6 @@ package me.nullicorn.ooze.convert.region.legacy;
 import java.io.IOException;
 import me.nullicorn.nedit.type.NBTCompound;
 import me.nullicorn.ooze.convert.VersionedCodec;
-import me.nullicorn.ooze.convert.VersionedTag;
 import me.nullicorn.ooze.level.BlockState;
 
 /**
@@ -21,8 +20,9 @@ class NumericBlockStateCodec extends VersionedCodec<BlockState, NumericBlockStat
   private static final String STATE_NAME = "ooze:any_pre_flattening";
 
   // Internal NBT tags used to persist the type & variant of numeric states.
-  private static final VersionedTag TYPE_TAG    = LegacyTag.OOZE_STATE_TYPE;
-  private static final VersionedTag VARIANT_TAG = LegacyTag.OOZE_STATE_VARIANT;
+  private static final LegacyTag TYPE_TAG           = LegacyTag.OOZE_STATE_TYPE;
+  private static final LegacyTag TYPE_EXTENSION_TAG = LegacyTag.OOZE_STATE_TYPE_EXTENSION;
+  private static final LegacyTag VARIANT_TAG        = LegacyTag.OOZE_STATE_VARIANT;
 
   /**
    * Creates a codec compatible with a specific Minecraft {@code dataVersion}.
@@ -31,7 +31,7 @@ class NumericBlockStateCodec extends VersionedCodec<BlockState, NumericBlockStat
    *                                  {@code 1450} exclusive.
    */
   NumericBlockStateCodec(int dataVersion) {
-    super(dataVersion, TYPE_TAG, VARIANT_TAG);
+    super(dataVersion, LegacyTag.supportTable(), TYPE_TAG, TYPE_EXTENSION_TAG, VARIANT_TAG);
   }
 
   // TODO: 9/28/21 Document encoding process.
@@ -53,16 +53,17 @@ class NumericBlockStateCodec extends VersionedCodec<BlockState, NumericBlockStat
     }
 
     // Get the block's main type (8 bits; required).
-    int type = getTagValue(TYPE_TAG, properties)
-        .map(int.class::cast)
+    byte type = getTagValue(TYPE_TAG, properties)
+        .map(Byte.class::cast)
         .orElseThrow(() -> new IOException("Numeric state has no type: " + state));
 
+    // Get the upper bits of the block's type (4 bits; only for 12-bit types).
+    byte typeExtension = getByte(TYPE_EXTENSION_TAG, properties, (byte) 0);
+
     // Get the block's variant (4 bits; not required).
-    int variant = getTagValue(VARIANT_TAG, properties)
-        .map(int.class::cast)
-        .orElse(0);
+    byte variant = getByte(VARIANT_TAG, properties, (byte) 0);
 
-    return new NumericBlockState(type, (byte) variant);
+    return new NumericBlockState((type & 0xff) | ((typeExtension & 0xf) << 8), variant);
   }
 
   @Override
@@ -71,12 +72,15 @@ class NumericBlockStateCodec extends VersionedCodec<BlockState, NumericBlockStat
       throw new IllegalArgumentException("null cannot be decoded as a numeric block state");
     }
 
-    int type = state.getType();
-    int variant = state.getVariant();
+    byte type = state.getType();
+    byte variant = (byte) state.getVariant();
     boolean isEmpty = state.isEmpty();
     NBTCompound properties = new NBTCompound();
 
     setTagValue(TYPE_TAG, type, properties);
+    if (state.isTypeExtended()) {
+      setTagValue(TYPE_EXTENSION_TAG, state.getTypeExtension(), properties);
+    }
     if (state.isVariant()) {
       setTagValue(VARIANT_TAG, variant, properties);
     }
@@ -42,7 +42,7 @@ final class PaletteBuilder {
    * internally.
    * <p>
    * {@code extension} and {@code type} are combined like so:
-   * <pre>{@code (type & 0xff) | ((extension & 0xf) << 4)}</pre>
+   * <pre>{@code (type & 0xff) | ((extension & 0xf) << 8)}</pre>
    * The result is a 12-bit integer with {@code type} being the lower 8 bits, and {@code extension}
    * being the upper 4 bits.
    *
@@ -53,7 +53,7 @@ final class PaletteBuilder {
     extension &= 0xf;
     variant &= 0xf;
 
-    int type = typeBase | (extension << 4);
+    int type = typeBase | (extension << 8);
     return add(type, variant);
   }
 
@@ -75,8 +75,9 @@ final class PaletteBuilder {
     int hash = hashState(type, variant);
     int index = hashToIndex.get(hash);
     if (index == -1) {
+      index = legacyStates.size();
       legacyStates.add(new NumericBlockState(type, (byte) variant));
-      hashToIndex.set(hash, legacyStates.size() - 1);
+      hashToIndex.set(hash, index);
     }
 
     return index;
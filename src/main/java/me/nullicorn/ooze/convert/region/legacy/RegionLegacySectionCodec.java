@@ -1,15 +1,18 @@
 package me.nullicorn.ooze.convert.region.legacy;
 
 import java.io.IOException;
-import java.util.Optional;
+import java.util.Arrays;
 import me.nullicorn.nedit.type.NBTCompound;
 import me.nullicorn.nedit.type.TagType;
 import me.nullicorn.ooze.convert.Codec;
+import me.nullicorn.ooze.convert.CodecMetrics;
 import me.nullicorn.ooze.convert.MalformedInputException;
 import me.nullicorn.ooze.convert.VersionedCodec;
-import me.nullicorn.ooze.convert.VersionedTag;
 import me.nullicorn.ooze.convert.region.RegionSectionCodec;
+import me.nullicorn.ooze.convert.region.SectionCodecOptions;
+import me.nullicorn.ooze.convert.region.SectionScratch;
 import me.nullicorn.ooze.convert.region.storage.NibbleArray;
+import me.nullicorn.ooze.level.BitHelper;
 import me.nullicorn.ooze.level.BlockState;
 import me.nullicorn.ooze.level.Cell;
 import me.nullicorn.ooze.level.PackedUIntArray;
@@ -33,105 +36,220 @@ public class RegionLegacySectionCodec extends VersionedCodec<Cell, NBTCompound>
   private static final int BLOCKS_PER_CELL = 4096;
 
   // Chunk section NBT tags (not static imports for readability).
-  private static final VersionedTag BLOCK_TYPES          = LegacyTag.BLOCK_TYPES;
-  private static final VersionedTag BLOCK_TYPES_EXTENDED = LegacyTag.BLOCK_TYPES_EXTENDED;
-  private static final VersionedTag BLOCK_VARIANTS       = LegacyTag.BLOCK_VARIANTS;
+  private static final LegacyTag BLOCK_TYPES          = LegacyTag.BLOCK_TYPES;
+  private static final LegacyTag BLOCK_TYPES_EXTENDED = LegacyTag.BLOCK_TYPES_EXTENDED;
+  private static final LegacyTag BLOCK_VARIANTS       = LegacyTag.BLOCK_VARIANTS;
 
   private final Codec<BlockState, NumericBlockState> stateCodec;
+  private final SectionCodecOptions                  options;
 
   /**
-   * Creates a codec compatible with a specific Minecraft {@code dataVersion}.
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}, using the {@link
+   * SectionCodecOptions#defaults() default options}.
    *
    * @throws IllegalArgumentException if the supplied {@code dataVersion} is not between {@code 99}
    *                                  and {@code 1450} inclusive.
    */
   public RegionLegacySectionCodec(int dataVersion) {
-    super(dataVersion, BLOCK_TYPES, BLOCK_TYPES_EXTENDED, BLOCK_VARIANTS);
+    this(dataVersion, SectionCodecOptions.defaults());
+  }
+
+  /**
+   * Creates a codec compatible with a specific Minecraft {@code dataVersion}.
+   *
+   * @param options Optional behavior for the codec to use when encoding & decoding.
+   * @throws IllegalArgumentException if the supplied {@code dataVersion} is not between {@code 99}
+   *                                  and {@code 1450} inclusive, or if the {@code options} are
+   *                                  {@code null}.
+   */
+  public RegionLegacySectionCodec(int dataVersion, SectionCodecOptions options) {
+    super(dataVersion, LegacyTag.supportTable(), BLOCK_TYPES, BLOCK_TYPES_EXTENDED,
+        BLOCK_VARIANTS);
+
+    if (options == null) {
+      throw new IllegalArgumentException("options cannot be null");
+    }
+
     this.stateCodec = new NumericBlockStateCodec(dataVersion);
+    this.options = options;
   }
 
   // TODO: 9/28/21 Document encoding process.
 
   @Override
   public NBTCompound encode(Cell cell) throws IOException {
+    if (cell == null) {
+      throw new IllegalArgumentException("null cannot be encoded as a chunk section");
+    }
+    CodecMetrics metrics = options.metrics();
+    boolean isMeasured = metrics.isEnabled();
+    long start = isMeasured ? System.nanoTime() : 0;
+
+    // Empty sections are elided by leaving out their blocks.
+    if (options.elidesEmptySections() && options.isEmptyCell(cell)) {
+      if (isMeasured) {
+        metrics.sectionEncoded(dataVersion, 0, 0, true, 0, System.nanoTime() - start);
+      }
+      return new NBTCompound();
+    }
+
     // Pull out the section's palette & blocks so we don't repeatedly get them.
     Palette srcPalette = cell.getPalette();
     PackedUIntArray srcBlocks = cell.getBlocks();
 
     // Create the tags that will end up being returned in the NBT compound. Extensions and Variants
-    // are created lazily (as-needed).
+    // are borrowed lazily (as-needed), and copied into the output once they are complete.
+    SectionScratch scratch = SectionScratch.of(options);
     byte[] types = new byte[srcBlocks.size()];
-    NibbleArray extensions = null;
-    NibbleArray variants = null;
+    byte[] extensions = null;
+    byte[] variants = null;
 
     // Acts as a mirror of the srcPalette, but using NumericBlockStates instead of standard
     // BlockStates. States are only added to this array as-needed, so that they can be re-used by
     // subsequent blocks with the same state.
     NumericBlockState[] legacyPalette = new NumericBlockState[srcPalette.size()];
 
-    for (int i = 0; i < types.length; i++) {
-      NumericBlockState state;
-      int paletteIndex = srcBlocks.get(i);
+    try {
+      for (int i = 0; i < types.length; i++) {
+        NumericBlockState state;
+        int paletteIndex = srcBlocks.get(i);
 
-      if (paletteIndex < 0 || paletteIndex >= srcPalette.size()) {
-        throw new IOException("Palette index is out of bound (i=" + i + "): " + paletteIndex);
-      }
+        if (paletteIndex < 0 || paletteIndex >= srcPalette.size()) {
+          throw new IOException("Palette index is out of bound (i=" + i + "): " + paletteIndex);
+        }
 
-      // If we've already converted the state to legacy, use that version.
-      state = legacyPalette[paletteIndex];
-      if (state == null) {
-        // Otherwise do the conversion now, then store it in `legacyPalette` for later.
-        state = stateCodec.encode(srcPalette.get(paletteIndex));
-        legacyPalette[paletteIndex] = state;
-      }
+        // If we've already converted the state to legacy, use that version.
+        state = legacyPalette[paletteIndex];
+        if (state == null) {
+          // Otherwise do the conversion now, then store it in `legacyPalette` for later.
+          state = stateCodec.encode(srcPalette.get(paletteIndex));
+          legacyPalette[paletteIndex] = state;
+        }
 
-      // Convert the block's XZY index (ooze) -> YZX index (region).
-      int encodedIndex = encodeBlockIndex(i);
+        // Convert the block's XZY index (ooze) -> YZX index (region).
+        int encodedIndex = encodeBlockIndex(i);
 
-      // Write the lower 8 bits of the block's type.
-      types[encodedIndex] = (byte) (state.getType() & 0xff);
+        // Write the lower 8 bits of the block's type.
+        types[encodedIndex] = (byte) (state.getType() & 0xff);
 
-      // Write the upper 4 bits of the block's type (if necessary).
-      if (state.isTypeExtended()) {
-        if (extensions == null) {
-          extensions = new NibbleArray(4096);
+        // Write the upper 4 bits of the block's type (if necessary).
+        if (state.isTypeExtended()) {
+          if (extensions == null) {
+            extensions = borrowNibbles(scratch);
+          }
+          setNibble(extensions, encodedIndex, state.getTypeExtension());
         }
-        extensions.set(encodedIndex, state.getTypeExtension());
+
+        // Write the block's variant value (if necessary).
+        if (state.isVariant()) {
+          if (variants == null) {
+            variants = borrowNibbles(scratch);
+          }
+          setNibble(variants, encodedIndex, state.getVariant());
+        }
+      }
+
+      // Assemble & return the section as an NBT compound.
+      NBTCompound section = new NBTCompound();
+      setTagValue(BLOCK_TYPES, types, section);
+      if (extensions != null) {
+        setTagValue(BLOCK_TYPES_EXTENDED, extensions.clone(), section);
+      }
+      if (variants != null) {
+        setTagValue(BLOCK_VARIANTS, variants.clone(), section);
       }
 
-      // Write the block's variant value (if necessary).
-      if (state.isVariant()) {
-        if (variants == null) {
-          variants = new NibbleArray(4096);
+      if (isMeasured) {
+        int usedStates = 0;
+        for (NumericBlockState state : legacyPalette) {
+          if (state != null) {
+            usedStates++;
+          }
         }
-        variants.set(encodedIndex, state.getVariant());
+        int bytes = types.length
+                    + (extensions != null ? extensions.length : 0)
+                    + (variants != null ? variants.length : 0);
+        metrics.sectionEncoded(dataVersion, usedStates, magnitudeOf(usedStates), true, bytes,
+            System.nanoTime() - start);
       }
+      return section;
+    } finally {
+      scratch.release(extensions);
+      scratch.release(variants);
     }
+  }
 
-    // Assemble & return the section as an NBT compound.
-    NBTCompound section = new NBTCompound();
-    setTagValue(BLOCK_TYPES, types, section);
-    if (extensions != null) {
-      setTagValue(BLOCK_TYPES_EXTENDED, extensions.toByteArray(), section);
-    }
-    if (variants != null) {
-      setTagValue(BLOCK_TYPES_EXTENDED, variants.toByteArray(), section);
+  /**
+   * @return whether the {@code section} has a block array, meaning it is not empty. Sections
+   * without one, such as those that only store light, always decode to {@link Cell#empty()}.
+   * @throws IllegalArgumentException if the {@code section} is {@code null}.
+   */
+  public boolean hasBlocks(NBTCompound section) {
+    if (section == null) {
+      throw new IllegalArgumentException("null section cannot have blocks");
     }
-    return section;
+    return section.containsKey(BLOCK_TYPES.getName());
   }
 
   @Override
   public Cell decode(NBTCompound section) throws IOException {
+    if (section == null) {
+      throw new IllegalArgumentException("null cannot be decoded as a cell");
+    }
+
     // Get the original section's tags.
-    byte[] types = getTagValue(BLOCK_TYPES, section).map(byte[].class::cast).orElse(null);
-    Optional<NibbleArray> extensions = getNibbles(BLOCK_TYPES_EXTENDED, section);
-    Optional<NibbleArray> variants = getNibbles(BLOCK_VARIANTS, section);
+    byte[] types = getByteArray(BLOCK_TYPES, section);
+    byte[] extensionBytes = getByteArray(BLOCK_TYPES_EXTENDED, section);
+    byte[] variantBytes = getByteArray(BLOCK_VARIANTS, section);
+
+    return decode(types, extensionBytes, variantBytes);
+  }
+
+  /**
+   * Same as {@link #decode(NBTCompound)}, but the section's arrays are supplied directly, rather
+   * than in a compound. This allows sections to be decoded without their NBT being fully parsed
+   * first.
+   *
+   * @param types          The section's {@code Blocks} array, or {@code null} if it has none.
+   * @param extensionBytes The section's {@code Add} array, or {@code null} if it has none.
+   * @param variantBytes   The section's {@code Data} array, or {@code null} if it has none.
+   * @return the decoded cell, or {@link Cell#empty()} if the section has no blocks (or is {@link
+   * SectionCodecOptions#withEmptySectionElision(boolean) elided}).
+   * @throws IOException if any of the arrays have the wrong length, or if the section has {@code
+   *                     Add} or {@code Data} arrays, but no {@code Blocks}.
+   */
+  public Cell decode(byte[] types, byte[] extensionBytes, byte[] variantBytes)
+      throws IOException {
+    CodecMetrics metrics = options.metrics();
+    if (!metrics.isEnabled()) {
+      return decodeSection(types, extensionBytes, variantBytes);
+    }
+
+    long start = System.nanoTime();
+    Cell cell = decodeSection(types, extensionBytes, variantBytes);
+    long nanos = System.nanoTime() - start;
+
+    int paletteSize = cell.getPalette().size();
+    int bytes = (types != null ? types.length : 0)
+                + (extensionBytes != null ? extensionBytes.length : 0)
+                + (variantBytes != null ? variantBytes.length : 0);
+    metrics.sectionDecoded(dataVersion, paletteSize, magnitudeOf(paletteSize), true, bytes, nanos);
+    return cell;
+  }
+
+  /**
+   * Implementation of {@link #decode(byte[], byte[], byte[])}.
+   */
+  private Cell decodeSection(byte[] types, byte[] extensionBytes, byte[] variantBytes)
+      throws IOException {
+    checkNibbleLength(extensionBytes);
+    checkNibbleLength(variantBytes);
 
     if (types == null) {
       // Make sure there aren't ONLY extensions or variants.
-      if (extensions.isPresent()) {
+      if (extensionBytes != null) {
         throw new MalformedInputException("chunk section", "solitary extension array");
-      } else if (variants.isPresent()) {
+      } else if (variantBytes != null) {
         throw new MalformedInputException("chunk section", "solitary variants array");
       }
       // Short-circuit if the sections is empty (has no type array).
@@ -141,50 +259,100 @@ public class RegionLegacySectionCodec extends VersionedCodec<Cell, NBTCompound>
       throw new MalformedInputException("block array", "length=" + types.length);
     }
 
-    int[] cellBlocks = new int[BLOCKS_PER_CELL];
-    PaletteBuilder cellPalette = new PaletteBuilder(dataVersion, stateCodec);
+    // Sections made entirely of air (with no variants or extensions) are elided.
+    if (options.elidesEmptySections()
+        && isAllZeros(types)
+        && (extensionBytes == null || isAllZeros(extensionBytes))
+        && (variantBytes == null || isAllZeros(variantBytes))) {
+      return Cell.empty();
+    }
 
-    for (int i = 0; i < types.length; i++) {
-      int oldIndex = i; // Re-declared so it can be used in lambdas below.
+    SectionScratch scratch = SectionScratch.of(options);
+    int[] cellBlocks = scratch.borrowInts(BLOCKS_PER_CELL);
+    PaletteBuilder cellPalette = new PaletteBuilder(dataVersion, stateCodec);
 
-      int type = types[oldIndex];
-      int extension = extensions.map(array -> array.get(oldIndex)).orElse(0);
-      int variant = variants.map(array -> array.get(oldIndex)).orElse(0);
+    try {
+      for (int oldIndex = 0; oldIndex < types.length; oldIndex++) {
+        int type = types[oldIndex];
+        // Nibbles are read in-place, rather than being copied into NibbleArrays.
+        int extension = extensionBytes != null ? getNibble(extensionBytes, oldIndex) : 0;
+        int variant = variantBytes != null ? getNibble(variantBytes, oldIndex) : 0;
+
+        // Calculate the block's index and value in the new array.
+        int newIndex = decodeBlockIndex(oldIndex);
+        int newState = cellPalette.add(type, extension, variant);
+        cellBlocks[newIndex] = newState;
+      }
 
-      // Calculate the block's index and value in the new array.
-      int newIndex = decodeBlockIndex(oldIndex);
-      int newState = cellPalette.add(type, extension, variant);
-      cellBlocks[newIndex] = newState;
+      return new Cell(cellPalette.build(), new PackedUIntArray(cellBlocks));
+    } finally {
+      scratch.release(cellBlocks);
     }
-
-    return new Cell(cellPalette.build(), new PackedUIntArray(cellBlocks));
   }
 
   /**
-   * Attempts to get the value of a NibbleArray from an NBT {@code tag} inside the supplied {@code
-   * parent} compound.
+   * Checks that the octets of a {@link NibbleArray}, if present, have the right length for a
+   * section.
    * <p><br>
-   * Since NBT does not natively support nibble arrays, the {@code tag}'s type must be {@link
-   * TagType#BYTE_ARRAY TAG_Byte_Array} so that the value can be passed to {@code NibbleArray's}
-   * {@link NibbleArray#NibbleArray(int, byte...) constructor}. The {@code length} is always equal
+   * Since NBT does not natively support nibble arrays, they are stored as {@link
+   * TagType#BYTE_ARRAY TAG_Byte_Array}s, in the format used by {@code NibbleArray's} {@link
+   * NibbleArray#NibbleArray(int, byte...) constructor}. The array's {@code length} is always equal
    * to {@link #BLOCKS_PER_CELL}.
+   *
+   * @throws IOException if the array has the wrong number of octets.
    */
-  private Optional<NibbleArray> getNibbles(VersionedTag tag, NBTCompound parent) throws IOException {
-    TagType type = tag.getType();
-    if (type != TagType.BYTE) {
-      throw new IllegalArgumentException("Cannot read nibble array as " + type);
-    }
-
-    byte[] words = getTagValue(tag, parent).map(byte[].class::cast).orElse(null);
+  private static void checkNibbleLength(byte[] words) throws IOException {
     int expectedWordCount = (int) Math.ceil(BLOCKS_PER_CELL / 2d);
 
-    if (words == null) {
-      return Optional.empty();
-    } else if (words.length != expectedWordCount) {
+    if (words != null && words.length != expectedWordCount) {
       throw new MalformedInputException("nibble array", "length=" + words.length);
     }
+  }
+
+  /**
+   * @return the number of bits needed to index a palette with {@code paletteSize} states.
+   */
+  private static int magnitudeOf(int paletteSize) {
+    return paletteSize > 1 ? BitHelper.widthInBits(paletteSize - 1) : 0;
+  }
+
+  /**
+   * @return a zeroed nibble array for a section, borrowed from the {@code scratch}.
+   */
+  private static byte[] borrowNibbles(SectionScratch scratch) {
+    byte[] nibbles = scratch.borrowBytes(BLOCKS_PER_CELL / 2);
+    Arrays.fill(nibbles, (byte) 0);
+    return nibbles;
+  }
+
+  /**
+   * @return the nibble at an {@code index} in the octets of a {@link NibbleArray}, without copying
+   * them into one.
+   */
+  private static int getNibble(byte[] octets, int index) {
+    int octet = octets[index >>> 1];
+    return (index & 1) == 0 ? octet & 0xf : octet >>> 4 & 0xf;
+  }
+
+  /**
+   * Sets the nibble at an {@code index} in the octets of a {@link NibbleArray}, without copying
+   * them into one. The nibble's previous value must be {@code 0}.
+   */
+  private static void setNibble(byte[] octets, int index, int value) {
+    int shift = (index & 1) == 0 ? 0 : 4;
+    octets[index >>> 1] |= (value & 0xf) << shift;
+  }
 
-    return Optional.of(new NibbleArray(BLOCKS_PER_CELL, words));
+  /**
+   * @return {@code true} if every octet in the array is {@code 0}. Otherwise {@code false}.
+   */
+  private static boolean isAllZeros(byte[] octets) {
+    for (byte octet : octets) {
+      if (octet != 0) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -45,6 +45,13 @@ class BitStorage extends RegionUIntArray {
 
   @Override
   protected int getWordsNeeded(int length, int magnitude) {
+    return wordsNeeded(length, magnitude);
+  }
+
+  /**
+   * @see RegionUIntArray#wordsNeeded(int, int, int)
+   */
+  static int wordsNeeded(int length, int magnitude) {
     return magnitude == 0
         ? 0
         : (int) Math.ceil((double) length / valuesPerWord(magnitude));
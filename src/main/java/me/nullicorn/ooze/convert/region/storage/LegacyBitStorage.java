@@ -29,6 +29,13 @@ class LegacyBitStorage extends RegionUIntArray {
 
   @Override
   protected int getWordsNeeded(int length, int magnitude) {
+    return wordsNeeded(length, magnitude);
+  }
+
+  /**
+   * @see RegionUIntArray#wordsNeeded(int, int, int)
+   */
+  static int wordsNeeded(int length, int magnitude) {
     if (magnitude == 0) {
       return 0;
     }
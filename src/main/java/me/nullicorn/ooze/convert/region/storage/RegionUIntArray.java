@@ -66,6 +66,21 @@ public abstract class RegionUIntArray {
         : new LegacyBitStorage(length, magnitude, words);
   }
 
+  /**
+   * Determines the number of words that a region-compatible array needs, without creating one.
+   *
+   * @param length      The number of uints that the array would hold.
+   * @param magnitude   The number of bits that would be used to represent each uint.
+   * @param dataVersion The Minecraft world version that the array would be compatible with.
+   * @return the length of the array's {@link #words() words}, which is {@code 0} if the {@code
+   * magnitude} is {@code 0}.
+   */
+  public static int wordsNeeded(int length, int magnitude, int dataVersion) {
+    return dataVersion >= MODERN_ENCODING_VERSION
+        ? BitStorage.wordsNeeded(length, magnitude)
+        : LegacyBitStorage.wordsNeeded(length, magnitude);
+  }
+
   protected final long[] words;
   protected final int    length;
   protected final int    magnitude;
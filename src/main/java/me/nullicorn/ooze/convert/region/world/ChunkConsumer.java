@@ -0,0 +1,36 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.Flushable;
+import java.io.IOException;
+import me.nullicorn.ooze.convert.region.RegionChunk;
+
+/**
+ * Receives the chunks produced by a {@link WorldConverter}.
+ *
+ * @author Nullicorn
+ */
+@FunctionalInterface
+public interface ChunkConsumer extends Flushable {
+
+  /**
+   * Handles a single converted chunk.
+   *
+   * @param chunk The chunk's decoded sections & position.
+   * @throws IOException if the chunk cannot be handled. This stops the conversion.
+   */
+  void accept(RegionChunk chunk) throws IOException;
+
+  /**
+   * Makes every chunk handled so far durable, such as by writing buffered output and syncing it to
+   * the disk. Converters call this before a {@link ConversionJournal} syncs its records of the
+   * handled chunks, so that a crash never leaves a chunk recorded without having been handled.
+   * <p><br>
+   * Does nothing by default, in which case each chunk must be durable by the time {@link
+   * #accept(RegionChunk) accept()} returns.
+   *
+   * @throws IOException if the chunks cannot be made durable. This stops the conversion.
+   */
+  @Override
+  default void flush() throws IOException {
+  }
+}
@@ -0,0 +1,22 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.IOException;
+import me.nullicorn.ooze.convert.region.RegionChunk;
+
+/**
+ * Encodes decoded chunks into a {@link ConversionPipeline}'s output format.
+ *
+ * @param <T> The type of the encoded chunks.
+ * @author Nullicorn
+ */
+@FunctionalInterface
+public interface ChunkEncoder<T> {
+
+  /**
+   * @param chunk The chunk's decoded sections & position.
+   * @return the encoded chunk, which is passed to the pipeline's {@link ChunkWriter}. If {@code
+   * null}, the chunk is not written.
+   * @throws IOException if the chunk cannot be encoded. This stops the pipeline.
+   */
+  T encode(RegionChunk chunk) throws IOException;
+}
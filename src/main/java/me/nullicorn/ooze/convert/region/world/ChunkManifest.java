@@ -0,0 +1,229 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import me.nullicorn.ooze.convert.MalformedInputException;
+
+/**
+ * The last-modified timestamps of the chunks in a world's {@code region} directory, as of the last
+ * time each chunk was converted. Passing a manifest to a {@link WorldConverter} or {@link
+ * ConversionPipeline} makes the conversion incremental; chunks whose timestamp in their region
+ * file's timestamp table still matches the manifest are skipped, rather than decoded again.
+ * <p><br>
+ * A chunk is only recorded once it has been consumed or written, so chunks from a conversion that
+ * failed part-way through are converted again by the next one. Chunks whose timestamp is {@code 0}
+ * have never been saved with a timestamp, so they are always converted. Chunks that are deleted
+ * from a region file are not reported by incremental conversions.
+ * <p><br>
+ * Each manifest should only be used with a single {@code region} directory. Manifests are not
+ * saved automatically; once a conversion finishes, {@link #save(Path) save} the manifest, and
+ * {@link #load(Path) load} it again before the next one. Manifests are thread-safe.
+ *
+ * @author Nullicorn
+ */
+public final class ChunkManifest implements ConversionProgress {
+
+  /**
+   * The first bytes of a saved manifest, {@code "OOZM"} in ASCII.
+   */
+  private static final int MAGIC = 0x4F4F5A4D;
+
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int CHUNKS_PER_REGION = WorldIO.REGION_WIDTH * WorldIO.REGION_WIDTH;
+
+  /**
+   * Reads a manifest that was previously {@link #save(Path) saved}.
+   *
+   * @param file The file that the manifest was saved to.
+   * @return the saved manifest, or an empty one if the {@code file} does not exist.
+   * @throws IllegalArgumentException if the {@code file} is {@code null}.
+   * @throws MalformedInputException  if the file is not a manifest, or if it is truncated.
+   * @throws IOException              if the file cannot be read.
+   */
+  public static ChunkManifest load(Path file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file cannot be null");
+    }
+
+    ChunkManifest manifest = new ChunkManifest();
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new MalformedInputException("chunk manifest", file + " is not a chunk manifest");
+      }
+      int formatVersion = in.readInt();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new MalformedInputException("chunk manifest",
+            "unsupported format version " + formatVersion);
+      }
+
+      int regionCount = in.readInt();
+      for (int i = 0; i < regionCount; i++) {
+        int regionX = in.readInt();
+        int regionZ = in.readInt();
+        int chunkCount = in.readUnsignedShort();
+
+        AtomicIntegerArray timestamps = manifest.timestampsOf(regionX, regionZ);
+        for (int j = 0; j < chunkCount; j++) {
+          int index = in.readUnsignedShort();
+          if (index >= CHUNKS_PER_REGION) {
+            throw new MalformedInputException("chunk manifest", "invalid chunk index " + index);
+          }
+          timestamps.set(index, in.readInt());
+        }
+      }
+    } catch (NoSuchFileException e) {
+      return new ChunkManifest();
+    } catch (EOFException e) {
+      throw new MalformedInputException("chunk manifest", file + " is truncated", e);
+    }
+    return manifest;
+  }
+
+  /**
+   * Each region's chunk timestamps, keyed by the region's {@link #regionKey(int, int) key}, and
+   * indexed in the same order as region files' tables.
+   */
+  private final ConcurrentMap<Long, AtomicIntegerArray> regions = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an empty manifest, which makes the first conversion that uses it convert every chunk.
+   */
+  public ChunkManifest() {
+  }
+
+  /**
+   * @param chunkX The chunk's absolute X coordinate.
+   * @param chunkZ The chunk's absolute Z coordinate.
+   * @return the chunk's timestamp as of its last conversion, in seconds since the epoch, or {@code
+   * 0} if it has not been converted.
+   */
+  public int getTimestamp(int chunkX, int chunkZ) {
+    AtomicIntegerArray timestamps = regions.get(regionKey(chunkX >> 5, chunkZ >> 5));
+    return timestamps != null ? timestamps.get(indexOf(chunkX, chunkZ)) : 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p><br>
+   * Chunks are up-to-date if they have been converted since they were last saved. Always {@code
+   * false} if the {@code timestamp} is {@code 0}.
+   */
+  @Override
+  public boolean isUpToDate(int chunkX, int chunkZ, int timestamp) {
+    return timestamp != 0 && getTimestamp(chunkX, chunkZ) == timestamp;
+  }
+
+  @Override
+  public void record(int chunkX, int chunkZ, int timestamp) {
+    timestampsOf(chunkX >> 5, chunkZ >> 5).set(indexOf(chunkX, chunkZ), timestamp);
+  }
+
+  /**
+   * @return the number of chunks with a non-zero timestamp in the manifest.
+   */
+  public int chunkCount() {
+    int count = 0;
+    for (AtomicIntegerArray timestamps : regions.values()) {
+      for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+        if (timestamps.get(i) != 0) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes the manifest to a {@code file}, so that it can be {@link #load(Path) loaded} by a later
+   * conversion. The manifest is written to a temporary file first, which then replaces the {@code
+   * file}, so a previously saved manifest is never left half-written.
+   * <p><br>
+   * Chunks recorded while the manifest is being saved may or may not be included.
+   *
+   * @throws IllegalArgumentException if the {@code file} is {@code null}.
+   * @throws IOException              if the manifest cannot be written.
+   */
+  public void save(Path file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file cannot be null");
+    }
+
+    // Copied so that the region count matches the regions written.
+    List<Map.Entry<Long, AtomicIntegerArray>> regionsCopy = new ArrayList<>(regions.entrySet());
+
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(regionsCopy.size());
+
+      int[] snapshot = new int[CHUNKS_PER_REGION];
+      for (Map.Entry<Long, AtomicIntegerArray> region : regionsCopy) {
+        int chunkCount = 0;
+        for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+          snapshot[i] = region.getValue().get(i);
+          if (snapshot[i] != 0) {
+            chunkCount++;
+          }
+        }
+
+        long key = region.getKey();
+        out.writeInt((int) (key >> 32));
+        out.writeInt((int) key);
+        out.writeShort(chunkCount);
+        for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+          if (snapshot[i] != 0) {
+            out.writeShort(i);
+            out.writeInt(snapshot[i]);
+          }
+        }
+      }
+    }
+
+    try {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private AtomicIntegerArray timestampsOf(int regionX, int regionZ) {
+    Long key = regionKey(regionX, regionZ);
+    AtomicIntegerArray timestamps = regions.get(key);
+    if (timestamps == null) {
+      timestamps = regions.computeIfAbsent(key, k -> new AtomicIntegerArray(CHUNKS_PER_REGION));
+    }
+    return timestamps;
+  }
+
+  private static long regionKey(int regionX, int regionZ) {
+    return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @return the index of a chunk in its region's timestamps.
+   */
+  private static int indexOf(int chunkX, int chunkZ) {
+    int width = WorldIO.REGION_WIDTH;
+    return (chunkX & (width - 1)) + (chunkZ & (width - 1)) * width;
+  }
+}
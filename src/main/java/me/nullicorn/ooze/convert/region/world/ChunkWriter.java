@@ -0,0 +1,35 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Writes the chunks encoded by a {@link ConversionPipeline}'s {@link ChunkEncoder}.
+ *
+ * @param <T> The type of the encoded chunks.
+ * @author Nullicorn
+ */
+@FunctionalInterface
+public interface ChunkWriter<T> extends Flushable {
+
+  /**
+   * @param encoded An encoded chunk.
+   * @throws IOException if the chunk cannot be written. This stops the pipeline.
+   */
+  void write(T encoded) throws IOException;
+
+  /**
+   * Makes every chunk written so far durable, such as by writing buffered chunks and syncing them
+   * to the disk. Pipelines call this before a {@link ConversionJournal} syncs its records of the
+   * written chunks, so that a crash never leaves a chunk recorded without having been written.
+   * Must be thread-safe if the writer is.
+   * <p><br>
+   * Does nothing by default, in which case each chunk must be durable by the time {@link
+   * #write(Object) write()} returns.
+   *
+   * @throws IOException if the chunks cannot be made durable. This stops the pipeline.
+   */
+  @Override
+  default void flush() throws IOException {
+  }
+}
@@ -0,0 +1,433 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import me.nullicorn.ooze.convert.MalformedInputException;
+
+/**
+ * A small file that records the chunks & regions that a conversion has finished, so that if the
+ * conversion is interrupted, such as by a crash or a restart, the next one can resume where it
+ * stopped instead of starting over.
+ * <p><br>
+ * Records are appended to the journal as chunks are consumed or written, and the journal is synced
+ * to the disk after every few chunks, and after every region. Before each sync, the conversion's
+ * {@link ChunkConsumer consumer} or {@link ChunkWriter writer} is flushed, so that chunks are never
+ * recorded on the disk before they are durable. If the process dies, at most the chunks recorded
+ * since the last sync are lost from the journal, and those are simply converted again when the
+ * conversion resumes; so the consumer or writer should tolerate receiving the same chunk twice,
+ * such as by overwriting it. A chunk is also converted again if its timestamp has changed since it
+ * was recorded.
+ * <p><br>
+ * To resume a conversion, {@link #open(Path) open} its journal again, and pass it to the same
+ * {@link WorldConverter} or {@link ConversionPipeline} method. Each journal should only be used
+ * with a single {@code region} directory. Once the conversion finishes, {@link #finish() finish}
+ * the journal, so that the next conversion starts from scratch. Journals are thread-safe.
+ *
+ * @author Nullicorn
+ */
+public final class ConversionJournal implements ConversionProgress, Closeable {
+
+  /**
+   * The default number of chunks that are recorded between each sync.
+   */
+  public static final int DEFAULT_SYNC_INTERVAL = 256;
+
+  /**
+   * The first bytes of a journal, {@code "OOZJ"} in ASCII.
+   */
+  private static final int MAGIC = 0x4F4F5A4A;
+
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE    = 2 * Integer.BYTES;
+
+  // Each record is its type, followed by its coordinates, and a chunk's timestamp.
+  private static final byte CHUNK_RECORD       = 1;
+  private static final byte REGION_RECORD      = 2;
+  private static final int  CHUNK_RECORD_SIZE  = 1 + 3 * Integer.BYTES;
+  private static final int  REGION_RECORD_SIZE = 1 + 2 * Integer.BYTES;
+
+  private static final int CHUNKS_PER_REGION = WorldIO.REGION_WIDTH * WorldIO.REGION_WIDTH;
+
+  /**
+   * The output of records made without one, whose chunks are already durable.
+   */
+  private static final Flushable DURABLE_OUTPUT = () -> {
+  };
+
+  /**
+   * Same as {@link #open(Path, int)}, but using the {@link #DEFAULT_SYNC_INTERVAL default sync
+   * interval}.
+   */
+  public static ConversionJournal open(Path file) throws IOException {
+    return open(file, DEFAULT_SYNC_INTERVAL);
+  }
+
+  /**
+   * Opens a journal, creating it if it does not exist yet. If it does, the chunks & regions that
+   * it has recorded are read, and new records are appended after them.
+   *
+   * @param file         The journal's file.
+   * @param syncInterval The number of chunks recorded between each sync to the disk. Lower values
+   *                     lose less progress if the process dies, but sync more often.
+   * @throws IllegalArgumentException if the {@code file} is {@code null}, or if the {@code
+   *                                  syncInterval} is less than {@code 1}.
+   * @throws MalformedInputException  if the file exists, but is not a journal, or contains an
+   *                                  unknown record.
+   * @throws IOException              if the file cannot be read or written.
+   */
+  public static ConversionJournal open(Path file, int syncInterval) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file cannot be null");
+    } else if (syncInterval < 1) {
+      throw new IllegalArgumentException("syncInterval must be positive: " + syncInterval);
+    }
+
+    FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      ConversionJournal journal = new ConversionJournal(file, channel, syncInterval);
+      journal.replay();
+      return journal;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private final Path        file;
+  private final FileChannel channel;
+  private final int         syncInterval;
+
+  /**
+   * Records that have not been written to the file yet. Guarded by {@code this}.
+   */
+  private final ByteBuffer unwritten;
+
+  /**
+   * The keys of regions whose chunks have all been converted.
+   */
+  private final Set<Long> completeRegions = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The chunks converted in each incomplete region, keyed by the region's key, and indexed in the
+   * same order as region files' tables. Each value is the chunk's timestamp, with the 33rd bit set
+   * to distinguish it from chunks that have not been converted.
+   */
+  private final ConcurrentMap<Long, AtomicLongArray> regionChunks = new ConcurrentHashMap<>();
+
+  // Guarded by this.
+  private int     unsyncedChunks;
+  private boolean isClosed;
+
+  private ConversionJournal(Path file, FileChannel channel, int syncInterval) {
+    this.file = file;
+    this.channel = channel;
+    this.syncInterval = syncInterval;
+    unwritten = ByteBuffer.allocate(syncInterval * CHUNK_RECORD_SIZE + REGION_RECORD_SIZE);
+  }
+
+  /**
+   * @return the journal's file.
+   */
+  public Path getPath() {
+    return file;
+  }
+
+  @Override
+  public boolean isUpToDate(int chunkX, int chunkZ, int timestamp) {
+    int regionX = chunkX >> 5;
+    int regionZ = chunkZ >> 5;
+    if (isRegionComplete(regionX, regionZ)) {
+      return true;
+    }
+
+    AtomicLongArray chunks = regionChunks.get(regionKey(regionX, regionZ));
+    return chunks != null && chunks.get(indexOf(chunkX, chunkZ)) == entryOf(timestamp);
+  }
+
+  @Override
+  public boolean isRegionComplete(int regionX, int regionZ) {
+    return completeRegions.contains(regionKey(regionX, regionZ));
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p><br>
+   * The chunk must already be durable, since nothing is flushed before it is synced.
+   *
+   * @throws IOException if the journal is closed, or if it cannot be synced.
+   * @see #record(int, int, int, Flushable)
+   */
+  @Override
+  public void record(int chunkX, int chunkZ, int timestamp) throws IOException {
+    record(chunkX, chunkZ, timestamp, DURABLE_OUTPUT);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p><br>
+   * The chunk is written to the file with the next sync, which happens automatically after every
+   * few chunks, and flushes the {@code output} first.
+   *
+   * @throws IllegalArgumentException if the {@code output} is {@code null}.
+   * @throws IOException              if the journal is closed, or if it cannot be synced.
+   */
+  @Override
+  public void record(int chunkX, int chunkZ, int timestamp, Flushable output)
+      throws IOException {
+    if (output == null) {
+      throw new IllegalArgumentException("output cannot be null");
+    }
+
+    synchronized (this) {
+      checkOpen();
+      if (unwritten.remaining() < CHUNK_RECORD_SIZE) {
+        // The records of a failed sync are still unwritten.
+        sync(output);
+      }
+      unwritten.put(CHUNK_RECORD).putInt(chunkX).putInt(chunkZ).putInt(timestamp);
+      if (++unsyncedChunks >= syncInterval) {
+        sync(output);
+      }
+    }
+    apply(chunkX, chunkZ, timestamp);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p><br>
+   * The region's chunks must already be durable, since nothing is flushed before it is synced.
+   *
+   * @throws IOException if the journal is closed, or if it cannot be synced.
+   * @see #recordRegion(int, int, Flushable)
+   */
+  @Override
+  public void recordRegion(int regionX, int regionZ) throws IOException {
+    recordRegion(regionX, regionZ, DURABLE_OUTPUT);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p><br>
+   * The region, and any chunks recorded before it, are synced to the file right away, after
+   * flushing the {@code output}.
+   *
+   * @throws IllegalArgumentException if the {@code output} is {@code null}.
+   * @throws IOException              if the journal is closed, or if it cannot be synced.
+   */
+  @Override
+  public void recordRegion(int regionX, int regionZ, Flushable output) throws IOException {
+    if (output == null) {
+      throw new IllegalArgumentException("output cannot be null");
+    }
+
+    synchronized (this) {
+      checkOpen();
+      if (unwritten.remaining() < REGION_RECORD_SIZE) {
+        // The records of a failed sync are still unwritten.
+        sync(output);
+      }
+      unwritten.put(REGION_RECORD).putInt(regionX).putInt(regionZ);
+      sync(output);
+    }
+    applyRegion(regionX, regionZ);
+  }
+
+  /**
+   * Writes any chunks & regions recorded since the last sync to the file, and waits for them to
+   * reach the disk. The recorded chunks must already be durable.
+   *
+   * @throws IOException if the journal is closed, or if it cannot be written.
+   * @see #sync(Flushable)
+   */
+  public void sync() throws IOException {
+    sync(DURABLE_OUTPUT);
+  }
+
+  /**
+   * Flushes the {@code output} that recorded chunks were written to, then writes any chunks &
+   * regions recorded since the last sync to the file, and waits for them to reach the disk. If
+   * either step fails, the records stay unwritten until the next sync.
+   *
+   * @throws IllegalArgumentException if the {@code output} is {@code null}.
+   * @throws IOException              if the journal is closed, if the {@code output} cannot be
+   *                                  flushed, or if the journal cannot be written.
+   */
+  public synchronized void sync(Flushable output) throws IOException {
+    if (output == null) {
+      throw new IllegalArgumentException("output cannot be null");
+    }
+    checkOpen();
+    output.flush();
+
+    // Buffer casts keep the bytecode compatible with Java 8 when compiled on newer JDKs.
+    ((Buffer) unwritten).flip();
+    try {
+      while (unwritten.hasRemaining()) {
+        channel.write(unwritten);
+      }
+    } finally {
+      unwritten.compact();
+    }
+    channel.force(false);
+    unsyncedChunks = 0;
+  }
+
+  /**
+   * Syncs & closes the journal, keeping its file so that the conversion can be resumed later. Does
+   * nothing if the journal is already closed. Nothing is flushed, so if a conversion stopped early,
+   * its consumer or writer should be flushed or closed before the journal is.
+   *
+   * @throws IOException if the journal cannot be synced.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+
+    try {
+      sync();
+    } finally {
+      isClosed = true;
+      channel.close();
+    }
+  }
+
+  /**
+   * Closes the journal, and deletes its file. This should be called once the conversion has
+   * finished, so that the next conversion using the same file starts from scratch.
+   *
+   * @throws IOException if the file cannot be deleted.
+   */
+  public synchronized void finish() throws IOException {
+    isClosed = true;
+    channel.close();
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Reads the records already in the file, and prepares it for new records to be appended. If the
+   * file ends with a partial record, such as when the process died while writing it, the partial
+   * record is removed.
+   */
+  private void replay() throws IOException {
+    long size = channel.size();
+    if (size < HEADER_SIZE) {
+      // New, or the process died before the header was written.
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION);
+      ((Buffer) header).flip();
+      channel.truncate(0);
+      while (header.hasRemaining()) {
+        channel.write(header, HEADER_SIZE - header.remaining());
+      }
+      channel.force(false);
+      channel.position(HEADER_SIZE);
+      return;
+    } else if (size > Integer.MAX_VALUE) {
+      throw new MalformedInputException("conversion journal", file + " is too large");
+    }
+
+    ByteBuffer contents = ByteBuffer.allocate((int) size);
+    while (contents.hasRemaining()) {
+      if (channel.read(contents, contents.position()) < 0) {
+        break;
+      }
+    }
+    ((Buffer) contents).flip();
+
+    if (contents.getInt() != MAGIC) {
+      throw new MalformedInputException("conversion journal", file + " is not a journal");
+    }
+    int formatVersion = contents.getInt();
+    if (formatVersion != FORMAT_VERSION) {
+      throw new MalformedInputException("conversion journal",
+          "unsupported format version " + formatVersion);
+    }
+
+    int end = contents.position();
+    while (contents.hasRemaining()) {
+      byte type = contents.get();
+      if (type == CHUNK_RECORD && contents.remaining() >= CHUNK_RECORD_SIZE - 1) {
+        apply(contents.getInt(), contents.getInt(), contents.getInt());
+      } else if (type == REGION_RECORD && contents.remaining() >= REGION_RECORD_SIZE - 1) {
+        applyRegion(contents.getInt(), contents.getInt());
+      } else if (type == CHUNK_RECORD || type == REGION_RECORD || type == 0) {
+        // A partial record, or zeros that some file systems leave after a crash.
+        break;
+      } else {
+        throw new MalformedInputException("conversion journal",
+            "unknown record type " + type + " at offset " + end);
+      }
+      end = contents.position();
+    }
+
+    if (end < size) {
+      channel.truncate(end);
+    }
+    channel.position(end);
+  }
+
+  /**
+   * Updates the journal's view of which chunks have been converted, without writing to the file.
+   */
+  private void apply(int chunkX, int chunkZ, int timestamp) {
+    int regionX = chunkX >> 5;
+    int regionZ = chunkZ >> 5;
+    if (isRegionComplete(regionX, regionZ)) {
+      return;
+    }
+
+    Long key = regionKey(regionX, regionZ);
+    AtomicLongArray chunks = regionChunks.get(key);
+    if (chunks == null) {
+      chunks = regionChunks.computeIfAbsent(key, k -> new AtomicLongArray(CHUNKS_PER_REGION));
+    }
+    chunks.set(indexOf(chunkX, chunkZ), entryOf(timestamp));
+  }
+
+  /**
+   * Updates the journal's view of which regions have been converted, without writing to the file.
+   */
+  private void applyRegion(int regionX, int regionZ) {
+    Long key = regionKey(regionX, regionZ);
+    completeRegions.add(key);
+    // Every chunk in the region is up-to-date now, so there's no need to keep them.
+    regionChunks.remove(key);
+  }
+
+  private void checkOpen() throws IOException {
+    if (isClosed) {
+      throw new IOException("Journal is closed: " + file);
+    }
+  }
+
+  private static long entryOf(int timestamp) {
+    return (1L << 32) | (timestamp & 0xFFFFFFFFL);
+  }
+
+  private static long regionKey(int regionX, int regionZ) {
+    return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @return the index of a chunk in its region's chunks.
+   */
+  private static int indexOf(int chunkX, int chunkZ) {
+    int width = WorldIO.REGION_WIDTH;
+    return (chunkX & (width - 1)) + (chunkZ & (width - 1)) * width;
+  }
+}
@@ -0,0 +1,469 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import me.nullicorn.ooze.convert.region.RegionChunk;
+import me.nullicorn.ooze.convert.region.RegionChunkCodec;
+import me.nullicorn.ooze.convert.region.StreamingChunkDecoder;
+import me.nullicorn.ooze.convert.region.StreamingChunkDecoder.ParsedChunk;
+import me.nullicorn.ooze.convert.region.file.ChunkCompression;
+import me.nullicorn.ooze.convert.region.file.ChunkPayload;
+import me.nullicorn.ooze.convert.region.file.RegionFile;
+import me.nullicorn.ooze.convert.region.world.WorldIO.RegionLocation;
+
+/**
+ * Converts every chunk in a world's {@code region} directory using a series of stages, each with
+ * its own threads:
+ * <ol>
+ *   <li><b>read</b> - Chunks' compressed payloads are read from each region file.</li>
+ *   <li><b>inflate</b> - Payloads are decompressed into binary NBT.</li>
+ *   <li><b>parse</b> - Each chunk's NBT is {@link StreamingChunkDecoder#parse(ByteBuffer,
+ *   java.util.Set) parsed}, using the decoder for its {@code DataVersion}.</li>
+ *   <li><b>decode</b> - Each chunk's sections are decoded into cells.</li>
+ *   <li><b>encode</b> - Chunks are encoded by the pipeline's {@link ChunkEncoder}.</li>
+ *   <li><b>write</b> - Encoded chunks are written by the pipeline's {@link ChunkWriter}.</li>
+ * </ol>
+ * Stages are connected by bounded queues, so a slow stage (such as writing to disk) causes the
+ * stages before it to wait, rather than letting chunks pile up in memory. The number of threads
+ * used by each stage, and the size of the queues, are set via {@link PipelineOptions}, so that
+ * I/O-bound and CPU-bound stages can be tuned separately.
+ * <p><br>
+ * Unlike {@link WorldConverter}, chunks are written in no particular order. Runs can be made
+ * incremental using a {@link ChunkManifest}, or resumable using a {@link ConversionJournal}, in
+ * which case chunks that were already converted are skipped by the read stage. Pipelines are
+ * thread-safe, and can be run any number of times.
+ *
+ * @param <T> The type of the encoded chunks.
+ * @author Nullicorn
+ */
+public final class ConversionPipeline<T> {
+
+  /**
+   * Marks the end of a stage's input. Once a stage's workers have all seen it, the stage passes it
+   * on to the next one.
+   */
+  private static final Object END = new Object();
+
+  private final PipelineOptions options;
+  private final ChunkEncoder<T> encoder;
+  private final ChunkWriter<T>  writer;
+
+  /**
+   * Creates a pipeline using the {@link PipelineOptions#defaults() default options}.
+   *
+   * @see #ConversionPipeline(PipelineOptions, ChunkEncoder, ChunkWriter)
+   */
+  public ConversionPipeline(ChunkEncoder<T> encoder, ChunkWriter<T> writer) {
+    this(PipelineOptions.defaults(), encoder, writer);
+  }
+
+  /**
+   * Creates a pipeline that encodes & writes chunks using the supplied stages.
+   *
+   * @param options The thread counts & queue sizes for each stage.
+   * @param encoder Encodes each decoded chunk. Must be thread-safe if the options use multiple
+   *                {@link PipelineOptions#encodeThreads() encode threads}.
+   * @param writer  Writes each encoded chunk. Must be thread-safe if the options use multiple
+   *                {@link PipelineOptions#writeThreads() write threads}.
+   * @throws IllegalArgumentException if any of the arguments are {@code null}.
+   */
+  public ConversionPipeline(PipelineOptions options, ChunkEncoder<T> encoder,
+      ChunkWriter<T> writer) {
+    if (options == null) {
+      throw new IllegalArgumentException("options cannot be null");
+    } else if (encoder == null) {
+      throw new IllegalArgumentException("encoder cannot be null");
+    } else if (writer == null) {
+      throw new IllegalArgumentException("writer cannot be null");
+    }
+
+    this.options = options;
+    this.encoder = encoder;
+    this.writer = writer;
+  }
+
+  /**
+   * @return the thread counts & queue sizes used by the pipeline.
+   */
+  public PipelineOptions options() {
+    return options;
+  }
+
+  /**
+   * Converts every chunk in a world's {@code region} directory, and waits for them all to be
+   * written.
+   * <p><br>
+   * Files in the directory that are not named like region files ({@code r.<x>.<z>.mca}) are
+   * ignored. If any stage fails, the pipeline stops, and the first failure is thrown.
+   *
+   * @param regionDirectory The world's {@code region} directory.
+   * @return the number of chunks that were written.
+   * @throws IllegalArgumentException if the {@code regionDirectory} is {@code null}.
+   * @throws InterruptedIOException   if the current thread is interrupted while waiting for the
+   *                                  pipeline. The pipeline is stopped.
+   * @throws IOException              if the directory cannot be listed, if any region file or chunk
+   *                                  cannot be read or decoded, or if the encoder or writer fail.
+   */
+  public long run(Path regionDirectory) throws IOException {
+    if (regionDirectory == null) {
+      throw new IllegalArgumentException("regionDirectory cannot be null");
+    }
+    return new Run(WorldIO.findRegions(regionDirectory), null).execute();
+  }
+
+  /**
+   * Converts the chunks in a world's {@code region} directory that the {@code progress} does not
+   * consider up-to-date, and waits for them all to be written. Up-to-date chunks, and complete
+   * regions, are skipped without being decompressed or decoded.
+   * <p><br>
+   * Each chunk is recorded in the progress once it has been written, or once the encoder returns
+   * {@code null} for it, using the timestamp from its region file's timestamp table. Each region is
+   * recorded once all of its chunks have been. If the pipeline fails, chunks that were already
+   * written stay recorded. Progress that syncs its records, such as a {@link ConversionJournal},
+   * {@link ChunkWriter#flush() flushes} the writer first.
+   *
+   * @param regionDirectory The world's {@code region} directory.
+   * @param progress        The chunks converted previously, such as a {@link ChunkManifest} of an
+   *                        earlier conversion, or the {@link ConversionJournal} of an interrupted
+   *                        one.
+   * @return the number of chunks that were written, not including skipped ones.
+   * @throws IllegalArgumentException if either argument is {@code null}.
+   * @throws InterruptedIOException   if the current thread is interrupted while waiting for the
+   *                                  pipeline. The pipeline is stopped.
+   * @throws IOException              if the directory cannot be listed, if any region file or chunk
+   *                                  cannot be read or decoded, or if the encoder or writer fail.
+   * @see #run(Path)
+   */
+  public long run(Path regionDirectory, ConversionProgress progress) throws IOException {
+    if (regionDirectory == null) {
+      throw new IllegalArgumentException("regionDirectory cannot be null");
+    } else if (progress == null) {
+      throw new IllegalArgumentException("progress cannot be null");
+    }
+    return new Run(WorldIO.findRegions(regionDirectory), progress).execute();
+  }
+
+  /**
+   * A single chunk, as it passes through the pipeline. Its {@link #value} is replaced by each
+   * stage.
+   */
+  private static final class ChunkItem {
+
+    final Path          file;
+    final int           chunkX;
+    final int           chunkZ;
+    final int           timestamp;
+    final PendingRegion region;
+
+    Object                value;
+    StreamingChunkDecoder decoder;
+
+    /**
+     * @param chunkX The chunk's absolute X coordinate.
+     * @param chunkZ The chunk's absolute Z coordinate.
+     * @param region The chunk's region, or {@code null} if the run has no progress to record.
+     */
+    ChunkItem(Path file, int chunkX, int chunkZ, int timestamp, PendingRegion region,
+        Object value) {
+      this.file = file;
+      this.chunkX = chunkX;
+      this.chunkZ = chunkZ;
+      this.timestamp = timestamp;
+      this.region = region;
+      this.value = value;
+    }
+
+    /**
+     * @return an exception describing the chunk's location, caused by the {@code error}.
+     */
+    IOException failure(IOException error) {
+      return new IOException("Unable to convert chunk [" + chunkX + ", " + chunkZ + "] in " + file,
+          error);
+    }
+  }
+
+  /**
+   * A region whose chunks are still passing through the pipeline. Once all of them have been
+   * recorded, so is the region.
+   */
+  private static final class PendingRegion {
+
+    final RegionLocation location;
+
+    /**
+     * The number of the region's chunks that have not been recorded yet, plus one while the region
+     * is still being read.
+     */
+    final AtomicInteger remaining = new AtomicInteger(1);
+
+    PendingRegion(RegionLocation location) {
+      this.location = location;
+    }
+
+    /**
+     * Marks one of the region's chunks as recorded, or the region as fully read, recording the
+     * region in the {@code progress} if it was the last. The {@code output} is flushed before the
+     * region is made durable.
+     */
+    void release(ConversionProgress progress, Flushable output) throws IOException {
+      if (remaining.decrementAndGet() == 0) {
+        progress.recordRegion(location.regionX, location.regionZ, output);
+      }
+    }
+  }
+
+  /**
+   * The work done by a stage for each of its inputs.
+   */
+  @FunctionalInterface
+  private interface Step {
+
+    /**
+     * Handles a single {@code input}, putting any results in the {@code output} queue.
+     */
+    void process(Object input, BlockingQueue<Object> output)
+        throws IOException, InterruptedException;
+  }
+
+  /**
+   * The queues & threads for a single run of the pipeline.
+   */
+  private final class Run {
+
+    private final List<Thread>               threads;
+    private final AtomicReference<Throwable> failure;
+    private final AtomicLong                 writtenCount;
+    private final ConversionProgress         progress;
+
+    private final BlockingQueue<Object> regions;
+
+    /**
+     * @param progress The progress used to skip converted chunks, or {@code null} if every chunk
+     *                 should be converted.
+     */
+    Run(List<RegionLocation> regionFiles, ConversionProgress progress) {
+      threads = new ArrayList<>();
+      failure = new AtomicReference<>();
+      writtenCount = new AtomicLong();
+      this.progress = progress;
+
+      regions = new LinkedBlockingQueue<>(regionFiles);
+      regions.add(END);
+
+      BlockingQueue<Object> payloads = newQueue();
+      BlockingQueue<Object> inflated = newQueue();
+      BlockingQueue<Object> parsed = newQueue();
+      BlockingQueue<Object> decoded = newQueue();
+      BlockingQueue<Object> encoded = newQueue();
+
+      addStage("read", options.readThreads(), regions, payloads, this::read);
+      addStage("inflate", options.inflateThreads(), payloads, inflated, this::inflate);
+      addStage("parse", options.parseThreads(), inflated, parsed, this::parse);
+      addStage("decode", options.decodeThreads(), parsed, decoded, this::decode);
+      addStage("encode", options.encodeThreads(), decoded, encoded, this::encode);
+      addStage("write", options.writeThreads(), encoded, null, this::write);
+    }
+
+    /**
+     * Starts the pipeline's threads, and waits for them all to finish.
+     *
+     * @return the number of chunks written.
+     */
+    long execute() throws IOException {
+      for (Thread thread : threads) {
+        thread.start();
+      }
+
+      try {
+        for (Thread thread : threads) {
+          thread.join();
+        }
+      } catch (InterruptedException e) {
+        abort(null);
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for conversion pipeline");
+      }
+
+      Throwable cause = failure.get();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else if (cause != null) {
+        throw new IOException(cause);
+      }
+      return writtenCount.get();
+    }
+
+    private BlockingQueue<Object> newQueue() {
+      return new ArrayBlockingQueue<>(options.queueCapacity());
+    }
+
+    /**
+     * Creates the threads for a stage, which take items from the {@code input} queue and process
+     * them until they reach the {@link #END}. The last thread to finish passes the end on to the
+     * {@code output} queue, if there is one.
+     */
+    private void addStage(String name, int threadCount, BlockingQueue<Object> input,
+        BlockingQueue<Object> output, Step step) {
+      AtomicInteger activeWorkers = new AtomicInteger(threadCount);
+
+      for (int i = 0; i < threadCount; i++) {
+        Thread thread = new Thread(() -> {
+          try {
+            Object next;
+            while ((next = input.take()) != END) {
+              step.process(next, output);
+            }
+            // Leave the end for the stage's other workers.
+            input.put(END);
+
+            if (activeWorkers.decrementAndGet() == 0 && output != null) {
+              output.put(END);
+            }
+          } catch (InterruptedException e) {
+            // The pipeline was aborted.
+          } catch (Throwable e) {
+            abort(e);
+          }
+        }, "ooze-convert-" + name + "-" + i);
+
+        thread.setDaemon(true);
+        threads.add(thread);
+      }
+    }
+
+    /**
+     * Stops all of the pipeline's threads, recording the {@code cause} unless a failure was already
+     * recorded.
+     */
+    private void abort(Throwable cause) {
+      if (cause != null) {
+        failure.compareAndSet(null, cause);
+      }
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+    }
+
+    private void read(Object input, BlockingQueue<Object> output)
+        throws IOException, InterruptedException {
+      RegionLocation location = (RegionLocation) input;
+      Path file = location.file;
+      if (progress != null && progress.isRegionComplete(location.regionX, location.regionZ)) {
+        return;
+      }
+
+      PendingRegion pending = progress != null ? new PendingRegion(location) : null;
+      try (RegionFile region = RegionFile.open(file)) {
+        for (int chunkZ = 0; chunkZ < WorldIO.REGION_WIDTH; chunkZ++) {
+          for (int chunkX = 0; chunkX < WorldIO.REGION_WIDTH; chunkX++) {
+            if (!region.hasChunk(chunkX, chunkZ)) {
+              continue;
+            }
+
+            int absoluteX = location.chunkX(chunkX);
+            int absoluteZ = location.chunkZ(chunkZ);
+            int timestamp = region.getTimestamp(chunkX, chunkZ);
+            if (progress == null || !progress.isUpToDate(absoluteX, absoluteZ, timestamp)) {
+              ChunkPayload payload = region.getPayload(chunkX, chunkZ);
+              if (pending != null) {
+                pending.remaining.incrementAndGet();
+              }
+              output.put(new ChunkItem(file, absoluteX, absoluteZ, timestamp, pending, payload));
+            }
+          }
+        }
+      } catch (IOException e) {
+        throw new IOException("Unable to read region file " + file, e);
+      }
+
+      if (pending != null) {
+        // Every chunk that needs converting has been queued.
+        pending.release(progress, writer);
+      }
+    }
+
+    private void inflate(Object input, BlockingQueue<Object> output)
+        throws IOException, InterruptedException {
+      ChunkItem chunk = (ChunkItem) input;
+      try {
+        // Parsed by another thread, so the NBT cannot stay in this thread's buffer.
+        chunk.value = ChunkCompression.decompress((ChunkPayload) chunk.value);
+      } catch (IOException e) {
+        throw chunk.failure(e);
+      }
+      output.put(chunk);
+    }
+
+    private void parse(Object input, BlockingQueue<Object> output)
+        throws IOException, InterruptedException {
+      ChunkItem chunk = (ChunkItem) input;
+      try {
+        ByteBuffer nbt = (ByteBuffer) chunk.value;
+        int dataVersion = StreamingChunkDecoder.readDataVersion(nbt,
+            WorldIO.UNVERSIONED_DATA_VERSION);
+
+        chunk.decoder = WorldIO.getDecoder(dataVersion);
+        chunk.value = chunk.decoder.parse(nbt, RegionChunkCodec.DEFAULT_PROJECTION);
+      } catch (IOException e) {
+        throw chunk.failure(e);
+      }
+      output.put(chunk);
+    }
+
+    private void decode(Object input, BlockingQueue<Object> output)
+        throws IOException, InterruptedException {
+      ChunkItem chunk = (ChunkItem) input;
+      try {
+        chunk.value = chunk.decoder.decodeSections((ParsedChunk) chunk.value);
+      } catch (IOException e) {
+        throw chunk.failure(e);
+      }
+      output.put(chunk);
+    }
+
+    private void encode(Object input, BlockingQueue<Object> output)
+        throws IOException, InterruptedException {
+      ChunkItem chunk = (ChunkItem) input;
+      chunk.value = encoder.encode((RegionChunk) chunk.value);
+      if (chunk.value != null) {
+        output.put(chunk);
+      } else {
+        record(chunk);
+      }
+    }
+
+    private void write(Object input, BlockingQueue<Object> output) throws IOException {
+      ChunkItem chunk = (ChunkItem) input;
+      // Suppressed because only the encode stage sets values at this point.
+      // noinspection unchecked
+      writer.write((T) chunk.value);
+      writtenCount.incrementAndGet();
+      record(chunk);
+    }
+
+    /**
+     * Records a chunk that has finished converting in the run's progress, if it has one.
+     */
+    private void record(ChunkItem chunk) throws IOException {
+      if (progress != null) {
+        progress.record(chunk.chunkX, chunk.chunkZ, chunk.timestamp, writer);
+        chunk.region.release(progress, writer);
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Tracks which chunks of a world's {@code region} directory have already been converted, so that
+ * conversions can skip them.
+ * <p><br>
+ * Conversions ask whether each chunk is {@link #isUpToDate(int, int, int) up-to-date} before
+ * reading it, and {@link #record(int, int, int) record} it once it has been consumed or written.
+ * Implementations must be thread-safe, since {@link ConversionPipeline pipelines} record chunks
+ * from multiple threads.
+ *
+ * @author Nullicorn
+ * @see ChunkManifest
+ * @see ConversionJournal
+ */
+public interface ConversionProgress {
+
+  /**
+   * @param chunkX    The chunk's absolute X coordinate.
+   * @param chunkZ    The chunk's absolute Z coordinate.
+   * @param timestamp The chunk's current timestamp, from its region file's timestamp table.
+   * @return whether the chunk has already been converted, meaning it can be skipped.
+   */
+  boolean isUpToDate(int chunkX, int chunkZ, int timestamp);
+
+  /**
+   * Records that a chunk was converted.
+   *
+   * @param chunkX    The chunk's absolute X coordinate.
+   * @param chunkZ    The chunk's absolute Z coordinate.
+   * @param timestamp The chunk's timestamp when it was converted, from its region file's timestamp
+   *                  table.
+   * @throws IOException if the chunk cannot be recorded. This stops the conversion.
+   */
+  void record(int chunkX, int chunkZ, int timestamp) throws IOException;
+
+  /**
+   * Same as {@link #record(int, int, int)}, but with the {@code output} that the chunk was written
+   * to, which must be {@link Flushable#flush() flushed} before the record is made durable.
+   * Conversions record chunks using this method. By default, the {@code output} is ignored.
+   *
+   * @param output The conversion's consumer or writer.
+   * @throws IOException if the chunk cannot be recorded, or if the {@code output} cannot be
+   *                     flushed. This stops the conversion.
+   */
+  default void record(int chunkX, int chunkZ, int timestamp, Flushable output)
+      throws IOException {
+    record(chunkX, chunkZ, timestamp);
+  }
+
+  /**
+   * @return whether every chunk in a region has already been converted, meaning its region file
+   * does not need to be opened. {@code false} by default.
+   */
+  default boolean isRegionComplete(int regionX, int regionZ) {
+    return false;
+  }
+
+  /**
+   * Records that every chunk in a region was converted, after each of them has been {@link
+   * #record(int, int, int) recorded}. Does nothing by default.
+   *
+   * @throws IOException if the region cannot be recorded. This stops the conversion.
+   */
+  default void recordRegion(int regionX, int regionZ) throws IOException {
+  }
+
+  /**
+   * Same as {@link #recordRegion(int, int)}, but with the {@code output} that the region's chunks
+   * were written to, which must be {@link Flushable#flush() flushed} before the record is made
+   * durable. Conversions record regions using this method. By default, the {@code output} is
+   * ignored.
+   *
+   * @param output The conversion's consumer or writer.
+   * @throws IOException if the region cannot be recorded, or if the {@code output} cannot be
+   *                     flushed. This stops the conversion.
+   */
+  default void recordRegion(int regionX, int regionZ, Flushable output) throws IOException {
+    recordRegion(regionX, regionZ);
+  }
+}
@@ -0,0 +1,209 @@
+package me.nullicorn.ooze.convert.region.world;
+
+/**
+ * Thread counts & queue sizes for each stage of a {@link ConversionPipeline}.
+ * <p><br>
+ * Options are immutable, so each {@code with...()} method returns a modified copy, leaving the
+ * original unchanged.
+ *
+ * @author Nullicorn
+ */
+public final class PipelineOptions {
+
+  private static final PipelineOptions DEFAULTS;
+
+  static {
+    // CPU-bound stages share the available cores; I/O-bound ones get a single thread.
+    int cpuThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    DEFAULTS = new PipelineOptions(1, cpuThreads, cpuThreads, cpuThreads, cpuThreads, 1, 64);
+  }
+
+  /**
+   * @return the options used by pipelines when none are specified.
+   */
+  public static PipelineOptions defaults() {
+    return DEFAULTS;
+  }
+
+  private final int readThreads;
+  private final int inflateThreads;
+  private final int parseThreads;
+  private final int decodeThreads;
+  private final int encodeThreads;
+  private final int writeThreads;
+  private final int queueCapacity;
+
+  private PipelineOptions(int readThreads,
+      int inflateThreads,
+      int parseThreads,
+      int decodeThreads,
+      int encodeThreads,
+      int writeThreads,
+      int queueCapacity) {
+    this.readThreads = readThreads;
+    this.inflateThreads = inflateThreads;
+    this.parseThreads = parseThreads;
+    this.decodeThreads = decodeThreads;
+    this.encodeThreads = encodeThreads;
+    this.writeThreads = writeThreads;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * @return the number of threads that read chunks from region files.
+   * @see #withReadThreads(int)
+   */
+  public int readThreads() {
+    return readThreads;
+  }
+
+  /**
+   * Determines how many region files are read at once. Defaults to {@code 1}, since reading is
+   * mostly bound by the disk.
+   *
+   * @return a copy of the options with the new thread count.
+   * @throws IllegalArgumentException if the {@code readThreads} is less than {@code 1}.
+   */
+  public PipelineOptions withReadThreads(int readThreads) {
+    checkThreadCount("readThreads", readThreads);
+    return new PipelineOptions(readThreads, inflateThreads, parseThreads, decodeThreads,
+        encodeThreads, writeThreads, queueCapacity);
+  }
+
+  /**
+   * @return the number of threads that decompress chunks.
+   * @see #withInflateThreads(int)
+   */
+  public int inflateThreads() {
+    return inflateThreads;
+  }
+
+  /**
+   * Determines how many chunks are decompressed at once. Defaults to half of the available
+   * processors.
+   *
+   * @return a copy of the options with the new thread count.
+   * @throws IllegalArgumentException if the {@code inflateThreads} is less than {@code 1}.
+   */
+  public PipelineOptions withInflateThreads(int inflateThreads) {
+    checkThreadCount("inflateThreads", inflateThreads);
+    return new PipelineOptions(readThreads, inflateThreads, parseThreads, decodeThreads,
+        encodeThreads, writeThreads, queueCapacity);
+  }
+
+  /**
+   * @return the number of threads that parse each chunk's NBT.
+   * @see #withParseThreads(int)
+   */
+  public int parseThreads() {
+    return parseThreads;
+  }
+
+  /**
+   * Determines how many chunks' NBT is parsed at once. Defaults to half of the available
+   * processors.
+   *
+   * @return a copy of the options with the new thread count.
+   * @throws IllegalArgumentException if the {@code parseThreads} is less than {@code 1}.
+   */
+  public PipelineOptions withParseThreads(int parseThreads) {
+    checkThreadCount("parseThreads", parseThreads);
+    return new PipelineOptions(readThreads, inflateThreads, parseThreads, decodeThreads,
+        encodeThreads, writeThreads, queueCapacity);
+  }
+
+  /**
+   * @return the number of threads that decode the sections of each chunk.
+   * @see #withDecodeThreads(int)
+   */
+  public int decodeThreads() {
+    return decodeThreads;
+  }
+
+  /**
+   * Determines how many chunks' sections are decoded at once. Defaults to half of the available
+   * processors.
+   *
+   * @return a copy of the options with the new thread count.
+   * @throws IllegalArgumentException if the {@code decodeThreads} is less than {@code 1}.
+   */
+  public PipelineOptions withDecodeThreads(int decodeThreads) {
+    checkThreadCount("decodeThreads", decodeThreads);
+    return new PipelineOptions(readThreads, inflateThreads, parseThreads, decodeThreads,
+        encodeThreads, writeThreads, queueCapacity);
+  }
+
+  /**
+   * @return the number of threads that run the pipeline's {@link ChunkEncoder}.
+   * @see #withEncodeThreads(int)
+   */
+  public int encodeThreads() {
+    return encodeThreads;
+  }
+
+  /**
+   * Determines how many chunks are encoded at once. Defaults to half of the available processors.
+   * If this is more than {@code 1}, the pipeline's {@link ChunkEncoder} must be thread-safe.
+   *
+   * @return a copy of the options with the new thread count.
+   * @throws IllegalArgumentException if the {@code encodeThreads} is less than {@code 1}.
+   */
+  public PipelineOptions withEncodeThreads(int encodeThreads) {
+    checkThreadCount("encodeThreads", encodeThreads);
+    return new PipelineOptions(readThreads, inflateThreads, parseThreads, decodeThreads,
+        encodeThreads, writeThreads, queueCapacity);
+  }
+
+  /**
+   * @return the number of threads that run the pipeline's {@link ChunkWriter}.
+   * @see #withWriteThreads(int)
+   */
+  public int writeThreads() {
+    return writeThreads;
+  }
+
+  /**
+   * Determines how many chunks are written at once. Defaults to {@code 1}, so that the pipeline's
+   * {@link ChunkWriter} does not need to be thread-safe. If this is more than {@code 1}, it must
+   * be.
+   *
+   * @return a copy of the options with the new thread count.
+   * @throws IllegalArgumentException if the {@code writeThreads} is less than {@code 1}.
+   */
+  public PipelineOptions withWriteThreads(int writeThreads) {
+    checkThreadCount("writeThreads", writeThreads);
+    return new PipelineOptions(readThreads, inflateThreads, parseThreads, decodeThreads,
+        encodeThreads, writeThreads, queueCapacity);
+  }
+
+  /**
+   * @return the maximum number of chunks waiting between each pair of stages.
+   * @see #withQueueCapacity(int)
+   */
+  public int queueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * Determines how many chunks can wait between each pair of stages. Defaults to {@code 64}.
+   * <p><br>
+   * When a queue is full, the stage before it waits until the stage after it catches up. This
+   * bounds the number of chunks in memory at once, regardless of how fast each stage is.
+   *
+   * @return a copy of the options with the new capacity.
+   * @throws IllegalArgumentException if the {@code queueCapacity} is less than {@code 1}.
+   */
+  public PipelineOptions withQueueCapacity(int queueCapacity) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+    }
+    return new PipelineOptions(readThreads, inflateThreads, parseThreads, decodeThreads,
+        encodeThreads, writeThreads, queueCapacity);
+  }
+
+  private static void checkThreadCount(String name, int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException(name + " must be positive: " + threadCount);
+    }
+  }
+}
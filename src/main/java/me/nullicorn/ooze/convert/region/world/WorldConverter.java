@@ -0,0 +1,329 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import me.nullicorn.ooze.convert.region.RegionChunk;
+import me.nullicorn.ooze.convert.region.RegionCodecs;
+import me.nullicorn.ooze.convert.region.StreamingChunkDecoder;
+import me.nullicorn.ooze.convert.region.file.ChunkCompression;
+import me.nullicorn.ooze.convert.region.file.RegionFile;
+import me.nullicorn.ooze.convert.region.world.WorldIO.RegionLocation;
+
+/**
+ * Converts every chunk in a world's {@code region} directory, using all of the threads in a {@link
+ * ForkJoinPool}.
+ * <p><br>
+ * Work is split by region, and then by chunk, so idle threads can steal individual chunks from
+ * regions that other threads are still working on. Each chunk is decoded using the {@link
+ * RegionCodecs#forVersion(int) codecs} for its own {@code DataVersion}, so worlds saved by multiple
+ * versions are supported.
+ * <p><br>
+ * Although chunks are decoded in parallel, they are always passed to the {@link ChunkConsumer} in
+ * the same order, on the thread that started the conversion; regions are ordered by their X
+ * coordinate, then their Z coordinate, and chunks within each region are in the same order as the
+ * region file's tables. Only a limited number of regions are converted ahead of the one being
+ * consumed, which bounds the conversion's memory use.
+ * <p><br>
+ * Conversions can be made incremental using a {@link ChunkManifest}, so that only chunks saved
+ * since the previous conversion are decoded again, or resumable using a {@link ConversionJournal},
+ * so that an interrupted conversion can continue where it stopped.
+ * <p><br>
+ * Converters are thread-safe, so multiple worlds can be converted at once using the same converter.
+ *
+ * @author Nullicorn
+ */
+public final class WorldConverter {
+
+  /**
+   * The default maximum number of regions that are converted at once.
+   */
+  public static final int DEFAULT_REGIONS_IN_FLIGHT = 2;
+
+  /**
+   * The version assumed for chunks without a {@code DataVersion}, which were saved before it was
+   * added in 1.9.
+   */
+  public static final int UNVERSIONED_DATA_VERSION = WorldIO.UNVERSIONED_DATA_VERSION;
+
+  private final ForkJoinPool pool;
+  private final int          maxRegionsInFlight;
+
+  /**
+   * Creates a converter that uses the {@link ForkJoinPool#commonPool() common pool}, and the {@link
+   * #DEFAULT_REGIONS_IN_FLIGHT default number} of regions in flight.
+   */
+  public WorldConverter() {
+    this(ForkJoinPool.commonPool(), DEFAULT_REGIONS_IN_FLIGHT);
+  }
+
+  /**
+   * Creates a converter that uses the supplied {@code pool}.
+   *
+   * @param pool               The pool to convert regions & chunks on.
+   * @param maxRegionsInFlight The maximum number of regions that can be converted at once,
+   *                           including the one whose chunks are being consumed. Higher values
+   *                           keep threads busy while chunks are consumed, but use more memory.
+   * @throws IllegalArgumentException if the {@code pool} is {@code null}, or if {@code
+   *                                  maxRegionsInFlight} is less than {@code 1}.
+   */
+  public WorldConverter(ForkJoinPool pool, int maxRegionsInFlight) {
+    if (pool == null) {
+      throw new IllegalArgumentException("pool cannot be null");
+    } else if (maxRegionsInFlight < 1) {
+      throw new IllegalArgumentException("maxRegionsInFlight must be positive: " +
+                                         maxRegionsInFlight);
+    }
+
+    this.pool = pool;
+    this.maxRegionsInFlight = maxRegionsInFlight;
+  }
+
+  /**
+   * Converts every chunk in a world's {@code region} directory, passing each one to the {@code
+   * consumer} in a deterministic order.
+   * <p><br>
+   * Files in the directory that are not named like region files ({@code r.<x>.<z>.mca}) are
+   * ignored. If any chunk cannot be converted, or if the consumer fails, the conversion stops and
+   * any regions still in flight are cancelled, including those whose chunks are being converted.
+   *
+   * @param regionDirectory The world's {@code region} directory.
+   * @param consumer        The consumer to pass each chunk to. Only ever called on the current
+   *                        thread.
+   * @return the number of chunks that were converted.
+   * @throws IllegalArgumentException if either argument is {@code null}.
+   * @throws IOException              if the directory cannot be listed, if any region file or chunk
+   *                                  cannot be read or decoded, or if the consumer fails.
+   */
+  public long convert(Path regionDirectory, ChunkConsumer consumer) throws IOException {
+    if (regionDirectory == null) {
+      throw new IllegalArgumentException("regionDirectory cannot be null");
+    } else if (consumer == null) {
+      throw new IllegalArgumentException("consumer cannot be null");
+    }
+    return convertRegions(regionDirectory, consumer, null);
+  }
+
+  /**
+   * Converts the chunks in a world's {@code region} directory that the {@code progress} does not
+   * consider up-to-date, passing each one to the {@code consumer} in a deterministic order.
+   * Up-to-date chunks, and complete regions, are skipped without being read or decoded.
+   * <p><br>
+   * Each chunk is recorded in the progress once it has been consumed, using the timestamp from its
+   * region file's timestamp table, and each region once all of its chunks have been. If the
+   * conversion fails, chunks that were already consumed stay recorded. Progress that syncs its
+   * records, such as a {@link ConversionJournal}, {@link ChunkConsumer#flush() flushes} the
+   * consumer first.
+   *
+   * @param regionDirectory The world's {@code region} directory.
+   * @param consumer        The consumer to pass each remaining chunk to. Only ever called on the
+   *                        current thread.
+   * @param progress        The chunks converted previously, such as a {@link ChunkManifest} of an
+   *                        earlier conversion, or the {@link ConversionJournal} of an interrupted
+   *                        one.
+   * @return the number of chunks that were converted, not including skipped ones.
+   * @throws IllegalArgumentException if any argument is {@code null}.
+   * @throws IOException              if the directory cannot be listed, if any region file or chunk
+   *                                  cannot be read or decoded, or if the consumer fails.
+   * @see #convert(Path, ChunkConsumer)
+   */
+  public long convert(Path regionDirectory, ChunkConsumer consumer, ConversionProgress progress)
+      throws IOException {
+    if (regionDirectory == null) {
+      throw new IllegalArgumentException("regionDirectory cannot be null");
+    } else if (consumer == null) {
+      throw new IllegalArgumentException("consumer cannot be null");
+    } else if (progress == null) {
+      throw new IllegalArgumentException("progress cannot be null");
+    }
+    return convertRegions(regionDirectory, consumer, progress);
+  }
+
+  /**
+   * Implementation of both {@code convert()} methods.
+   *
+   * @param progress The progress to skip chunks using, or {@code null} if every chunk should be
+   *                 converted.
+   */
+  private long convertRegions(Path regionDirectory, ChunkConsumer consumer,
+      ConversionProgress progress) throws IOException {
+    List<RegionLocation> regions = WorldIO.findRegions(regionDirectory);
+    Deque<RegionTask> inFlight = new ArrayDeque<>(maxRegionsInFlight);
+    AtomicBoolean aborted = new AtomicBoolean();
+    int nextRegion = 0;
+    long chunkCount = 0;
+
+    try {
+      while (nextRegion < regions.size() || !inFlight.isEmpty()) {
+        while (nextRegion < regions.size() && inFlight.size() < maxRegionsInFlight) {
+          RegionTask task = new RegionTask(regions.get(nextRegion++), progress, aborted);
+          pool.execute(task);
+          inFlight.add(task);
+        }
+
+        RegionTask oldest = inFlight.remove();
+        oldest.join();
+        chunkCount += oldest.consume(consumer);
+      }
+    } finally {
+      // Only non-empty if the conversion failed. Tasks that already started stop once they see
+      // that the conversion was aborted.
+      if (!inFlight.isEmpty()) {
+        aborted.set(true);
+      }
+      for (RegionTask task : inFlight) {
+        task.cancel(false);
+      }
+    }
+
+    return chunkCount;
+  }
+
+  /**
+   * Converts all of the chunks in a single region file, in parallel. Any failure is stored, rather
+   * than thrown, until the region is {@link #consume(ChunkConsumer) consumed}.
+   */
+  private final class RegionTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RegionLocation     location;
+    private final Path               file;
+    private final ConversionProgress progress;
+    private final AtomicBoolean      aborted;
+
+    // Results, which are visible to the consuming thread once the task is joined.
+    private List<ChunkTask> chunks;
+    private IOException     error;
+
+    /**
+     * @param progress The progress used to skip converted chunks, or {@code null} if every chunk
+     *                 should be converted.
+     * @param aborted  Set once the conversion fails, so that the region's chunks are not converted
+     *                 for nothing.
+     */
+    RegionTask(RegionLocation location, ConversionProgress progress, AtomicBoolean aborted) {
+      this.location = location;
+      this.file = location.file;
+      this.progress = progress;
+      this.aborted = aborted;
+    }
+
+    @Override
+    protected void compute() {
+      if (aborted.get()
+          || progress != null && progress.isRegionComplete(location.regionX, location.regionZ)) {
+        chunks = Collections.emptyList();
+        return;
+      }
+
+      try (RegionFile region = RegionFile.open(file)) {
+        List<ChunkTask> tasks = new ArrayList<>(region.chunkCount());
+        for (int chunkZ = 0; chunkZ < WorldIO.REGION_WIDTH; chunkZ++) {
+          for (int chunkX = 0; chunkX < WorldIO.REGION_WIDTH; chunkX++) {
+            if (!region.hasChunk(chunkX, chunkZ)) {
+              continue;
+            }
+
+            int timestamp = region.getTimestamp(chunkX, chunkZ);
+            if (progress == null || !progress.isUpToDate(location.chunkX(chunkX),
+                location.chunkZ(chunkZ), timestamp)) {
+              tasks.add(new ChunkTask(region, chunkX, chunkZ, timestamp, aborted));
+            }
+          }
+        }
+
+        if (aborted.get()) {
+          chunks = Collections.emptyList();
+          return;
+        }
+        invokeAll(tasks);
+        chunks = tasks;
+      } catch (IOException e) {
+        error = new IOException("Unable to read region file " + file, e);
+      }
+    }
+
+    /**
+     * Passes each of the region's chunks to the {@code consumer}, in order.
+     *
+     * @return the number of chunks consumed.
+     * @throws IOException if the region or any of its chunks could not be converted, or if the
+     *                     consumer fails.
+     */
+    long consume(ChunkConsumer consumer) throws IOException {
+      if (error != null) {
+        throw error;
+      }
+
+      for (ChunkTask chunk : chunks) {
+        if (chunk.error != null) {
+          throw new IOException("Unable to convert chunk [" + chunk.chunkX + ", " + chunk.chunkZ +
+                                "] in " + file, chunk.error);
+        }
+        consumer.accept(chunk.chunk);
+        if (progress != null) {
+          progress.record(location.chunkX(chunk.chunkX), location.chunkZ(chunk.chunkZ),
+              chunk.timestamp, consumer);
+        }
+      }
+
+      if (progress != null && !progress.isRegionComplete(location.regionX, location.regionZ)) {
+        progress.recordRegion(location.regionX, location.regionZ, consumer);
+      }
+      return chunks.size();
+    }
+  }
+
+  /**
+   * Decompresses & decodes a single chunk. Any failure is stored, rather than thrown.
+   */
+  private final class ChunkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RegionFile    region;
+    private final int           chunkX;
+    private final int           chunkZ;
+    private final int           timestamp;
+    private final AtomicBoolean aborted;
+
+    // Results, which are visible to the consuming thread once the task is joined.
+    private RegionChunk chunk;
+    private IOException error;
+
+    ChunkTask(RegionFile region, int chunkX, int chunkZ, int timestamp, AtomicBoolean aborted) {
+      this.region = region;
+      this.chunkX = chunkX;
+      this.chunkZ = chunkZ;
+      this.timestamp = timestamp;
+      this.aborted = aborted;
+    }
+
+    @Override
+    protected void compute() {
+      if (aborted.get()) {
+        // The chunk would never be consumed.
+        return;
+      }
+
+      try {
+        // Decoded right away, so the NBT can stay in this thread's buffer.
+        ByteBuffer nbt = ChunkCompression.decompressToThreadBuffer(
+            region.getPayload(chunkX, chunkZ));
+        int dataVersion = StreamingChunkDecoder.readDataVersion(nbt, UNVERSIONED_DATA_VERSION);
+        chunk = WorldIO.getDecoder(dataVersion).decode(nbt);
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+  }
+}
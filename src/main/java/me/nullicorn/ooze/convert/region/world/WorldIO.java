@@ -0,0 +1,135 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import me.nullicorn.ooze.convert.region.RegionCodecs;
+import me.nullicorn.ooze.convert.region.StreamingChunkDecoder;
+
+/**
+ * Helpers shared by the different ways of converting a world's {@code region} directory.
+ *
+ * @author Nullicorn
+ */
+final class WorldIO {
+
+  /**
+   * The version assumed for chunks without a {@code DataVersion}, which were saved before it was
+   * added in 1.9.
+   */
+  static final int UNVERSIONED_DATA_VERSION = 99;
+
+  /**
+   * The number of chunks along each horizontal axis of a region.
+   */
+  static final int REGION_WIDTH = 32;
+
+  /**
+   * Matches the names of region files, capturing the region's X and Z coordinates respectively.
+   */
+  private static final Pattern REGION_FILE_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+  /**
+   * Chunk decoders, keyed by the data-version they decode.
+   */
+  private static final ConcurrentMap<Integer, StreamingChunkDecoder> DECODERS =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Lists the region files in a directory. Files that are not named like region files ({@code
+   * r.<x>.<z>.mca}) are ignored.
+   *
+   * @return the region files & their coordinates, sorted by their X coordinate, then their Z
+   * coordinate.
+   * @throws IOException if the directory cannot be listed.
+   */
+  static List<RegionLocation> findRegions(Path regionDirectory) throws IOException {
+    List<RegionLocation> regions = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(regionDirectory)) {
+      for (Path file : files) {
+        Matcher name = REGION_FILE_NAME.matcher(file.getFileName().toString());
+        if (name.matches() && Files.isRegularFile(file)) {
+          try {
+            regions.add(new RegionLocation(file,
+                Integer.parseInt(name.group(1)),
+                Integer.parseInt(name.group(2))));
+          } catch (NumberFormatException e) {
+            // Coordinates too large to be a real region.
+          }
+        }
+      }
+    }
+
+    regions.sort(Comparator
+        .comparingInt((RegionLocation region) -> region.regionX)
+        .thenComparingInt(region -> region.regionZ));
+    return regions;
+  }
+
+  /**
+   * @return the shared decoder for chunks in the {@code dataVersion}.
+   * @throws MalformedInputException if chunks cannot be decoded in the {@code dataVersion}.
+   */
+  static StreamingChunkDecoder getDecoder(int dataVersion) throws MalformedInputException {
+    StreamingChunkDecoder decoder = DECODERS.get(dataVersion);
+    if (decoder == null) {
+      try {
+        decoder = DECODERS.computeIfAbsent(dataVersion,
+            version -> new StreamingChunkDecoder(RegionCodecs.forVersion(version)));
+      } catch (IllegalArgumentException e) {
+        throw new MalformedInputException("chunk", "unsupported DataVersion " + dataVersion, e);
+      }
+    }
+    return decoder;
+  }
+
+  /**
+   * @return whether any chunks in the {@code dataVersion} have been decoded yet, meaning its shared
+   * decoder has been created.
+   */
+  static boolean hasDecoder(int dataVersion) {
+    return DECODERS.containsKey(dataVersion);
+  }
+
+  /**
+   * A region file, and the region's coordinates, parsed from the file's name.
+   */
+  static final class RegionLocation {
+
+    final Path file;
+    final int  regionX;
+    final int  regionZ;
+
+    RegionLocation(Path file, int regionX, int regionZ) {
+      this.file = file;
+      this.regionX = regionX;
+      this.regionZ = regionZ;
+    }
+
+    /**
+     * @return the absolute X coordinate of a chunk in the region, given its relative one.
+     */
+    int chunkX(int relativeX) {
+      return regionX * REGION_WIDTH + relativeX;
+    }
+
+    /**
+     * @return the absolute Z coordinate of a chunk in the region, given its relative one.
+     */
+    int chunkZ(int relativeZ) {
+      return regionZ * REGION_WIDTH + relativeZ;
+    }
+  }
+
+  private WorldIO() {
+  }
+}
@@ -0,0 +1,57 @@
+package me.nullicorn.ooze.convert;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class ArrayUIntMapTests {
+
+  @Test
+  void set_shouldStoreNewKeys() {
+    ArrayUIntMap map = new ArrayUIntMap();
+    assertEquals(-1, map.set(7, 70));
+    assertEquals(-1, map.set(-3, 0));
+
+    assertEquals(2, map.size());
+    assertEquals(70, map.get(7));
+    assertEquals(0, map.get(-3));
+    assertEquals(-1, map.get(8), "Missing keys should have no value");
+  }
+
+  @Test
+  void set_shouldReplaceExistingValues() {
+    ArrayUIntMap map = new ArrayUIntMap();
+    map.set(1, 10);
+
+    assertEquals(10, map.set(1, 11));
+    assertEquals(1, map.size());
+    assertEquals(11, map.get(1));
+  }
+
+  @Test
+  void set_shouldGrowPastInitialCapacity() {
+    ArrayUIntMap map = new ArrayUIntMap(0);
+    for (int key = 0; key < 100; key++) {
+      assertEquals(-1, map.set(key * 31, key));
+    }
+
+    assertEquals(100, map.size());
+    for (int key = 0; key < 100; key++) {
+      assertEquals(key, map.get(key * 31), "Wrong value for key " + key * 31);
+    }
+  }
+
+  @Test
+  void set_shouldRejectNegativeValues() {
+    assertThrows(IllegalArgumentException.class, () -> new ArrayUIntMap().set(0, -1));
+  }
+
+  @Test
+  void constructor_shouldRejectNegativeCapacity() {
+    assertThrows(IllegalArgumentException.class, () -> new ArrayUIntMap(-1));
+  }
+}
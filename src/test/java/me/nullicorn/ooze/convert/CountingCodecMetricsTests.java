@@ -0,0 +1,115 @@
+package me.nullicorn.ooze.convert;
+
+import static me.nullicorn.ooze.convert.CountingCodecMetrics.Counter.CHUNKS_DECODED;
+import static me.nullicorn.ooze.convert.CountingCodecMetrics.Counter.CHUNK_BYTES_PARSED;
+import static me.nullicorn.ooze.convert.CountingCodecMetrics.Counter.LEGACY_SECTIONS_DECODED;
+import static me.nullicorn.ooze.convert.CountingCodecMetrics.Counter.SECTIONS_DECODED;
+import static me.nullicorn.ooze.convert.CountingCodecMetrics.Counter.SECTIONS_ENCODED;
+import static me.nullicorn.ooze.convert.CountingCodecMetrics.Counter.SECTION_BYTES_DECODED;
+import static me.nullicorn.ooze.convert.CountingCodecMetrics.Counter.SECTION_DECODE_NANOS;
+import static me.nullicorn.ooze.convert.CountingCodecMetrics.Counter.SECTION_PALETTE_STATES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class CountingCodecMetricsTests {
+
+  @Test
+  void none_shouldBeDisabled() {
+    assertFalse(CodecMetrics.none().isEnabled());
+    assertTrue(CodecMetrics.counting().isEnabled());
+  }
+
+  @Test
+  void get_shouldCountEachVersionSeparately() {
+    CountingCodecMetrics metrics = CodecMetrics.counting();
+    metrics.sectionDecoded(1343, 3, 2, true, 8192, 100);
+    metrics.sectionDecoded(2730, 16, 4, false, 2048, 200);
+    metrics.sectionDecoded(2730, 17, 5, false, 2560, 300);
+    metrics.sectionEncoded(2730, 1, 0, false, 0, 50);
+    metrics.chunkDecoded(2730, 1, 2, 3, 1000);
+    metrics.chunkParsed(2730, 1, 2, 12345, 10);
+
+    assertEquals(3, metrics.get(SECTIONS_DECODED));
+    assertEquals(1, metrics.get(1343, SECTIONS_DECODED));
+    assertEquals(2, metrics.get(2730, SECTIONS_DECODED));
+    assertEquals(0, metrics.get(1451, SECTIONS_DECODED));
+    assertEquals(1, metrics.get(LEGACY_SECTIONS_DECODED));
+    assertEquals(1, metrics.get(SECTIONS_ENCODED));
+
+    assertEquals(600, metrics.get(SECTION_DECODE_NANOS));
+    assertEquals(8192 + 2048 + 2560, metrics.get(SECTION_BYTES_DECODED));
+    assertEquals(3 + 16 + 17 + 1, metrics.get(SECTION_PALETTE_STATES));
+    assertEquals(1, metrics.get(2730, CHUNKS_DECODED));
+    assertEquals(12345, metrics.get(CHUNK_BYTES_PARSED));
+
+    assertEquals(new HashSet<>(Arrays.asList(1343, 2730)), metrics.dataVersions());
+  }
+
+  @Test
+  void sectionsWithMagnitude_shouldCountBothDirections() {
+    CountingCodecMetrics metrics = CodecMetrics.counting();
+    metrics.sectionDecoded(2730, 16, 4, false, 2048, 1);
+    metrics.sectionEncoded(2730, 9, 4, false, 2048, 1);
+    metrics.sectionEncoded(1451, 1, 0, false, 0, 1);
+
+    assertEquals(2, metrics.sectionsWithMagnitude(4));
+    assertEquals(1, metrics.sectionsWithMagnitude(0));
+    assertEquals(0, metrics.sectionsWithMagnitude(9));
+    assertEquals(0, metrics.sectionsWithMagnitude(-1));
+    assertEquals(0, metrics.sectionsWithMagnitude(Integer.MAX_VALUE));
+  }
+
+  @Test
+  void cacheHitRate_shouldCountEachCacheSeparately() {
+    CountingCodecMetrics metrics = CodecMetrics.counting();
+    assertTrue(Double.isNaN(metrics.cacheHitRate("a")));
+
+    metrics.cacheLookup("a", true);
+    metrics.cacheLookup("a", true);
+    metrics.cacheLookup("a", true);
+    metrics.cacheLookup("a", false);
+    metrics.cacheLookup("b", false);
+
+    assertEquals(3, metrics.cacheHits("a"));
+    assertEquals(1, metrics.cacheMisses("a"));
+    assertEquals(0.75, metrics.cacheHitRate("a"));
+    assertEquals(0.0, metrics.cacheHitRate("b"));
+  }
+
+  @Test
+  void get_shouldNotLoseConcurrentEvents() throws InterruptedException {
+    CountingCodecMetrics metrics = CodecMetrics.counting();
+    int threadCount = 8;
+    int eventsPerThread = 10_000;
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      // Threads alternate between two versions, so the last-used version keeps changing.
+      int dataVersion = i % 2 == 0 ? 1451 : 2730;
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < eventsPerThread; j++) {
+          metrics.sectionDecoded(dataVersion, 2, 1, false, 0, 1);
+          metrics.cacheLookup("c", j % 2 == 0);
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(threadCount * eventsPerThread, metrics.get(SECTIONS_DECODED));
+    assertEquals(threadCount * eventsPerThread / 2, metrics.get(2730, SECTIONS_DECODED));
+    assertEquals(threadCount * eventsPerThread / 2, metrics.cacheHits("c"));
+  }
+}
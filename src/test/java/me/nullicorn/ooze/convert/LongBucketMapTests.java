@@ -0,0 +1,67 @@
+package me.nullicorn.ooze.convert;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class LongBucketMapTests {
+
+  @Test
+  void constructor_shouldRejectNegativeCapacity() {
+    assertThrows(IllegalArgumentException.class, () -> new LongBucketMap<>(-1));
+    assertEquals(0, new LongBucketMap<>(0).size());
+  }
+
+  @Test
+  void add_shouldGroupValuesByKey() {
+    LongBucketMap<String> map = new LongBucketMap<>(0);
+    map.add(0, "a");
+    map.add(-1, "b");
+    map.add(0, "c");
+    map.add(Long.MIN_VALUE, "d");
+    map.add(Long.MAX_VALUE, "e");
+
+    assertEquals(4, map.size());
+    assertEquals(Arrays.asList("a", "c"), map.get(0));
+    assertEquals(Collections.singletonList("b"), map.get(-1));
+    assertEquals(Collections.singletonList("d"), map.get(Long.MIN_VALUE));
+    assertEquals(Collections.singletonList("e"), map.get(Long.MAX_VALUE));
+    assertTrue(map.containsKey(0));
+    assertFalse(map.containsKey(1));
+    assertTrue(map.get(1).isEmpty());
+    assertThrows(UnsupportedOperationException.class, () -> map.get(0).clear());
+  }
+
+  @Test
+  void add_shouldKeepEveryKeyWhenGrowing() {
+    LongBucketMap<Integer> map = new LongBucketMap<>();
+    int count = 10_000;
+    for (int i = 0; i < count; i++) {
+      // Keys that only differ in their high bits.
+      map.add((long) i << 32, i);
+      map.add((long) i << 32, -i);
+    }
+
+    assertEquals(count, map.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(Arrays.asList(i, -i), map.get((long) i << 32));
+    }
+
+    long[] keys = map.keys();
+    Arrays.sort(keys);
+    long[] expected = new long[count];
+    for (int i = 0; i < count; i++) {
+      expected[i] = (long) i << 32;
+    }
+    assertArrayEquals(expected, keys);
+  }
+}
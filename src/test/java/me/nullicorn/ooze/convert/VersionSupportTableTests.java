@@ -0,0 +1,111 @@
+package me.nullicorn.ooze.convert;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import me.nullicorn.nedit.type.TagType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class VersionSupportTableTests {
+
+  private static final int HIGHEST_VERSION = 300;
+
+  @Test
+  void of_shouldGroupVersionsIntoBands() {
+    VersionSupportTable<TestTag> table = VersionSupportTable.of(TestTag.class, HIGHEST_VERSION);
+
+    // [0, 99], [100, 199], [200, 249], [250, 300]
+    assertEquals(4, table.bandCount());
+  }
+
+  @Test
+  void of_shouldRejectTagsOutsideRange() {
+    assertThrows(IllegalArgumentException.class,
+        () -> VersionSupportTable.of(TestTag.class, HIGHEST_VERSION - 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> VersionSupportTable.of(TestTag.class, -1));
+    assertThrows(IllegalArgumentException.class,
+        () -> VersionSupportTable.of(null, HIGHEST_VERSION));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {-1, 0, 99, 100, 150, 199, 200, 249, 250, 300, 301, Integer.MAX_VALUE})
+  void supportMask_shouldMatchIsSupported(int dataVersion) {
+    VersionSupportTable<TestTag> table = VersionSupportTable.of(TestTag.class, HIGHEST_VERSION);
+
+    EnumSet<TestTag> expected = EnumSet.noneOf(TestTag.class);
+    long expectedMask = 0;
+    for (TestTag tag : TestTag.values()) {
+      if (tag.isSupported(dataVersion)) {
+        expected.add(tag);
+        expectedMask |= 1L << tag.ordinal();
+      }
+      assertEquals(tag.isSupported(dataVersion), table.isSupported(tag, dataVersion));
+    }
+
+    assertEquals(expectedMask, table.supportMask(dataVersion));
+    assertEquals(expected, table.supportedIn(dataVersion));
+  }
+
+  @Test
+  void areAllSupported_shouldRequireEveryTag() {
+    VersionSupportTable<TestTag> table = VersionSupportTable.of(TestTag.class, HIGHEST_VERSION);
+    long mask = VersionSupportTable.maskOf(TestTag.ALWAYS, TestTag.NEWER);
+
+    assertFalse(table.areAllSupported(mask, 150));
+    assertTrue(table.isAnySupported(mask, 150));
+    assertTrue(table.areAllSupported(mask, 250));
+    assertFalse(table.isAnySupported(mask, 50));
+  }
+
+  @Test
+  void supportedIn_shouldBeUnmodifiable() {
+    VersionSupportTable<TestTag> table = VersionSupportTable.of(TestTag.class, HIGHEST_VERSION);
+
+    assertThrows(UnsupportedOperationException.class,
+        () -> table.supportedIn(150).add(TestTag.NEWER));
+  }
+
+  private enum TestTag implements VersionedTag {
+    ALWAYS(100, 300),
+    OLDER(100, 199),
+    NEWER(200, 300),
+    NEWEST(250, 300);
+
+    private final int minVersion;
+    private final int maxVersion;
+
+    TestTag(int minVersion, int maxVersion) {
+      this.minVersion = minVersion;
+      this.maxVersion = maxVersion;
+    }
+
+    @Override
+    public String getName() {
+      return name();
+    }
+
+    @Override
+    public TagType getType() {
+      return TagType.BYTE;
+    }
+
+    @Override
+    public TagType getContentType() {
+      throw new UnsupportedOperationException("Not a list: " + this);
+    }
+
+    @Override
+    public boolean isSupported(int dataVersion) {
+      return dataVersion >= minVersion && dataVersion <= maxVersion;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package me.nullicorn.ooze.convert;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the tag accessors shared by all {@link VersionedCodec}s.
+ *
+ * @author Nullicorn
+ */
+class VersionedCodecAccessorTests {
+
+  private static final int MIN_VERSION = 99;
+
+  private TestCodec   codec;
+  private NBTCompound compound;
+
+  @BeforeEach
+  void beforeEach() {
+    codec = new TestCodec();
+    compound = new NBTCompound();
+  }
+
+  @Test
+  void getInt_shouldReturnValueOrDefault() {
+    assertEquals(-1, codec.getInt(TestTag.INT, compound, -1), "Missing tag should use default");
+
+    compound.put(TestTag.INT.getName(), (byte) 5);
+    assertEquals(-1, codec.getInt(TestTag.INT, compound, -1), "Wrong type should use default");
+
+    compound.put(TestTag.INT.getName(), 5);
+    assertEquals(5, codec.getInt(TestTag.INT, compound, -1));
+  }
+
+  @Test
+  void hasInt_shouldCheckPresenceAndType() {
+    assertFalse(codec.hasInt(TestTag.INT, compound), "Missing tag should not be present");
+
+    compound.put(TestTag.INT.getName(), (byte) 0);
+    assertFalse(codec.hasInt(TestTag.INT, compound), "Wrong type should not be present");
+
+    compound.put(TestTag.INT.getName(), 0);
+    assertTrue(codec.hasInt(TestTag.INT, compound));
+    assertThrows(IllegalArgumentException.class, () -> codec.hasInt(TestTag.LONG_ARRAY, compound));
+  }
+
+  @Test
+  void getLongArray_shouldReturnSameArray() {
+    long[] words = {1, 2, 3};
+    compound.put(TestTag.LONG_ARRAY.getName(), words);
+
+    assertSame(words, codec.getLongArray(TestTag.LONG_ARRAY, compound));
+  }
+
+  @Test
+  void getByteArray_shouldReturnNullForWrongType() {
+    compound.put(TestTag.BYTE_ARRAY.getName(), new int[]{1, 2, 3});
+    assertNull(codec.getByteArray(TestTag.BYTE_ARRAY, compound));
+
+    compound.put(TestTag.BYTE_ARRAY.getName(), new byte[]{1, 2, 3});
+    assertArrayEquals(new byte[]{1, 2, 3}, codec.getByteArray(TestTag.BYTE_ARRAY, compound));
+  }
+
+  @Test
+  void getList_shouldCheckContentType() {
+    compound.put(TestTag.COMPOUND_LIST.getName(), new NBTList(TagType.INT));
+    assertNull(codec.getList(TestTag.COMPOUND_LIST, compound));
+
+    NBTList list = new NBTList(TagType.COMPOUND);
+    compound.put(TestTag.COMPOUND_LIST.getName(), list);
+    assertSame(list, codec.getList(TestTag.COMPOUND_LIST, compound));
+  }
+
+  @Test
+  void accessors_shouldRejectTagsOfOtherTypes() {
+    assertThrows(IllegalArgumentException.class,
+        () -> codec.getInt(TestTag.LONG_ARRAY, compound, 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> codec.getLongArray(TestTag.INT, compound));
+    assertThrows(IllegalArgumentException.class,
+        () -> codec.getList(TestTag.INT, compound));
+  }
+
+  @Test
+  void accessors_shouldRejectNullArguments() {
+    assertThrows(IllegalArgumentException.class, () -> codec.getInt(null, compound, 0));
+    assertThrows(IllegalArgumentException.class, () -> codec.getInt(TestTag.INT, null, 0));
+  }
+
+  @Test
+  void setTagValue_shouldRejectWrongTypes() {
+    assertThrows(ClassCastException.class,
+        () -> codec.setTagValue(TestTag.INT, (byte) 1, compound));
+    assertThrows(ClassCastException.class,
+        () -> codec.setTagValue(TestTag.COMPOUND_LIST, new NBTList(TagType.INT), compound));
+
+    codec.setTagValue(TestTag.INT, 1, compound);
+    assertEquals(1, compound.get(TestTag.INT.getName()));
+  }
+
+  /**
+   * A codec that only exists to expose {@link VersionedCodec}'s accessors.
+   */
+  private static class TestCodec extends VersionedCodec<Object, Object> {
+
+    TestCodec() {
+      super(MIN_VERSION);
+    }
+
+    @Override
+    public Object encode(Object value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object decode(Object encoded) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Tags of various types, supported in all versions.
+   */
+  private enum TestTag implements VersionedTag {
+    INT(TagType.INT),
+    BYTE_ARRAY(TagType.BYTE_ARRAY),
+    LONG_ARRAY(TagType.LONG_ARRAY),
+    COMPOUND_LIST(TagType.LIST);
+
+    private final TagType type;
+
+    TestTag(TagType type) {
+      this.type = type;
+    }
+
+    @Override
+    public String getName() {
+      return name().toLowerCase();
+    }
+
+    @Override
+    public TagType getType() {
+      return type;
+    }
+
+    @Override
+    public TagType getContentType() {
+      return TagType.COMPOUND;
+    }
+
+    @Override
+    public boolean isSupported(int dataVersion) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package me.nullicorn.ooze.convert.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.convert.CodecMetrics;
+import me.nullicorn.ooze.convert.region.RegionSectionCodec;
+import me.nullicorn.ooze.convert.region.SectionCodecOptions;
+import me.nullicorn.ooze.convert.region.SectionCorpus;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class JfrCodecMetricsTests {
+
+  private static final int DATA_VERSION = 2730;
+  private static final int SECTIONS     = 10;
+
+  @Test
+  void constructor_shouldRejectInvalidThresholds() {
+    assertThrows(IllegalArgumentException.class, () -> new JfrCodecMetrics(-1, TimeUnit.SECONDS));
+    assertThrows(IllegalArgumentException.class, () -> new JfrCodecMetrics(1, null));
+
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(JfrCodecMetrics.DEFAULT_THRESHOLD_MILLIS),
+        new JfrCodecMetrics().getThresholdNanos());
+    assertEquals(5000, new JfrCodecMetrics(5, TimeUnit.MICROSECONDS).getThresholdNanos());
+  }
+
+  @Test
+  void isEnabled_shouldFollowRecording() throws IOException {
+    JfrCodecMetrics metrics = new JfrCodecMetrics();
+    assertFalse(metrics.isEnabled());
+
+    try (Recording recording = new Recording()) {
+      recording.enable(SectionEvent.NAME);
+      recording.start();
+      assertTrue(metrics.isEnabled());
+    }
+    assertFalse(metrics.isEnabled());
+  }
+
+  @Test
+  void decode_shouldRecordSectionsAboveThreshold() throws IOException {
+    List<RecordedEvent> events = recordDecoding(new JfrCodecMetrics(0, TimeUnit.NANOSECONDS));
+
+    List<RecordedEvent> sections = events.stream()
+        .filter(event -> event.getEventType().getName().equals(SectionEvent.NAME))
+        .collect(Collectors.toList());
+    assertEquals(SECTIONS, sections.size());
+    for (RecordedEvent section : sections) {
+      assertEquals(CodecEvent.DECODE, section.getString("operation"));
+      assertEquals(DATA_VERSION, section.getInt("dataVersion"));
+      assertFalse(section.getBoolean("legacy"));
+      assertTrue(section.getInt("paletteSize") > 0);
+      assertTrue(section.getLong("elapsed") >= 0);
+    }
+
+    assertTrue(events.stream()
+        .anyMatch(event -> event.getEventType().getName().equals(PaletteEvent.NAME)));
+  }
+
+  @Test
+  void decode_shouldNotRecordSectionsBelowThreshold() throws IOException {
+    assertTrue(recordDecoding(new JfrCodecMetrics(1, TimeUnit.HOURS)).isEmpty());
+  }
+
+  /**
+   * Decodes a few sections while recording the codecs' events to the {@code metrics}.
+   */
+  private static List<RecordedEvent> recordDecoding(CodecMetrics metrics) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(DATA_VERSION,
+        SectionCodecOptions.defaults().withMetrics(metrics));
+    List<NBTCompound> sections = new SectionCorpus(42)
+        .withUniformRatio(0)
+        .nextSections(DATA_VERSION, SECTIONS);
+
+    Path path = Files.createTempFile("codec", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(SectionEvent.NAME);
+      recording.enable(PaletteEvent.NAME);
+      recording.enable(ChunkEvent.NAME);
+      recording.start();
+
+      for (NBTCompound section : sections) {
+        codec.decode(section);
+      }
+
+      recording.stop();
+      recording.dump(path);
+      return RecordingFile.readAllEvents(path);
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+}
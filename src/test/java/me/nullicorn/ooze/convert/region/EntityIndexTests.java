@@ -0,0 +1,131 @@
+package me.nullicorn.ooze.convert.region;
+
+import static me.nullicorn.ooze.convert.region.RegionEntityCodecTests.createEntity;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class EntityIndexTests {
+
+  @Test
+  void add_shouldGroupEntitiesByPosition() {
+    NBTCompound pig = createEntity("minecraft:pig", 1.5, 64, 2.5);
+    NBTCompound cow = createEntity("minecraft:cow", 15.99, 79.9, 0);
+    NBTCompound bat = createEntity("minecraft:bat", 8, 10, 8);
+    NBTCompound wanderer = createEntity("minecraft:wandering_trader", 40, 64, 40);
+
+    EntityIndex index = EntityIndex.of(Collections.singletonList(
+        new EntityChunk(0, 0, Arrays.asList(pig, cow, bat, wanderer))));
+
+    assertEquals(4, index.size());
+    assertEquals(2, index.chunkCount());
+    assertEquals(Arrays.asList(pig, cow, bat), index.inChunk(0, 0));
+    assertEquals(Collections.singletonList(wanderer), index.inChunk(2, 2));
+    assertEquals(Arrays.asList(pig, cow), index.inSection(0, 4, 0));
+    assertEquals(Collections.singletonList(bat), index.inSection(0, 0, 0));
+    assertEquals(Collections.singletonList(wanderer), index.inSection(2, 4, 2));
+
+    assertTrue(index.inChunk(1, 1).isEmpty());
+    assertTrue(index.inSection(0, 5, 0).isEmpty());
+    assertThrows(UnsupportedOperationException.class, () -> index.inChunk(0, 0).clear());
+  }
+
+  @Test
+  void add_shouldHandleNegativeCoordinates() {
+    NBTCompound justBelowZero = createEntity("minecraft:pig", -0.01, -0.01, -0.01);
+    NBTCompound farAway = createEntity("minecraft:pig", -1_000_000.5, -64, 1_000_000.5);
+
+    EntityIndex index = new EntityIndex();
+    index.add(new EntityChunk(-1, -1, Arrays.asList(justBelowZero, farAway)));
+
+    assertEquals(Collections.singletonList(justBelowZero), index.inChunk(-1, -1));
+    assertEquals(Collections.singletonList(justBelowZero), index.inSection(-1, -1, -1));
+    assertEquals(Collections.singletonList(farAway), index.inChunk(-62501, 62500));
+    assertEquals(Collections.singletonList(farAway), index.inSection(-62501, -4, 62500));
+  }
+
+  @Test
+  void add_shouldGroupInvalidPositionsByStorageChunk() {
+    NBTCompound noPos = new NBTCompound();
+    noPos.put("id", "minecraft:pig");
+
+    NBTCompound shortPos = createEntity("minecraft:pig", 0, 0, 0);
+    ((NBTList) shortPos.get("Pos")).remove(2);
+
+    NBTCompound nanPos = createEntity("minecraft:pig", Double.NaN, 0, 0);
+
+    NBTCompound intPos = new NBTCompound();
+    NBTList ints = new NBTList(TagType.INT);
+    ints.addAll(Arrays.asList(0, 0, 0));
+    intPos.put("Pos", ints);
+
+    List<NBTCompound> invalid = Arrays.asList(noPos, shortPos, nanPos, intPos);
+    EntityIndex index = new EntityIndex();
+    index.add(new EntityChunk(9, -9, invalid));
+
+    assertEquals(4, index.size());
+    assertEquals(invalid, index.inChunk(9, -9));
+    assertTrue(index.inChunk(0, 0).isEmpty());
+    assertTrue(index.inSection(0, 0, 0).isEmpty());
+  }
+
+  @Test
+  void add_shouldKeepEntitiesFromEveryChunk() {
+    NBTCompound first = createEntity("minecraft:pig", 0, 0, 0);
+    NBTCompound second = createEntity("minecraft:cow", 1, 1, 1);
+
+    // The second entity was stored in the wrong chunk, but is still grouped by its position.
+    EntityIndex index = EntityIndex.of(Arrays.asList(
+        new EntityChunk(0, 0, Collections.singletonList(first)),
+        new EntityChunk(5, 5, Collections.singletonList(second))));
+
+    List<NBTCompound> inOrigin = index.inChunk(0, 0);
+    assertEquals(2, inOrigin.size());
+    assertSame(first, inOrigin.get(0));
+    assertSame(second, inOrigin.get(1));
+    assertTrue(index.inChunk(5, 5).isEmpty());
+  }
+
+  @Test
+  void sectionKey_shouldBeUniqueWithinWorldBounds() {
+    int[] xzValues = {-1_875_000, -1, 0, 1, 1_875_000};
+    int[] yValues = {-4, -1, 0, 1, 19};
+
+    long[] keys = new long[xzValues.length * xzValues.length * yValues.length];
+    int i = 0;
+    for (int x : xzValues) {
+      for (int z : xzValues) {
+        for (int y : yValues) {
+          keys[i++] = EntityIndex.sectionKey(x, y, z);
+        }
+      }
+    }
+
+    for (int a = 0; a < keys.length; a++) {
+      for (int b = a + 1; b < keys.length; b++) {
+        assertNotEquals(keys[a], keys[b]);
+      }
+    }
+  }
+
+  @Test
+  void shouldRejectNullArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new EntityIndex().add(null));
+    assertThrows(IllegalArgumentException.class, () -> EntityIndex.of(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> EntityIndex.of(Collections.singletonList(null)));
+  }
+}
@@ -0,0 +1,101 @@
+package me.nullicorn.ooze.convert.region;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class NBTPullReaderTests {
+
+  @Test
+  void readPayload_shouldMatchWrittenCompound() throws IOException {
+    NBTCompound compound = createCompound();
+    NBTPullReader reader = new NBTPullReader(NBTTestWriter.write(compound));
+
+    assertEquals(NBTPullReader.TAG_COMPOUND, reader.readTagType());
+    assertEquals("", reader.readNameString());
+
+    NBTCompound read = (NBTCompound) reader.readPayload(NBTPullReader.TAG_COMPOUND);
+    assertTrue(reader.isAtEnd());
+
+    assertEquals(compound.get("string"), read.get("string"));
+    assertEquals(compound.get("unicode"), read.get("unicode"));
+    assertEquals(compound.get("list"), read.get("list"));
+    assertEquals(compound.get("nested"), read.get("nested"));
+    assertArrayEquals((long[]) compound.get("longs"), (long[]) read.get("longs"));
+    assertArrayEquals((int[]) compound.get("ints"), (int[]) read.get("ints"));
+  }
+
+  @Test
+  void skipPayload_shouldReachEnd() throws IOException {
+    NBTPullReader reader = new NBTPullReader(NBTTestWriter.write(createCompound()));
+
+    reader.readTagType();
+    reader.readName();
+    reader.skipPayload(NBTPullReader.TAG_COMPOUND);
+    assertTrue(reader.isAtEnd());
+  }
+
+  @Test
+  void nameEquals_shouldCompareLastName() throws IOException {
+    NBTCompound compound = new NBTCompound();
+    compound.put("xPos", 5);
+    NBTPullReader reader = new NBTPullReader(NBTTestWriter.write(compound));
+
+    reader.readTagType();
+    reader.readName();
+    assertEquals(NBTPullReader.TAG_INT, reader.readTagType());
+    reader.readName();
+
+    assertTrue(reader.nameEquals(NBTPullReader.nameOf("xPos")));
+    assertFalse(reader.nameEquals(NBTPullReader.nameOf("zPos")));
+    assertFalse(reader.nameEquals(NBTPullReader.nameOf("xPo")));
+    assertEquals(5, reader.readInt());
+  }
+
+  @Test
+  void read_shouldRejectMalformedInput() {
+    // Unknown tag type.
+    assertThrows(MalformedInputException.class,
+        () -> new NBTPullReader(ByteBuffer.wrap(new byte[]{13})).readTagType());
+
+    // Negative array length.
+    assertThrows(MalformedInputException.class,
+        () -> new NBTPullReader(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1})).readByteArray());
+
+    // Array longer than the input.
+    assertThrows(MalformedInputException.class,
+        () -> new NBTPullReader(ByteBuffer.wrap(new byte[]{0, 0, 0, 8, 1})).readLongArray());
+  }
+
+  private static NBTCompound createCompound() {
+    NBTList list = new NBTList(TagType.STRING);
+    list.add("a");
+    list.add("b");
+
+    NBTCompound nested = new NBTCompound();
+    nested.put("byte", (byte) -3);
+    nested.put("double", 2.5);
+
+    NBTCompound compound = new NBTCompound();
+    compound.put("string", "minecraft:stone");
+    compound.put("unicode", "\u00e9\u0000\ud83d\udc37");
+    compound.put("list", list);
+    compound.put("nested", nested);
+    compound.put("longs", new long[]{Long.MIN_VALUE, 0, Long.MAX_VALUE});
+    compound.put("ints", new int[]{-1, 2});
+    return compound;
+  }
+}
@@ -0,0 +1,84 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+
+/**
+ * Writes NBT objects in the uncompressed binary format, for tests that read binary NBT.
+ *
+ * @author Nullicorn
+ */
+public final class NBTTestWriter {
+
+  /**
+   * @return the {@code root} compound in binary form, with an empty name.
+   */
+  public static ByteBuffer write(NBTCompound root) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(NBTPullReader.TAG_COMPOUND);
+      out.writeUTF("");
+      writePayload(out, root);
+    }
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  private static void writePayload(DataOutputStream out, Object value) throws IOException {
+    if (value instanceof Byte) {
+      out.writeByte((Byte) value);
+    } else if (value instanceof Short) {
+      out.writeShort((Short) value);
+    } else if (value instanceof Integer) {
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeLong((Long) value);
+    } else if (value instanceof Float) {
+      out.writeFloat((Float) value);
+    } else if (value instanceof Double) {
+      out.writeDouble((Double) value);
+    } else if (value instanceof byte[]) {
+      byte[] array = (byte[]) value;
+      out.writeInt(array.length);
+      out.write(array);
+    } else if (value instanceof String) {
+      out.writeUTF((String) value);
+    } else if (value instanceof NBTList) {
+      NBTList list = (NBTList) value;
+      out.writeByte(list.getContentType().ordinal());
+      out.writeInt(list.size());
+      for (Object element : list) {
+        writePayload(out, element);
+      }
+    } else if (value instanceof NBTCompound) {
+      for (Map.Entry<String, Object> entry : ((NBTCompound) value).entrySet()) {
+        out.writeByte(TagType.fromObject(entry.getValue()).ordinal());
+        out.writeUTF(entry.getKey());
+        writePayload(out, entry.getValue());
+      }
+      out.writeByte(NBTPullReader.TAG_END);
+    } else if (value instanceof int[]) {
+      int[] array = (int[]) value;
+      out.writeInt(array.length);
+      for (int element : array) {
+        out.writeInt(element);
+      }
+    } else if (value instanceof long[]) {
+      long[] array = (long[]) value;
+      out.writeInt(array.length);
+      for (long element : array) {
+        out.writeLong(element);
+      }
+    } else {
+      throw new IllegalArgumentException("Not an NBT value: " + value);
+    }
+  }
+
+  private NBTTestWriter() {
+  }
+}
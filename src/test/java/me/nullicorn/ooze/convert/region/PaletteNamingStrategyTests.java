@@ -0,0 +1,124 @@
+package me.nullicorn.ooze.convert.region;
+
+import static me.nullicorn.ooze.convert.region.RegionBlockStateCodecTests.provider_valid_states;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.level.BlockState;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class PaletteNamingStrategyTests {
+
+  private static final int DATA_VERSION = 2730;
+
+  @Test
+  void contentHash_shouldNameEquivalentPalettesTheSame() {
+    List<BlockState> states = provider_valid_states().collect(Collectors.toList());
+    List<BlockState> copy = new ArrayList<>();
+    for (BlockState state : states) {
+      NBTCompound properties = new NBTCompound();
+      properties.putAll(state.getProperties());
+      copy.add(new BlockState(state.getName(), properties));
+    }
+
+    PaletteNamingStrategy strategy = PaletteNamingStrategy.contentHash();
+    assertEquals(strategy.nameOf(DATA_VERSION, states), strategy.nameOf(DATA_VERSION, copy));
+  }
+
+  @Test
+  void contentHash_shouldNameDifferentPalettesDifferently() {
+    List<BlockState> states = provider_valid_states().collect(Collectors.toList());
+    List<BlockState> reversed = new ArrayList<>(states);
+    Collections.reverse(reversed);
+
+    PaletteNamingStrategy strategy = PaletteNamingStrategy.contentHash();
+    assertNotEquals(strategy.nameOf(DATA_VERSION, states), strategy.nameOf(DATA_VERSION, reversed));
+  }
+
+  @Test
+  void contentHash_shouldNotCollideOnStringHashCodes() {
+    // "Aa" and "BB" have the same String.hashCode().
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    List<BlockState> aa = Collections.singletonList(new BlockState("minecraft:Aa"));
+    List<BlockState> bb = Collections.singletonList(new BlockState("minecraft:BB"));
+
+    PaletteNamingStrategy strategy = PaletteNamingStrategy.contentHash();
+    assertNotEquals(strategy.nameOf(DATA_VERSION, aa), strategy.nameOf(DATA_VERSION, bb));
+
+    List<BlockState> aaProperty = Collections.singletonList(stateWith("facing", "Aa"));
+    List<BlockState> bbProperty = Collections.singletonList(stateWith("facing", "BB"));
+    assertNotEquals(strategy.nameOf(DATA_VERSION, aaProperty),
+        strategy.nameOf(DATA_VERSION, bbProperty));
+  }
+
+  @Test
+  void contentHash_shouldNotCollideOnSwappedPropertyValues() {
+    NBTCompound properties = new NBTCompound();
+    properties.put("north", "true");
+    properties.put("south", "false");
+    NBTCompound swapped = new NBTCompound();
+    swapped.put("north", "false");
+    swapped.put("south", "true");
+
+    PaletteNamingStrategy strategy = PaletteNamingStrategy.contentHash();
+    assertNotEquals(
+        strategy.nameOf(DATA_VERSION,
+            Collections.singletonList(new BlockState("minecraft:fence", properties))),
+        strategy.nameOf(DATA_VERSION,
+            Collections.singletonList(new BlockState("minecraft:fence", swapped))));
+  }
+
+  @Test
+  void contentHash_shouldNotMergeAdjacentStrings() {
+    PaletteNamingStrategy strategy = PaletteNamingStrategy.contentHash();
+    assertNotEquals(
+        strategy.nameOf(DATA_VERSION, Collections.singletonList(stateWith("ab", "c"))),
+        strategy.nameOf(DATA_VERSION, Collections.singletonList(stateWith("a", "bc"))));
+  }
+
+  @Test
+  void contentHash_shouldDependOnDataVersion() {
+    List<BlockState> states = provider_valid_states().collect(Collectors.toList());
+
+    PaletteNamingStrategy strategy = PaletteNamingStrategy.contentHash();
+    assertNotEquals(strategy.nameOf(DATA_VERSION, states),
+        strategy.nameOf(DATA_VERSION - 1, states));
+  }
+
+  @Test
+  void counter_shouldNeverRepeatNames() {
+    PaletteNamingStrategy strategy = PaletteNamingStrategy.counter();
+    List<BlockState> states = Collections.emptyList();
+
+    String first = strategy.nameOf(DATA_VERSION, states);
+    String second = strategy.nameOf(DATA_VERSION, states);
+    assertNotEquals(first, second);
+  }
+
+  @Test
+  void builtInStrategies_shouldUsePrefix() {
+    List<BlockState> states = provider_valid_states().collect(Collectors.toList());
+
+    assertTrue(PaletteNamingStrategy.contentHash().nameOf(DATA_VERSION, states)
+        .startsWith(PaletteNamingStrategy.NAME_PREFIX));
+    assertTrue(PaletteNamingStrategy.counter().nameOf(DATA_VERSION, states)
+        .startsWith(PaletteNamingStrategy.NAME_PREFIX));
+    assertTrue(PaletteNamingStrategy.randomUuid().nameOf(DATA_VERSION, states)
+        .startsWith(PaletteNamingStrategy.NAME_PREFIX));
+  }
+
+  private static BlockState stateWith(String property, String value) {
+    NBTCompound properties = new NBTCompound();
+    properties.put(property, value);
+    return new BlockState("minecraft:stone", properties);
+  }
+}
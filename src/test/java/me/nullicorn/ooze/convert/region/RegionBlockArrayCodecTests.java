@@ -93,6 +93,30 @@ class RegionBlockArrayCodecTests extends VersionedCodecTests {
     }
   }
 
+  @ParameterizedTest
+  @MethodSource("provider_lengthsAndMagnitudes")
+  void decode_shouldFillBuffer(int length, int magnitude) {
+    RegionUIntArray expected = testCodec.encode(
+        new PackedUIntArray(provider_arrayValues(length, magnitude)));
+    int[] buffer = new int[length];
+    PackedUIntArray actual = testCodec.decode(expected, buffer);
+
+    for (int i = 0; i < expected.length(); i++) {
+      assertEquals(expected.get(i), actual.get(i), "disagreement at i=" + i);
+      assertEquals(expected.get(i), buffer[i], "buffer disagreement at i=" + i);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provider_lengthsAndMagnitudes")
+  void decode_shouldRejectWrongBufferLength(int length, int magnitude) {
+    RegionUIntArray array = RegionUIntArray.from(length, magnitude, EARLIEST_VERSION);
+
+    assertThrows(IllegalArgumentException.class, () -> testCodec.decode(array, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> testCodec.decode(array, new int[length + 1]));
+  }
+
   /**
    * @see RegionUIntArrayTestHelper#provider_arrayValues(int, int)
    */
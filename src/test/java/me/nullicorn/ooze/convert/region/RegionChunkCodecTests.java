@@ -0,0 +1,371 @@
+package me.nullicorn.ooze.convert.region;
+
+import static me.nullicorn.ooze.convert.region.RegionSectionCodecTests.assertSameBlocks;
+import static me.nullicorn.ooze.convert.region.RegionSectionCodecTests.provider_cells;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import me.nullicorn.ooze.convert.VersionedCodecTests;
+import me.nullicorn.ooze.level.Cell;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class RegionChunkCodecTests extends VersionedCodecTests {
+
+  private static final int LATEST_VERSION = 2730;
+
+  private static final String LEVEL_TAG_NAME    = "Level";
+  private static final String SECTIONS_TAG_NAME = "Sections";
+  private static final String ALTITUDE_TAG_NAME = "Y";
+
+  private static ForkJoinPool pool;
+
+  @BeforeAll
+  static void beforeAll() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterAll
+  static void afterAll() {
+    pool.shutdownNow();
+  }
+
+  @Override
+  protected IntConsumer getVersionedConstructor() {
+    return RegionChunkCodec::new;
+  }
+
+  @Override
+  protected int[] getAcceptableVersionRange() {
+    return new int[]{0, LATEST_VERSION};
+  }
+
+  @Test
+  void constructor_shouldRejectInvalidArguments() {
+    RegionCodecs codecs = RegionCodecs.forVersion(LATEST_VERSION);
+
+    assertThrows(IllegalArgumentException.class, () -> new RegionChunkCodec(null));
+    assertThrows(IllegalArgumentException.class, () -> new RegionChunkCodec(codecs, pool, 0));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, 2527, LATEST_VERSION})
+  void decode_shouldMatchEncodedChunk(int dataVersion) throws IOException {
+    RegionChunk chunk = createChunk(dataVersion);
+    RegionChunkCodec codec = new RegionChunkCodec(dataVersion);
+
+    RegionChunk decoded = codec.decode(codec.encode(chunk));
+    assertSameChunk(chunk, decoded);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, 2527, LATEST_VERSION})
+  void decode_shouldMatchWhenParallel(int dataVersion) throws IOException {
+    RegionChunk chunk = createChunk(dataVersion);
+    RegionCodecs codecs = RegionCodecs.forVersion(dataVersion);
+    RegionChunkCodec sequential = codecs.chunkCodec();
+    RegionChunkCodec parallel = new RegionChunkCodec(codecs, pool, 1);
+
+    NBTCompound encoded = parallel.encode(chunk);
+    assertEquals(getSections(sequential.encode(chunk)).size(), getSections(encoded).size());
+    assertSameChunk(chunk, parallel.decode(encoded));
+    assertSameChunk(chunk, sequential.decode(encoded));
+  }
+
+  @Test
+  void decode_shouldAcceptByteAltitudes() throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(LATEST_VERSION);
+    RegionChunk chunk = createChunk(LATEST_VERSION);
+    NBTCompound encoded = codec.encode(chunk);
+
+    NBTList sections = getSections(encoded);
+    for (int i = 0; i < sections.size(); i++) {
+      NBTCompound section = sections.getCompound(i);
+      section.put(ALTITUDE_TAG_NAME, ((Integer) section.get(ALTITUDE_TAG_NAME)).byteValue());
+    }
+
+    assertSameChunk(chunk, codec.decode(encoded));
+  }
+
+  @Test
+  void decode_shouldSkipSectionsWithoutBlocks() throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(LATEST_VERSION);
+    RegionChunk chunk = createChunk(LATEST_VERSION);
+    NBTCompound encoded = codec.encode(chunk);
+
+    // Like the light-only sections vanilla writes above & below the world.
+    NBTCompound lightOnly = new NBTCompound();
+    lightOnly.put(ALTITUDE_TAG_NAME, (byte) -1);
+    getSections(encoded).add(lightOnly);
+
+    assertSameChunk(chunk, codec.decode(encoded));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, LATEST_VERSION})
+  void decode_shouldNotCountSectionsWithoutBlocksTowardsThreshold(int dataVersion)
+      throws IOException {
+    RegionCodecs codecs = RegionCodecs.forVersion(dataVersion);
+    RegionChunk chunk = createChunk(dataVersion);
+    NBTCompound encoded = codecs.chunkCodec().encode(chunk);
+    NBTList sections = getSections(encoded);
+    int sectionsWithBlocks = sections.size();
+    for (int i = 0; i < sectionsWithBlocks; i++) {
+      NBTCompound lightOnly = new NBTCompound();
+      lightOnly.put(ALTITUDE_TAG_NAME, (byte) (100 + i));
+      lightOnly.put("SkyLight", new byte[2048]);
+      sections.add(lightOnly);
+    }
+
+    AtomicInteger tasks = new AtomicInteger();
+    Executor executor = task -> {
+      tasks.incrementAndGet();
+      task.run();
+    };
+
+    RegionChunkCodec aboveThreshold = new RegionChunkCodec(codecs, executor,
+        sectionsWithBlocks + 1);
+    assertSameChunk(chunk, aboveThreshold.decode(encoded));
+    assertEquals(0, tasks.get(), "Light-only sections should not count towards the threshold");
+
+    RegionChunkCodec atThreshold = new RegionChunkCodec(codecs, executor, sectionsWithBlocks);
+    assertSameChunk(chunk, atThreshold.decode(encoded));
+    assertTrue(tasks.get() > 0, "Chunk should have been decoded in parallel");
+  }
+
+  @Test
+  void decode_shouldRejectMalformedChunks() throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(LATEST_VERSION);
+    RegionChunk chunk = createChunk(LATEST_VERSION);
+
+    NBTCompound wrongVersion = codec.encode(chunk);
+    wrongVersion.put("DataVersion", LATEST_VERSION - 1);
+    assertThrows(MalformedInputException.class, () -> codec.decode(wrongVersion));
+
+    NBTCompound noLevel = codec.encode(chunk);
+    noLevel.remove(LEVEL_TAG_NAME);
+    assertThrows(MalformedInputException.class, () -> codec.decode(noLevel));
+
+    NBTCompound noPosition = codec.encode(chunk);
+    ((NBTCompound) noPosition.get(LEVEL_TAG_NAME)).remove("xPos");
+    assertThrows(MalformedInputException.class, () -> codec.decode(noPosition));
+
+    NBTCompound duplicateAltitude = codec.encode(chunk);
+    NBTList sections = getSections(duplicateAltitude);
+    sections.getCompound(1).put(ALTITUDE_TAG_NAME, sections.getCompound(0).get(ALTITUDE_TAG_NAME));
+    assertThrows(MalformedInputException.class, () -> codec.decode(duplicateAltitude));
+
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(null));
+    assertThrows(IllegalArgumentException.class, () -> codec.encode(null));
+  }
+
+  @Test
+  void decode_shouldPropagateSectionErrorsWhenParallel() throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(RegionCodecs.forVersion(LATEST_VERSION), pool, 1);
+    NBTCompound encoded = codec.encode(createChunk(LATEST_VERSION));
+
+    // A palette without any blocks.
+    NBTList sections = getSections(encoded);
+    sections.getCompound(sections.size() - 1).remove("BlockStates");
+
+    assertThrows(MalformedInputException.class, () -> codec.decode(encoded));
+  }
+
+  @Test
+  void decode_shouldOnlyReadProjectedTags() throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(LATEST_VERSION);
+    RegionChunk chunk = createChunk(LATEST_VERSION);
+    NBTCompound encoded = codec.encode(chunk);
+    addLevelTags(encoded);
+    NBTCompound level = (NBTCompound) encoded.get(LEVEL_TAG_NAME);
+
+    RegionChunk blockEntitiesOnly = codec.decode(encoded,
+        EnumSet.of(RegionTag.CHUNK_BLOCK_ENTITIES));
+    assertEquals(chunk.getX(), blockEntitiesOnly.getX());
+    assertEquals(chunk.getZ(), blockEntitiesOnly.getZ());
+    assertTrue(blockEntitiesOnly.getSections().isEmpty());
+    assertEquals(Collections.singleton(RegionTag.CHUNK_BLOCK_ENTITIES),
+        blockEntitiesOnly.getTags().keySet());
+    assertSame(level.get("TileEntities"), blockEntitiesOnly.getTag(RegionTag.CHUNK_BLOCK_ENTITIES));
+
+    RegionChunk sectionsAndStatus = codec.decode(encoded,
+        EnumSet.of(RegionTag.CHUNK_SECTIONS, RegionTag.CHUNK_STATUS, RegionTag.CHUNK_ENTITIES));
+    assertSameChunk(chunk, sectionsAndStatus);
+    assertEquals("full", sectionsAndStatus.getTag(RegionTag.CHUNK_STATUS));
+    assertSame(level.get("Entities"), sectionsAndStatus.getTag(RegionTag.CHUNK_ENTITIES));
+    assertNull(sectionsAndStatus.getTag(RegionTag.CHUNK_BLOCK_ENTITIES));
+
+    // The default projection only reads sections.
+    assertTrue(codec.decode(encoded).getTags().isEmpty());
+  }
+
+  @Test
+  void decode_shouldNotRetainTagsWithWrongTypes() throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(LATEST_VERSION);
+    NBTCompound encoded = codec.encode(createChunk(LATEST_VERSION));
+    NBTCompound level = (NBTCompound) encoded.get(LEVEL_TAG_NAME);
+    level.put("Status", 7);
+    level.put("TileEntities", new NBTList(TagType.END));
+    NBTList wrongContentType = new NBTList(TagType.INT);
+    wrongContentType.add(1);
+    level.put("Entities", wrongContentType);
+
+    RegionChunk decoded = codec.decode(encoded, RegionChunkCodec.PROJECTABLE_TAGS);
+    assertNull(decoded.getTag(RegionTag.CHUNK_STATUS));
+    assertNull(decoded.getTag(RegionTag.CHUNK_ENTITIES));
+
+    // Empty lists are often written as TAG_End lists.
+    assertEquals(new NBTList(TagType.END), decoded.getTag(RegionTag.CHUNK_BLOCK_ENTITIES));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, LATEST_VERSION})
+  void decode_shouldOnlyRetainTagsSupportedByVersion(int dataVersion) throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(dataVersion);
+    NBTCompound encoded = codec.encode(createChunk(dataVersion));
+    NBTCompound level = (NBTCompound) encoded.get(LEVEL_TAG_NAME);
+    level.put("Status", "full");
+    level.put("LightPopulated", (byte) 1);
+    level.put("TerrainPopulated", (byte) 1);
+
+    RegionChunk decoded = codec.decode(encoded, RegionChunkCodec.PROJECTABLE_TAGS);
+    boolean hasStatus = dataVersion >= 1466;
+    assertEquals(hasStatus, decoded.getTags().containsKey(RegionTag.CHUNK_STATUS));
+    assertEquals(!hasStatus, decoded.getTags().containsKey(RegionTag.IS_LIGHT_GENERATED));
+    assertEquals(!hasStatus, decoded.getTags().containsKey(RegionTag.IS_TERRAIN_GENERATED));
+
+    ByteBuffer nbt = NBTTestWriter.write(encoded);
+    RegionChunk streamed = new StreamingChunkDecoder(RegionCodecs.forVersion(dataVersion))
+        .decode(nbt, RegionChunkCodec.PROJECTABLE_TAGS);
+    assertEquals(decoded.getTags().keySet(), streamed.getTags().keySet());
+  }
+
+  @Test
+  void decode_shouldNotDecodeUnprojectedSections() throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(LATEST_VERSION);
+    NBTCompound encoded = codec.encode(createChunk(LATEST_VERSION));
+
+    // A palette without any blocks.
+    getSections(encoded).getCompound(0).remove("BlockStates");
+
+    assertThrows(MalformedInputException.class, () -> codec.decode(encoded));
+    assertDoesNotThrow(() -> codec.decode(encoded, EnumSet.of(RegionTag.CHUNK_STATUS)));
+  }
+
+  @Test
+  void decode_shouldRejectInvalidProjections() throws IOException {
+    RegionChunkCodec codec = new RegionChunkCodec(LATEST_VERSION);
+    NBTCompound encoded = codec.encode(createChunk(LATEST_VERSION));
+
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(encoded, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> codec.decode(encoded, EnumSet.of(RegionTag.PALETTE)));
+    assertThrows(IllegalArgumentException.class,
+        () -> codec.decode(encoded, EnumSet.of(RegionTag.ENTITY_STORAGE_LIST)));
+
+    // Tags that are always read are allowed, but have no effect.
+    RegionChunk decoded = codec.decode(encoded, EnumSet.of(RegionTag.CHUNK, RegionTag.CHUNK_POS_X));
+    assertTrue(decoded.getSections().isEmpty());
+    assertTrue(decoded.getTags().isEmpty());
+  }
+
+  @Test
+  void encode_shouldDropElidedSections() throws IOException {
+    SectionCodecOptions options = SectionCodecOptions.defaults().withEmptySectionElision(true);
+    RegionChunkCodec codec = new RegionChunkCodec(new RegionCodecs(LATEST_VERSION, options));
+
+    Map<Integer, Cell> cells = new HashMap<>();
+    cells.put(0, Cell.empty());
+    cells.put(1, provider_cells(LATEST_VERSION).findFirst().orElseThrow(AssertionError::new));
+    RegionChunk chunk = new RegionChunk(0, 0, cells);
+
+    NBTCompound encoded = codec.encode(chunk);
+    assertEquals(1, getSections(encoded).size());
+
+    RegionChunk decoded = codec.decode(encoded);
+    assertEquals(1, decoded.getSections().size());
+    assertTrue(decoded.getSections().containsKey(1));
+  }
+
+  static RegionChunk createChunk(int dataVersion) {
+    List<Cell> cells = provider_cells(dataVersion).collect(Collectors.toList());
+
+    Map<Integer, Cell> sections = new HashMap<>();
+    for (int i = 0; i < cells.size(); i++) {
+      // Leave gaps between sections, and include negative altitudes.
+      sections.put(i * 2 - 1, cells.get(i));
+    }
+    return new RegionChunk(-7, 31, sections);
+  }
+
+  /**
+   * Adds a variety of tags to a chunk's {@code Level}, which are only read if they are projected.
+   */
+  static void addLevelTags(NBTCompound chunk) {
+    NBTCompound level = (NBTCompound) chunk.get(LEVEL_TAG_NAME);
+
+    NBTCompound chest = new NBTCompound();
+    chest.put("id", "minecraft:chest");
+    chest.put("x", -112);
+    chest.put("y", 64);
+    chest.put("z", 500);
+    chest.put("Items", new NBTList(TagType.END));
+    NBTList blockEntities = new NBTList(TagType.COMPOUND);
+    blockEntities.add(chest);
+    level.put("TileEntities", blockEntities);
+
+    NBTList pos = new NBTList(TagType.DOUBLE);
+    pos.add(-111.5);
+    pos.add(65.0);
+    pos.add(500.5);
+    NBTCompound entity = new NBTCompound();
+    entity.put("id", "minecraft:pig");
+    entity.put("Pos", pos);
+    NBTList entities = new NBTList(TagType.COMPOUND);
+    entities.add(entity);
+    level.put("Entities", entities);
+
+    level.put("Status", "full");
+    level.put("Heightmaps", new NBTCompound());
+  }
+
+  static NBTList getSections(NBTCompound chunk) {
+    return (NBTList) ((NBTCompound) chunk.get(LEVEL_TAG_NAME)).get(SECTIONS_TAG_NAME);
+  }
+
+  static void assertSameChunk(RegionChunk expected, RegionChunk actual) {
+    assertEquals(expected.getX(), actual.getX());
+    assertEquals(expected.getZ(), actual.getZ());
+    assertEquals(expected.getSections().keySet(), actual.getSections().keySet());
+
+    for (Map.Entry<Integer, Cell> section : expected.getSections().entrySet()) {
+      assertSameBlocks(section.getValue(), actual.getSection(section.getKey()));
+    }
+  }
+}
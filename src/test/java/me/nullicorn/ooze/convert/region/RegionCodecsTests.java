@@ -0,0 +1,110 @@
+package me.nullicorn.ooze.convert.region;
+
+import static me.nullicorn.ooze.convert.region.RegionSectionCodecTests.assertSameBlocks;
+import static me.nullicorn.ooze.convert.region.RegionSectionCodecTests.provider_cells;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.level.Cell;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class RegionCodecsTests {
+
+  private static final int LEGACY_VERSION = 1343;
+  private static final int LATEST_VERSION = 2730;
+
+  private static final int THREAD_COUNT      = 8;
+  private static final int TASKS_PER_THREAD  = 4;
+
+  @ParameterizedTest
+  @ValueSource(ints = {LEGACY_VERSION, 1451, 2526, 2527, LATEST_VERSION})
+  void forVersion_shouldReturnSameInstance(int dataVersion) {
+    RegionCodecs codecs = RegionCodecs.forVersion(dataVersion);
+
+    assertSame(codecs, RegionCodecs.forVersion(dataVersion));
+    assertEquals(dataVersion, codecs.getCompatibility());
+    assertEquals(dataVersion, codecs.sectionCodec().getCompatibility());
+    assertEquals(dataVersion, codecs.entityCodec().getCompatibility());
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {-1, 0, 98, LATEST_VERSION + 1})
+  void forVersion_shouldRejectUnsupportedVersions(int dataVersion) {
+    assertThrows(IllegalArgumentException.class, () -> RegionCodecs.forVersion(dataVersion));
+  }
+
+  @Test
+  void forVersion_shouldOnlyProvideCodecsForVersion() {
+    RegionCodecs legacy = RegionCodecs.forVersion(LEGACY_VERSION);
+    assertFalse(legacy.isFlattened());
+    assertEquals(LEGACY_VERSION, legacy.legacySectionCodec().getCompatibility());
+    assertThrows(UnsupportedOperationException.class, legacy::paletteCodec);
+    assertThrows(UnsupportedOperationException.class, legacy::blockArrayCodec);
+
+    RegionCodecs flattened = RegionCodecs.forVersion(LATEST_VERSION);
+    assertTrue(flattened.isFlattened());
+    assertEquals(LATEST_VERSION, flattened.paletteCodec().getCompatibility());
+    assertEquals(LATEST_VERSION, flattened.blockArrayCodec().getCompatibility());
+    assertThrows(UnsupportedOperationException.class, flattened::legacySectionCodec);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, 2527, LATEST_VERSION})
+  void sharedCodecs_shouldBeThreadSafe(int dataVersion) throws Exception {
+    List<Cell> cells = provider_cells(dataVersion).collect(Collectors.toList());
+
+    // Results from a single thread, to compare against.
+    RegionSectionCodec soloCodec = new RegionSectionCodec(dataVersion);
+    List<NBTCompound> expected = new ArrayList<>();
+    for (Cell cell : cells) {
+      expected.add(soloCodec.encode(cell));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> results = new ArrayList<>();
+
+      for (int task = 0; task < THREAD_COUNT * TASKS_PER_THREAD; task++) {
+        results.add(executor.submit((Callable<Void>) () -> {
+          start.await();
+
+          RegionSectionCodec codec = RegionCodecs.forVersion(dataVersion).sectionCodec();
+          for (int i = 0; i < cells.size(); i++) {
+            NBTCompound encoded = codec.encode(cells.get(i));
+            assertArrayEquals((long[]) expected.get(i).get("BlockStates"),
+                (long[]) encoded.get("BlockStates"));
+            assertEquals(expected.get(i).get("Palette"), encoded.get("Palette"));
+            assertSameBlocks(cells.get(i), codec.decode(encoded));
+          }
+          return null;
+        }));
+      }
+
+      start.countDown();
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package me.nullicorn.ooze.convert.region;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import me.nullicorn.ooze.convert.VersionedCodecTests;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class RegionEntityCodecTests extends VersionedCodecTests {
+
+  private static final int LATEST_VERSION        = 2730;
+  private static final int LAST_IN_CHUNK_VERSION = 2586;
+  private static final int FIRST_STORAGE_VERSION = 2679;
+
+  @Override
+  protected IntConsumer getVersionedConstructor() {
+    return RegionEntityCodec::new;
+  }
+
+  @Override
+  protected int[] getAcceptableVersionRange() {
+    return new int[]{0, LATEST_VERSION};
+  }
+
+  @Test
+  void usesEntityStorage_shouldMatchVersion() {
+    assertFalse(new RegionEntityCodec(LAST_IN_CHUNK_VERSION).usesEntityStorage());
+    assertFalse(new RegionEntityCodec(FIRST_STORAGE_VERSION - 1).usesEntityStorage());
+    assertTrue(new RegionEntityCodec(FIRST_STORAGE_VERSION).usesEntityStorage());
+    assertTrue(new RegionEntityCodec(LATEST_VERSION).usesEntityStorage());
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, LAST_IN_CHUNK_VERSION, FIRST_STORAGE_VERSION, LATEST_VERSION})
+  void encode_shouldBeReversible(int dataVersion) throws IOException {
+    RegionEntityCodec codec = new RegionEntityCodec(dataVersion);
+    EntityChunk chunk = new EntityChunk(-3, 7, createEntities(5, -40, 65, 120));
+
+    NBTCompound encoded = codec.encode(chunk);
+    assertEquals(dataVersion, encoded.get("DataVersion"));
+    assertEquals(codec.usesEntityStorage(), encoded.containsKey("Position"));
+    assertEquals(!codec.usesEntityStorage(), encoded.containsKey("Level"));
+
+    EntityChunk decoded = codec.decode(encoded);
+    assertEquals(chunk.getX(), decoded.getX());
+    assertEquals(chunk.getZ(), decoded.getZ());
+    assertEquals(chunk.getEntities().size(), decoded.getEntities().size());
+    for (int i = 0; i < chunk.getEntities().size(); i++) {
+      assertSame(chunk.getEntities().get(i), decoded.getEntities().get(i));
+    }
+  }
+
+  @Test
+  void encode_shouldRejectNull() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new RegionEntityCodec(LATEST_VERSION).encode(null));
+  }
+
+  @Test
+  void decode_shouldReadEntityStorageChunks() throws IOException {
+    List<NBTCompound> entities = createEntities(3, 10, 70, -10);
+    NBTCompound encoded = new NBTCompound();
+    encoded.put("DataVersion", LATEST_VERSION);
+    encoded.put("Position", new int[]{12, -34});
+    encoded.put("Entities", toList(entities));
+
+    EntityChunk decoded = new RegionEntityCodec(LATEST_VERSION).decode(encoded);
+    assertEquals(12, decoded.getX());
+    assertEquals(-34, decoded.getZ());
+    assertEquals(entities, decoded.getEntities());
+  }
+
+  @Test
+  void decode_shouldReadInChunkEntitiesInNewerVersions() throws IOException {
+    List<NBTCompound> entities = createEntities(2, 0, 64, 0);
+    NBTCompound encoded = createLegacyChunk(LATEST_VERSION, 5, 6, toList(entities));
+
+    EntityChunk decoded = new RegionEntityCodec(LATEST_VERSION).decode(encoded);
+    assertEquals(5, decoded.getX());
+    assertEquals(6, decoded.getZ());
+    assertEquals(entities, decoded.getEntities());
+  }
+
+  @Test
+  void decode_shouldAllowMissingOrEmptyEntities() throws IOException {
+    RegionEntityCodec codec = new RegionEntityCodec(LAST_IN_CHUNK_VERSION);
+
+    NBTCompound missing = createLegacyChunk(LAST_IN_CHUNK_VERSION, 1, 2, null);
+    assertTrue(codec.decode(missing).getEntities().isEmpty());
+
+    NBTCompound empty = createLegacyChunk(LAST_IN_CHUNK_VERSION, 1, 2, new NBTList(TagType.END));
+    assertTrue(codec.decode(empty).getEntities().isEmpty());
+
+    NBTCompound storage = new NBTCompound();
+    storage.put("DataVersion", LATEST_VERSION);
+    storage.put("Position", new int[]{0, 0});
+    assertTrue(new RegionEntityCodec(LATEST_VERSION).decode(storage).getEntities().isEmpty());
+  }
+
+  @Test
+  void decode_shouldRejectMalformedChunks() {
+    RegionEntityCodec codec = new RegionEntityCodec(LATEST_VERSION);
+
+    assertThrows(IllegalArgumentException.class, () -> codec.decode((NBTCompound) null));
+    assertThrows(IllegalArgumentException.class, () -> codec.decode((RegionChunk) null));
+
+    // Wrong data version.
+    NBTCompound wrongVersion = createLegacyChunk(LAST_IN_CHUNK_VERSION, 0, 0, null);
+    assertThrows(MalformedInputException.class, () -> codec.decode(wrongVersion));
+
+    // Neither a position nor a level.
+    NBTCompound empty = new NBTCompound();
+    empty.put("DataVersion", LATEST_VERSION);
+    assertThrows(MalformedInputException.class, () -> codec.decode(empty));
+
+    // Position with the wrong length.
+    NBTCompound badPosition = new NBTCompound();
+    badPosition.put("DataVersion", LATEST_VERSION);
+    badPosition.put("Position", new int[]{1, 2, 3});
+    assertThrows(MalformedInputException.class, () -> codec.decode(badPosition));
+
+    // Level without a position.
+    NBTCompound noPosition = createLegacyChunk(LATEST_VERSION, 0, 0, null);
+    ((NBTCompound) noPosition.get("Level")).remove("zPos");
+    assertThrows(MalformedInputException.class, () -> codec.decode(noPosition));
+
+    // Entities that aren't compounds.
+    NBTList strings = new NBTList(TagType.STRING);
+    strings.add("not an entity");
+    NBTCompound badEntities = createLegacyChunk(LATEST_VERSION, 0, 0, strings);
+    assertThrows(MalformedInputException.class, () -> codec.decode(badEntities));
+  }
+
+  @Test
+  void decode_shouldReadRetainedChunkEntities() throws IOException {
+    List<NBTCompound> entities = createEntities(4, 100, 12, 100);
+    NBTCompound encoded = createLegacyChunk(LATEST_VERSION, 6, 6, toList(entities));
+
+    RegionChunkCodec chunkCodec = new RegionChunkCodec(LATEST_VERSION);
+    RegionEntityCodec entityCodec = new RegionEntityCodec(LATEST_VERSION);
+
+    RegionChunk retained = chunkCodec.decode(encoded, EnumSet.of(RegionTag.CHUNK_ENTITIES));
+    EntityChunk decoded = entityCodec.decode(retained);
+    assertEquals(6, decoded.getX());
+    assertEquals(6, decoded.getZ());
+    assertEquals(entities, decoded.getEntities());
+
+    RegionChunk notRetained = chunkCodec.decode(encoded);
+    assertNull(notRetained.getTag(RegionTag.CHUNK_ENTITIES));
+    assertNotNull(entityCodec.decode(notRetained));
+    assertTrue(entityCodec.decode(notRetained).getEntities().isEmpty());
+  }
+
+  @Test
+  void entityChunk_shouldRejectInvalidEntities() {
+    List<NBTCompound> withNull = new ArrayList<>();
+    withNull.add(new NBTCompound());
+    withNull.add(null);
+
+    assertThrows(IllegalArgumentException.class, () -> new EntityChunk(0, 0, null));
+    assertThrows(IllegalArgumentException.class, () -> new EntityChunk(0, 0, withNull));
+  }
+
+  @Test
+  void entityChunk_shouldCopyEntities() {
+    List<NBTCompound> entities = createEntities(2, 0, 0, 0);
+    EntityChunk chunk = new EntityChunk(0, 0, entities);
+    entities.clear();
+
+    assertEquals(2, chunk.getEntities().size());
+    assertThrows(UnsupportedOperationException.class, () -> chunk.getEntities().clear());
+  }
+
+  /**
+   * @return a chunk in the layout used before entities had their own region files.
+   */
+  private static NBTCompound createLegacyChunk(int dataVersion, int chunkX, int chunkZ,
+      NBTList entities) {
+    NBTCompound level = new NBTCompound();
+    level.put("xPos", chunkX);
+    level.put("zPos", chunkZ);
+    if (entities != null) {
+      level.put("Entities", entities);
+    }
+
+    NBTCompound root = new NBTCompound();
+    root.put("DataVersion", dataVersion);
+    root.put("Level", level);
+    return root;
+  }
+
+  /**
+   * @return the {@code count} entities, each with an increasing X coordinate starting at the
+   * position given.
+   */
+  static List<NBTCompound> createEntities(int count, double x, double y, double z) {
+    List<NBTCompound> entities = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      entities.add(createEntity("minecraft:pig", x + i, y, z));
+    }
+    return entities;
+  }
+
+  static NBTCompound createEntity(String id, double x, double y, double z) {
+    NBTList pos = new NBTList(TagType.DOUBLE);
+    pos.add(x);
+    pos.add(y);
+    pos.add(z);
+
+    NBTCompound entity = new NBTCompound();
+    entity.put("id", id);
+    entity.put("Pos", pos);
+    return entity;
+  }
+
+  private static NBTList toList(List<NBTCompound> entities) {
+    NBTList list = new NBTList(TagType.COMPOUND);
+    list.addAll(entities);
+    return list;
+  }
+}
@@ -6,6 +6,8 @@ import static me.nullicorn.ooze.convert.region.RegionBlockStateCodecTests.provid
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.IntConsumer;
@@ -90,6 +92,28 @@ class RegionPaletteCodecTests extends VersionedCodecTests {
     }
   }
 
+  @ParameterizedTest
+  @MethodSource("provider_palettes")
+  void decode_shouldNameUsingStrategy(Palette palette) throws IOException {
+    List<List<BlockState>> namedStates = new ArrayList<>();
+    RegionPaletteCodec codec = new RegionPaletteCodec(EARLIEST_VERSION, (version, states) -> {
+      namedStates.add(states);
+      return "test_name";
+    });
+
+    codec.decode(codec.encode(palette));
+
+    assertEquals(1, namedStates.size(), "Strategy should be used once per palette");
+    assertEquals(palette.size(), namedStates.get(0).size());
+  }
+
+  @ParameterizedTest
+  @NullSource
+  void constructor_shouldRejectNullStrategy(PaletteNamingStrategy strategy) {
+    assertThrows(IllegalArgumentException.class,
+        () -> new RegionPaletteCodec(EARLIEST_VERSION, strategy));
+  }
+
   /**
    * Provides valid block palettes for use in parameterized tests.
    */
@@ -0,0 +1,411 @@
+package me.nullicorn.ooze.convert.region;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import me.nullicorn.ooze.convert.VersionedCodecTests;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+import me.nullicorn.ooze.level.PackedUIntArray;
+import me.nullicorn.ooze.level.Palette;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class RegionSectionCodecTests extends VersionedCodecTests {
+
+  // Data-versions when palettes were introduced, and when the current block-array encoding was.
+  private static final int FLATTENED_VERSION      = 1451;
+  private static final int MODERN_ENCODING_VERSION = 2527;
+  private static final int LATEST_VERSION          = 2730;
+
+  private static final int BLOCKS_PER_CELL = 4096;
+
+  // Names of the section tags.
+  private static final String PALETTE_TAG_NAME = "Palette";
+  private static final String BLOCKS_TAG_NAME  = "BlockStates";
+
+  @Override
+  protected IntConsumer getVersionedConstructor() {
+    return RegionSectionCodec::new;
+  }
+
+  @Override
+  protected int[] getAcceptableVersionRange() {
+    return new int[]{0, LATEST_VERSION};
+  }
+
+  @ParameterizedTest
+  @NullSource
+  void encode_shouldRejectNullCells(Cell cell) {
+    RegionSectionCodec codec = new RegionSectionCodec(LATEST_VERSION);
+    assertThrows(IllegalArgumentException.class, () -> codec.encode(cell));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encodeAndDecode_shouldPreserveEachBlock(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    for (Cell expected : provider_cells(dataVersion).toArray(Cell[]::new)) {
+      assertSameBlocks(expected, codec.decode(codec.encode(expected)));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encodeAndDecode_shouldPreserveEachBlockWithScratchArrays(int dataVersion)
+      throws IOException {
+    SectionCodecOptions options = SectionCodecOptions.defaults().withScratchArrays(true);
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion, options);
+
+    // Decoded twice, so that the second decode reuses the first one's arrays.
+    for (Cell expected : provider_cells(dataVersion).toArray(Cell[]::new)) {
+      NBTCompound encoded = codec.encode(expected);
+      Cell first = codec.decode(encoded);
+      Cell second = codec.decode(encoded);
+
+      assertSameBlocks(expected, first);
+      assertSameBlocks(expected, second);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encodeIsolated_shouldPreserveEachBlock(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    for (Cell expected : provider_cells(dataVersion).toArray(Cell[]::new)) {
+      assertSameBlocks(expected, codec.decode(codec.encodeIsolated(expected)));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encode_shouldUseSingleStateForUniformCells(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    // Palette has 3 states, but only the middle one is used.
+    List<BlockState> states = new ArrayList<>();
+    states.add(new BlockState("test_state_unused_1"));
+    states.add(new BlockState("test_state_used"));
+    states.add(new BlockState("test_state_unused_2"));
+    int[] blocks = new int[BLOCKS_PER_CELL];
+    Arrays.fill(blocks, 1);
+    Cell uniform = new Cell(new Palette("uniform", dataVersion, states), new PackedUIntArray(blocks));
+
+    NBTCompound encoded = codec.encode(uniform);
+    NBTList encodedPalette = (NBTList) encoded.get(PALETTE_TAG_NAME);
+    long[] encodedBlocks = (long[]) encoded.get(BLOCKS_TAG_NAME);
+
+    assertEquals(1, encodedPalette.size());
+    assertEquals(0, encodedBlocks.length);
+    assertSameBlocks(uniform, codec.decode(encoded));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void decode_shouldAcceptPaddedSingleStateSections(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+    RegionBlockStateCodec stateCodec = new RegionBlockStateCodec(dataVersion);
+
+    // Vanilla uses at least 4 bits per block, even if the palette only has 1 state.
+    NBTList palette = new NBTList(TagType.COMPOUND);
+    palette.add(stateCodec.encode(new BlockState("test_state")));
+    NBTCompound section = new NBTCompound();
+    section.put(PALETTE_TAG_NAME, palette);
+    section.put(BLOCKS_TAG_NAME, new long[BLOCKS_PER_CELL * 4 / Long.SIZE]);
+
+    Cell decoded = codec.decode(section);
+    assertEquals(1, decoded.getPalette().size());
+    for (int i = 0; i < BLOCKS_PER_CELL; i++) {
+      assertEquals(0, decoded.getBlocks().get(i), "Wrong block at i=" + i);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void decode_shouldRejectSingleStateSectionsWithWrongLength(int dataVersion) {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+    RegionBlockStateCodec stateCodec = new RegionBlockStateCodec(dataVersion);
+
+    NBTList singleState = new NBTList(TagType.COMPOUND);
+    singleState.add(stateCodec.encode(new BlockState("test_state")));
+    NBTCompound truncated = new NBTCompound();
+    truncated.put(PALETTE_TAG_NAME, singleState);
+    truncated.put(BLOCKS_TAG_NAME, new long[3]);
+
+    NBTList twoStates = new NBTList(TagType.COMPOUND);
+    twoStates.add(stateCodec.encode(new BlockState("test_state_1")));
+    twoStates.add(stateCodec.encode(new BlockState("test_state_2")));
+    NBTCompound allZeros = new NBTCompound();
+    allZeros.put(PALETTE_TAG_NAME, twoStates);
+    allZeros.put(BLOCKS_TAG_NAME, new long[BLOCKS_PER_CELL * 4 / Long.SIZE + 1]);
+
+    assertThrows(MalformedInputException.class, () -> codec.decode(truncated));
+    assertThrows(MalformedInputException.class, () -> codec.decodeLazily(truncated));
+    assertThrows(MalformedInputException.class, () -> codec.decode(allZeros));
+    assertThrows(MalformedInputException.class, () -> codec.decodeLazily(allZeros));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void decode_shouldShareBlocksOfSingleStateSections(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+    RegionBlockStateCodec stateCodec = new RegionBlockStateCodec(dataVersion);
+
+    NBTList palette = new NBTList(TagType.COMPOUND);
+    palette.add(stateCodec.encode(new BlockState("test_state")));
+    NBTCompound section = new NBTCompound();
+    section.put(PALETTE_TAG_NAME, palette);
+    section.put(BLOCKS_TAG_NAME, new long[0]);
+
+    assertSame(codec.decode(section).getBlocks(), codec.decode(section).getBlocks());
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void decode_shouldRejectEmptyPaletteWithBlocks(int dataVersion) {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    NBTCompound section = new NBTCompound();
+    section.put(PALETTE_TAG_NAME, new NBTList(TagType.COMPOUND));
+    section.put(BLOCKS_TAG_NAME, new long[0]);
+
+    assertThrows(IOException.class, () -> codec.decode(section));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encode_shouldElideEmptyCellsWhenEnabled(int dataVersion) throws IOException {
+    SectionCodecOptions options = SectionCodecOptions.defaults().withEmptySectionElision(true);
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion, options);
+
+    // Both states are considered empty, so the blocks shouldn't matter.
+    List<BlockState> states = new ArrayList<>();
+    states.add(new BlockState("minecraft:air"));
+    states.add(new BlockState("minecraft:air", null, true));
+    int[] blocks = new int[BLOCKS_PER_CELL];
+    for (int i = 0; i < blocks.length; i += 2) {
+      blocks[i] = 1;
+    }
+    Cell air = new Cell(new Palette("air", dataVersion, states), new PackedUIntArray(blocks));
+
+    assertTrue(codec.encode(air).isEmpty());
+    assertSame(Cell.empty(), codec.decode(codec.encode(air)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void decode_shouldElideEmptySectionsWhenEnabled(int dataVersion) throws IOException {
+    Set<String> emptyNames = new HashSet<>(Arrays.asList("minecraft:air", "minecraft:cave_air"));
+    SectionCodecOptions options = SectionCodecOptions.defaults()
+        .withEmptySectionElision(true)
+        .withEmptyStateNames(emptyNames);
+    RegionSectionCodec eliding = new RegionSectionCodec(dataVersion, options);
+    RegionSectionCodec notEliding = new RegionSectionCodec(dataVersion);
+    RegionBlockStateCodec stateCodec = new RegionBlockStateCodec(dataVersion);
+
+    NBTList palette = new NBTList(TagType.COMPOUND);
+    palette.add(stateCodec.encode(new BlockState("minecraft:air")));
+    palette.add(stateCodec.encode(new BlockState("minecraft:cave_air")));
+    NBTCompound section = new NBTCompound();
+    section.put(PALETTE_TAG_NAME, palette);
+    section.put(BLOCKS_TAG_NAME, new long[]{-1, -1, -1});
+
+    assertSame(Cell.empty(), eliding.decode(section));
+    assertThrows(IOException.class, () -> notEliding.decode(section),
+        "Non-eliding codec should have checked the block array");
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encode_shouldNotElideNonEmptyCells(int dataVersion) throws IOException {
+    SectionCodecOptions options = SectionCodecOptions.defaults().withEmptySectionElision(true);
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion, options);
+
+    for (Cell cell : provider_cells(dataVersion).toArray(Cell[]::new)) {
+      assertSameBlocks(cell, codec.decode(codec.encode(cell)));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encode_shouldPreserveEachBlockWhenCompacting(int dataVersion) throws IOException {
+    SectionCodecOptions options = SectionCodecOptions.defaults().withPaletteCompaction(true);
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion, options);
+
+    for (Cell cell : provider_cells(dataVersion).toArray(Cell[]::new)) {
+      assertSameBlocks(cell, codec.decode(codec.encode(cell)));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encode_shouldCompactAndReorderPalette(int dataVersion) throws IOException {
+    SectionCodecOptions options = SectionCodecOptions.defaults().withPaletteCompaction(true);
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion, options);
+
+    // "common" is used most, "rare" is used once, and "unused" is stale.
+    List<BlockState> states = new ArrayList<>();
+    states.add(new BlockState("test_state_unused"));
+    states.add(new BlockState("test_state_rare"));
+    states.add(new BlockState("test_state_common"));
+    states.add(new BlockState("test_state_unused_2"));
+    int[] blocks = new int[BLOCKS_PER_CELL];
+    Arrays.fill(blocks, 2);
+    blocks[BLOCKS_PER_CELL / 2] = 1;
+    Cell cell = new Cell(new Palette("stale", dataVersion, states), new PackedUIntArray(blocks));
+
+    NBTCompound encoded = codec.encode(cell);
+    NBTList encodedPalette = (NBTList) encoded.get(PALETTE_TAG_NAME);
+
+    assertEquals(2, encodedPalette.size(), "Unused states should be removed");
+    assertEquals("test_state_common", encodedPalette.getCompound(0).get("Name"));
+    assertEquals("test_state_rare", encodedPalette.getCompound(1).get("Name"));
+    assertSameBlocks(cell, codec.decode(encoded));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void encode_shouldRejectOutOfBoundsBlocksWhenCompacting(int dataVersion) {
+    SectionCodecOptions options = SectionCodecOptions.defaults().withPaletteCompaction(true);
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion, options);
+
+    List<BlockState> states = new ArrayList<>();
+    states.add(new BlockState("test_state_1"));
+    states.add(new BlockState("test_state_2"));
+    int[] blocks = new int[BLOCKS_PER_CELL];
+    blocks[1] = 1;
+    blocks[2] = 2;
+    Cell cell = new Cell(new Palette("invalid", dataVersion, states), new PackedUIntArray(blocks));
+
+    assertThrows(IOException.class, () -> codec.encode(cell));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void decodeLazily_shouldMatchDecode(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    for (Cell expected : provider_cells(dataVersion).toArray(Cell[]::new)) {
+      NBTCompound encoded = codec.encode(expected);
+      LazyCell lazy = codec.decodeLazily(encoded);
+      assertFalse(lazy.isDecoded());
+
+      // Individual blocks, before the cell is decoded.
+      for (int i = 0; i < BLOCKS_PER_CELL; i += 97) {
+        BlockState expectedState = expected.getPalette().get(expected.getBlocks().get(i));
+        assertEquals(expectedState.getName(), lazy.getBlock(i).getName(), "Wrong block at i=" + i);
+      }
+      assertFalse(lazy.isDecoded());
+
+      Cell decoded = lazy.toCell();
+      assertTrue(lazy.isDecoded());
+      assertSame(decoded, lazy.toCell());
+      assertSameBlocks(expected, decoded);
+      assertSameBlocks(codec.decode(encoded), decoded);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {FLATTENED_VERSION, MODERN_ENCODING_VERSION, LATEST_VERSION})
+  void decodeLazily_shouldRejectMalformedSections(int dataVersion) {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    NBTList palette = new NBTList(TagType.COMPOUND);
+    palette.add(new RegionBlockStateCodec(dataVersion).encode(new BlockState("test_state_0")));
+    palette.add(new RegionBlockStateCodec(dataVersion).encode(new BlockState("test_state_1")));
+
+    NBTCompound noBlocks = new NBTCompound();
+    noBlocks.put(PALETTE_TAG_NAME, palette);
+    assertThrows(MalformedInputException.class, () -> codec.decodeLazily(noBlocks));
+
+    NBTCompound wrongLength = new NBTCompound();
+    wrongLength.put(PALETTE_TAG_NAME, palette);
+    wrongLength.put(BLOCKS_TAG_NAME, new long[]{1, 2, 3});
+    assertThrows(MalformedInputException.class, () -> codec.decodeLazily(wrongLength));
+
+    assertThrows(IllegalArgumentException.class, () -> codec.decodeLazily(null));
+  }
+
+  @Test
+  void decodeLazily_shouldDecodeEmptySectionsEagerly() throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(LATEST_VERSION);
+
+    LazyCell lazy = codec.decodeLazily(new NBTCompound());
+    assertTrue(lazy.isDecoded());
+    assertSame(Cell.empty(), lazy.toCell());
+  }
+
+  /**
+   * Asserts that each block in the {@code actual} cell has the same state as the corresponding
+   * block in the {@code expected} cell.
+   */
+  static void assertSameBlocks(Cell expected, Cell actual) {
+    Palette expectedPalette = expected.getPalette();
+    Palette actualPalette = actual.getPalette();
+    PackedUIntArray expectedBlocks = expected.getBlocks();
+    PackedUIntArray actualBlocks = actual.getBlocks();
+
+    assertEquals(expectedBlocks.size(), actualBlocks.size(), "Cells have different sizes");
+    for (int i = 0; i < expectedBlocks.size(); i++) {
+      BlockState expectedState = expectedPalette.get(expectedBlocks.get(i));
+      BlockState actualState = actualPalette.get(actualBlocks.get(i));
+
+      assertEquals(expectedState.getName(), actualState.getName(), "Wrong state at i=" + i);
+      assertEquals(expectedState.getProperties(), actualState.getProperties(),
+          "Wrong properties at i=" + i);
+    }
+  }
+
+  /**
+   * Provides cells in a variety of shapes; some isolated, and some with unused palette states.
+   */
+  static Stream<Cell> provider_cells(int dataVersion) {
+    List<Cell> cells = new ArrayList<>();
+
+    for (int paletteSize : new int[]{1, 2, 5, 16, 17, 300}) {
+      List<BlockState> states = new ArrayList<>(paletteSize + 1);
+      for (int i = 0; i < paletteSize; i++) {
+        states.add(new BlockState("test_state_" + i));
+      }
+
+      // Isolated; every state is used.
+      int[] blocks = new int[BLOCKS_PER_CELL];
+      for (int i = 0; i < blocks.length; i++) {
+        blocks[i] = (i * 31) % paletteSize;
+      }
+      cells.add(new Cell(new Palette("isolated", dataVersion, states), new PackedUIntArray(blocks)));
+
+      // Not isolated; the last state is never used.
+      List<BlockState> statesWithUnused = new ArrayList<>(states);
+      statesWithUnused.add(new BlockState("test_state_unused"));
+      cells.add(new Cell(
+          new Palette("not_isolated", dataVersion, statesWithUnused),
+          new PackedUIntArray(blocks)));
+    }
+
+    return cells.stream();
+  }
+}
@@ -0,0 +1,35 @@
+package me.nullicorn.ooze.convert.region;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class RegionTagTests {
+
+  @Test
+  void supportMask_shouldMatchIsSupportedForAllVersions() {
+    for (int dataVersion = -1; dataVersion <= 3000; dataVersion++) {
+      for (RegionTag tag : RegionTag.values()) {
+        boolean isInMask = (RegionTag.supportMask(dataVersion) & (1L << tag.ordinal())) != 0;
+        assertEquals(tag.isSupported(dataVersion), isInMask, tag + " @ " + dataVersion);
+        assertEquals(isInMask, RegionTag.supportedIn(dataVersion).contains(tag));
+      }
+    }
+  }
+
+  @Test
+  void areAllSupported_shouldRouteLightTags() {
+    long statusTags = RegionTag.maskOf(RegionTag.CHUNK_STATUS);
+    long lightTags = RegionTag.maskOf(RegionTag.IS_LIGHT_GENERATED, RegionTag.IS_TERRAIN_GENERATED);
+
+    assertTrue(RegionTag.areAllSupported(lightTags, 1465));
+    assertFalse(RegionTag.areAllSupported(statusTags, 1465));
+    assertTrue(RegionTag.areAllSupported(statusTags, 1466));
+    assertFalse(RegionTag.areAllSupported(lightTags, 1466));
+  }
+}
@@ -0,0 +1,369 @@
+package me.nullicorn.ooze.convert.region;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+import me.nullicorn.ooze.level.PackedUIntArray;
+import me.nullicorn.ooze.level.Palette;
+
+/**
+ * Generates chunk sections that resemble the ones found in real worlds, for tests & benchmarks that
+ * should not depend on randomly filled sections alone.
+ * <p><br>
+ * Sections are mostly stone below a random surface and air above it, with a layer of dirt, veins of
+ * ore, and a sprinkling of less common (often decorative) states. A configurable share of sections
+ * are uniform instead, containing only air, stone or water. Palette sizes range from {@code 1} to
+ * {@link #MAX_PALETTE_SIZE}, skewed towards small palettes, and every state in a section's palette
+ * is used at least once, so the palette size alone determines each block array's magnitude.
+ * <p><br>
+ * Sections for versions up to {@code 1450} are generated with numeric block IDs ({@code Blocks},
+ * {@code Data} & {@code Add} arrays); later versions use palettes and compact block arrays, in
+ * whichever layout the version uses. Generation is deterministic for a given seed & sequence of
+ * calls.
+ *
+ * @author Nullicorn
+ */
+public final class SectionCorpus {
+
+  /**
+   * The largest palette that sections are generated with, a little over the size where block
+   * arrays need {@code 9} bits per block.
+   */
+  public static final int MAX_PALETTE_SIZE = 300;
+
+  /**
+   * The share of sections that are uniform by default. Roughly half of a newly generated world's
+   * sections are entirely air or stone.
+   */
+  public static final double DEFAULT_UNIFORM_RATIO = 0.5;
+
+  private static final int BLOCKS_PER_CELL = 4096;
+
+  /**
+   * Palette sizes on either side of each point where block arrays need another bit per block.
+   */
+  private static final int[] MAGNITUDE_BOUNDARIES = {
+      1, 2, 3, 4, 5, 8, 9, 16, 17, 32, 33, 64, 65, 128, 129, 256, 257, MAX_PALETTE_SIZE
+  };
+
+  // Indices of the terrain states, which come first in every palette, in this order.
+  private static final int AIR        = 0;
+  private static final int STONE      = 1;
+  private static final int DIRT       = 2;
+  private static final int FIRST_ORE  = 7;
+  private static final int LAST_ORE   = 12;
+  private static final int WATER      = 13;
+  private static final int TERRAIN    = 16;
+
+  private static final String[] TERRAIN_NAMES = {
+      "air", "stone", "dirt", "gravel", "granite", "diorite", "andesite", "coal_ore", "iron_ore",
+      "gold_ore", "redstone_ore", "lapis_ore", "diamond_ore", "water", "lava", "bedrock"
+  };
+
+  /**
+   * The numeric ID & variant of each terrain state, as {@code (type << 4) | variant}.
+   */
+  private static final int[] TERRAIN_IDS = {
+      0, 1 << 4, 3 << 4, 13 << 4, (1 << 4) | 1, (1 << 4) | 3, (1 << 4) | 5, 16 << 4, 15 << 4,
+      14 << 4, 73 << 4, 21 << 4, 56 << 4, 9 << 4, 11 << 4, 7 << 4
+  };
+
+  private static final String[] DECORATION_NAMES = {
+      "oak_stairs", "cobblestone_wall", "torch", "oak_fence", "glass_pane", "ladder", "chest",
+      "furnace", "oak_door", "rail", "lever", "stone_button"
+  };
+
+  private static final int[] DECORATION_TYPES = {
+      53, 139, 50, 85, 102, 65, 54, 61, 64, 66, 69, 77
+  };
+
+  private static final String[] FACINGS = {"north", "east", "south", "west"};
+
+  private final long   seed;
+  private final double uniformRatio;
+  private final Random random;
+
+  /**
+   * Creates a corpus where {@link #DEFAULT_UNIFORM_RATIO half} of the sections are uniform.
+   *
+   * @param seed The seed that all of the corpus's sections are generated from.
+   */
+  public SectionCorpus(long seed) {
+    this(seed, DEFAULT_UNIFORM_RATIO);
+  }
+
+  private SectionCorpus(long seed, double uniformRatio) {
+    this.seed = seed;
+    this.uniformRatio = uniformRatio;
+    this.random = new Random(seed);
+  }
+
+  /**
+   * @return the share of generated sections that are uniform, between {@code 0} and {@code 1}.
+   */
+  public double getUniformRatio() {
+    return uniformRatio;
+  }
+
+  /**
+   * @param uniformRatio The share of generated sections that should be uniform, between {@code 0}
+   *                     and {@code 1}.
+   * @return a corpus with the same seed, which starts generating from the beginning again.
+   * @throws IllegalArgumentException if the {@code uniformRatio} is not between {@code 0} and
+   *                                  {@code 1}.
+   */
+  public SectionCorpus withUniformRatio(double uniformRatio) {
+    if (!(uniformRatio >= 0 && uniformRatio <= 1)) {
+      throw new IllegalArgumentException("uniformRatio must be between 0 and 1: " + uniformRatio);
+    }
+    return new SectionCorpus(seed, uniformRatio);
+  }
+
+  /**
+   * @return the next {@code count} sections, each with a random palette size.
+   * @see #nextSection(int)
+   */
+  public List<NBTCompound> nextSections(int dataVersion, int count) throws IOException {
+    List<NBTCompound> sections = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      sections.add(nextSection(dataVersion));
+    }
+    return sections;
+  }
+
+  /**
+   * @return a non-uniform section for each palette size on either side of the points where block
+   * arrays need another bit per block, plus a uniform one.
+   */
+  public List<NBTCompound> everyMagnitude(int dataVersion) throws IOException {
+    List<NBTCompound> sections = new ArrayList<>(MAGNITUDE_BOUNDARIES.length);
+    for (int paletteSize : MAGNITUDE_BOUNDARIES) {
+      sections.add(nextSection(dataVersion, paletteSize));
+    }
+    return sections;
+  }
+
+  /**
+   * @return the next section, which is either uniform (according to the corpus's {@link
+   * #getUniformRatio() ratio}), or has a random palette size that is more often small than large.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunk sections.
+   */
+  public NBTCompound nextSection(int dataVersion) throws IOException {
+    return nextSection(dataVersion, nextPaletteSize());
+  }
+
+  /**
+   * @param paletteSize The number of distinct states in the section. If {@code 1}, the section is
+   *                    uniform.
+   * @return the next section, with exactly {@code paletteSize} distinct states.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunk sections, or
+   *                                  if the {@code paletteSize} is not between {@code 1} and {@link
+   *                                  #MAX_PALETTE_SIZE}.
+   */
+  public NBTCompound nextSection(int dataVersion, int paletteSize) throws IOException {
+    checkPaletteSize(paletteSize);
+    int[] blocks = new int[BLOCKS_PER_CELL];
+    int[] states = nextStates(paletteSize, blocks);
+
+    if (dataVersion <= 1450) {
+      return toLegacySection(states, blocks);
+    }
+    return new RegionSectionCodec(dataVersion).encode(toCell(dataVersion, states, blocks));
+  }
+
+  /**
+   * @return the next section as a cell, with a random palette size. Equivalent to decoding {@link
+   * #nextSection(int)}.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunk sections.
+   */
+  public Cell nextCell(int dataVersion) throws IOException {
+    return nextCell(dataVersion, nextPaletteSize());
+  }
+
+  /**
+   * @return the next section as a cell, with exactly {@code paletteSize} distinct states.
+   * @throws IllegalArgumentException if the {@code dataVersion} does not support chunk sections, or
+   *                                  if the {@code paletteSize} is not between {@code 1} and {@link
+   *                                  #MAX_PALETTE_SIZE}.
+   */
+  public Cell nextCell(int dataVersion, int paletteSize) throws IOException {
+    if (dataVersion <= 1450) {
+      return new RegionSectionCodec(dataVersion).decode(nextSection(dataVersion, paletteSize));
+    }
+
+    checkPaletteSize(paletteSize);
+    int[] blocks = new int[BLOCKS_PER_CELL];
+    int[] states = nextStates(paletteSize, blocks);
+    return toCell(dataVersion, states, blocks);
+  }
+
+  private int nextPaletteSize() {
+    if (random.nextDouble() < uniformRatio) {
+      return 1;
+    }
+    // Cubing skews sizes towards the small end, like most real sections.
+    double skew = Math.pow(random.nextDouble(), 3);
+    return 2 + (int) (skew * (MAX_PALETTE_SIZE - 1));
+  }
+
+  /**
+   * Fills {@code blocks} with indices into the returned palette, whose elements are {@link
+   * #stateName(int) state numbers}.
+   */
+  private int[] nextStates(int paletteSize, int[] blocks) {
+    if (paletteSize == 1) {
+      // Uniform; mostly air, sometimes stone, and occasionally water.
+      double kind = random.nextDouble();
+      int state = kind < 0.7 ? AIR : kind < 0.95 ? STONE : WATER;
+      return new int[]{state};
+    }
+
+    int[] states = new int[paletteSize];
+    for (int i = 0; i < paletteSize; i++) {
+      states[i] = i;
+    }
+
+    int[] uses = new int[paletteSize];
+    int surface = random.nextInt(17);
+    for (int i = 0; i < BLOCKS_PER_CELL; i++) {
+      int y = i >>> 8;
+      int block = y < surface ? STONE : AIR;
+      if (y == surface - 1 && DIRT < paletteSize) {
+        block = DIRT;
+      }
+      blocks[i] = block;
+      uses[block]++;
+    }
+
+    // Veins of each ore in the palette, wandering through the section.
+    for (int ore = FIRST_ORE; ore <= LAST_ORE && ore < paletteSize; ore++) {
+      int index = random.nextInt(BLOCKS_PER_CELL);
+      int veinSize = 4 + random.nextInt(9);
+      for (int i = 0; i < veinSize; i++) {
+        place(blocks, uses, index, ore);
+        index = neighbourOf(index);
+      }
+    }
+
+    // Other states are scattered, with earlier ones being more common than later ones.
+    int scattered = paletteSize > TERRAIN ? random.nextInt(paletteSize * 2) : 0;
+    for (int i = 0; i < scattered; i++) {
+      double skew = Math.pow(random.nextDouble(), 2);
+      place(blocks, uses, random.nextInt(BLOCKS_PER_CELL),
+          TERRAIN + (int) (skew * (paletteSize - TERRAIN)));
+    }
+
+    // Make sure every state is used at least once, so that none are dropped from the palette.
+    for (int state = 0; state < paletteSize; state++) {
+      while (uses[state] == 0) {
+        place(blocks, uses, random.nextInt(BLOCKS_PER_CELL), state);
+      }
+    }
+
+    return states;
+  }
+
+  /**
+   * Replaces the block at the {@code index}, unless it is the last use of some other state.
+   */
+  private static void place(int[] blocks, int[] uses, int index, int state) {
+    int replaced = blocks[index];
+    if (replaced != state && uses[replaced] > 1) {
+      uses[replaced]--;
+      uses[state]++;
+      blocks[index] = state;
+    }
+  }
+
+  /**
+   * @return the index of a block adjacent to the one at {@code index}, wrapping around the
+   * section's edges.
+   */
+  private int neighbourOf(int index) {
+    int shift = random.nextInt(3) * 4;
+    int step = random.nextBoolean() ? 1 : 15;
+    int axis = (index >>> shift) & 0xf;
+    return (index & ~(0xf << shift)) | (((axis + step) & 0xf) << shift);
+  }
+
+  private static Cell toCell(int dataVersion, int[] states, int[] blocks) {
+    List<BlockState> palette = new ArrayList<>(states.length);
+    for (int state : states) {
+      palette.add(toBlockState(state));
+    }
+    return new Cell(
+        new Palette("corpus", dataVersion, Collections.unmodifiableList(palette)),
+        new PackedUIntArray(blocks));
+  }
+
+  private static BlockState toBlockState(int state) {
+    if (state < TERRAIN) {
+      return new BlockState("minecraft:" + TERRAIN_NAMES[state]);
+    }
+
+    // Every combination of name & properties is used before any property is changed.
+    int decoration = state - TERRAIN;
+    int count = DECORATION_NAMES.length;
+    NBTCompound properties = new NBTCompound();
+    properties.put("facing", FACINGS[(decoration / count) % FACINGS.length]);
+    properties.put("half", (decoration / (count * 4)) % 2 == 0 ? "bottom" : "top");
+    properties.put("waterlogged", Boolean.toString((decoration / (count * 8)) % 2 == 1));
+    properties.put("power", Integer.toString(decoration / (count * 16)));
+    return new BlockState("minecraft:" + DECORATION_NAMES[decoration % count], properties);
+  }
+
+  /**
+   * @return the numeric ID & variant of the {@code state}, as {@code (type << 4) | variant}.
+   */
+  private static int toNumericState(int state) {
+    if (state < TERRAIN) {
+      return TERRAIN_IDS[state];
+    }
+
+    int decoration = state - TERRAIN;
+    int count = DECORATION_TYPES.length;
+    if (decoration < count * 16) {
+      return (DECORATION_TYPES[decoration % count] << 4) | (decoration / count);
+    }
+    // Modded blocks, which need the Add array.
+    return (256 + decoration) << 4;
+  }
+
+  private static NBTCompound toLegacySection(int[] states, int[] blocks) {
+    byte[] types = new byte[BLOCKS_PER_CELL];
+    byte[] extensions = new byte[BLOCKS_PER_CELL / 2];
+    byte[] variants = new byte[BLOCKS_PER_CELL / 2];
+    boolean isExtended = false;
+
+    for (int i = 0; i < BLOCKS_PER_CELL; i++) {
+      int numericState = toNumericState(states[blocks[i]]);
+      int type = numericState >>> 4;
+      int shift = (i & 1) * 4;
+
+      types[i] = (byte) type;
+      extensions[i / 2] |= ((type >>> 8) & 0xf) << shift;
+      variants[i / 2] |= (numericState & 0xf) << shift;
+      isExtended |= type > 0xff;
+    }
+
+    NBTCompound section = new NBTCompound();
+    section.put("Blocks", types);
+    section.put("Data", variants);
+    if (isExtended) {
+      section.put("Add", extensions);
+    }
+    return section;
+  }
+
+  private static void checkPaletteSize(int paletteSize) {
+    if (paletteSize < 1 || paletteSize > MAX_PALETTE_SIZE) {
+      throw new IllegalArgumentException("paletteSize must be between 1 and " + MAX_PALETTE_SIZE +
+                                         ": " + paletteSize);
+    }
+  }
+}
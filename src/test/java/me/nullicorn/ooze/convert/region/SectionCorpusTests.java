@@ -0,0 +1,117 @@
+package me.nullicorn.ooze.convert.region;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+import me.nullicorn.ooze.level.PackedUIntArray;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class SectionCorpusTests {
+
+  private static final int[] PALETTE_SIZES = {1, 2, 3, 4, 5, 8, 9, 16, 17, 32, 33, 64, 65, 128,
+      129, 256, 257, SectionCorpus.MAX_PALETTE_SIZE};
+
+  @ParameterizedTest
+  @ValueSource(ints = {1343, 1451, 2526, 2527, 2730})
+  void nextSection_shouldBeDeterministic(int dataVersion) throws IOException {
+    List<NBTCompound> expected = new SectionCorpus(42).nextSections(dataVersion, 20);
+    List<NBTCompound> actual = new SectionCorpus(42).nextSections(dataVersion, 20);
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      // Compared as binary, since compounds containing arrays are never equal.
+      assertEquals(NBTTestWriter.write(expected.get(i)), NBTTestWriter.write(actual.get(i)),
+          "Sections differ at i=" + i);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1343, 1451, 2526, 2527, 2730})
+  void everyMagnitude_shouldHaveEachPaletteSize(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+    List<NBTCompound> sections = new SectionCorpus(42).everyMagnitude(dataVersion);
+
+    assertEquals(PALETTE_SIZES.length, sections.size());
+    for (int i = 0; i < sections.size(); i++) {
+      Cell cell = codec.decode(sections.get(i));
+      assertEquals(PALETTE_SIZES[i], cell.getPalette().size(), "Wrong palette size at i=" + i);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1343, 2730})
+  void nextCell_shouldMatchDecodedSection(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    for (int paletteSize : PALETTE_SIZES) {
+      Cell expected = codec.decode(new SectionCorpus(paletteSize).nextSection(dataVersion,
+          paletteSize));
+      Cell actual = new SectionCorpus(paletteSize).nextCell(dataVersion, paletteSize);
+
+      assertEquals(expected.getPalette().size(), actual.getPalette().size());
+      for (int i = 0; i < 4096; i++) {
+        BlockState expectedState = expected.getPalette().get(expected.getBlocks().get(i));
+        BlockState actualState = actual.getPalette().get(actual.getBlocks().get(i));
+
+        assertEquals(expectedState.getName(), actualState.getName(),
+            "Wrong state at i=" + i + " for paletteSize=" + paletteSize);
+        assertEquals(expectedState.getProperties(), actualState.getProperties(),
+            "Wrong properties at i=" + i + " for paletteSize=" + paletteSize);
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1343, 2730})
+  void withUniformRatio_shouldControlUniformSections(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    for (NBTCompound section : new SectionCorpus(1).withUniformRatio(1)
+        .nextSections(dataVersion, 50)) {
+      assertEquals(1, codec.decode(section).getPalette().size());
+    }
+    for (NBTCompound section : new SectionCorpus(1).withUniformRatio(0)
+        .nextSections(dataVersion, 50)) {
+      assertTrue(codec.decode(section).getPalette().size() > 1);
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> new SectionCorpus(1).withUniformRatio(-1));
+    assertThrows(IllegalArgumentException.class, () -> new SectionCorpus(1).withUniformRatio(2));
+    assertThrows(IllegalArgumentException.class, () -> new SectionCorpus(1).nextSection(
+        dataVersion, SectionCorpus.MAX_PALETTE_SIZE + 1));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, 2730})
+  void nextSection_shouldBeMostlyAirAndStone(int dataVersion) throws IOException {
+    RegionSectionCodec codec = new RegionSectionCodec(dataVersion);
+
+    long terrainBlocks = 0;
+    long totalBlocks = 0;
+    for (NBTCompound section : new SectionCorpus(7).withUniformRatio(0)
+        .nextSections(dataVersion, 50)) {
+      Cell cell = codec.decode(section);
+      PackedUIntArray blocks = cell.getBlocks();
+      for (int i = 0; i < blocks.size(); i++) {
+        String name = cell.getPalette().get(blocks.get(i)).getName();
+        if (name.equals("minecraft:air") || name.equals("minecraft:stone")) {
+          terrainBlocks++;
+        }
+        totalBlocks++;
+      }
+    }
+
+    assertTrue(terrainBlocks > totalBlocks * 3 / 4,
+        "Only " + terrainBlocks + " of " + totalBlocks + " blocks were air or stone");
+  }
+}
@@ -0,0 +1,113 @@
+package me.nullicorn.ooze.convert.region;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class SectionScratchTests {
+
+  private static final SectionCodecOptions POOLED_OPTIONS = SectionCodecOptions.defaults()
+      .withScratchArrays(true);
+
+  @Test
+  void of_shouldOnlyPoolWhenEnabled() {
+    assertFalse(SectionCodecOptions.defaults().usesScratchArrays());
+    assertTrue(POOLED_OPTIONS.usesScratchArrays());
+
+    assertFalse(SectionScratch.of(SectionCodecOptions.defaults()).isPooled());
+    assertTrue(SectionScratch.of(POOLED_OPTIONS).isPooled());
+    assertSame(SectionScratch.of(POOLED_OPTIONS), SectionScratch.of(POOLED_OPTIONS));
+
+    assertThrows(IllegalArgumentException.class, () -> SectionScratch.of(null));
+  }
+
+  @Test
+  void borrow_shouldReuseReleasedArrays() {
+    SectionScratch scratch = SectionScratch.of(POOLED_OPTIONS);
+
+    int[] ints = scratch.borrowInts(4096);
+    scratch.release(ints);
+    assertSame(ints, scratch.borrowInts(4096));
+
+    byte[] blockBytes = scratch.borrowBytes(4096);
+    byte[] nibbleBytes = scratch.borrowBytes(2048);
+    scratch.release(blockBytes);
+    scratch.release(nibbleBytes);
+    assertSame(nibbleBytes, scratch.borrowBytes(2048));
+    assertSame(blockBytes, scratch.borrowBytes(4096));
+
+    long[] words = scratch.borrowWords(342);
+    scratch.release(words);
+    // Words are pooled separately for each length.
+    assertNotSame(words, scratch.borrowWords(256));
+    assertSame(words, scratch.borrowWords(342));
+  }
+
+  @Test
+  void borrow_shouldNotLendTheSameArrayTwice() {
+    SectionScratch scratch = SectionScratch.of(POOLED_OPTIONS);
+
+    int[] ints = scratch.borrowInts(4096);
+    scratch.release(ints);
+    scratch.release(ints);
+
+    assertSame(ints, scratch.borrowInts(4096));
+    assertNotSame(ints, scratch.borrowInts(4096));
+  }
+
+  @Test
+  void borrow_shouldAllocateUnpooledSizes() {
+    SectionScratch scratch = SectionScratch.of(POOLED_OPTIONS);
+
+    int[] ints = scratch.borrowInts(100);
+    byte[] bytes = scratch.borrowBytes(100);
+    long[] words = scratch.borrowWords(4096);
+    assertEquals(100, ints.length);
+    assertEquals(100, bytes.length);
+    assertEquals(4096, words.length);
+
+    scratch.release(ints);
+    scratch.release(bytes);
+    scratch.release(words);
+    assertNotSame(ints, scratch.borrowInts(100));
+    assertNotSame(bytes, scratch.borrowBytes(100));
+    assertNotSame(words, scratch.borrowWords(4096));
+  }
+
+  @Test
+  void borrow_shouldAlwaysAllocateWhenDisabled() {
+    SectionScratch scratch = SectionScratch.of(SectionCodecOptions.defaults());
+
+    int[] ints = scratch.borrowInts(4096);
+    scratch.release(ints);
+    assertNotSame(ints, scratch.borrowInts(4096));
+  }
+
+  @Test
+  void of_shouldGiveEachThreadItsOwnScratch() throws InterruptedException {
+    SectionScratch scratch = SectionScratch.of(POOLED_OPTIONS);
+    int[] ints = scratch.borrowInts(4096);
+    scratch.release(ints);
+
+    AtomicReference<SectionScratch> otherScratch = new AtomicReference<>();
+    AtomicReference<int[]> otherInts = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      otherScratch.set(SectionScratch.of(POOLED_OPTIONS));
+      otherInts.set(otherScratch.get().borrowInts(4096));
+    });
+    thread.start();
+    thread.join();
+
+    assertNotSame(scratch, otherScratch.get());
+    assertNotSame(ints, otherInts.get());
+  }
+}
@@ -0,0 +1,330 @@
+package me.nullicorn.ooze.convert.region;
+
+import static me.nullicorn.ooze.convert.region.RegionChunkCodecTests.addLevelTags;
+import static me.nullicorn.ooze.convert.region.RegionChunkCodecTests.assertSameChunk;
+import static me.nullicorn.ooze.convert.region.RegionChunkCodecTests.createChunk;
+import static me.nullicorn.ooze.convert.region.RegionChunkCodecTests.getSections;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.nedit.type.NBTList;
+import me.nullicorn.nedit.type.TagType;
+import me.nullicorn.ooze.convert.CodecMetrics;
+import me.nullicorn.ooze.convert.CountingCodecMetrics;
+import me.nullicorn.ooze.convert.CountingCodecMetrics.Counter;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class StreamingChunkDecoderTests {
+
+  private static final int LEGACY_VERSION = 1343;
+  private static final int LATEST_VERSION = 2730;
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, 2527, LATEST_VERSION})
+  void decode_shouldMatchChunkCodec(int dataVersion) throws IOException {
+    RegionCodecs codecs = RegionCodecs.forVersion(dataVersion);
+    NBTCompound encoded = codecs.chunkCodec().encode(createChunk(dataVersion));
+    addUnusedTags(encoded);
+
+    ByteBuffer nbt = NBTTestWriter.write(encoded);
+    int position = nbt.position();
+    RegionChunk streamed = new StreamingChunkDecoder(codecs).decode(nbt);
+
+    assertEquals(position, nbt.position(), "Input buffer should not be modified");
+    assertSameChunk(codecs.chunkCodec().decode(encoded), streamed);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, 2527, LATEST_VERSION})
+  void decode_shouldMatchChunkCodecWithScratchArrays(int dataVersion) throws IOException {
+    RegionCodecs codecs = new RegionCodecs(dataVersion,
+        SectionCodecOptions.defaults().withScratchArrays(true));
+    NBTCompound encoded = codecs.chunkCodec().encode(createChunk(dataVersion));
+    ByteBuffer nbt = NBTTestWriter.write(encoded);
+    StreamingChunkDecoder decoder = new StreamingChunkDecoder(codecs);
+
+    // Decoded twice, so that the second chunk reuses the first one's arrays.
+    RegionChunk expected = codecs.chunkCodec().decode(encoded);
+    assertSameChunk(expected, decoder.decode(nbt));
+    assertSameChunk(expected, decoder.decode(nbt));
+
+    StreamingChunkDecoder.ParsedChunk parsed = decoder.parse(nbt,
+        RegionChunkCodec.DEFAULT_PROJECTION);
+    decoder.decodeSections(parsed);
+    assertThrows(IllegalStateException.class, () -> decoder.decodeSections(parsed));
+  }
+
+  @Test
+  void decodeSections_shouldOnlyReturnArraysOnParsingThread() throws Exception {
+    CountingCodecMetrics metrics = CodecMetrics.counting();
+    RegionCodecs codecs = new RegionCodecs(LATEST_VERSION, SectionCodecOptions.defaults()
+        .withScratchArrays(true)
+        .withMetrics(metrics));
+    RegionChunk chunk = createChunk(LATEST_VERSION);
+    ByteBuffer nbt = NBTTestWriter.write(codecs.chunkCodec().encode(chunk));
+    StreamingChunkDecoder decoder = new StreamingChunkDecoder(codecs);
+
+    // Each thread is new, so neither has any pooled arrays to begin with.
+    ExecutorService parser = Executors.newSingleThreadExecutor();
+    ExecutorService sectionDecoder = Executors.newSingleThreadExecutor();
+    try {
+      StreamingChunkDecoder.ParsedChunk parsed = parser.submit(
+          () -> decoder.parse(nbt, RegionChunkCodec.DEFAULT_PROJECTION)).get();
+
+      sectionDecoder.submit(() -> {
+        // The arrays are kept, so the chunk can be decoded again.
+        assertSameChunk(chunk, decoder.decodeSections(parsed));
+        assertSameChunk(chunk, decoder.decodeSections(parsed));
+
+        // Nor were they pooled by this thread.
+        long hits = metrics.cacheHits(SectionScratch.CACHE_NAME);
+        decoder.parse(nbt, RegionChunkCodec.DEFAULT_PROJECTION);
+        assertEquals(hits, metrics.cacheHits(SectionScratch.CACHE_NAME));
+        return null;
+      }).get();
+    } finally {
+      parser.shutdown();
+      sectionDecoder.shutdown();
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1451, LATEST_VERSION})
+  void decode_shouldReportMetrics(int dataVersion) throws IOException {
+    CountingCodecMetrics metrics = CodecMetrics.counting();
+    RegionCodecs codecs = new RegionCodecs(dataVersion, SectionCodecOptions.defaults()
+        .withScratchArrays(true)
+        .withMetrics(metrics));
+    RegionChunk chunk = createChunk(dataVersion);
+    NBTCompound encoded = codecs.chunkCodec().encode(chunk);
+    int sectionCount = chunk.getSections().size();
+
+    assertEquals(1, metrics.get(dataVersion, Counter.CHUNKS_ENCODED));
+    assertEquals(sectionCount, metrics.get(dataVersion, Counter.SECTIONS_ENCODED));
+
+    ByteBuffer nbt = NBTTestWriter.write(encoded);
+    new StreamingChunkDecoder(codecs).decode(nbt);
+    codecs.chunkCodec().decode(encoded);
+
+    assertEquals(1, metrics.get(dataVersion, Counter.CHUNKS_PARSED));
+    assertEquals(nbt.remaining(), metrics.get(dataVersion, Counter.CHUNK_BYTES_PARSED));
+    assertEquals(2, metrics.get(dataVersion, Counter.CHUNKS_DECODED));
+    assertEquals(2L * sectionCount, metrics.get(dataVersion, Counter.SECTIONS_DECODED));
+    assertEquals(0, metrics.get(dataVersion, Counter.LEGACY_SECTIONS_DECODED));
+    assertEquals(metrics.get(Counter.SECTIONS_DECODED), metrics.get(Counter.PALETTES_DECODED));
+    assertTrue(metrics.get(Counter.SECTION_BYTES_DECODED) > 0);
+    assertTrue(metrics.get(Counter.SECTION_DECODE_NANOS) > 0);
+
+    long sectionsByMagnitude = 0;
+    for (int magnitude = 0; magnitude <= Integer.SIZE; magnitude++) {
+      sectionsByMagnitude += metrics.sectionsWithMagnitude(magnitude);
+    }
+    assertEquals(3L * sectionCount, sectionsByMagnitude);
+    assertTrue(metrics.cacheHits(SectionScratch.CACHE_NAME) > 0);
+  }
+
+  @Test
+  void decode_shouldMatchChunkCodecForLegacySections() throws IOException {
+    RegionCodecs codecs = RegionCodecs.forVersion(LEGACY_VERSION);
+    Random random = new Random(LEGACY_VERSION);
+
+    NBTList sections = new NBTList(TagType.COMPOUND);
+    for (int y = 0; y < 4; y++) {
+      byte[] types = new byte[4096];
+      byte[] variants = new byte[2048];
+      for (int i = 0; i < types.length; i++) {
+        types[i] = (byte) random.nextInt(8);
+      }
+      random.nextBytes(variants);
+
+      NBTCompound section = new NBTCompound();
+      section.put("Y", (byte) y);
+      section.put("Blocks", types);
+      section.put("Data", variants);
+      section.put("SkyLight", new byte[2048]);
+      sections.add(section);
+    }
+
+    NBTCompound level = new NBTCompound();
+    level.put("xPos", 3);
+    level.put("zPos", -3);
+    level.put("Sections", sections);
+
+    NBTCompound root = new NBTCompound();
+    root.put("DataVersion", LEGACY_VERSION);
+    root.put("Level", level);
+
+    RegionChunk expected = codecs.chunkCodec().decode(root);
+    RegionCodecs scratchCodecs = new RegionCodecs(LEGACY_VERSION,
+        SectionCodecOptions.defaults().withScratchArrays(true));
+
+    // Decoded twice with scratch arrays, so that the second decode reuses the first one's.
+    for (RegionCodecs decoderCodecs : Arrays.asList(codecs, scratchCodecs, scratchCodecs)) {
+      RegionChunk streamed = new StreamingChunkDecoder(decoderCodecs)
+          .decode(NBTTestWriter.write(root));
+      assertEquals(4, streamed.getSections().size());
+      assertSameChunk(expected, streamed);
+    }
+  }
+
+  @Test
+  void decode_shouldMatchChunkCodecWithProjections() throws IOException {
+    RegionCodecs codecs = RegionCodecs.forVersion(LATEST_VERSION);
+    NBTCompound encoded = codecs.chunkCodec().encode(createChunk(LATEST_VERSION));
+    addLevelTags(encoded);
+    ByteBuffer nbt = NBTTestWriter.write(encoded);
+    StreamingChunkDecoder decoder = new StreamingChunkDecoder(codecs);
+
+    List<Set<RegionTag>> projections = Arrays.asList(
+        Collections.emptySet(),
+        EnumSet.of(RegionTag.CHUNK_BLOCK_ENTITIES),
+        EnumSet.of(RegionTag.CHUNK_SECTIONS, RegionTag.CHUNK_STATUS),
+        RegionChunkCodec.PROJECTABLE_TAGS);
+    for (Set<RegionTag> projection : projections) {
+      RegionChunk expected = codecs.chunkCodec().decode(encoded, projection);
+      RegionChunk streamed = decoder.decode(nbt, projection);
+
+      assertSameChunk(expected, streamed);
+      assertEquals(expected.getTags(), streamed.getTags(), "Wrong tags for " + projection);
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> decoder.decode(nbt, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> decoder.decode(nbt, EnumSet.of(RegionTag.BLOCK_NAME)));
+  }
+
+  @Test
+  void decodeSections_shouldMatchDecode() throws IOException {
+    RegionCodecs codecs = RegionCodecs.forVersion(LATEST_VERSION);
+    RegionChunk chunk = createChunk(LATEST_VERSION);
+    ByteBuffer nbt = NBTTestWriter.write(codecs.chunkCodec().encode(chunk));
+    StreamingChunkDecoder decoder = new StreamingChunkDecoder(codecs);
+
+    StreamingChunkDecoder.ParsedChunk parsed = decoder.parse(nbt,
+        RegionChunkCodec.DEFAULT_PROJECTION);
+    assertEquals(chunk.getX(), parsed.getX());
+    assertEquals(chunk.getZ(), parsed.getZ());
+    assertEquals(LATEST_VERSION, parsed.getDataVersion());
+    assertEquals(chunk.getSections().size(), parsed.getSectionCount());
+    assertSameChunk(chunk, decoder.decodeSections(parsed));
+
+    StreamingChunkDecoder otherDecoder = new StreamingChunkDecoder(RegionCodecs.forVersion(2566));
+    assertThrows(IllegalArgumentException.class, () -> otherDecoder.decodeSections(parsed));
+    assertThrows(IllegalArgumentException.class, () -> decoder.decodeSections(null));
+  }
+
+  @Test
+  void readDataVersion_shouldReadOnlyTheVersion() throws IOException {
+    NBTCompound encoded = RegionCodecs.forVersion(LATEST_VERSION).chunkCodec()
+        .encode(createChunk(LATEST_VERSION));
+    addUnusedTags(encoded);
+    ByteBuffer nbt = NBTTestWriter.write(encoded);
+    int position = nbt.position();
+
+    assertEquals(LATEST_VERSION, StreamingChunkDecoder.readDataVersion(nbt, -1));
+    assertEquals(position, nbt.position(), "Input buffer should not be modified");
+
+    encoded.remove("DataVersion");
+    assertEquals(-1, StreamingChunkDecoder.readDataVersion(NBTTestWriter.write(encoded), -1));
+
+    assertThrows(MalformedInputException.class,
+        () -> StreamingChunkDecoder.readDataVersion(ByteBuffer.wrap(new byte[]{10, 0}), -1));
+    assertThrows(IllegalArgumentException.class,
+        () -> StreamingChunkDecoder.readDataVersion(null, -1));
+  }
+
+  @Test
+  void decode_shouldAcceptByteAltitudes() throws IOException {
+    RegionCodecs codecs = RegionCodecs.forVersion(LATEST_VERSION);
+    RegionChunk chunk = createChunk(LATEST_VERSION);
+    NBTCompound encoded = codecs.chunkCodec().encode(chunk);
+
+    NBTList sections = getSections(encoded);
+    for (int i = 0; i < sections.size(); i++) {
+      NBTCompound section = sections.getCompound(i);
+      section.put("Y", ((Integer) section.get("Y")).byteValue());
+    }
+
+    assertSameChunk(chunk, new StreamingChunkDecoder(codecs).decode(NBTTestWriter.write(encoded)));
+  }
+
+  @Test
+  void decode_shouldRejectMalformedChunks() throws IOException {
+    RegionCodecs codecs = RegionCodecs.forVersion(LATEST_VERSION);
+    StreamingChunkDecoder decoder = new StreamingChunkDecoder(codecs);
+    NBTCompound encoded = codecs.chunkCodec().encode(createChunk(LATEST_VERSION));
+
+    // Truncated input.
+    ByteBuffer nbt = NBTTestWriter.write(encoded);
+    nbt.limit(nbt.limit() / 2);
+    assertThrows(MalformedInputException.class, () -> decoder.decode(nbt));
+
+    // Root isn't a compound.
+    assertThrows(MalformedInputException.class,
+        () -> decoder.decode(ByteBuffer.wrap(new byte[]{8, 0, 0, 0, 0})));
+
+    encoded.put("DataVersion", LATEST_VERSION - 1);
+    ByteBuffer wrongVersion = NBTTestWriter.write(encoded);
+    assertThrows(MalformedInputException.class, () -> decoder.decode(wrongVersion));
+
+    encoded.put("DataVersion", LATEST_VERSION);
+    encoded.remove("Level");
+    ByteBuffer noLevel = NBTTestWriter.write(encoded);
+    assertThrows(MalformedInputException.class, () -> decoder.decode(noLevel));
+
+    assertThrows(IllegalArgumentException.class, () -> decoder.decode(null));
+    assertThrows(IllegalArgumentException.class, () -> new StreamingChunkDecoder(null));
+  }
+
+  /**
+   * Adds tags that the decoder should skip, of every type.
+   */
+  private static void addUnusedTags(NBTCompound chunk) {
+    NBTCompound level = (NBTCompound) chunk.get("Level");
+
+    NBTCompound heightmaps = new NBTCompound();
+    heightmaps.put("WORLD_SURFACE", new long[37]);
+    level.put("Heightmaps", heightmaps);
+    level.put("Status", "full");
+    level.put("InhabitedTime", 1234L);
+    level.put("Biomes", new int[1024]);
+
+    NBTList pos = new NBTList(TagType.DOUBLE);
+    pos.add(1.5);
+    pos.add(64.0);
+    pos.add(-1.5);
+    NBTCompound entity = new NBTCompound();
+    entity.put("id", "minecraft:pig");
+    entity.put("CustomName", "\u00e9\u0000\ud83d\udc37");
+    entity.put("Pos", pos);
+    entity.put("Health", 10f);
+    entity.put("Fire", (short) -1);
+    NBTList entities = new NBTList(TagType.COMPOUND);
+    entities.add(entity);
+    level.put("Entities", entities);
+    level.put("TileTicks", new NBTList(TagType.END));
+
+    NBTList sections = getSections(chunk);
+    for (int i = 0; i < sections.size(); i++) {
+      sections.getCompound(i).put("BlockLight", new byte[2048]);
+    }
+  }
+}
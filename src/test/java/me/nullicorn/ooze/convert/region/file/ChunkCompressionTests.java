@@ -0,0 +1,231 @@
+package me.nullicorn.ooze.convert.region.file;
+
+import static me.nullicorn.ooze.convert.region.file.RegionFileTests.putChunk;
+import static me.nullicorn.ooze.convert.region.file.RegionFileTests.toArray;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class ChunkCompressionTests {
+
+  private static final int SECTOR_SIZE = 4096;
+
+  @Test
+  void decompress_shouldReadStreamCompressedData() throws IOException {
+    // Larger than the initial buffers, so that they need to grow.
+    byte[] nbt = randomNbt(200_000);
+
+    assertArrayEquals(nbt, toArray(ChunkCompression.decompress(
+        payload(ChunkCompression.GZIP, gzip(nbt)))));
+    assertArrayEquals(nbt, toArray(ChunkCompression.decompress(
+        payload(ChunkCompression.ZLIB, zlib(nbt)))));
+    assertArrayEquals(nbt, toArray(ChunkCompression.decompress(
+        payload(ChunkCompression.UNCOMPRESSED, nbt))));
+  }
+
+  @Test
+  void compress_shouldBeReadableByStreams() throws IOException {
+    byte[] nbt = randomNbt(100_000);
+
+    byte[] gzipped = toArray(ChunkCompression.compress(ByteBuffer.wrap(nbt),
+        ChunkCompression.GZIP));
+    assertArrayEquals(nbt, readAll(new GZIPInputStream(new ByteArrayInputStream(gzipped))));
+
+    byte[] zlibbed = toArray(ChunkCompression.compress(ByteBuffer.wrap(nbt),
+        ChunkCompression.ZLIB));
+    assertArrayEquals(nbt,
+        readAll(new InflaterInputStream(new ByteArrayInputStream(zlibbed))));
+
+    byte[] uncompressed = toArray(ChunkCompression.compress(ByteBuffer.wrap(nbt),
+        ChunkCompression.UNCOMPRESSED));
+    assertArrayEquals(nbt, uncompressed);
+  }
+
+  @Test
+  void compress_shouldNotMoveInput() {
+    ByteBuffer nbt = ByteBuffer.allocateDirect(100);
+    nbt.position(10);
+
+    ByteBuffer compressed = ChunkCompression.compress(nbt, ChunkCompression.ZLIB);
+    assertEquals(10, nbt.position());
+    assertEquals(90, ChunkCompression.compress(nbt, ChunkCompression.UNCOMPRESSED).remaining());
+    assertEquals(10, nbt.position());
+    assertEquals(0, compressed.position());
+  }
+
+  @Test
+  void decompress_shouldReuseThreadBuffers() throws IOException {
+    Random random = new Random(42);
+    for (int i = 0; i < 50; i++) {
+      byte[] nbt = randomNbt(random.nextInt(150_000));
+      int type = ChunkCompression.GZIP + i % 2;
+      ByteBuffer compressed = ChunkCompression.compress(ByteBuffer.wrap(nbt), type);
+
+      ByteBuffer shared = ChunkCompression.decompressToThreadBuffer(payload(type,
+          toArray(compressed)));
+      assertArrayEquals(nbt, toArray(shared), "Chunk #" + i + " was not decompressed correctly");
+    }
+  }
+
+  @Test
+  void decompress_shouldSkipOptionalGzipFields() throws IOException {
+    byte[] nbt = randomNbt(1000);
+    byte[] deflated = toArray(ChunkCompression.compress(ByteBuffer.wrap(nbt),
+        ChunkCompression.GZIP));
+
+    ByteArrayOutputStream withFields = new ByteArrayOutputStream();
+    withFields.write(deflated, 0, 3);
+    // FHCRC, FEXTRA, FNAME & FCOMMENT.
+    withFields.write(0x02 | 0x04 | 0x08 | 0x10);
+    withFields.write(deflated, 4, 6);
+    withFields.write(new byte[]{3, 0, 1, 2, 3});
+    withFields.write("c.0.0.nbt\0".getBytes("US-ASCII"));
+    withFields.write("a comment\0".getBytes("US-ASCII"));
+    withFields.write(new byte[]{0, 0});
+    withFields.write(deflated, 10, deflated.length - 10);
+
+    assertArrayEquals(nbt, toArray(ChunkCompression.decompress(
+        payload(ChunkCompression.GZIP, withFields.toByteArray()))));
+  }
+
+  @Test
+  void decompress_shouldRejectCorruptData() throws IOException {
+    byte[] nbt = randomNbt(1000);
+    byte[] gzipped = gzip(nbt);
+    byte[] zlibbed = zlib(nbt);
+
+    assertThrows(MalformedInputException.class, () -> ChunkCompression.decompress(
+        payload(ChunkCompression.ZLIB, new byte[]{1, 2, 3, 4})));
+    assertThrows(MalformedInputException.class, () -> ChunkCompression.decompress(
+        payload(ChunkCompression.ZLIB, Arrays.copyOf(zlibbed, zlibbed.length / 2))));
+    assertThrows(MalformedInputException.class, () -> ChunkCompression.decompress(
+        payload(ChunkCompression.GZIP, zlibbed)));
+    assertThrows(MalformedInputException.class, () -> ChunkCompression.decompress(
+        payload(ChunkCompression.GZIP, Arrays.copyOf(gzipped, gzipped.length - 4))));
+
+    byte[] badChecksum = gzipped.clone();
+    badChecksum[badChecksum.length - 8] ^= 1;
+    assertThrows(MalformedInputException.class, () -> ChunkCompression.decompress(
+        payload(ChunkCompression.GZIP, badChecksum)));
+
+    assertThrows(MalformedInputException.class, () -> ChunkCompression.decompress(
+        payload(4, zlibbed)));
+  }
+
+  @Test
+  void decompress_shouldReadExternalFiles() throws IOException {
+    byte[] nbt = randomNbt(5000);
+
+    Path directory = Files.createTempDirectory("ooze-region");
+    Path regionPath = directory.resolve("r.-1.2.mca");
+    Path externalPath = directory.resolve("c.-29.70.mcc");
+    try {
+      ByteBuffer file = ByteBuffer.allocate(SECTOR_SIZE * 3);
+      putChunk(file, 3, 6, 2, 1, 0, ChunkCompression.ZLIB | 0x80, new byte[0]);
+      Files.write(regionPath, file.array());
+      Files.write(externalPath, zlib(nbt));
+
+      try (RegionFile region = RegionFile.open(regionPath)) {
+        ChunkPayload payload = region.getPayload(3, 6);
+        assertEquals(externalPath, payload.getExternalFile());
+        assertArrayEquals(nbt, toArray(ChunkCompression.decompress(payload)));
+        assertArrayEquals(nbt, toArray(ChunkCompression.decompressToThreadBuffer(payload)));
+      }
+
+      Files.delete(externalPath);
+      try (RegionFile region = RegionFile.open(regionPath)) {
+        assertThrows(IOException.class, () -> ChunkCompression.decompress(
+            region.getPayload(3, 6)));
+      }
+    } finally {
+      Files.deleteIfExists(externalPath);
+      Files.deleteIfExists(regionPath);
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  void decompress_shouldRejectUnlocatedExternalChunks() {
+    ChunkPayload payload = new ChunkPayload(0, 0, 0, ChunkCompression.ZLIB, true, null,
+        ByteBuffer.allocate(0));
+
+    assertNull(payload.getExternalFile());
+    assertThrows(IOException.class, () -> ChunkCompression.decompress(payload));
+  }
+
+  @Test
+  void shouldRejectInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> ChunkCompression.decompress(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> ChunkCompression.decompressToThreadBuffer(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> ChunkCompression.compress(null, ChunkCompression.ZLIB));
+    assertThrows(IllegalArgumentException.class,
+        () -> ChunkCompression.compress(ByteBuffer.allocate(1), 0));
+  }
+
+  private static ChunkPayload payload(int compressionType, byte[] data) {
+    return new ChunkPayload(0, 0, 0, compressionType, false, null,
+        ByteBuffer.wrap(data).asReadOnlyBuffer());
+  }
+
+  /**
+   * @return bytes that compress about as well as real chunk NBT, which is mostly repetitive.
+   */
+  private static byte[] randomNbt(int length) {
+    Random random = new Random(length);
+    byte[] nbt = new byte[length];
+    for (int i = 0; i < length; i++) {
+      nbt[i] = (byte) (random.nextInt(8) == 0 ? random.nextInt() : i / 64);
+    }
+    return nbt;
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(data);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] zlib(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DeflaterOutputStream zlib = new DeflaterOutputStream(out)) {
+      zlib.write(data);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream stream = in) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = stream.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,159 @@
+package me.nullicorn.ooze.convert.region.file;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class RegionFileTests {
+
+  private static final int SECTOR_SIZE = 4096;
+
+  @Test
+  void open_shouldReadTablesAndPayloads() throws IOException {
+    byte[] data = {10, 20, 30, 40, 50};
+
+    ByteBuffer file = ByteBuffer.allocate(SECTOR_SIZE * 3);
+    putChunk(file, 5, 7, 2, 1, 12345, 2, data);
+
+    Path path = writeTempFile(file.array());
+    try (RegionFile region = RegionFile.open(path)) {
+      assertEquals(1, region.chunkCount());
+      assertTrue(region.hasChunk(5, 7));
+      assertFalse(region.hasChunk(7, 5));
+      assertEquals(12345, region.getTimestamp(5, 7));
+
+      // Absolute coordinates should be wrapped to the region.
+      assertTrue(region.hasChunk(5 + 32, 7 - 64));
+
+      ChunkPayload payload = region.getPayload(5, 7);
+      assertEquals(5, payload.getChunkX());
+      assertEquals(7, payload.getChunkZ());
+      assertEquals(2, payload.getCompressionType());
+      assertFalse(payload.isExternal());
+      assertArrayEquals(data, toArray(payload.getData()));
+
+      // Each view should be independent.
+      payload.getData().get();
+      assertEquals(data.length, payload.getData().remaining());
+
+      assertNull(region.getPayload(0, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void getPayload_shouldFlagExternalChunks() throws IOException {
+    ByteBuffer file = ByteBuffer.allocate(SECTOR_SIZE * 3);
+    putChunk(file, 0, 0, 2, 1, 0, 2 | 0x80, new byte[0]);
+
+    Path path = writeTempFile(file.array());
+    try (RegionFile region = RegionFile.open(path)) {
+      ChunkPayload payload = region.getPayload(0, 0);
+      assertTrue(payload.isExternal());
+      assertEquals(2, payload.getCompressionType());
+      assertEquals(0, payload.getLength());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void open_shouldAcceptEmptyFiles() throws IOException {
+    Path path = writeTempFile(new byte[0]);
+    try (RegionFile region = RegionFile.open(path)) {
+      assertEquals(0, region.chunkCount());
+      assertNull(region.getPayload(0, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void open_shouldRejectMalformedFiles() throws IOException {
+    Path truncated = writeTempFile(new byte[SECTOR_SIZE]);
+    try {
+      assertThrows(MalformedInputException.class, () -> RegionFile.open(truncated));
+    } finally {
+      Files.delete(truncated);
+    }
+
+    // Location points into the header.
+    ByteBuffer inHeader = ByteBuffer.allocate(SECTOR_SIZE * 3);
+    inHeader.putInt(0, (1 << 8) | 1);
+    Path inHeaderPath = writeTempFile(inHeader.array());
+    try {
+      assertThrows(MalformedInputException.class, () -> RegionFile.open(inHeaderPath));
+    } finally {
+      Files.delete(inHeaderPath);
+    }
+
+    // Location points past the end of the file.
+    ByteBuffer pastEnd = ByteBuffer.allocate(SECTOR_SIZE * 3);
+    pastEnd.putInt(0, (5 << 8) | 1);
+    Path pastEndPath = writeTempFile(pastEnd.array());
+    try {
+      assertThrows(MalformedInputException.class, () -> RegionFile.open(pastEndPath));
+    } finally {
+      Files.delete(pastEndPath);
+    }
+  }
+
+  @Test
+  void getPayload_shouldRejectInvalidLengths() throws IOException {
+    ByteBuffer file = ByteBuffer.allocate(SECTOR_SIZE * 3);
+    putChunk(file, 0, 0, 2, 1, 0, 2, new byte[10]);
+    file.putInt(2 * SECTOR_SIZE, SECTOR_SIZE * 2);
+
+    Path path = writeTempFile(file.array());
+    try (RegionFile region = RegionFile.open(path)) {
+      assertThrows(MalformedInputException.class, () -> region.getPayload(0, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void open_shouldRejectNull() {
+    assertThrows(IllegalArgumentException.class, () -> RegionFile.open(null));
+  }
+
+  static void putChunk(ByteBuffer file, int chunkX, int chunkZ, int sectorOffset,
+      int sectorCount, int timestamp, int compressionType, byte[] data) {
+    int index = chunkX + chunkZ * 32;
+    file.putInt(index * 4, (sectorOffset << 8) | sectorCount);
+    file.putInt(SECTOR_SIZE + index * 4, timestamp);
+
+    int start = sectorOffset * SECTOR_SIZE;
+    file.putInt(start, data.length + 1);
+    file.put(start + 4, (byte) compressionType);
+    for (int i = 0; i < data.length; i++) {
+      file.put(start + 5 + i, data[i]);
+    }
+  }
+
+  static Path writeTempFile(byte[] contents) throws IOException {
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    Files.write(path, contents);
+    return path;
+  }
+
+  static byte[] toArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
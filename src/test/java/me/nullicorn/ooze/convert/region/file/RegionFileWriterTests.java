@@ -0,0 +1,111 @@
+package me.nullicorn.ooze.convert.region.file;
+
+import static me.nullicorn.ooze.convert.region.file.RegionFileTests.toArray;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class RegionFileWriterTests {
+
+  private static final int SECTOR_SIZE = 4096;
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, SECTOR_SIZE * 3, RegionFileWriter.DEFAULT_BATCH_SIZE})
+  void write_shouldBeReadableByRegionFile(int batchSize) throws IOException {
+    Random random = new Random(batchSize);
+    byte[][] payloads = new byte[32 * 32][];
+
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      try (RegionFileWriter writer = RegionFileWriter.create(path, batchSize)) {
+        for (int i = 0; i < payloads.length; i += 3) {
+          // Include payloads that exactly fill their sectors.
+          int length = (i % 9 == 0)
+              ? SECTOR_SIZE - 5
+              : random.nextInt(SECTOR_SIZE * 4);
+
+          payloads[i] = new byte[length];
+          random.nextBytes(payloads[i]);
+          writer.write(i % 32, i / 32, i, 2, ByteBuffer.wrap(payloads[i]));
+        }
+      }
+
+      assertEquals(0, Files.size(path) % SECTOR_SIZE, "File should be sector-aligned");
+
+      try (RegionFile region = RegionFile.open(path)) {
+        for (int i = 0; i < payloads.length; i++) {
+          ChunkPayload payload = region.getPayload(i % 32, i / 32);
+          if (payloads[i] == null) {
+            assertFalse(region.hasChunk(i % 32, i / 32));
+            continue;
+          }
+
+          assertEquals(i, payload.getTimestamp());
+          assertEquals(2, payload.getCompressionType());
+          assertArrayEquals(payloads[i], toArray(payload.getData()));
+        }
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void write_shouldNotChangeDataPosition() throws IOException {
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try (RegionFileWriter writer = RegionFileWriter.create(path, 0)) {
+      ByteBuffer data = ByteBuffer.wrap(new byte[100]);
+      writer.write(0, 0, 0, 3, data);
+      assertEquals(100, data.remaining());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void write_shouldRejectInvalidChunks() throws IOException {
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      RegionFileWriter writer = RegionFileWriter.create(path);
+      ByteBuffer data = ByteBuffer.allocate(10);
+
+      writer.write(1, 1, 0, 2, data);
+      assertThrows(IllegalArgumentException.class, () -> writer.write(1, 1, 0, 2, data));
+      assertThrows(IllegalArgumentException.class, () -> writer.write(2, 2, 0, 2, null));
+      assertThrows(IllegalArgumentException.class, () -> writer.write(2, 2, 0, 0x82, data));
+
+      ByteBuffer tooLarge = ByteBuffer.allocate(SECTOR_SIZE * 255);
+      assertThrows(IOException.class, () -> writer.write(3, 3, 0, 2, tooLarge));
+
+      writer.close();
+      assertThrows(IOException.class, () -> writer.write(4, 4, 0, 2, data));
+      assertThrows(IOException.class, writer::flush);
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void create_shouldRejectInvalidArguments() throws IOException {
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      assertThrows(IllegalArgumentException.class, () -> RegionFileWriter.create(null));
+      assertThrows(IllegalArgumentException.class, () -> RegionFileWriter.create(path, -1));
+    } finally {
+      Files.delete(path);
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package me.nullicorn.ooze.convert.region.legacy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class LegacyTagTests {
+
+  @Test
+  void supportMask_shouldMatchIsSupportedForAllVersions() {
+    for (int dataVersion = -1; dataVersion <= 3000; dataVersion++) {
+      for (LegacyTag tag : LegacyTag.values()) {
+        boolean isInMask = (LegacyTag.supportMask(dataVersion) & (1L << tag.ordinal())) != 0;
+        assertEquals(tag.isSupported(dataVersion), isInMask, tag + " @ " + dataVersion);
+        assertEquals(isInMask, LegacyTag.supportedIn(dataVersion).contains(tag));
+      }
+    }
+  }
+}
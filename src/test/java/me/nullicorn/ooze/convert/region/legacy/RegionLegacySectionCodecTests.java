@@ -0,0 +1,212 @@
+package me.nullicorn.ooze.convert.region.legacy;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.convert.CodecMetrics;
+import me.nullicorn.ooze.convert.CountingCodecMetrics;
+import me.nullicorn.ooze.convert.CountingCodecMetrics.Counter;
+import me.nullicorn.ooze.convert.VersionedCodecTests;
+import me.nullicorn.ooze.convert.region.SectionCodecOptions;
+import me.nullicorn.ooze.convert.region.SectionCorpus;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+import me.nullicorn.ooze.level.Palette;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+
+/**
+ * @author Nullicorn
+ */
+class RegionLegacySectionCodecTests extends VersionedCodecTests {
+
+  // Data-version of the flattening, when numeric block states were removed.
+  private static final int LAST_VERSION = 1450;
+
+  private static final int BLOCKS_PER_CELL = 4096;
+
+  // Names of the section tags.
+  private static final String TYPES_TAG_NAME      = "Blocks";
+  private static final String EXTENSIONS_TAG_NAME = "Add";
+  private static final String VARIANTS_TAG_NAME   = "Data";
+
+  @Override
+  protected IntConsumer getVersionedConstructor() {
+    return RegionLegacySectionCodec::new;
+  }
+
+  @Override
+  protected int[] getAcceptableVersionRange() {
+    return new int[]{0, LAST_VERSION};
+  }
+
+  @ParameterizedTest
+  @NullSource
+  void encode_shouldRejectNullCells(Cell cell) {
+    RegionLegacySectionCodec codec = new RegionLegacySectionCodec(LAST_VERSION);
+    assertThrows(IllegalArgumentException.class, () -> codec.encode(cell));
+  }
+
+  @ParameterizedTest
+  @NullSource
+  void decode_shouldRejectNullSections(NBTCompound section) {
+    RegionLegacySectionCodec codec = new RegionLegacySectionCodec(LAST_VERSION);
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(section));
+  }
+
+  @Test
+  void decodeAndEncode_shouldPreserveTypesAndVariants() throws IOException {
+    RegionLegacySectionCodec codec = new RegionLegacySectionCodec(LAST_VERSION);
+    Random random = new Random(1450);
+
+    byte[] types = new byte[BLOCKS_PER_CELL];
+    byte[] variants = new byte[BLOCKS_PER_CELL / 2];
+    random.nextBytes(types);
+    random.nextBytes(variants);
+
+    NBTCompound section = new NBTCompound();
+    section.put(TYPES_TAG_NAME, types);
+    section.put(VARIANTS_TAG_NAME, variants);
+
+    NBTCompound reEncoded = codec.encode(codec.decode(section));
+    assertArrayEquals(types, (byte[]) reEncoded.get(TYPES_TAG_NAME));
+    assertArrayEquals(variants, (byte[]) reEncoded.get(VARIANTS_TAG_NAME));
+    assertNull(reEncoded.get(EXTENSIONS_TAG_NAME));
+  }
+
+  @Test
+  void decodeAndEncode_shouldPreserveTypeExtensions() throws IOException {
+    RegionLegacySectionCodec codec = new RegionLegacySectionCodec(LAST_VERSION);
+    Random random = new Random(LAST_VERSION + 1);
+
+    byte[] types = new byte[BLOCKS_PER_CELL];
+    byte[] extensions = new byte[BLOCKS_PER_CELL / 2];
+    byte[] variants = new byte[BLOCKS_PER_CELL / 2];
+    random.nextBytes(types);
+    random.nextBytes(extensions);
+    random.nextBytes(variants);
+
+    NBTCompound section = new NBTCompound();
+    section.put(TYPES_TAG_NAME, types);
+    section.put(EXTENSIONS_TAG_NAME, extensions);
+    section.put(VARIANTS_TAG_NAME, variants);
+
+    NBTCompound reEncoded = codec.encode(codec.decode(section));
+    assertArrayEquals(types, (byte[]) reEncoded.get(TYPES_TAG_NAME));
+    assertArrayEquals(extensions, (byte[]) reEncoded.get(EXTENSIONS_TAG_NAME));
+    assertArrayEquals(variants, (byte[]) reEncoded.get(VARIANTS_TAG_NAME));
+  }
+
+  @Test
+  void decode_shouldDistinguishExtendedTypes() throws IOException {
+    RegionLegacySectionCodec codec = new RegionLegacySectionCodec(LAST_VERSION);
+
+    // Block 0 has type 0x001, and block 1 has type 0x101.
+    byte[] types = new byte[BLOCKS_PER_CELL];
+    byte[] extensions = new byte[BLOCKS_PER_CELL / 2];
+    types[0] = 1;
+    types[1] = 1;
+    extensions[0] = 0x10;
+
+    NBTCompound section = new NBTCompound();
+    section.put(TYPES_TAG_NAME, types);
+    section.put(EXTENSIONS_TAG_NAME, extensions);
+
+    Palette palette = codec.decode(section).getPalette();
+    Set<BlockState> distinctStates = new HashSet<>();
+    for (int i = 0; i < palette.size(); i++) {
+      distinctStates.add(palette.get(i));
+    }
+    // Air, 0x001, and 0x101.
+    assertEquals(3, palette.size());
+    assertEquals(palette.size(), distinctStates.size());
+  }
+
+  @Test
+  void decodeAndEncode_shouldMatchWithScratchArrays() throws IOException {
+    SectionCodecOptions options = SectionCodecOptions.defaults().withScratchArrays(true);
+    RegionLegacySectionCodec scratchCodec = new RegionLegacySectionCodec(LAST_VERSION, options);
+    RegionLegacySectionCodec codec = new RegionLegacySectionCodec(LAST_VERSION);
+    Random random = new Random(LAST_VERSION);
+
+    // Repeated so that the codec reuses its own arrays.
+    for (int i = 0; i < 3; i++) {
+      byte[] types = new byte[BLOCKS_PER_CELL];
+      byte[] extensions = new byte[BLOCKS_PER_CELL / 2];
+      byte[] variants = new byte[BLOCKS_PER_CELL / 2];
+      random.nextBytes(types);
+      random.nextBytes(extensions);
+      random.nextBytes(variants);
+
+      NBTCompound section = new NBTCompound();
+      section.put(TYPES_TAG_NAME, types);
+      section.put(EXTENSIONS_TAG_NAME, extensions);
+      section.put(VARIANTS_TAG_NAME, variants);
+
+      NBTCompound expected = codec.encode(codec.decode(section));
+      NBTCompound actual = scratchCodec.encode(scratchCodec.decode(section));
+      for (String tagName : new String[]{TYPES_TAG_NAME, EXTENSIONS_TAG_NAME, VARIANTS_TAG_NAME}) {
+        assertArrayEquals((byte[]) expected.get(tagName), (byte[]) actual.get(tagName));
+      }
+      assertArrayEquals(types, (byte[]) actual.get(TYPES_TAG_NAME));
+      assertArrayEquals(extensions, (byte[]) actual.get(EXTENSIONS_TAG_NAME));
+      assertArrayEquals(variants, (byte[]) actual.get(VARIANTS_TAG_NAME));
+    }
+  }
+
+  @Test
+  void decodeAndEncode_shouldReportMetrics() throws IOException {
+    CountingCodecMetrics metrics = CodecMetrics.counting();
+    RegionLegacySectionCodec codec = new RegionLegacySectionCodec(LAST_VERSION,
+        SectionCodecOptions.defaults().withMetrics(metrics));
+
+    List<NBTCompound> sections = new SectionCorpus(LAST_VERSION).everyMagnitude(LAST_VERSION);
+    for (NBTCompound section : sections) {
+      codec.encode(codec.decode(section));
+    }
+
+    assertEquals(sections.size(), metrics.get(LAST_VERSION, Counter.LEGACY_SECTIONS_DECODED));
+    assertEquals(sections.size(), metrics.get(LAST_VERSION, Counter.LEGACY_SECTIONS_ENCODED));
+    // Each section is counted once when decoded, and again when encoded.
+    assertEquals(2, metrics.sectionsWithMagnitude(0));
+    assertEquals(4, metrics.sectionsWithMagnitude(9));
+    assertTrue(metrics.get(Counter.SECTION_BYTES_DECODED) >= sections.size() * BLOCKS_PER_CELL);
+  }
+
+  @Test
+  void decode_shouldElideAirOnlySectionsWhenEnabled() throws IOException {
+    NBTCompound section = new NBTCompound();
+    section.put(TYPES_TAG_NAME, new byte[BLOCKS_PER_CELL]);
+    section.put(VARIANTS_TAG_NAME, new byte[BLOCKS_PER_CELL / 2]);
+
+    SectionCodecOptions elidingOptions = SectionCodecOptions.defaults()
+        .withEmptySectionElision(true);
+    RegionLegacySectionCodec eliding = new RegionLegacySectionCodec(LAST_VERSION, elidingOptions);
+    RegionLegacySectionCodec notEliding = new RegionLegacySectionCodec(LAST_VERSION);
+
+    assertSame(Cell.empty(), eliding.decode(section));
+    assertNotSame(Cell.empty(), notEliding.decode(section));
+  }
+
+  @Test
+  void encode_shouldElideEmptyCellsWhenEnabled() throws IOException {
+    SectionCodecOptions elidingOptions = SectionCodecOptions.defaults()
+        .withEmptySectionElision(true);
+    RegionLegacySectionCodec codec = new RegionLegacySectionCodec(LAST_VERSION, elidingOptions);
+
+    assertTrue(codec.encode(Cell.empty()).isEmpty());
+  }
+}
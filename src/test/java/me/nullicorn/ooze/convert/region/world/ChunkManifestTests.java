@@ -0,0 +1,90 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class ChunkManifestTests {
+
+  @Test
+  void isUpToDate_shouldMatchRecordedTimestamps() {
+    ChunkManifest manifest = new ChunkManifest();
+    manifest.record(-1, -1, 100);
+    manifest.record(31, 0, 200);
+    manifest.record(32, 0, 300);
+
+    assertTrue(manifest.isUpToDate(-1, -1, 100));
+    assertFalse(manifest.isUpToDate(-1, -1, 101));
+    assertFalse(manifest.isUpToDate(31, -1, 100), "Wrong region was used");
+    assertEquals(200, manifest.getTimestamp(31, 0));
+    assertEquals(300, manifest.getTimestamp(32, 0));
+    assertEquals(0, manifest.getTimestamp(0, 0));
+    assertEquals(3, manifest.chunkCount());
+
+    // Chunks without timestamps can't be compared.
+    assertFalse(manifest.isUpToDate(0, 0, 0));
+  }
+
+  @Test
+  void save_shouldBeLoadable() throws IOException {
+    ChunkManifest manifest = new ChunkManifest();
+    for (int chunkX = -40; chunkX < 40; chunkX += 3) {
+      for (int chunkZ = -40; chunkZ < 40; chunkZ += 7) {
+        manifest.record(chunkX, chunkZ, chunkX * 1000 + chunkZ + 100_000);
+      }
+    }
+
+    Path file = Files.createTempFile("manifest", ".bin");
+    try {
+      manifest.save(file);
+      ChunkManifest loaded = ChunkManifest.load(file);
+
+      assertEquals(manifest.chunkCount(), loaded.chunkCount());
+      for (int chunkX = -40; chunkX < 40; chunkX++) {
+        for (int chunkZ = -40; chunkZ < 40; chunkZ++) {
+          assertEquals(manifest.getTimestamp(chunkX, chunkZ), loaded.getTimestamp(chunkX, chunkZ),
+              "Wrong timestamp for [" + chunkX + ", " + chunkZ + "]");
+        }
+      }
+      assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void load_shouldHandleMissingAndInvalidFiles() throws IOException {
+    Path file = Files.createTempFile("manifest", ".bin");
+    try {
+      Files.delete(file);
+      assertEquals(0, ChunkManifest.load(file).chunkCount());
+
+      Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+      assertThrows(MalformedInputException.class, () -> ChunkManifest.load(file));
+
+      ChunkManifest manifest = new ChunkManifest();
+      manifest.record(0, 0, 1);
+      manifest.save(file);
+      byte[] saved = Files.readAllBytes(file);
+      byte[] truncated = new byte[saved.length - 1];
+      System.arraycopy(saved, 0, truncated, 0, truncated.length);
+      Files.write(file, truncated);
+      assertThrows(MalformedInputException.class, () -> ChunkManifest.load(file));
+
+      assertThrows(IllegalArgumentException.class, () -> ChunkManifest.load(null));
+      assertThrows(IllegalArgumentException.class, () -> manifest.save(null));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
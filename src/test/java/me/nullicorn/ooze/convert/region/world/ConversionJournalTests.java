@@ -0,0 +1,195 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import me.nullicorn.ooze.convert.MalformedInputException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class ConversionJournalTests {
+
+  @Test
+  void open_shouldReplayRecords() throws IOException {
+    Path file = Files.createTempFile("journal", ".bin");
+    try {
+      try (ConversionJournal journal = ConversionJournal.open(file)) {
+        journal.record(-1, -1, 100);
+        journal.record(31, 0, 0);
+        journal.record(64, 64, 300);
+        journal.recordRegion(2, 2);
+      }
+
+      try (ConversionJournal journal = ConversionJournal.open(file)) {
+        assertTrue(journal.isUpToDate(-1, -1, 100));
+        assertFalse(journal.isUpToDate(-1, -1, 101), "Changed chunks should be converted again");
+        assertTrue(journal.isUpToDate(31, 0, 0));
+        assertFalse(journal.isUpToDate(30, 0, 0));
+
+        assertTrue(journal.isRegionComplete(2, 2));
+        assertFalse(journal.isRegionComplete(-1, -1));
+        assertTrue(journal.isUpToDate(64, 64, 999), "Chunks in complete regions are up-to-date");
+        assertTrue(journal.isUpToDate(70, 80, 0));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void sync_shouldHappenEveryInterval() throws IOException {
+    Path file = Files.createTempFile("journal", ".bin");
+    try {
+      ConversionJournal journal = ConversionJournal.open(file, 2);
+      try {
+        long emptySize = Files.size(file);
+        journal.record(0, 0, 1);
+        assertEquals(emptySize, Files.size(file));
+        journal.record(1, 0, 1);
+        assertTrue(Files.size(file) > emptySize);
+
+        // Reopened without closing, as if the process died.
+        journal.record(2, 0, 1);
+        try (ConversionJournal reopened = ConversionJournal.open(file)) {
+          assertTrue(reopened.isUpToDate(0, 0, 1));
+          assertTrue(reopened.isUpToDate(1, 0, 1));
+          assertFalse(reopened.isUpToDate(2, 0, 1));
+        }
+      } finally {
+        journal.finish();
+      }
+      assertFalse(Files.exists(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void sync_shouldFlushOutputFirst() throws IOException {
+    Path file = Files.createTempFile("journal", ".bin");
+    try (ConversionJournal journal = ConversionJournal.open(file, 2)) {
+      long emptySize = Files.size(file);
+      List<Long> sizesWhenFlushed = new ArrayList<>();
+      Flushable output = () -> sizesWhenFlushed.add(Files.size(file));
+
+      journal.record(0, 0, 1, output);
+      assertTrue(sizesWhenFlushed.isEmpty(), "Output should only be flushed before syncs");
+      journal.record(1, 0, 1, output);
+      assertEquals(Collections.singletonList(emptySize), sizesWhenFlushed);
+
+      long syncedSize = Files.size(file);
+      journal.recordRegion(0, 0, output);
+      assertEquals(Arrays.asList(emptySize, syncedSize), sizesWhenFlushed);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void record_shouldKeepRecordsAfterFailedSyncs() throws IOException {
+    Path file = Files.createTempFile("journal", ".bin");
+    try {
+      boolean[] isFailing = {true};
+      Flushable output = () -> {
+        if (isFailing[0]) {
+          throw new IOException("output unavailable");
+        }
+      };
+
+      try (ConversionJournal journal = ConversionJournal.open(file, 2)) {
+        journal.record(0, 0, 1, output);
+        // Kept until the next sync, even though syncing it failed.
+        assertThrows(IOException.class, () -> journal.record(1, 0, 1, output));
+        // Enough to overflow the unwritten records, if they weren't synced first.
+        for (int chunkX = 2; chunkX < 5; chunkX++) {
+          int x = chunkX;
+          assertThrows(IOException.class, () -> journal.record(x, 0, 1, output));
+        }
+
+        isFailing[0] = false;
+        journal.record(5, 0, 1, output);
+        journal.sync(output);
+      }
+
+      try (ConversionJournal journal = ConversionJournal.open(file)) {
+        assertTrue(journal.isUpToDate(0, 0, 1));
+        assertTrue(journal.isUpToDate(1, 0, 1));
+        assertFalse(journal.isUpToDate(2, 0, 1), "Chunks that failed to be recorded are not kept");
+        assertTrue(journal.isUpToDate(5, 0, 1));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void open_shouldDiscardPartialRecords() throws IOException {
+    Path file = Files.createTempFile("journal", ".bin");
+    try {
+      try (ConversionJournal journal = ConversionJournal.open(file)) {
+        journal.record(5, 5, 10);
+      }
+      long validSize = Files.size(file);
+      Files.write(file, new byte[]{1, 0, 0, 0, 6, 0}, StandardOpenOption.APPEND);
+
+      try (ConversionJournal journal = ConversionJournal.open(file)) {
+        assertEquals(validSize, Files.size(file));
+        assertTrue(journal.isUpToDate(5, 5, 10));
+        journal.record(6, 6, 20);
+      }
+
+      try (ConversionJournal journal = ConversionJournal.open(file)) {
+        assertTrue(journal.isUpToDate(5, 5, 10));
+        assertTrue(journal.isUpToDate(6, 6, 20));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void open_shouldRejectInvalidFiles() throws IOException {
+    Path file = Files.createTempFile("journal", ".bin");
+    try {
+      Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+      assertThrows(MalformedInputException.class, () -> ConversionJournal.open(file));
+
+      Files.delete(file);
+      ConversionJournal.open(file).close();
+      Files.write(file, new byte[]{9, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+      assertThrows(MalformedInputException.class, () -> ConversionJournal.open(file));
+
+      assertThrows(IllegalArgumentException.class, () -> ConversionJournal.open(null));
+      assertThrows(IllegalArgumentException.class, () -> ConversionJournal.open(file, 0));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void record_shouldFailOnceClosed() throws IOException {
+    Path file = Files.createTempFile("journal", ".bin");
+    try {
+      ConversionJournal journal = ConversionJournal.open(file);
+      journal.close();
+      journal.close();
+      assertThrows(IOException.class, () -> journal.record(0, 0, 1));
+      assertThrows(IOException.class, () -> journal.recordRegion(0, 0));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import static me.nullicorn.ooze.convert.region.world.WorldConverterTests.createWorld;
+import static me.nullicorn.ooze.convert.region.world.WorldConverterTests.deleteRecursively;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import me.nullicorn.ooze.convert.region.RegionChunk;
+import me.nullicorn.ooze.convert.region.file.RegionFileWriter;
+import me.nullicorn.ooze.level.Cell;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Nullicorn
+ */
+class ConversionPipelineTests {
+
+  @Test
+  void run_shouldWriteEveryChunk() throws IOException {
+    Path world = createWorld();
+    try {
+      Set<String> expected = new HashSet<>();
+      new WorldConverter(ForkJoinPool.commonPool(), 1)
+          .convert(world, chunk -> expected.add(nameOf(chunk)));
+
+      PipelineOptions options = PipelineOptions.defaults()
+          .withReadThreads(2)
+          .withInflateThreads(3)
+          .withParseThreads(2)
+          .withDecodeThreads(3)
+          .withEncodeThreads(2)
+          .withQueueCapacity(2);
+
+      List<String> written = Collections.synchronizedList(new ArrayList<>());
+      long count = new ConversionPipeline<>(options, ConversionPipelineTests::nameOf, written::add)
+          .run(world);
+
+      assertEquals(expected.size(), count);
+      assertEquals(expected.size(), written.size(), "Chunks were written more than once");
+      assertEquals(expected, new HashSet<>(written));
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void run_shouldBoundChunksInFlight() throws IOException {
+    Path world = createWorld();
+    try {
+      PipelineOptions options = PipelineOptions.defaults()
+          .withEncodeThreads(1)
+          .withWriteThreads(1)
+          .withQueueCapacity(1);
+
+      AtomicInteger encodedCount = new AtomicInteger();
+      AtomicInteger writtenCount = new AtomicInteger();
+      AtomicInteger maxWaiting = new AtomicInteger();
+
+      new ConversionPipeline<>(options, chunk -> {
+        encodedCount.incrementAndGet();
+        return chunk;
+      }, chunk -> {
+        // A slow writer, which the other stages should wait for.
+        int waiting = encodedCount.get() - writtenCount.get();
+        maxWaiting.accumulateAndGet(waiting, Math::max);
+        sleep();
+        writtenCount.incrementAndGet();
+      }).run(world);
+
+      // One being written, one in the queue, and one being encoded.
+      assertTrue(maxWaiting.get() <= 3, "Too many chunks were waiting: " + maxWaiting.get());
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void run_shouldSkipChunksEncodedAsNull() throws IOException {
+    Path world = createWorld();
+    try {
+      AtomicInteger writtenCount = new AtomicInteger();
+      long count = new ConversionPipeline<RegionChunk>(
+          chunk -> chunk.getX() < 0 ? null : chunk,
+          chunk -> writtenCount.incrementAndGet()).run(world);
+
+      assertEquals(writtenCount.get(), count);
+      assertTrue(count > 0);
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void run_shouldSkipChunksInManifest() throws IOException {
+    Path world = createWorld(1000);
+    try {
+      ChunkManifest manifest = new ChunkManifest();
+      // Chunks encoded as null are still recorded.
+      ConversionPipeline<RegionChunk> pipeline = new ConversionPipeline<>(
+          chunk -> chunk.getX() < 0 ? null : chunk,
+          chunk -> {
+          });
+
+      long firstCount = pipeline.run(world, manifest);
+      assertTrue(firstCount > 0);
+      int chunkCount = manifest.chunkCount();
+      assertTrue(chunkCount > firstCount);
+      assertEquals(0, pipeline.run(world, manifest));
+
+      // As if the chunk was saved again after the last conversion.
+      manifest.record(5, -32 + 2, 999);
+      List<RegionChunk> written = Collections.synchronizedList(new ArrayList<>());
+      assertEquals(1, new ConversionPipeline<RegionChunk>(chunk -> chunk, written::add)
+          .run(world, manifest));
+      assertEquals(5, written.get(0).getX());
+      assertEquals(-32 + 2, written.get(0).getZ());
+      assertEquals(chunkCount, manifest.chunkCount());
+
+      assertThrows(IllegalArgumentException.class, () -> pipeline.run(world, null));
+      assertNoPipelineThreads();
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void run_shouldResumeFromJournal() throws IOException {
+    Path world = createWorld();
+    Path journalFile = Files.createTempFile("journal", ".bin");
+    try {
+      Set<String> expected = new HashSet<>();
+      new WorldConverter(ForkJoinPool.commonPool(), 1)
+          .convert(world, chunk -> expected.add(nameOf(chunk)));
+
+      Set<String> written = Collections.synchronizedSet(new HashSet<>());
+      try (ConversionJournal journal = ConversionJournal.open(journalFile, 1)) {
+        assertThrows(IOException.class, () -> new ConversionPipeline<>(
+            ConversionPipelineTests::nameOf,
+            name -> {
+              if (written.size() == 7) {
+                throw new IOException("interrupted");
+              }
+              written.add(name);
+            }).run(world, journal));
+      }
+      assertEquals(7, written.size());
+
+      try (ConversionJournal journal = ConversionJournal.open(journalFile, 1)) {
+        long count = new ConversionPipeline<>(ConversionPipelineTests::nameOf, name -> {
+          assertTrue(written.add(name), "Chunk was written twice: " + name);
+        }).run(world, journal);
+
+        assertEquals(expected.size() - 7, count);
+        assertEquals(expected, written);
+        assertTrue(journal.isRegionComplete(0, 0));
+        assertTrue(journal.isRegionComplete(-1, 0));
+      }
+      assertNoPipelineThreads();
+    } finally {
+      Files.deleteIfExists(journalFile);
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void run_shouldFlushWriterBeforeJournalSyncs() throws IOException {
+    Path world = createWorld();
+    Path journalFile = Files.createTempFile("journal", ".bin");
+    try (ConversionJournal journal = ConversionJournal.open(journalFile, 1)) {
+      Set<String> unflushed = Collections.synchronizedSet(new HashSet<>());
+      AtomicInteger flushes = new AtomicInteger();
+      ChunkWriter<String> writer = new ChunkWriter<String>() {
+        @Override
+        public void write(String encoded) {
+          unflushed.add(encoded);
+        }
+
+        @Override
+        public void flush() {
+          unflushed.clear();
+          flushes.incrementAndGet();
+        }
+      };
+
+      long count = new ConversionPipeline<>(ConversionPipelineTests::nameOf, writer)
+          .run(world, journal);
+      assertTrue(flushes.get() >= count, "Writer should be flushed before each sync");
+      assertTrue(unflushed.isEmpty(), "Every chunk should be flushed once recorded");
+    } finally {
+      Files.deleteIfExists(journalFile);
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void run_shouldFailOnCorruptChunks() throws IOException {
+    Path world = createWorld();
+    try {
+      try (RegionFileWriter writer = RegionFileWriter.create(world.resolve("r.5.5.mca"))) {
+        writer.write(3, 4, 0, 2, ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+      }
+
+      IOException thrown = assertThrows(IOException.class,
+          () -> new ConversionPipeline<>(chunk -> chunk, chunk -> {
+          }).run(world));
+      assertTrue(thrown.getMessage().contains("r.5.5.mca"), thrown.getMessage());
+      assertNoPipelineThreads();
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void run_shouldPropagateWriterErrors() throws IOException {
+    Path world = createWorld();
+    try {
+      IOException error = new IOException("writer failed");
+      IOException thrown = assertThrows(IOException.class,
+          () -> new ConversionPipeline<>(chunk -> chunk, chunk -> {
+            throw error;
+          }).run(world));
+
+      assertSame(error, thrown);
+      assertNoPipelineThreads();
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void constructor_shouldRejectInvalidArguments() {
+    ChunkEncoder<RegionChunk> encoder = chunk -> chunk;
+    ChunkWriter<RegionChunk> writer = chunk -> {
+    };
+
+    assertThrows(IllegalArgumentException.class,
+        () -> new ConversionPipeline<>(null, encoder, writer));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ConversionPipeline<>(PipelineOptions.defaults(), null, writer));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ConversionPipeline<>(PipelineOptions.defaults(), encoder, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ConversionPipeline<>(encoder, writer).run(null));
+  }
+
+  @Test
+  void options_shouldBeImmutable() {
+    PipelineOptions defaults = PipelineOptions.defaults();
+    PipelineOptions modified = defaults.withDecodeThreads(7).withQueueCapacity(3);
+
+    assertEquals(7, modified.decodeThreads());
+    assertEquals(3, modified.queueCapacity());
+    assertEquals(defaults.readThreads(), modified.readThreads());
+    assertFalse(defaults.decodeThreads() == 7 && defaults.queueCapacity() == 3);
+
+    assertThrows(IllegalArgumentException.class, () -> defaults.withReadThreads(0));
+    assertThrows(IllegalArgumentException.class, () -> defaults.withInflateThreads(0));
+    assertThrows(IllegalArgumentException.class, () -> defaults.withParseThreads(0));
+    assertThrows(IllegalArgumentException.class, () -> defaults.withDecodeThreads(0));
+    assertThrows(IllegalArgumentException.class, () -> defaults.withEncodeThreads(-1));
+    assertThrows(IllegalArgumentException.class, () -> defaults.withWriteThreads(0));
+    assertThrows(IllegalArgumentException.class, () -> defaults.withQueueCapacity(0));
+  }
+
+  private static String nameOf(RegionChunk chunk) {
+    Cell cell = chunk.getSection(0);
+    return cell.getPalette().get(cell.getBlocks().get(0)).getName();
+  }
+
+  private static void sleep() throws IOException {
+    try {
+      Thread.sleep(2);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static void assertNoPipelineThreads() {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      assertFalse(thread.getName().startsWith("ooze-convert-"),
+          "Pipeline thread still running: " + thread.getName());
+    }
+  }
+}
@@ -0,0 +1,411 @@
+package me.nullicorn.ooze.convert.region.world;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import me.nullicorn.nedit.type.NBTCompound;
+import me.nullicorn.ooze.convert.region.NBTTestWriter;
+import me.nullicorn.ooze.convert.region.RegionChunk;
+import me.nullicorn.ooze.convert.region.RegionChunkCodec;
+import me.nullicorn.ooze.convert.region.file.RegionFileWriter;
+import me.nullicorn.ooze.level.BlockState;
+import me.nullicorn.ooze.level.Cell;
+import me.nullicorn.ooze.level.PackedUIntArray;
+import me.nullicorn.ooze.level.Palette;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Nullicorn
+ */
+class WorldConverterTests {
+
+  private static final int[] DATA_VERSIONS = {1451, 2566, 2730};
+
+  /**
+   * Region coordinates, deliberately not in sorted order.
+   */
+  private static final int[][] REGIONS = {{0, 0}, {1, -1}, {-1, 0}, {0, -1}};
+
+  /**
+   * Relative chunk coordinates within each region, deliberately not in the order of the region's
+   * tables.
+   */
+  private static final int[][] CHUNKS = {{31, 31}, {0, 0}, {5, 2}, {2, 5}, {31, 0}};
+
+  private static ForkJoinPool pool;
+
+  @BeforeAll
+  static void beforeAll() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterAll
+  static void afterAll() {
+    pool.shutdown();
+  }
+
+  @Test
+  void constructor_shouldRejectInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new WorldConverter(null, 1));
+    assertThrows(IllegalArgumentException.class, () -> new WorldConverter(pool, 0));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 8})
+  void convert_shouldConsumeChunksInDeterministicOrder(int maxRegionsInFlight)
+      throws IOException {
+    Path world = createWorld();
+    try {
+      List<String> expected = new ArrayList<>();
+      for (int[] region : sortedRegions()) {
+        for (int[] chunk : sortedChunks()) {
+          expected.add(stateNameFor(region[0] * 32 + chunk[0], region[1] * 32 + chunk[1]));
+        }
+      }
+
+      WorldConverter converter = new WorldConverter(pool, maxRegionsInFlight);
+      for (int attempt = 0; attempt < 3; attempt++) {
+        List<String> consumed = new ArrayList<>();
+        long count = converter.convert(world, chunk -> {
+          assertEquals(1, chunk.getSections().size());
+          Cell cell = chunk.getSection(0);
+          String name = cell.getPalette().get(cell.getBlocks().get(0)).getName();
+          assertEquals(stateNameFor(chunk.getX(), chunk.getZ()), name);
+          consumed.add(name);
+        });
+
+        assertEquals(expected.size(), count);
+        assertEquals(expected, consumed);
+      }
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void convert_shouldIgnoreOtherFiles() throws IOException {
+    Path world = createWorld();
+    try {
+      Files.write(world.resolve("r.0.0.mca.tmp"), new byte[]{1, 2, 3});
+      Files.write(world.resolve("r.a.b.mca"), new byte[]{1, 2, 3});
+      Files.createDirectory(world.resolve("r.9.9.mca"));
+
+      long count = new WorldConverter(pool, 2).convert(world, chunk -> {
+      });
+      assertEquals(REGIONS.length * CHUNKS.length, count);
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void convert_shouldFailOnCorruptChunks() throws IOException {
+    Path world = createWorld();
+    try {
+      try (RegionFileWriter writer = RegionFileWriter.create(world.resolve("r.5.5.mca"))) {
+        writer.write(0, 0, 0, 2, ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+      }
+
+      IOException thrown = assertThrows(IOException.class,
+          () -> new WorldConverter(pool, 2).convert(world, chunk -> {
+          }));
+      assertTrue(thrown.getMessage().contains("r.5.5.mca"), thrown.getMessage());
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void convert_shouldStopRegionsInFlightOnFailure() throws IOException {
+    // Not used by any other test, so its decoder only exists if the second region is decoded.
+    int dataVersion = 2584;
+    Path world = Files.createTempDirectory("region");
+    try {
+      Files.write(world.resolve("r.0.0.mca"), new byte[]{1, 2, 3, 4});
+      try (RegionFileWriter writer = RegionFileWriter.create(world.resolve("r.1.0.mca"))) {
+        for (int[] chunk : CHUNKS) {
+          Palette palette = new Palette("test", dataVersion,
+              Collections.singletonList(new BlockState("minecraft:stone")));
+          RegionChunk regionChunk = new RegionChunk(32 + chunk[0], chunk[1],
+              Collections.singletonMap(0, new Cell(palette, new PackedUIntArray(new int[4096]))));
+          NBTCompound encoded = new RegionChunkCodec(dataVersion).encode(regionChunk);
+          writer.write(regionChunk.getX(), regionChunk.getZ(), 0, 3,
+              ByteBuffer.wrap(compress(NBTTestWriter.write(encoded), 3)));
+        }
+      }
+
+      // The corrupt region only fails once the second region's task has started, and that task
+      // only finds its chunks once the conversion has failed.
+      CountDownLatch secondRegionStarted = new CountDownLatch(1);
+      CountDownLatch conversionFailed = new CountDownLatch(1);
+      ConversionProgress progress = new ConversionProgress() {
+        @Override
+        public boolean isRegionComplete(int regionX, int regionZ) {
+          if (regionX == 0) {
+            await(secondRegionStarted);
+          }
+          return false;
+        }
+
+        @Override
+        public boolean isUpToDate(int chunkX, int chunkZ, int timestamp) {
+          secondRegionStarted.countDown();
+          await(conversionFailed);
+          return false;
+        }
+
+        @Override
+        public void record(int chunkX, int chunkZ, int timestamp) {
+        }
+      };
+
+      IOException thrown = assertThrows(IOException.class,
+          () -> new WorldConverter(pool, 2).convert(world, chunk -> {
+          }, progress));
+      assertTrue(thrown.getMessage().contains("r.0.0.mca"), thrown.getMessage());
+
+      conversionFailed.countDown();
+      assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+      assertFalse(WorldIO.hasDecoder(dataVersion), "Chunks were decoded after the failure");
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void convert_shouldPropagateConsumerErrors() throws IOException {
+    Path world = createWorld();
+    try {
+      IOException error = new IOException("consumer failed");
+      IOException thrown = assertThrows(IOException.class,
+          () -> new WorldConverter(pool, 2).convert(world, chunk -> {
+            throw error;
+          }));
+      assertSame(error, thrown);
+
+      assertThrows(IllegalArgumentException.class,
+          () -> new WorldConverter(pool, 2).convert(null, chunk -> {
+          }));
+      assertThrows(IllegalArgumentException.class,
+          () -> new WorldConverter(pool, 2).convert(world, null));
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void convert_shouldSkipChunksInManifest() throws IOException {
+    Path world = createWorld(1000);
+    try {
+      WorldConverter converter = new WorldConverter(pool, 2);
+      ChunkManifest manifest = new ChunkManifest();
+      int chunkCount = REGIONS.length * CHUNKS.length;
+
+      assertEquals(chunkCount, converter.convert(world, chunk -> {
+      }, manifest));
+      assertEquals(chunkCount, manifest.chunkCount());
+      assertEquals(0, converter.convert(world, chunk -> {
+      }, manifest));
+
+      // As if the chunk was saved again after the last conversion.
+      manifest.record(-32 + 5, 2, 999);
+      List<RegionChunk> consumed = new ArrayList<>();
+      assertEquals(1, converter.convert(world, consumed::add, manifest));
+      assertEquals(-32 + 5, consumed.get(0).getX());
+      assertEquals(2, consumed.get(0).getZ());
+      assertEquals(1000, manifest.getTimestamp(-32 + 5, 2));
+
+      assertThrows(IllegalArgumentException.class, () -> converter.convert(world, chunk -> {
+      }, null));
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void convert_shouldNotRecordFailedChunks() throws IOException {
+    Path world = createWorld(1000);
+    try {
+      ChunkManifest manifest = new ChunkManifest();
+      assertThrows(IOException.class, () -> new WorldConverter(pool, 1).convert(world, chunk -> {
+        if (chunk.getX() == 32 + 2) {
+          throw new IOException("consumer failed");
+        }
+      }, manifest));
+
+      // Every other region is consumed before r.1.-1, whose first 3 chunks precede [2, 5].
+      assertEquals((REGIONS.length - 1) * CHUNKS.length + 3, manifest.chunkCount());
+      assertEquals(0, manifest.getTimestamp(32 + 2, -32 + 5));
+    } finally {
+      deleteRecursively(world);
+    }
+  }
+
+  @Test
+  void convert_shouldResumeFromJournal() throws IOException {
+    Path world = createWorld();
+    Path journalFile = Files.createTempFile("journal", ".bin");
+    try {
+      WorldConverter converter = new WorldConverter(pool, 2);
+      List<RegionChunk> consumed = new ArrayList<>();
+      try (ConversionJournal journal = ConversionJournal.open(journalFile)) {
+        assertThrows(IOException.class, () -> converter.convert(world, chunk -> {
+          if (consumed.size() == CHUNKS.length + 2) {
+            throw new IOException("interrupted");
+          }
+          consumed.add(chunk);
+        }, journal));
+      }
+
+      try (ConversionJournal journal = ConversionJournal.open(journalFile)) {
+        // The first region was finished, so it shouldn't be opened again.
+        int[] firstRegion = sortedRegions().get(0);
+        assertTrue(journal.isRegionComplete(firstRegion[0], firstRegion[1]));
+        Files.delete(world.resolve("r." + firstRegion[0] + "." + firstRegion[1] + ".mca"));
+
+        long count = converter.convert(world, consumed::add, journal);
+        assertEquals(REGIONS.length * CHUNKS.length - CHUNKS.length - 2, count);
+        for (int[] region : REGIONS) {
+          assertTrue(journal.isRegionComplete(region[0], region[1]));
+        }
+      }
+
+      List<String> expected = new ArrayList<>();
+      for (int[] region : sortedRegions()) {
+        for (int[] chunk : sortedChunks()) {
+          expected.add(stateNameFor(region[0] * 32 + chunk[0], region[1] * 32 + chunk[1]));
+        }
+      }
+      List<String> actual = new ArrayList<>();
+      for (RegionChunk chunk : consumed) {
+        actual.add(stateNameFor(chunk.getX(), chunk.getZ()));
+      }
+      assertEquals(expected, actual);
+    } finally {
+      Files.deleteIfExists(journalFile);
+      deleteRecursively(world);
+    }
+  }
+
+  /**
+   * Writes the {@link #CHUNKS} of each of the {@link #REGIONS} to a temporary region directory.
+   * Each chunk is filled with a state named after its position, and chunks use a variety of
+   * versions & compression types.
+   */
+  static Path createWorld() throws IOException {
+    return createWorld(0);
+  }
+
+  /**
+   * Same as {@link #createWorld()}, but every chunk is saved with the same {@code timestamp}.
+   */
+  static Path createWorld(int timestamp) throws IOException {
+    Path world = Files.createTempDirectory("region");
+
+    int chunkNumber = 0;
+    for (int[] region : REGIONS) {
+      Path file = world.resolve("r." + region[0] + "." + region[1] + ".mca");
+      try (RegionFileWriter writer = RegionFileWriter.create(file)) {
+        for (int[] chunk : CHUNKS) {
+          int chunkX = region[0] * 32 + chunk[0];
+          int chunkZ = region[1] * 32 + chunk[1];
+          int dataVersion = DATA_VERSIONS[chunkNumber % DATA_VERSIONS.length];
+          int compressionType = chunkNumber % 3 + 1;
+          chunkNumber++;
+
+          Palette palette = new Palette("test", dataVersion,
+              Collections.singletonList(new BlockState(stateNameFor(chunkX, chunkZ))));
+          Cell cell = new Cell(palette, new PackedUIntArray(new int[4096]));
+          RegionChunk regionChunk = new RegionChunk(chunkX, chunkZ,
+              Collections.singletonMap(0, cell));
+
+          NBTCompound encoded = new RegionChunkCodec(dataVersion).encode(regionChunk);
+          byte[] compressed = compress(NBTTestWriter.write(encoded), compressionType);
+          writer.write(chunkX, chunkZ, timestamp, compressionType, ByteBuffer.wrap(compressed));
+        }
+      }
+    }
+    return world;
+  }
+
+  /**
+   * Waits up to 10 seconds for the {@code latch}, so that a broken test fails instead of hanging.
+   */
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS), "Timed out");
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static String stateNameFor(int chunkX, int chunkZ) {
+    return "chunk_" + chunkX + "_" + chunkZ;
+  }
+
+  private static List<int[]> sortedRegions() {
+    List<int[]> regions = new ArrayList<>();
+    Collections.addAll(regions, REGIONS);
+    regions.sort(Comparator.comparingInt((int[] region) -> region[0])
+        .thenComparingInt(region -> region[1]));
+    return regions;
+  }
+
+  private static List<int[]> sortedChunks() {
+    List<int[]> chunks = new ArrayList<>();
+    Collections.addAll(chunks, CHUNKS);
+    chunks.sort(Comparator.comparingInt(chunk -> chunk[0] + chunk[1] * 32));
+    return chunks;
+  }
+
+  private static byte[] compress(ByteBuffer nbt, int compressionType) throws IOException {
+    byte[] raw = new byte[nbt.remaining()];
+    nbt.get(raw);
+    if (compressionType == 3) {
+      return raw;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = compressionType == 1
+        ? new GZIPOutputStream(bytes)
+        : new DeflaterOutputStream(bytes)) {
+      out.write(raw);
+    }
+    return bytes.toByteArray();
+  }
+
+  static void deleteRecursively(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      List<Path> paths = new ArrayList<>();
+      files.forEach(paths::add);
+      // Children before their parents.
+      Collections.reverse(paths);
+      for (Path path : paths) {
+        Files.delete(path);
+      }
+    }
+  }
+}